@@ -0,0 +1,73 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.benchmark;
+
+import android.content.Context;
+import android.view.ViewGroup;
+import android.widget.Button;
+
+import com.github.adamantcheese.chan.core.di.AppModule;
+import com.github.adamantcheese.chan.utils.BackgroundUtils;
+import com.github.adamantcheese.chan.utils.Logger;
+import com.github.adamantcheese.chan.utils.PriorityExecutor.Lane;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
+import static com.github.adamantcheese.chan.ui.widget.CancellableToast.showToast;
+import static com.github.adamantcheese.chan.utils.AndroidUtils.setClipboardContent;
+
+/**
+ * The developer settings button that runs the {@link HotPathBenchmark}. The benchmark is only in debug builds, release
+ * builds have a version of this that adds nothing.
+ */
+public class BenchmarkButton {
+    private static final String TAG = "BenchmarkButton";
+    private static final String BENCHMARK_DIR_NAME = "benchmarks";
+
+    private BenchmarkButton() {}
+
+    public static void addTo(Context context, ViewGroup parent) {
+        Button benchmarkButton = new Button(context);
+        benchmarkButton.setOnClickListener(v -> {
+            benchmarkButton.setEnabled(false);
+            showToast(context, "Running benchmark, this takes a minute or so");
+            HotPathBenchmark benchmark = new HotPathBenchmark();
+            // out of the way of anything the app does in the background while it runs
+            Executor maintenance = command -> BackgroundUtils.backgroundService.execute(Lane.MAINTENANCE, command);
+            BackgroundUtils.runWithExecutor(maintenance, () -> {
+                try {
+                    benchmark.run(new File(AppModule.getCacheDir(), BENCHMARK_DIR_NAME));
+                    return benchmark.getJson();
+                } catch (Exception e) {
+                    Logger.e(TAG, "Benchmark failed", e);
+                    return null;
+                }
+            }, json -> {
+                benchmarkButton.setEnabled(true);
+                if (json == null) {
+                    showToast(context, "Benchmark failed, see the logs");
+                } else {
+                    setClipboardContent("Benchmark results", json);
+                    showToast(context, "Benchmark done, results copied to clipboard and logged");
+                }
+            });
+        });
+        benchmarkButton.setText("Benchmark parsing, filtering and list preparation");
+        parent.addView(benchmarkButton);
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.benchmark;
+
+import android.util.JsonWriter;
+
+import com.github.adamantcheese.chan.core.manager.FilterEngine.FilterAction;
+import com.github.adamantcheese.chan.core.manager.FilterType;
+import com.github.adamantcheese.chan.core.model.orm.Filter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generated thread responses for the benchmark, in the API formats of 4chan, vichan and 2ch. They're made from a fixed
+ * seed, so every run reads, parses and filters the same thing.
+ * <p>
+ * The posts are put together to look like a busy thread: a few lines each, quotes of earlier posts, greentext,
+ * spoilers, links and escaped entities, about half of them with an image and some with several on sites that allow
+ * that.
+ */
+class BenchmarkFixtures {
+    enum Format {
+        FUTABA,
+        VICHAN,
+        DVACH
+    }
+
+    static final int OP_NO = 100000;
+
+    private static final long SEED = 0x4b55524fL;
+    private static final long START_TIME = 1600000000L;
+
+    private static final String[] WORDS = {
+            "the", "anon", "thread", "post", "image", "board", "really", "never", "always", "think", "because",
+            "source", "literally", "version", "update", "build", "phone", "screen", "battery", "kernel", "driver",
+            "render", "scroll", "cache", "memory", "network", "server", "client", "parser", "filter", "bump", "reply",
+            "catalog", "archive", "sticky", "closed", "weekend", "coffee", "winter", "summer", "music", "album",
+            "track", "movie", "season", "episode", "chapter", "volume", "manga", "anime", "game", "patch", "speedrun",
+            "record", "keyboard", "mouse", "monitor", "desk", "chair", "lamp", "window", "door", "garden", "weather",
+            "rain", "snow", "train", "station", "ticket", "city", "country", "river", "mountain", "forest", "ocean",
+            "island"
+    };
+    private static final String[] NAMES = {"Anonymous", "Anonymous", "Anonymous", "Anonymous", "anon", "Taro"};
+    private static final String[] TRIPCODES = {"!Ep8pui8Vw2", "!!d8FJx2kq1p"};
+    private static final String[] EXTENSIONS = {"jpg", "png", "gif", "webm"};
+
+    private BenchmarkFixtures() {}
+
+    /**
+     * @return a thread response with the given amount of posts, the first being the OP with the number {@link #OP_NO}
+     */
+    static String thread(Format format, String boardCode, int postCount)
+            throws IOException {
+        Random random = new Random(SEED);
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+
+        writer.beginObject();
+        if (format == Format.DVACH) {
+            writer.name("threads").beginArray().beginObject();
+        }
+        writer.name("posts").beginArray();
+        for (int i = 0; i < postCount; i++) {
+            writePost(writer, format, boardCode, random, OP_NO + i, i == 0);
+        }
+        writer.endArray();
+        if (format == Format.DVACH) {
+            writer.endObject().endArray();
+        }
+        writer.endObject();
+
+        writer.close();
+        return out.toString();
+    }
+
+    /**
+     * @return filters like a heavy user would have, mostly words in comments and subjects with a few regexes, names,
+     * tripcodes and filenames; none remove posts, so every run parses the same amount
+     */
+    static List<Filter> filters(int count) {
+        Random random = new Random(SEED);
+        List<Filter> filters = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Filter filter = new Filter();
+            filter.action = i % 3 == 0 ? FilterAction.HIDE.id : FilterAction.COLOR.id;
+            filter.color = 0xffff0000;
+            switch (i % 10) {
+                case 0:
+                    filter.type = FilterType.NAME.flag | FilterType.TRIPCODE.flag;
+                    filter.pattern = TRIPCODES[random.nextInt(TRIPCODES.length)] + i;
+                    break;
+                case 1:
+                    filter.type = FilterType.FILENAME.flag;
+                    filter.pattern = word(random) + "*";
+                    break;
+                case 2:
+                    filter.type = FilterType.COMMENT.flag;
+                    filter.pattern = "/" + word(random) + "\\s+(" + word(random) + "|" + word(random) + ")/i";
+                    break;
+                case 3:
+                    filter.type = FilterType.COMMENT.flag | FilterType.SUBJECT.flag;
+                    filter.pattern = "\"" + word(random) + " " + word(random) + "\"";
+                    break;
+                default:
+                    filter.type = FilterType.COMMENT.flag | FilterType.SUBJECT.flag;
+                    // made up words, like most filters they rarely match
+                    filter.pattern = word(random) + "x" + i + " " + word(random) + "z" + i;
+                    break;
+            }
+            filters.add(filter);
+        }
+        return filters;
+    }
+
+    private static void writePost(JsonWriter writer, Format format, String boardCode, Random random, int no, boolean op)
+            throws IOException {
+        long time = START_TIME + (no - OP_NO) * 7L;
+        String name = NAMES[random.nextInt(NAMES.length)];
+        String subject = op ? sentence(random, 6) : null;
+        String comment = comment(format, boardCode, random, no);
+
+        writer.beginObject();
+        if (format == Format.DVACH) {
+            // the number has to come first, it decides if the post is the op
+            writer.name("num").value(no);
+            writer.name("op").value(0);
+            writer.name("timestamp").value(time);
+            writer.name("name").value(name);
+            writer.name("subject").value(subject == null ? "" : subject);
+            writer.name("comment").value(comment);
+            writer.name("sticky").value(0);
+            writer.name("closed").value(0);
+            writer.name("archived").value(0);
+            writer.name("lasthit").value(time);
+            writer.name("files").beginArray();
+            int files = imageCount(format, random);
+            for (int i = 0; i < files; i++) {
+                long tim = time * 1000L + i;
+                writer.beginObject();
+                writer.name("path").value("/" + boardCode + "/src/" + OP_NO + "/" + tim + ".jpg");
+                writer.name("thumbnail").value("/" + boardCode + "/thumb/" + OP_NO + "/" + tim + "s.jpg");
+                writer.name("name").value(tim + ".jpg");
+                writer.name("size").value(100 + random.nextInt(4000));
+                writer.name("width").value(800);
+                writer.name("height").value(600);
+                writer.name("md5").value(hash(random, true));
+                writer.endObject();
+            }
+            writer.endArray();
+        } else {
+            writer.name("no").value(no);
+            writer.name("now").value("09/13/20(Sun)12:26:40");
+            writer.name("name").value(name);
+            if (random.nextInt(20) == 0) {
+                writer.name("trip").value(TRIPCODES[random.nextInt(TRIPCODES.length)]);
+            }
+            if (subject != null) {
+                writer.name("sub").value(subject);
+            }
+            writer.name("com").value(comment);
+            writer.name("time").value(time);
+            writer.name("resto").value(op ? 0 : OP_NO);
+            int files = imageCount(format, random);
+            if (files > 0) {
+                writeFutabaImage(writer, random, time * 1000L);
+            }
+            if (files > 1) {
+                writer.name("extra_files").beginArray();
+                for (int i = 1; i < files; i++) {
+                    writer.beginObject();
+                    writeFutabaImage(writer, random, time * 1000L + i);
+                    writer.endObject();
+                }
+                writer.endArray();
+            }
+            if (op) {
+                writer.name("replies").value(0);
+                writer.name("images").value(0);
+            }
+        }
+        writer.endObject();
+    }
+
+    private static void writeFutabaImage(JsonWriter writer, Random random, long tim)
+            throws IOException {
+        writer.name("filename").value(word(random) + "_" + word(random));
+        writer.name("ext").value("." + EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+        writer.name("w").value(800);
+        writer.name("h").value(600);
+        writer.name("tn_w").value(250);
+        writer.name("tn_h").value(187);
+        writer.name("tim").value(tim);
+        writer.name("fsize").value(10000 + random.nextInt(3000000));
+        writer.name("md5").value(hash(random, false));
+    }
+
+    private static int imageCount(Format format, Random random) {
+        if (random.nextInt(2) == 0) return 0;
+        // only vichan and 2ch have more than one image per post
+        return format != Format.FUTABA && random.nextInt(8) == 0 ? 2 + random.nextInt(3) : 1;
+    }
+
+    private static String comment(Format format, String boardCode, Random random, int no) {
+        StringBuilder comment = new StringBuilder();
+        int lines = 1 + random.nextInt(6);
+        for (int line = 0; line < lines; line++) {
+            if (line > 0) {
+                comment.append(format == Format.VICHAN ? "<br/>" : "<br>");
+            }
+
+            int kind = random.nextInt(20);
+            if (kind < 4 && no > OP_NO) {
+                int quoted = no - 1 - random.nextInt(Math.min(no - OP_NO, 200));
+                comment.append(quote(format, boardCode, quoted));
+            } else if (kind < 7) {
+                String greentext = "&gt;" + sentence(random, 3 + random.nextInt(8));
+                comment.append(format == Format.DVACH ? "<span class=\"unkfunc\">" : "<span class=\"quote\">")
+                        .append(greentext)
+                        .append("</span>");
+            } else if (kind < 8) {
+                String spoiler = sentence(random, 4);
+                comment.append(format == Format.FUTABA ? "<s>" : "<span class=\"spoiler\">")
+                        .append(spoiler)
+                        .append(format == Format.FUTABA ? "</s>" : "</span>");
+            } else if (kind < 9) {
+                comment.append("check https://example.com/")
+                        .append(word(random))
+                        .append("/")
+                        .append(random.nextInt(100000))
+                        .append(" it&#039;s &quot;fine&quot; &amp; works");
+            } else {
+                comment.append(sentence(random, 4 + random.nextInt(16)));
+            }
+        }
+        return comment.toString();
+    }
+
+    private static String quote(Format format, String boardCode, int quoted) {
+        switch (format) {
+            case FUTABA:
+                return "<a href=\"#p" + quoted + "\" class=\"quotelink\">&gt;&gt;" + quoted + "</a>";
+            case VICHAN:
+                return "<a onclick=\"highlightReply('" + quoted + "', event);\" href=\"/" + boardCode + "/res/" + OP_NO
+                        + ".html#" + quoted + "\">&gt;&gt;" + quoted + "</a>";
+            case DVACH:
+            default:
+                return "<a href=\"/" + boardCode + "/res/" + OP_NO + ".html#" + quoted
+                        + "\" class=\"post-reply-link\" data-thread=\"" + OP_NO + "\" data-num=\"" + quoted
+                        + "\">&gt;&gt;" + quoted + "</a>";
+        }
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sentence.append(' ');
+            sentence.append(word(random));
+        }
+        return sentence.toString();
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String hash(Random random, boolean hex) {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        StringBuilder hash = new StringBuilder();
+        for (byte b : bytes) {
+            hash.append(String.format(Locale.ENGLISH, "%02x", b));
+        }
+        // 4chan and vichan give the md5 in base64, but any string is read the same
+        return hex ? hash.toString() : hash.substring(0, 22) + "==";
+    }
+}
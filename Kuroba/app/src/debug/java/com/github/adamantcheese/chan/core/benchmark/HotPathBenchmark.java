@@ -0,0 +1,382 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.benchmark;
+
+import android.os.Build;
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.github.adamantcheese.chan.BuildConfig;
+import com.github.adamantcheese.chan.core.benchmark.BenchmarkFixtures.Format;
+import com.github.adamantcheese.chan.core.manager.FilterEngine;
+import com.github.adamantcheese.chan.core.model.ChanThread;
+import com.github.adamantcheese.chan.core.model.Post;
+import com.github.adamantcheese.chan.core.model.orm.Board;
+import com.github.adamantcheese.chan.core.model.orm.Filter;
+import com.github.adamantcheese.chan.core.model.orm.Loadable;
+import com.github.adamantcheese.chan.core.repository.SiteRepository;
+import com.github.adamantcheese.chan.core.settings.primitives.JsonSettings;
+import com.github.adamantcheese.chan.core.site.Site;
+import com.github.adamantcheese.chan.core.site.parser.ChanReader;
+import com.github.adamantcheese.chan.core.site.parser.ChanReaderProcessingQueue;
+import com.github.adamantcheese.chan.core.site.parser.PostParser;
+import com.github.adamantcheese.chan.core.site.sites.Lainchan;
+import com.github.adamantcheese.chan.core.site.sites.chan4.Chan4;
+import com.github.adamantcheese.chan.core.site.sites.dvach.Dvach;
+import com.github.adamantcheese.chan.ui.adapter.PostsFilter;
+import com.github.adamantcheese.chan.ui.theme.Theme;
+import com.github.adamantcheese.chan.ui.theme.ThemeHelper;
+import com.github.adamantcheese.chan.utils.Logger;
+import com.github.adamantcheese.chan.utils.PostUtils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static com.github.adamantcheese.chan.Chan.instance;
+
+/**
+ * Times the CPU heavy paths between a thread response and the post list on this device, for a baseline to compare
+ * changes to them against: reading the response, parsing the posts with their comments and filters, matching filters,
+ * indexing the thread and preparing the list, and looking up replies.
+ * <p>
+ * Each scenario runs on a generated 3000 post thread with 50 filters, for 4chan, vichan (as lainchan) and 2ch, a few
+ * times to warm up and then a few times measured, on the calling thread. Nothing is run in parallel and the parsed post
+ * cache isn't involved, so runs on the same device can be compared with each other. The sites are made just for the
+ * run and are never added to the site list or the database.
+ * <p>
+ * The results are written as JSON, with every measured sample, to a file in the given directory. Besides the button in
+ * the developer settings, it can be run on the JVM with {@code ./gradlew testStableDebugUnitTest -Pbenchmark}, which
+ * writes to {@code app/build/benchmarks}; see HotPathBenchmarkTest.
+ */
+public class HotPathBenchmark {
+    private static final String TAG = "HotPathBenchmark";
+    private static final int FORMAT_VERSION = 1;
+    private static final int THREAD_POSTS = 3000;
+    private static final int FILTERS = 50;
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int ITERATIONS = 5;
+    private static final int REPLY_LOOKUPS = 50;
+    private static final String BOARD_CODE = "b";
+    private static final String SEARCH_QUERY = "coffee";
+    // not the id of any real site, so nothing the user has hidden applies
+    private static final int SITE_ID = -1;
+    private static final String RESULT_FILE_PREFIX = "benchmark_";
+
+    private final List<Result> results = new ArrayList<>();
+
+    /**
+     * Runs every scenario, which takes a minute or so, and writes the results.
+     *
+     * @return the written results file
+     */
+    @WorkerThread
+    public File run(@NonNull File outputDir)
+            throws Exception {
+        results.clear();
+        runSite("4chan", Chan4.class, Format.FUTABA);
+        runSite("vichan", Lainchan.class, Format.VICHAN);
+        runSite("2ch", Dvach.class, Format.DVACH);
+
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            throw new IOException("Couldn't create benchmark directory " + outputDir.getAbsolutePath());
+        }
+        File file = new File(outputDir, RESULT_FILE_PREFIX + System.currentTimeMillis() + ".json");
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(getJson());
+        }
+
+        Logger.i(TAG, "Benchmark results, written to " + file.getAbsolutePath() + "\n" + getSummary());
+        return file;
+    }
+
+    /**
+     * @return the results of the last run as JSON, with the device and settings they were measured with
+     */
+    public String getJson()
+            throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        writer.setIndent("  ");
+        writer.beginObject();
+        writer.name("format_version").value(FORMAT_VERSION);
+        writer.name("app_version").value(BuildConfig.VERSION_NAME);
+        writer.name("device").value(Build.MANUFACTURER + " " + Build.MODEL);
+        writer.name("sdk").value(Build.VERSION.SDK_INT);
+        writer.name("timestamp").value(System.currentTimeMillis());
+        writer.name("thread_posts").value(THREAD_POSTS);
+        writer.name("filters").value(FILTERS);
+        writer.name("warmup_iterations").value(WARMUP_ITERATIONS);
+        writer.name("iterations").value(ITERATIONS);
+        writer.name("results").beginArray();
+        for (Result result : results) {
+            long[] sorted = result.sorted();
+            writer.beginObject();
+            writer.name("site").value(result.site);
+            writer.name("scenario").value(result.scenario);
+            writer.name("min_ms").value(sorted[0] / 1e6);
+            writer.name("median_ms").value(sorted[sorted.length / 2] / 1e6);
+            writer.name("max_ms").value(sorted[sorted.length - 1] / 1e6);
+            writer.name("samples_ms").beginArray();
+            for (long sample : result.samples) {
+                writer.value(sample / 1e6);
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.close();
+        return out.toString();
+    }
+
+    /**
+     * @return the results of the last run, one scenario per line
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format(Locale.ENGLISH,
+                "%-8s %-20s %9s %9s %9s\n",
+                "site",
+                "scenario",
+                "min ms",
+                "median ms",
+                "max ms"
+        ));
+        for (Result result : results) {
+            long[] sorted = result.sorted();
+            summary.append(String.format(Locale.ENGLISH,
+                    "%-8s %-20s %9.2f %9.2f %9.2f\n",
+                    result.site,
+                    result.scenario,
+                    sorted[0] / 1e6,
+                    sorted[sorted.length / 2] / 1e6,
+                    sorted[sorted.length - 1] / 1e6
+            ));
+        }
+        return summary.toString();
+    }
+
+    private void runSite(String siteName, Class<? extends Site> siteClass, Format format)
+            throws Exception {
+        Site site = instance(SiteRepository.class).instantiateSiteClass(siteClass);
+        site.initialize(SITE_ID, new JsonSettings());
+        Board board = Board.fromSiteNameCode(site, "Benchmark", BOARD_CODE);
+        Loadable loadable = Loadable.forThread(board, BenchmarkFixtures.OP_NO, "", false);
+
+        String json = BenchmarkFixtures.thread(format, BOARD_CODE, THREAD_POSTS);
+        List<Filter> filters = BenchmarkFixtures.filters(FILTERS);
+        ChanReader reader = site.chanReader();
+        Theme theme = ThemeHelper.getTheme();
+        FilterEngine filterEngine = instance(FilterEngine.class);
+
+        measure(siteName, "read", new Scenario() {
+            @Override
+            void run()
+                    throws Exception {
+                read(reader, loadable, json);
+            }
+        });
+
+        List<Post> parsed = new ArrayList<>();
+        measure(siteName, "parse", new Scenario() {
+            private List<Post.Builder> builders;
+
+            @Override
+            void setUp()
+                    throws Exception {
+                builders = read(reader, loadable, json);
+            }
+
+            @Override
+            void run() {
+                parsed.clear();
+                parsed.addAll(parse(reader, theme, builders, filters));
+            }
+        });
+
+        measure(siteName, "filter_match", new Scenario() {
+            private List<Post.Builder> builders;
+
+            @Override
+            void setUp()
+                    throws Exception {
+                builders = read(reader, loadable, json);
+            }
+
+            @Override
+            void run() {
+                for (Post.Builder builder : builders) {
+                    for (Filter filter : filters) {
+                        if (filterEngine.matches(filter, builder)) break;
+                    }
+                }
+            }
+        });
+
+        linkReplies(parsed);
+        List<ChanThread> thread = new ArrayList<>();
+        measure(siteName, "thread_index", new Scenario() {
+            @Override
+            void run() {
+                thread.clear();
+                thread.add(new ChanThread(loadable, parsed));
+            }
+        });
+
+        measure(siteName, "list_bump_order", new Scenario() {
+            @Override
+            void run() {
+                new PostsFilter(PostsFilter.Order.BUMP, null).apply(thread.get(0));
+            }
+        });
+
+        measure(siteName, "list_search", new Scenario() {
+            @Override
+            void run() {
+                new PostsFilter(PostsFilter.Order.BUMP, SEARCH_QUERY).apply(thread.get(0));
+            }
+        });
+
+        measure(siteName, "reply_lookup", new Scenario() {
+            @Override
+            void run() {
+                for (int i = 0; i < REPLY_LOOKUPS; i++) {
+                    int no = parsed.get(i * parsed.size() / REPLY_LOOKUPS).no;
+                    PostUtils.findPostWithReplies(no, parsed);
+                }
+            }
+        });
+    }
+
+    private void measure(String site, String name, Scenario scenario)
+            throws Exception {
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+            scenario.setUp();
+            // not SystemClock, which Robolectric's paused clock doesn't advance when run from the unit tests
+            long start = System.nanoTime();
+            scenario.run();
+            long duration = System.nanoTime() - start;
+            if (i >= WARMUP_ITERATIONS) {
+                samples[i - WARMUP_ITERATIONS] = duration;
+            }
+        }
+        results.add(new Result(site, name, samples));
+    }
+
+    private static List<Post.Builder> read(ChanReader reader, Loadable loadable, String json)
+            throws Exception {
+        ChanReaderProcessingQueue queue = new ChanReaderProcessingQueue(Collections.emptyList(), loadable);
+        try (JsonReader jsonReader = new JsonReader(new StringReader(json))) {
+            reader.loadThread(jsonReader, queue);
+        }
+        return queue.getToParse();
+    }
+
+    private static List<Post> parse(ChanReader reader, Theme theme, List<Post.Builder> builders, List<Filter> filters) {
+        Set<Integer> nos = new HashSet<>();
+        for (Post.Builder builder : builders) {
+            nos.add(builder.no);
+        }
+
+        PostParser.Callback callback = new PostParser.Callback() {
+            @Override
+            public boolean isSaved(int postNo) {
+                return false;
+            }
+
+            @Override
+            public boolean isInternal(int postNo) {
+                return nos.contains(postNo);
+            }
+
+            @Override
+            public boolean isRemoved(int postNo) {
+                return false;
+            }
+        };
+
+        List<Post> posts = new ArrayList<>(builders.size());
+        for (Post.Builder builder : builders) {
+            Post post = reader.getParser().parse(theme, builder, filters, callback);
+            if (post != null) {
+                posts.add(post);
+            }
+        }
+        return posts;
+    }
+
+    // what the thread loader does with the parsed posts, for the reply lookups
+    private static void linkReplies(List<Post> posts) {
+        Map<Integer, Post> byNo = new HashMap<>();
+        for (Post post : posts) {
+            byNo.put(post.no, post);
+        }
+        for (Post post : posts) {
+            for (int no : post.repliesTo) {
+                Post replied = byNo.get(no);
+                if (replied != null && !replied.repliesFrom.contains(post.no)) {
+                    replied.repliesFrom.add(post.no);
+                }
+            }
+        }
+    }
+
+    private abstract static class Scenario {
+        /**
+         * Prepares for the next iteration; not measured.
+         */
+        void setUp()
+                throws Exception {}
+
+        abstract void run()
+                throws Exception;
+    }
+
+    private static class Result {
+        private final String site;
+        private final String scenario;
+        private final long[] samples;
+
+        private Result(String site, String scenario, long[] samples) {
+            this.site = site;
+            this.scenario = scenario;
+            this.samples = samples;
+        }
+
+        private long[] sorted() {
+            long[] sorted = Arrays.copyOf(samples, samples.length);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
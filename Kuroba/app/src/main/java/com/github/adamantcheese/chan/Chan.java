@@ -24,11 +24,15 @@ import android.os.Build;
 import androidx.annotation.NonNull;
 
 import com.github.adamantcheese.chan.core.cache.downloader.FileCacheException;
+import com.github.adamantcheese.chan.core.database.DatabaseSavedReplyManager;
 import com.github.adamantcheese.chan.core.di.AppModule;
 import com.github.adamantcheese.chan.core.di.ManagerModule;
 import com.github.adamantcheese.chan.core.di.NetModule;
 import com.github.adamantcheese.chan.core.di.RepositoryModule;
+import com.github.adamantcheese.chan.core.manager.ArchivesManager;
 import com.github.adamantcheese.chan.core.manager.BoardManager;
+import com.github.adamantcheese.chan.core.manager.FilterEngine;
+import com.github.adamantcheese.chan.core.manager.ReplyQueueManager;
 import com.github.adamantcheese.chan.core.manager.ReportManager;
 import com.github.adamantcheese.chan.core.manager.SettingsNotificationManager;
 import com.github.adamantcheese.chan.core.manager.SettingsNotificationManager.SettingNotification;
@@ -42,18 +46,19 @@ import com.github.adamantcheese.chan.ui.widget.CancellableToast;
 import com.github.adamantcheese.chan.utils.AndroidUtils;
 import com.github.adamantcheese.chan.utils.BackgroundUtils;
 import com.github.adamantcheese.chan.utils.Logger;
+import com.github.adamantcheese.chan.utils.PriorityExecutor.Lane;
+import com.github.adamantcheese.chan.utils.Tracer;
 import com.github.adamantcheese.chan.core.net.NetUtils;
 
 import org.codejargon.feather.Feather;
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.EventBusException;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 
-import javax.inject.Inject;
-
 import io.reactivex.exceptions.UndeliverableException;
 import io.reactivex.plugins.RxJavaPlugins;
 
@@ -64,16 +69,9 @@ import static java.lang.Thread.currentThread;
 public class Chan
         extends Application
         implements DefaultActivityLifecycleCallbacks {
-    private int activityForegroundCounter = 0;
-
-    @Inject
-    SiteRepository siteRepository;
+    private static final String TIMINGS_DIR_NAME = "timings";
 
-    @Inject
-    BoardManager boardManger;
-
-    @Inject
-    ReportManager reportManager;
+    private int activityForegroundCounter = 0;
 
     private static Feather feather;
 
@@ -103,9 +101,11 @@ public class Chan
     @Override
     public void onCreate() {
         super.onCreate();
+        Tracer.Span span = Tracer.begin("Chan.onCreate");
         registerActivityLifecycleCallbacks(this);
 
         AndroidUtils.init(this, null);
+        Tracer.init(new File(AppModule.getCacheDir(), TIMINGS_DIR_NAME));
         BitmapRepository.initialize(this);
 
         WatchNotification.setupChannel();
@@ -113,10 +113,18 @@ public class Chan
         LastPageNotification.setupChannel();
 
         feather = Feather.with(new AppModule(), new NetModule(), new RepositoryModule(), new ManagerModule());
-        feather.injectFields(this);
 
-        siteRepository.initialize();
-        boardManger.initialize();
+        // only the sites and boards are needed for the first screen, the rest is warmed up alongside them
+        StartupTasks startupTasks = new StartupTasks();
+        startupTasks.add("sites", false, () -> instance(SiteRepository.class).initialize())
+                .add("boards", false, () -> instance(BoardManager.class).initialize(), "sites")
+                .add("saved replies", false, () -> instance(DatabaseSavedReplyManager.class))
+                .add("filters", false, () -> instance(FilterEngine.class).getEnabledFilters())
+                .add("archives", false, ArchivesManager::getInstance)
+                .add("crash logs", false, this::checkCrashLogs)
+                // not used directly, but needs to exist to resume any replies queued before the process died
+                .add("reply queue", true, () -> instance(ReplyQueueManager.class), "boards");
+        startupTasks.start();
 
         RxJavaPlugins.setErrorHandler(e -> {
             if (e instanceof UndeliverableException) {
@@ -192,10 +200,15 @@ public class Chan
         });
 
         SettingsNotificationManager.postNotification(SettingNotification.Default);
-        if (ChanSettings.collectCrashLogs.get()) {
-            if (reportManager.countCrashLogs() > 0) {
-                SettingsNotificationManager.postNotification(SettingNotification.CrashLog);
-            }
+
+        startupTasks.await("boards");
+        span.close();
+    }
+
+    private void checkCrashLogs() {
+        if (ChanSettings.collectCrashLogs.get() && instance(ReportManager.class).countCrashLogs() > 0) {
+            BackgroundUtils.runOnMainThread(() -> SettingsNotificationManager.postNotification(
+                    SettingNotification.CrashLog));
         }
     }
 
@@ -228,7 +241,7 @@ public class Chan
         }
 
         if (ChanSettings.collectCrashLogs.get()) {
-            reportManager.storeCrashLog(exception.getMessage(), error);
+            instance(ReportManager.class).storeCrashLog(exception.getMessage(), error);
         }
     }
 
@@ -259,6 +272,11 @@ public class Chan
         if (getApplicationInForeground() != lastForeground) {
             postToEventBus(new ForegroundChangedMessage(getApplicationInForeground()));
         }
+
+        if (!getApplicationInForeground()) {
+            // the process may be killed any time from here on, so save what's been timed so far
+            BackgroundUtils.runOnBackgroundThread(Tracer::writeReport, Lane.MAINTENANCE);
+        }
     }
 
     @Override
@@ -0,0 +1,137 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan;
+
+import android.os.SystemClock;
+
+import com.github.adamantcheese.chan.utils.BackgroundUtils;
+import com.github.adamantcheese.chan.utils.Logger;
+import com.github.adamantcheese.chan.utils.Tracer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The work done when the application starts, declared as named tasks with the tasks they depend on. Tasks start as
+ * soon as all of their dependencies are done, so independent ones run in parallel; background tasks go to the
+ * background executor and main thread tasks are posted to the main thread.
+ * <p>
+ * Only wait on a task from the main thread if neither it nor anything it depends on runs on the main thread.
+ */
+class StartupTasks {
+    private static final String TAG = "StartupTasks";
+
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+
+    /**
+     * @param name         the name of the task, for dependencies and logging
+     * @param onMainThread whether the task has to run on the main thread
+     * @param work         the work to do
+     * @param dependencies the names of tasks that have to be done before this one starts; they must be added first
+     */
+    StartupTasks add(String name, boolean onMainThread, Runnable work, String... dependencies) {
+        Task task = new Task(name, onMainThread, work, dependencies.length);
+        for (String dependency : dependencies) {
+            Task dependencyTask = tasks.get(dependency);
+            if (dependencyTask == null) {
+                throw new IllegalArgumentException("Unknown dependency " + dependency + " for " + name);
+            }
+            dependencyTask.dependents.add(task);
+        }
+        tasks.put(name, task);
+        return this;
+    }
+
+    void start() {
+        for (Task task : tasks.values()) {
+            if (task.remainingDependencies.get() == 0) {
+                submit(task);
+            }
+        }
+    }
+
+    /**
+     * Blocks until the given task is done, and rethrows anything it threw.
+     */
+    void await(String name) {
+        Task task = tasks.get(name);
+        if (task == null) throw new IllegalArgumentException("Unknown task " + name);
+
+        try {
+            task.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for startup task " + name, e);
+        }
+        if (task.error != null) {
+            throw new RuntimeException("Startup task " + name + " failed", task.error);
+        }
+    }
+
+    private void submit(Task task) {
+        if (task.onMainThread) {
+            BackgroundUtils.runOnMainThread(() -> run(task));
+        } else {
+            BackgroundUtils.runOnBackgroundThread(() -> run(task));
+        }
+    }
+
+    private void run(Task task) {
+        if (task.error == null) {
+            long start = SystemClock.elapsedRealtime();
+            try (Tracer.Span ignored = Tracer.begin("Startup " + task.name)) {
+                task.work.run();
+                Logger.d(TAG, task.name + " took " + (SystemClock.elapsedRealtime() - start) + "ms");
+            } catch (Throwable e) {
+                Logger.e(TAG, "Startup task " + task.name + " failed", e);
+                task.error = e;
+            }
+        }
+        task.done.countDown();
+
+        for (Task dependent : task.dependents) {
+            // a failure carries over to everything that depended on the failed task
+            if (task.error != null) {
+                dependent.error = task.error;
+            }
+            if (dependent.remainingDependencies.decrementAndGet() == 0) {
+                submit(dependent);
+            }
+        }
+    }
+
+    private static class Task {
+        private final String name;
+        private final boolean onMainThread;
+        private final Runnable work;
+        private final AtomicInteger remainingDependencies;
+        private final List<Task> dependents = new ArrayList<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Throwable error;
+
+        private Task(String name, boolean onMainThread, Runnable work, int dependencies) {
+            this.name = name;
+            this.onMainThread = onMainThread;
+            this.work = work;
+            this.remainingDependencies = new AtomicInteger(dependencies);
+        }
+    }
+}
@@ -26,6 +26,7 @@ import com.github.adamantcheese.chan.utils.ConversionUtils.charArrayToInt
 import com.github.adamantcheese.chan.utils.ConversionUtils.intToCharArray
 import com.github.adamantcheese.chan.utils.JavaUtils.stringMD5hash
 import com.github.adamantcheese.chan.utils.Logger
+import com.github.adamantcheese.chan.utils.PriorityExecutor.Lane
 import com.github.adamantcheese.chan.utils.StringUtils
 import com.github.adamantcheese.chan.utils.StringUtils.UTCFormat
 import com.github.k1rakishou.fsaf.FileManager
@@ -40,6 +41,7 @@ import java.io.IOException
 import java.io.PrintWriter
 import java.util.*
 import java.util.concurrent.TimeUnit.MINUTES
+import java.util.concurrent.TimeUnit.SECONDS
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicLong
 import kotlin.jvm.Throws
@@ -63,12 +65,19 @@ import kotlin.jvm.Throws
  * the user so it's not a big deal.
  *
  * CacheHandler now also caches file chunks that are used by [ConcurrentChunkedFileDownloader]
+ *
+ * The state of every cache file is also kept in a [CacheIndex], along with its size and when it was last used, so
+ * trim, size recalculation and existence checks work off of memory. The meta files are still written, to rebuild the
+ * index from when its journal is lost.
  */
 class CacheHandler(
         private val fileManager: FileManager,
         private val cacheDirFile: RawFile,
-        private val chunksCacheDirFile: RawFile
+        private val chunksCacheDirFile: RawFile,
+        journalFile: File
 ) {
+    private val cacheIndex = CacheIndex(journalFile)
+
     /**
      * An estimation of the current size of the directory. Used to check if trim must be run
      * because the folder exceeds the maximum size.
@@ -86,23 +95,49 @@ class CacheHandler(
 
     init {
         createDirectories()
-        backgroundRecalculateSize()
+        loadIndex()
         clearChunksCacheDir()
     }
 
+    private fun loadIndex() {
+        BackgroundUtils.runOnBackgroundThread({
+            val entries = cacheIndex.readJournal() ?: scanCacheDirectory().also { scanned ->
+                Logger.d(TAG, "Rebuilt the cache index from the cache directory, ${scanned.size} files")
+            }
+
+            cacheIndex.finishLoading(entries)
+            recalculateSize()
+        }, Lane.MAINTENANCE)
+    }
+
     private fun clearChunksCacheDir() {
         if (trimChunksRunning.compareAndSet(false, true)) {
-            BackgroundUtils.runOnBackgroundThread {
+            BackgroundUtils.runOnBackgroundThread({
                 try {
                     fileManager.deleteContent(chunksCacheDirFile)
                 } finally {
                     trimChunksRunning.set(false)
                 }
-            }
+            }, Lane.MAINTENANCE)
         }
     }
 
     fun exists(url: HttpUrl): Boolean {
+        if (cacheIndex.isLoaded) {
+            val key = stringMD5hash(url.toString())
+            if (!cacheIndex.contains(key)) {
+                return false
+            }
+
+            // the file may have been deleted from under the cache, by the OS or the user
+            if (fileManager.exists(getCacheFileInternal(url))) {
+                return true
+            }
+
+            cacheIndex.remove(key)
+            return false
+        }
+
         return fileManager.exists(getCacheFileInternal(url))
     }
 
@@ -135,16 +170,25 @@ class CacheHandler(
                 val createdFile = fileManager.create(cacheFileMeta) as RawFile?
                         ?: throw IOException("Couldn't create cache file meta!")
 
+                val now = System.currentTimeMillis()
                 val result = updateCacheFileMeta(
                         createdFile,
                         true,
-                        System.currentTimeMillis(),
+                        now,
                         false
                 )
 
                 if (!result) {
                     throw IOException("Cache file meta update failed!")
                 }
+
+                cacheIndex.put(CacheIndex.Entry(
+                        stringMD5hash(url.toString()),
+                        now,
+                        now,
+                        false,
+                        CacheIndex.UNKNOWN_SIZE
+                ))
             }
         } catch (error: IOException) {
             Logger.e(TAG, "Error trying to get or create cache meta: ${cacheFileMeta.getFullPath()}:", error)
@@ -179,6 +223,24 @@ class CacheHandler(
         return fileManager.create(chunkCacheFile) as RawFile?
     }
 
+    /**
+     * Creates a scratch file for streaming [url] into. It's kept with the download chunks so that it's cleaned up along
+     * with them, and every call gets a new file so that two streams of the same url don't share one.
+     * */
+    fun createStreamBufferFile(url: HttpUrl): RawFile? {
+        createDirectories()
+
+        val fileName = String.format(
+                Locale.ENGLISH,
+                "%s_stream_%d.%s",
+                stringMD5hash(url.toString()),
+                System.nanoTime(),
+                CHUNK_CACHE_EXTENSION
+        )
+        val bufferFile = chunksCacheDirFile.clone(FileSegment(fileName)) as RawFile
+        return fileManager.create(bufferFile) as RawFile?
+    }
+
     /**
      * Checks whether this file is already downloaded by reading it's meta info. If a file has no
      * meta info or it cannot be read - deletes the file so it can be re-downloaded again with all
@@ -188,17 +250,34 @@ class CacheHandler(
      * */
     fun isAlreadyDownloaded(cacheFile: RawFile): Boolean {
         return try {
+            val cacheFileName = fileManager.getName(cacheFile)
             if (!fileManager.exists(cacheFile)) {
+                cacheIndex.remove(StringUtils.removeExtensionFromFileName(cacheFileName))
                 deleteCacheFile(cacheFile)
                 return false
             }
 
-            if (!fileManager.getName(cacheFile).endsWith(CACHE_EXTENSION)) {
+            if (!cacheFileName.endsWith(CACHE_EXTENSION)) {
                 Logger.e(TAG, "Not a cache file! file = " + cacheFile.getFullPath())
                 deleteCacheFile(cacheFile)
                 return false
             }
 
+            val key = StringUtils.removeExtensionFromFileName(cacheFileName)
+            val now = System.currentTimeMillis()
+            val entry = cacheIndex[key]
+            if (entry != null) {
+                if (entry.isDownloaded && cacheIndex.touch(key, now)) {
+                    BackgroundUtils.runOnBackgroundThread(
+                            { cacheIndex.flushAccesses() },
+                            ACCESS_FLUSH_DELAY_MS,
+                            Lane.MAINTENANCE
+                    )
+                }
+                return entry.isDownloaded
+            }
+
+            // Not in the index (yet), go by the meta file and add it
             val cacheFileMetaFile = getCacheFileMetaByCacheFile(cacheFile)
             if (cacheFileMetaFile == null) {
                 Logger.e(
@@ -231,6 +310,13 @@ class CacheHandler(
                 return false
             }
 
+            cacheIndex.put(CacheIndex.Entry(
+                    key,
+                    cacheFileMeta.createdOn,
+                    now,
+                    cacheFileMeta.isDownloaded,
+                    if (cacheFileMeta.isDownloaded) fileManager.getLength(cacheFile) else CacheIndex.UNKNOWN_SIZE
+            ))
             cacheFileMeta.isDownloaded
         } catch (error: Throwable) {
             Logger.e(TAG, "Error while trying to check whether the file is already downloaded", error)
@@ -266,9 +352,21 @@ class CacheHandler(
 
             if (!updateResult) {
                 deleteCacheFile(output)
+                return false
             }
 
-            updateResult
+            val key = StringUtils.removeExtensionFromFileName(fileManager.getName(output))
+            val now = System.currentTimeMillis()
+            val entry = cacheIndex[key]
+            cacheIndex.put(CacheIndex.Entry(
+                    key,
+                    entry?.createdOn ?: now,
+                    now,
+                    true,
+                    fileManager.getLength(output)
+            ))
+
+            true
         } catch (error: Throwable) {
             Logger.e(TAG, "Error while trying to mark file as downloaded", error)
             deleteCacheFile(output)
@@ -300,7 +398,7 @@ class CacheHandler(
                 && now - trimTime > MIN_TRIM_INTERVAL
                 && trimRunning.compareAndSet(false, true)
         ) {
-            BackgroundUtils.runOnBackgroundThread {
+            BackgroundUtils.runOnBackgroundThread({
                 try {
                     trim()
                 } catch (e: Exception) {
@@ -309,7 +407,7 @@ class CacheHandler(
                     lastTrimTime.set(now)
                     trimRunning.set(false)
                 }
-            }
+            }, Lane.MAINTENANCE)
         }
     }
 
@@ -344,6 +442,7 @@ class CacheHandler(
             }
         }
 
+        cacheIndex.clear()
         recalculateSize()
     }
 
@@ -375,11 +474,18 @@ class CacheHandler(
 
         val cacheFile = cacheDirFile.clone(FileSegment(cacheFileName)) as RawFile
         val cacheMetaFile = cacheDirFile.clone(FileSegment(cacheMetaFileName)) as RawFile
-        val cacheFileSize = fileManager.getLength(cacheFile)
+        val entry = cacheIndex[originalFileName]
+        val cacheFileSize = if (entry != null && entry.size >= 0L) {
+            entry.size
+        } else {
+            fileManager.getLength(cacheFile)
+        }
 
         val deleteCacheFileResult = fileManager.delete(cacheFile)
         if (!deleteCacheFileResult) {
             Logger.e(TAG, "Failed to delete cache file, fileName = ${cacheFile.getFullPath()}")
+        } else {
+            cacheIndex.remove(originalFileName)
         }
 
         val deleteCacheFileMetaResult = fileManager.delete(cacheMetaFile)
@@ -659,30 +765,22 @@ class CacheHandler(
                 "internalCacheDir = ${internalCacheDir})"
     }
 
-    private fun backgroundRecalculateSize() {
-        if (recalculationRunning.get()) {
-            // Already running. Do not use compareAndSet() here!
-            return
-        }
-        BackgroundUtils.runOnBackgroundThread { recalculateSize() }
-    }
-
+    /**
+     * Sums up the sizes in the index; only files without a known size, like ones still being downloaded, are measured.
+     * */
     private fun recalculateSize() {
-        var calculatedSize: Long = 0
-
-        if (!recalculationRunning.compareAndSet(false, true)) {
+        if (!cacheIndex.isLoaded || !recalculationRunning.compareAndSet(false, true)) {
             return
         }
 
         try {
-            val files = fileManager.listFiles(cacheDirFile)
+            var calculatedSize = cacheIndex.getTotalSize()
 
-            for (file in files) {
-                if (fileManager.getName(file).endsWith(CACHE_META_EXTENSION)) {
-                    continue
+            for (entry in cacheIndex.getEntries()) {
+                if (entry.size < 0L) {
+                    val file = cacheDirFile.clone(FileSegment(formatCacheFileName(entry.key)))
+                    calculatedSize += fileManager.getLength(file).coerceAtLeast(0L)
                 }
-
-                calculatedSize += fileManager.getLength(file)
             }
 
             size.set(calculatedSize)
@@ -694,25 +792,20 @@ class CacheHandler(
     private fun trim() {
         BackgroundUtils.ensureBackgroundThread()
 
-        val directoryFiles = fileManager.listFiles(cacheDirFile)
-        // Don't try to trim empty directories or just two files in it.
-        // Two (not one) because for every cache file we now have a cache file meta with some
-        // additional info.
-        if (directoryFiles.size <= 2) {
+        if (!cacheIndex.isLoaded) {
+            // trimmed next time a file is added, once it's loaded
             return
         }
 
-        Logger.d(TAG, "trim() started")
+        // Least recently used first; LastModified doesn't work on some platforms/phones
+        // (https://issuetracker.google.com/issues/36930892) so the index keeps track of when files were used
+        val entries = cacheIndex.getEntries().sortedWith(CACHE_ENTRY_COMPARATOR)
+        if (entries.size <= 1) {
+            return
+        }
 
-        // LastModified doesn't work on some platforms/phones
-        // (https://issuetracker.google.com/issues/36930892)
-        // so we have to use a workaround. When creating a cache file for a download we also create a
-        // meta file where we will put some info about this download: the main file creation time and
-        // a flag that will tell us whether the download is complete or not. So now we need to parse
-        // the creation time from the meta file to sort cache files in ascending order (from the
-        // oldest cache file to the newest).
+        Logger.d(TAG, "trim() started")
 
-        val sortedFiles = groupFilterAndSortFiles(directoryFiles)
         var totalDeleted = 0L
         var filesDeleted = 0
         val now = System.currentTimeMillis()
@@ -726,11 +819,8 @@ class CacheHandler(
         }
 
         // We either delete all files we can in the cache directory or at most half of the cache
-        for (cacheFile in sortedFiles) {
-            val file = cacheFile.file
-            val createdOn = cacheFile.createdOn
-
-            if (now - createdOn < MIN_CACHE_FILE_LIFE_TIME) {
+        for (entry in entries) {
+            if (now - entry.lastAccess < MIN_CACHE_FILE_LIFE_TIME) {
                 // Do not delete fresh files because it may happen right at the time user switched
                 // to it. Since the list is sorted there is no point to iterate it anymore since all
                 // the following files will be "too young" to be deleted so we just break out of
@@ -742,10 +832,8 @@ class CacheHandler(
                 break
             }
 
-            val fileSize = fileManager.getLength(file)
-
-            if (deleteCacheFile(file)) {
-                totalDeleted += fileSize
+            if (deleteCacheFile(formatCacheFileName(entry.key))) {
+                totalDeleted += entry.knownSize()
                 ++filesDeleted
             }
         }
@@ -754,11 +842,14 @@ class CacheHandler(
         Logger.d(TAG, "trim() ended, filesDeleted = $filesDeleted, space freed = $totalDeleted")
     }
 
-    private fun groupFilterAndSortFiles(directoryFiles: List<AbstractFile>): List<CacheFile> {
+    /**
+     * Lists the cache directory and reads the meta file of every cache file, to rebuild the index from.
+     * */
+    private fun scanCacheDirectory(): List<CacheIndex.Entry> {
         BackgroundUtils.ensureBackgroundThread()
 
-        val groupedCacheFiles = filterAndGroupCacheFilesWithMeta(directoryFiles)
-        val cacheFiles = ArrayList<CacheFile>(groupedCacheFiles.size)
+        val groupedCacheFiles = filterAndGroupCacheFilesWithMeta(fileManager.listFiles(cacheDirFile))
+        val entries = ArrayList<CacheIndex.Entry>(groupedCacheFiles.size)
 
         for ((abstractFile, abstractFileMeta) in groupedCacheFiles) {
             val cacheFileMeta = try {
@@ -779,12 +870,16 @@ class CacheHandler(
                 continue
             }
 
-            cacheFiles.add(CacheFile(abstractFile, cacheFileMeta))
+            entries.add(CacheIndex.Entry(
+                    StringUtils.removeExtensionFromFileName(fileManager.getName(abstractFile)),
+                    cacheFileMeta.createdOn,
+                    cacheFileMeta.createdOn,
+                    cacheFileMeta.isDownloaded,
+                    fileManager.getLength(abstractFile)
+            ))
         }
 
-        // Sort in ascending order, the oldest files are in the beginning of the list
-        Collections.sort(cacheFiles, CACHE_FILE_COMPARATOR)
-        return cacheFiles
+        return entries
     }
 
     private fun filterAndGroupCacheFilesWithMeta(
@@ -858,23 +953,6 @@ class CacheHandler(
             val cacheFileMeta: RawFile
     )
 
-    private class CacheFile(
-            val file: AbstractFile,
-            private val cacheFileMeta: CacheFileMeta
-    ) {
-
-        val createdOn: Long
-            get() = cacheFileMeta.createdOn
-
-        override fun toString(): String {
-            return "CacheFile{" +
-                    "file=${file.getFullPath()}" +
-                    ", cacheFileMeta=${cacheFileMeta}" +
-                    "}"
-        }
-
-    }
-
     internal class CacheFileMeta(
             val createdOn: Long,
             val isDownloaded: Boolean
@@ -892,6 +970,9 @@ class CacheHandler(
         private const val TAG = "CacheHandler"
         private const val CACHE_FILE_META_HEADER_SIZE = 4
 
+        // cache hits are written to the index journal at most this often
+        private val ACCESS_FLUSH_DELAY_MS = SECONDS.toMillis(10)
+
         // I don't think it will ever get this big but just in case don't forget to update it if it
         // ever gets
         private const val MAX_CACHE_META_SIZE = 1024L
@@ -905,8 +986,8 @@ class CacheHandler(
         private val MIN_CACHE_FILE_LIFE_TIME = MINUTES.toMillis(5)
         private val MIN_TRIM_INTERVAL = MINUTES.toMillis(1)
 
-        private val CACHE_FILE_COMPARATOR = Comparator<CacheFile> { cacheFile1, cacheFile2 ->
-            cacheFile1.createdOn.compareTo(cacheFile2.createdOn)
+        private val CACHE_ENTRY_COMPARATOR = Comparator<CacheIndex.Entry> { entry1, entry2 ->
+            entry1.lastAccess.compareTo(entry2.lastAccess)
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,367 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.cache
+
+import com.github.adamantcheese.chan.utils.Logger
+import java.io.BufferedReader
+import java.io.BufferedWriter
+import java.io.File
+import java.io.FileReader
+import java.io.FileWriter
+import java.io.IOException
+import java.io.Writer
+import java.util.*
+
+/**
+ * An in-memory index of the file cache entries, so that trimming, size accounting and existence checks don't have to
+ * list the cache directory and read the meta file of every cache file.
+ *
+ * Every change is appended to a journal file, one line per change:
+ * ```
+ * PUT <key> <createdOn> <lastAccess> <downloaded, 0 or 1> <size, -1 when unknown>
+ * DEL <key>
+ * ```
+ * The index is loaded from the journal in the background when the app starts, and is only rebuilt from the cache
+ * directory when the journal is missing or corrupt. The journal is rewritten with one line per entry after loading and
+ * whenever it has grown to a few times the number of entries.
+ *
+ * Serving a file from the cache only updates when it was last used in memory; those are written to the journal in
+ * batches by [flushAccesses], so that a cache hit doesn't write to disk on the thread that asked for the file.
+ *
+ * Until it's loaded, changes are kept and take precedence over what gets loaded, but lookups can't be trusted; check
+ * [isLoaded] first.
+ */
+internal class CacheIndex(private val journalFile: File) {
+    private val entries = HashMap<String, Entry>()
+    private var totalSize = 0L
+
+    // keys changed before the index was loaded; their loaded state is out of date
+    private val changedWhileLoading = HashSet<String>()
+    private var clearedWhileLoading = false
+
+    // keys whose last access changed since the last flush
+    private val accessed = HashSet<String>()
+
+    private var journalWriter: Writer? = null
+    private var journalLines = 0
+
+    @Volatile
+    var isLoaded = false
+        private set
+
+    /**
+     * Reads the entries from the journal. Does file IO, call it in the background.
+     *
+     * @return the entries, or null if the journal is missing or corrupt
+     */
+    fun readJournal(): List<Entry>? {
+        if (!journalFile.exists()) {
+            return null
+        }
+
+        val loaded = HashMap<String, Entry>()
+        try {
+            BufferedReader(FileReader(journalFile)).use { reader ->
+                if (reader.readLine() != JOURNAL_HEADER) {
+                    throw IOException("Bad journal header")
+                }
+
+                var line = reader.readLine()
+                while (line != null) {
+                    val next = reader.readLine()
+                    if (!readLine(line, loaded)) {
+                        // the process can die in the middle of writing a line, but only the last one
+                        if (next != null) {
+                            throw IOException("Corrupt journal line: $line")
+                        }
+                        Logger.w(TAG, "Ignoring incomplete last journal line: $line")
+                    }
+                    line = next
+                }
+            }
+        } catch (error: Exception) {
+            Logger.e(TAG, "Couldn't read the cache journal, it will be rebuilt", error)
+            return null
+        }
+
+        return ArrayList(loaded.values)
+    }
+
+    private fun readLine(line: String, loaded: MutableMap<String, Entry>): Boolean {
+        val parts = line.split(' ')
+        when {
+            parts.size == 6 && parts[0] == PUT -> {
+                val createdOn = parts[2].toLongOrNull() ?: return false
+                val lastAccess = parts[3].toLongOrNull() ?: return false
+                val downloaded = when (parts[4]) {
+                    "1" -> true
+                    "0" -> false
+                    else -> return false
+                }
+                val size = parts[5].toLongOrNull() ?: return false
+
+                loaded[parts[1]] = Entry(parts[1], createdOn, lastAccess, downloaded, size)
+            }
+            parts.size == 2 && parts[0] == DEL -> loaded.remove(parts[1])
+            else -> return false
+        }
+        return true
+    }
+
+    /**
+     * Fills the index with the loaded entries, except for the ones that changed in the meantime, and rewrites the
+     * journal.
+     */
+    @Synchronized
+    fun finishLoading(loaded: List<Entry>) {
+        if (!clearedWhileLoading) {
+            for (entry in loaded) {
+                if (!changedWhileLoading.contains(entry.key)) {
+                    putInMemory(entry)
+                }
+            }
+        }
+
+        changedWhileLoading.clear()
+        clearedWhileLoading = false
+        isLoaded = true
+        compactJournal()
+    }
+
+    @Synchronized
+    operator fun get(key: String): Entry? {
+        return entries[key]
+    }
+
+    @Synchronized
+    fun contains(key: String): Boolean {
+        return entries.containsKey(key)
+    }
+
+    @Synchronized
+    fun put(entry: Entry) {
+        putInMemory(entry)
+
+        if (!isLoaded) {
+            changedWhileLoading.add(entry.key)
+            return
+        }
+
+        accessed.remove(entry.key)
+        appendToJournal(listOf(formatPut(entry)))
+    }
+
+    /**
+     * Updates when an entry was last used, in memory only; the change is written with the next [flushAccesses].
+     *
+     * @return true if this is the first access since the last flush, so a flush should be scheduled
+     */
+    @Synchronized
+    fun touch(key: String, lastAccess: Long): Boolean {
+        val entry = entries[key] ?: return false
+        putInMemory(entry.copy(lastAccess = lastAccess))
+
+        if (!isLoaded) {
+            changedWhileLoading.add(key)
+            // the journal is rewritten once loaded
+            return false
+        }
+
+        return accessed.add(key) && accessed.size == 1
+    }
+
+    /**
+     * Writes the accesses since the last flush to the journal. Does file IO, call it in the background.
+     */
+    @Synchronized
+    fun flushAccesses() {
+        if (accessed.isEmpty()) {
+            return
+        }
+
+        val lines = ArrayList<String>(accessed.size)
+        for (key in accessed) {
+            entries[key]?.let { lines.add(formatPut(it)) }
+        }
+        accessed.clear()
+        appendToJournal(lines)
+    }
+
+    @Synchronized
+    fun remove(key: String) {
+        if (!isLoaded) {
+            removeInMemory(key)
+            changedWhileLoading.add(key)
+            return
+        }
+
+        accessed.remove(key)
+        if (removeInMemory(key)) {
+            appendToJournal(listOf("$DEL $key"))
+        }
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+        accessed.clear()
+        totalSize = 0L
+
+        if (!isLoaded) {
+            changedWhileLoading.clear()
+            clearedWhileLoading = true
+            return
+        }
+
+        compactJournal()
+    }
+
+    /**
+     * @return a copy of all of the entries
+     */
+    @Synchronized
+    fun getEntries(): List<Entry> {
+        return ArrayList(entries.values)
+    }
+
+    /**
+     * @return the total size of the entries with a known size
+     */
+    @Synchronized
+    fun getTotalSize(): Long {
+        return totalSize
+    }
+
+    private fun putInMemory(entry: Entry) {
+        val previous = entries.put(entry.key, entry)
+        totalSize += entry.knownSize() - (previous?.knownSize() ?: 0L)
+    }
+
+    private fun removeInMemory(key: String): Boolean {
+        val previous = entries.remove(key) ?: return false
+        totalSize -= previous.knownSize()
+        return true
+    }
+
+    private fun appendToJournal(lines: List<String>) {
+        val writer = journalWriter ?: return
+
+        try {
+            for (line in lines) {
+                writer.write(line)
+                writer.write("\n")
+            }
+            writer.flush()
+        } catch (error: IOException) {
+            // the journal is out of date from here on; delete it so the index gets rebuilt on the next start
+            Logger.e(TAG, "Couldn't append to the cache journal", error)
+            closeJournal()
+            if (!journalFile.delete()) {
+                Logger.e(TAG, "Couldn't delete the cache journal ${journalFile.absolutePath}")
+            }
+            return
+        }
+
+        journalLines += lines.size
+        if (journalLines > MIN_LINES_TO_COMPACT && journalLines > entries.size * 2) {
+            compactJournal()
+        }
+    }
+
+    /**
+     * Rewrites the journal with a line for each entry, to a temporary file that then replaces the journal.
+     */
+    private fun compactJournal() {
+        closeJournal()
+        // every entry gets written as it is now
+        accessed.clear()
+
+        val tempFile = File(journalFile.path + ".tmp")
+        try {
+            BufferedWriter(FileWriter(tempFile)).use { writer ->
+                writer.write(JOURNAL_HEADER)
+                writer.write("\n")
+                for (entry in entries.values) {
+                    writer.write(formatPut(entry))
+                    writer.write("\n")
+                }
+            }
+
+            if (!tempFile.renameTo(journalFile)) {
+                throw IOException("Couldn't replace the cache journal with ${tempFile.absolutePath}")
+            }
+
+            journalWriter = BufferedWriter(FileWriter(journalFile, true))
+            journalLines = entries.size
+        } catch (error: IOException) {
+            Logger.e(TAG, "Couldn't write the cache journal", error)
+            closeJournal()
+            tempFile.delete()
+            journalFile.delete()
+        }
+    }
+
+    private fun formatPut(entry: Entry): String {
+        return String.format(
+                Locale.ENGLISH,
+                "%s %s %d %d %d %d",
+                PUT,
+                entry.key,
+                entry.createdOn,
+                entry.lastAccess,
+                if (entry.isDownloaded) 1 else 0,
+                entry.size
+        )
+    }
+
+    private fun closeJournal() {
+        try {
+            journalWriter?.close()
+        } catch (ignored: IOException) {
+        }
+        journalWriter = null
+    }
+
+    /**
+     * @param key        the name of the cache file, without the extension
+     * @param createdOn  when the cache file was created
+     * @param lastAccess when the cache file was created or last served from the cache
+     * @param size       the size of the cache file, or [UNKNOWN_SIZE] if it hasn't been measured, like while it's
+     * still being downloaded
+     */
+    internal data class Entry(
+            val key: String,
+            val createdOn: Long,
+            val lastAccess: Long,
+            val isDownloaded: Boolean,
+            val size: Long
+    ) {
+        fun knownSize(): Long {
+            return if (size < 0L) 0L else size
+        }
+    }
+
+    companion object {
+        private const val TAG = "CacheIndex"
+        private const val JOURNAL_HEADER = "kuroba-file-cache-journal 1"
+        private const val PUT = "PUT"
+        private const val DEL = "DEL"
+        private const val MIN_LINES_TO_COMPACT = 2000
+
+        const val UNKNOWN_SIZE = -1L
+    }
+}
@@ -1,8 +1,13 @@
 package com.github.adamantcheese.chan.core.cache
 
+import com.github.adamantcheese.chan.core.cache.stream.WebmStreamingDataSource
 import com.google.android.exoplayer2.source.MediaSource
 
 interface MediaSourceCallback {
-    fun onMediaSourceReady(source: MediaSource?)
+    /**
+     * @param streamingDataSource the data source the media source streams from, to be released once the player is
+     * done with it; null when the media source reads a cache file
+     */
+    fun onMediaSourceReady(source: MediaSource?, streamingDataSource: WebmStreamingDataSource?)
     fun onError(error: Throwable)
 }
\ No newline at end of file
@@ -0,0 +1,217 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.cache.stream;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.github.adamantcheese.chan.core.di.NetModule;
+import com.github.adamantcheese.chan.utils.BackgroundUtils;
+import com.github.adamantcheese.chan.utils.PriorityExecutor.Lane;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.util.Util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.HttpUrl;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * A small pool of players for the image viewer pages, so that swiping between videos doesn't build and tear down a
+ * player (with its playback thread and renderers) for every page. Players that sit in the pool for too long are
+ * released, so nothing is held on to once the viewer is closed.
+ * <p>
+ * The video next to the one being viewed can be pre-buffered with {@link #prepare}: a player is prepared with it
+ * while paused, which sets up its decoders and buffers the start of the video, and the page that shows the video takes
+ * that player with {@link #takePrepared} instead of starting cold.
+ * <p>
+ * Also holds the data source factory shared by all pages for playing downloaded files; streamed files get their own
+ * {@link WebmStreamingDataSource}, as it's tied to the file it's filling.
+ */
+public class ExoPlayerPool {
+    private static final int MAX_IDLE_PLAYERS = 2;
+    // the previous and the next video
+    private static final int MAX_PREPARED_PLAYERS = 2;
+    private static final long IDLE_TIMEOUT = SECONDS.toMillis(30);
+
+    private final Context applicationContext;
+    private final DataSource.Factory fileDataSourceFactory;
+    // most recently released first
+    private final Deque<IdlePlayer> idlePlayers = new ArrayDeque<>();
+    // by the url of the video they're prepared with, oldest first
+    private final Map<HttpUrl, PreparedPlayer> preparedPlayers = new LinkedHashMap<>();
+
+    public ExoPlayerPool(Context applicationContext) {
+        this.applicationContext = applicationContext;
+        this.fileDataSourceFactory = new DefaultDataSourceFactory(applicationContext,
+                Util.getUserAgent(applicationContext, NetModule.USER_AGENT)
+        );
+    }
+
+    public DataSource.Factory getFileDataSourceFactory() {
+        return fileDataSourceFactory;
+    }
+
+    /**
+     * @return an idle player from the pool, or a new one if there are none
+     */
+    @NonNull
+    public SimpleExoPlayer acquire() {
+        BackgroundUtils.ensureMainThread();
+
+        IdlePlayer idle = idlePlayers.pollFirst();
+        if (idle != null) {
+            return idle.player;
+        }
+        return new SimpleExoPlayer.Builder(applicationContext).build();
+    }
+
+    /**
+     * Stops the player and puts it back in the pool. The caller must have removed any listeners it added and detached
+     * the player from its view.
+     */
+    public void release(@NonNull SimpleExoPlayer player) {
+        BackgroundUtils.ensureMainThread();
+
+        player.stop();
+        player.clearMediaItems();
+        player.clearVideoSurface();
+        player.setRepeatMode(Player.REPEAT_MODE_OFF);
+        player.setVolume(1f);
+
+        if (idlePlayers.size() >= MAX_IDLE_PLAYERS) {
+            player.release();
+            return;
+        }
+        idlePlayers.addFirst(new IdlePlayer(player));
+        BackgroundUtils.runOnMainThread(this::trimIdlePlayers, IDLE_TIMEOUT);
+    }
+
+    /**
+     * Prepares a player with the video, paused and muted, for the page that's about to show it. Only the most recent
+     * few are kept, the oldest prepared player is released to make room.
+     *
+     * @param streamingDataSource the data source the media source streams from, released along with the player;
+     *                            null when it reads a cache file
+     */
+    public void prepare(
+            @NonNull HttpUrl url, @NonNull MediaSource source, @Nullable WebmStreamingDataSource streamingDataSource
+    ) {
+        BackgroundUtils.ensureMainThread();
+
+        if (preparedPlayers.containsKey(url)) {
+            releaseStreamingDataSource(streamingDataSource);
+            return;
+        }
+        if (preparedPlayers.size() >= MAX_PREPARED_PLAYERS) {
+            Iterator<PreparedPlayer> oldest = preparedPlayers.values().iterator();
+            release(oldest.next());
+            oldest.remove();
+        }
+
+        SimpleExoPlayer player = acquire();
+        player.pause();
+        player.setVolume(0f);
+        player.setMediaSource(source);
+        player.prepare();
+        preparedPlayers.put(url, new PreparedPlayer(player, streamingDataSource));
+    }
+
+    public boolean isPrepared(@NonNull HttpUrl url) {
+        BackgroundUtils.ensureMainThread();
+        return preparedPlayers.containsKey(url);
+    }
+
+    /**
+     * @return the player prepared with the video, or null if there isn't one; the caller releases it like any other
+     * player, and its streaming data source, if any
+     */
+    @Nullable
+    public PreparedPlayer takePrepared(@NonNull HttpUrl url) {
+        BackgroundUtils.ensureMainThread();
+        return preparedPlayers.remove(url);
+    }
+
+    /**
+     * Releases all of the prepared players, for when the videos they were prepared for won't be shown anymore.
+     */
+    public void releasePrepared() {
+        BackgroundUtils.ensureMainThread();
+
+        for (PreparedPlayer prepared : preparedPlayers.values()) {
+            release(prepared);
+        }
+        preparedPlayers.clear();
+    }
+
+    /**
+     * Closes the data source's buffer file in the background, once the player reading from it is stopped.
+     */
+    public void releaseStreamingDataSource(@Nullable WebmStreamingDataSource streamingDataSource) {
+        if (streamingDataSource == null) return;
+        streamingDataSource.clearListeners();
+        BackgroundUtils.runOnBackgroundThread(streamingDataSource::release, Lane.MAINTENANCE);
+    }
+
+    private void release(PreparedPlayer prepared) {
+        release(prepared.player);
+        releaseStreamingDataSource(prepared.streamingDataSource);
+    }
+
+    private void trimIdlePlayers() {
+        long now = SystemClock.elapsedRealtime();
+        Iterator<IdlePlayer> iterator = idlePlayers.descendingIterator();
+        while (iterator.hasNext()) {
+            IdlePlayer idle = iterator.next();
+            if (now - idle.idleSince < IDLE_TIMEOUT) break;
+            idle.player.release();
+            iterator.remove();
+        }
+    }
+
+    public static class PreparedPlayer {
+        public final SimpleExoPlayer player;
+        @Nullable
+        public final WebmStreamingDataSource streamingDataSource;
+
+        private PreparedPlayer(SimpleExoPlayer player, @Nullable WebmStreamingDataSource streamingDataSource) {
+            this.player = player;
+            this.streamingDataSource = streamingDataSource;
+        }
+    }
+
+    private static class IdlePlayer {
+        private final SimpleExoPlayer player;
+        private final long idleSince = SystemClock.elapsedRealtime();
+
+        private IdlePlayer(SimpleExoPlayer player) {
+            this.player = player;
+        }
+    }
+}
@@ -22,28 +22,36 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Original implementation by https://github.com/ekisu
  */
 public class WebmStreamingDataSource
         extends BaseDataSource {
+    /**
+     * The part of the file that has been read so far. The data is kept in a buffer file of the full file length, written
+     * to wherever it was read from, rather than in memory, so memory use doesn't depend on the size of the video; the
+     * cached ranges are kept sorted, so lookups are O(log n) in the amount of ranges.
+     */
     static class PartialFileCache {
         static class RegionStats {
-            final List<Range<Long>> cachedRanges;
-            final List<Range<Long>> missingRanges;
+            // keyed by range start
+            final TreeMap<Long, Range<Long>> cachedRanges;
+            final TreeMap<Long, Range<Long>> missingRanges;
 
-            RegionStats(List<Range<Long>> cachedRanges, List<Range<Long>> missingRanges) {
+            RegionStats(TreeMap<Long, Range<Long>> cachedRanges, TreeMap<Long, Range<Long>> missingRanges) {
                 this.cachedRanges = cachedRanges;
                 this.missingRanges = missingRanges;
             }
 
-            private Range<Long> findRange(List<Range<Long>> ranges, long position) {
-                for (Range<Long> r : ranges) {
-                    if (r.contains(position)) return r;
-                }
+            private Range<Long> findRange(TreeMap<Long, Range<Long>> ranges, long position) {
+                Map.Entry<Long, Range<Long>> entry = ranges.floorEntry(position);
+                if (entry != null && entry.getValue().contains(position)) return entry.getValue();
 
                 return null;
             }
@@ -57,126 +65,109 @@ public class WebmStreamingDataSource
             }
         }
 
-        private final List<Range<Long>> cachedRanges = new ArrayList<>();
-        private final byte[] cachedRangesData;
+        // range start to range end (inclusive); ranges never overlap or touch, as they're joined when written
+        private final TreeMap<Long, Long> cachedRanges = new TreeMap<>();
+        private final File bufferFile;
+        private final RandomAccessFile buffer;
         private long pos = 0;
         private final long fileLength;
         private boolean firedCacheComplete = false;
+        private boolean movedToFile = false;
         private final List<Runnable> listeners = new ArrayList<>();
 
-        PartialFileCache(long fileLength) {
+        PartialFileCache(long fileLength, File bufferFile)
+                throws IOException {
             this.fileLength = fileLength;
-            cachedRangesData = new byte[(int) this.fileLength];
+            this.bufferFile = bufferFile;
+            buffer = new RandomAccessFile(bufferFile, "rw");
+            // the file is sparse on most filesystems, so this doesn't actually take up the space yet
+            buffer.setLength(fileLength);
         }
 
         boolean isCached(long position, long length) {
-            for (Range<Long> r : cachedRanges) {
-                if (r.contains(Range.create(position, position + length - 1))) {
-                    return true;
-                }
-            }
-
-            return false;
+            Map.Entry<Long, Long> entry = cachedRanges.floorEntry(position);
+            return entry != null && entry.getValue() >= position + length - 1;
         }
 
         boolean isCached(long length) {
             return isCached(pos, length);
         }
 
-        List<Range<Long>> determineMissingRanges() {
-            List<Range<Long>> missing = new ArrayList<>();
-
-            long rangeStart = 0;
-            for (Range<Long> r : cachedRanges) {
-                if (rangeStart < r.getLower()) {
-                    missing.add(Range.create(rangeStart, r.getLower() - 1));
-                }
-                rangeStart = r.getUpper() + 1;
-            }
-
-            if (rangeStart < fileLength) {
-                missing.add(Range.create(rangeStart, fileLength - 1));
-            }
-
-            return missing;
-        }
-
         RegionStats getRegionStats(Range<Long> region) {
-            List<Range<Long>> cached = new ArrayList<>();
-            List<Range<Long>> missing = new ArrayList<>();
-
-            for (Range<Long> r : cachedRanges) {
-                try {
-                    cached.add(region.intersect(r));
-                } catch (IllegalArgumentException ignored) {} // Disjoint ranges.
+            TreeMap<Long, Range<Long>> cached = new TreeMap<>();
+            TreeMap<Long, Range<Long>> missing = new TreeMap<>();
+
+            long rangeStart = region.getLower();
+            // the range holding the start of the region, if any, then all those starting inside it
+            Long first = cachedRanges.floorKey(region.getLower());
+            for (Map.Entry<Long, Long> entry : cachedRanges.tailMap(first == null ? region.getLower() : first)
+                    .entrySet()) {
+                if (entry.getKey() > region.getUpper()) break;
+                if (entry.getValue() < region.getLower()) continue;
+
+                long lower = Math.max(entry.getKey(), region.getLower());
+                long upper = Math.min(entry.getValue(), region.getUpper());
+                if (rangeStart < lower) {
+                    missing.put(rangeStart, Range.create(rangeStart, lower - 1));
+                }
+                cached.put(lower, Range.create(lower, upper));
+                rangeStart = upper + 1;
             }
 
-            for (Range<Long> r : determineMissingRanges()) {
-                try {
-                    missing.add(region.intersect(r));
-                } catch (IllegalArgumentException ignored) {} // Disjoint ranges.
+            if (rangeStart <= region.getUpper()) {
+                missing.put(rangeStart, Range.create(rangeStart, region.getUpper()));
             }
 
             return new RegionStats(cached, missing);
         }
 
-        private boolean rangesAreContiguous(Range<Long> left, Range<Long> right) {
-            // Ranges like [0, 1] and [2, 3] are contiguous too.
-            return left.getUpper() + 1 >= right.getLower();
-        }
-
-        private void joinRange(int i, int j) {
-            Range<Long> left = cachedRanges.get(i);
-            Range<Long> right = cachedRanges.get(j);
-
-            Range<Long> newRange = left.extend(right);
-
-            cachedRanges.set(i, newRange);
-            cachedRanges.remove(j);
-        }
-
-        private void joinRanges() {
-            for (int i = 0; i < cachedRanges.size(); i++) {
-                while (i < cachedRanges.size() - 1 && rangesAreContiguous(cachedRanges.get(i),
-                        cachedRanges.get(i + 1)
-                )) {
-                    joinRange(i, i + 1);
-                }
+        private void addRange(long lower, long upper) {
+            // join with any range that overlaps or touches this one; ranges like [0, 1] and [2, 3] are contiguous too
+            Map.Entry<Long, Long> before = cachedRanges.floorEntry(lower);
+            if (before != null && before.getValue() + 1 >= lower) {
+                lower = before.getKey();
+                upper = Math.max(upper, before.getValue());
             }
-        }
-
-        private int findRangeInsertPosition(long filePosition) {
-            int rangePosition = 0;
-            while (rangePosition < cachedRanges.size() && filePosition > cachedRanges.get(rangePosition).getLower()) {
-                rangePosition++;
+            Map.Entry<Long, Long> after = cachedRanges.ceilingEntry(lower);
+            while (after != null && after.getKey() <= upper + 1) {
+                upper = Math.max(upper, after.getValue());
+                cachedRanges.remove(after.getKey());
+                after = cachedRanges.ceilingEntry(lower);
             }
+            cachedRanges.put(lower, upper);
 
-            return rangePosition;
+            if (isCacheComplete() && !firedCacheComplete) {
+                fireCacheComplete();
+            }
         }
 
-        void write(byte[] data, long offset, long length) {
-            int newRangePosition = findRangeInsertPosition(pos);
-            Range<Long> newRange = new Range<>(pos, pos + length - 1);
-            long destOffset = newRange.getLower();
-
-            System.arraycopy(data, (int) offset, cachedRangesData, (int) destOffset, (int) length);
+        void write(byte[] data, long offset, long length)
+                throws IOException {
+            if (length <= 0) return;
 
-            cachedRanges.add(newRangePosition, newRange);
-            joinRanges();
+            buffer.seek(pos);
+            buffer.write(data, (int) offset, (int) length);
+            addRange(pos, pos + length - 1);
 
             pos += length;
+        }
 
-            if (isCacheComplete() && !firedCacheComplete) {
-                fireCacheComplete();
-            }
+        /**
+         * Marks data that was put into the buffer file directly as cached.
+         */
+        void markCached(long position, long length) {
+            if (length <= 0) return;
+            addRange(position, position + length - 1);
         }
 
-        void read(byte[] buffer, long offset, long length) {
+        void read(byte[] buffer, long offset, long length)
+                throws IOException {
             if (!isCached(length)) {
                 throw new IllegalArgumentException("tried to read uncached data!");
             }
 
-            System.arraycopy(cachedRangesData, (int) pos, buffer, (int) offset, (int) length);
+            this.buffer.seek(pos);
+            this.buffer.readFully(buffer, (int) offset, (int) length);
 
             pos += length;
         }
@@ -209,16 +200,48 @@ public class WebmStreamingDataSource
             return isCached(0, fileLength);
         }
 
-        byte[] getCacheBytes() {
-            return cachedRangesData;
+        /**
+         * Puts the complete buffer file in place of the given file. The buffer stays open, so reading carries on from
+         * the moved file.
+         */
+        synchronized void moveTo(File target)
+                throws IOException {
+            if (movedToFile) return;
+
+            if (!bufferFile.renameTo(target)) {
+                // not on the same filesystem, copy it over instead
+                try (FileOutputStream fos = new FileOutputStream(target)) {
+                    buffer.getChannel().transferTo(0, fileLength, fos.getChannel());
+                }
+                //noinspection ResultOfMethodCallIgnored
+                bufferFile.delete();
+            }
+
+            movedToFile = true;
+        }
+
+        /**
+         * Closes the buffer file, and deletes it unless it was complete and has been moved in place of the cache file.
+         */
+        synchronized void release() {
+            try {
+                buffer.close();
+            } catch (IOException e) {
+                Logger.e(this, "release: couldn't close the buffer file", e);
+            }
+
+            if (!movedToFile) {
+                //noinspection ResultOfMethodCallIgnored
+                bufferFile.delete();
+            }
         }
     }
 
     private final FileManager fileManager;
     private final HttpDataSource dataSource;
     private PartialFileCache partialFileCache;
-    private byte[] dataToFillCache = null;
-    private int dataToFillCacheLength = 0;
+    private final File bufferFile;
+    private long filledLength = 0;
     private PartialFileCache.RegionStats activeRegionStats;
     private Range<Long> httpActiveRange;
     private final List<Callback> listeners = new ArrayList<>();
@@ -234,14 +257,20 @@ public class WebmStreamingDataSource
 
     private boolean prepared = false;
     private boolean opened = false;
+    private volatile boolean released = false;
 
-    public WebmStreamingDataSource(@Nullable Uri uri, RawFile file, FileManager fileManager) {
+    /**
+     * @param bufferFile a scratch file to keep the streamed data in until the whole file has been read, when it's moved
+     *                   to the given file
+     */
+    public WebmStreamingDataSource(@Nullable Uri uri, RawFile file, RawFile bufferFile, FileManager fileManager) {
         super(true);
 
         this.dataSource = new DefaultHttpDataSourceFactory(NetModule.USER_AGENT).createDataSource();
 
         this.fileManager = fileManager;
         this.file = file;
+        this.bufferFile = new File(bufferFile.getFullPath());
         this.uri = uri;
     }
 
@@ -257,32 +286,42 @@ public class WebmStreamingDataSource
     }
 
     private void prepare()
-            throws HttpDataSource.HttpDataSourceException {
+            throws IOException {
+        if (released) {
+            throw new IOException("Data source has been released");
+        }
+
         detectLength();
-        this.partialFileCache = new PartialFileCache(this.fileLength);
+        this.partialFileCache = new PartialFileCache(this.fileLength, bufferFile);
         partialFileCache.addListener(this::cacheComplete);
 
-        if (dataToFillCache != null) {
-            partialFileCache.write(dataToFillCache, 0, dataToFillCacheLength);
-            partialFileCache.seek(0);
-
-            dataToFillCache = null;
-        }
+        // Anything filled in before we knew the real size of the video is already in the buffer file
+        partialFileCache.markCached(0, Math.min(filledLength, fileLength));
 
         prepared = true;
     }
 
+    /**
+     * Fills the start of the cache with data that was already downloaded; it's copied straight into the buffer file.
+     */
     public void fillCache(long length, InputStream inputStream)
             throws IOException {
-        dataToFillCache = new byte[(int) length];
-        dataToFillCacheLength = inputStream.read(dataToFillCache);
+        long copied = 0;
+        try (RandomAccessFile out = new RandomAccessFile(bufferFile, "rw")) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while (copied < length && (read = inputStream.read(chunk, 0, (int) Math.min(chunk.length, length - copied)))
+                    != -1) {
+                out.write(chunk, 0, read);
+                copied += read;
+            }
+        }
+        filledLength = copied;
+
         // If it's null, this means we're not prepared yet (i.e. we don't know the real size
-        // of the video, which is required by partialFileCache). Just leave it here and wait
-        // until we're prepared.
+        // of the video, which is required by partialFileCache), and it'll be marked when we are.
         if (partialFileCache != null) {
-            partialFileCache.write(dataToFillCache, 0, dataToFillCacheLength);
-            partialFileCache.seek(0);
-            dataToFillCache = null;
+            partialFileCache.markCached(0, Math.min(filledLength, fileLength));
         }
     }
 
@@ -384,8 +423,8 @@ public class WebmStreamingDataSource
 
         File innerFile = new File(file.getFullPath());
 
-        try (FileOutputStream fos = new FileOutputStream(innerFile)) {
-            fos.write(partialFileCache.getCacheBytes());
+        try {
+            partialFileCache.moveTo(innerFile);
         } catch (Exception e) {
             Logger.e(this, "cacheComplete: caught exception", e);
             return;
@@ -411,7 +450,24 @@ public class WebmStreamingDataSource
 
     public void clearListeners() {
         listeners.clear();
-        partialFileCache.clearListeners();
+        if (partialFileCache != null) {
+            partialFileCache.clearListeners();
+        }
+    }
+
+    /**
+     * Closes and, if the video wasn't read completely, deletes the buffer file. Call it once the player reading from
+     * this has been stopped; does file IO.
+     */
+    public void release() {
+        released = true;
+        if (partialFileCache != null) {
+            partialFileCache.release();
+        } else {
+            // anything filled in before the video was opened is in the buffer file as well
+            //noinspection ResultOfMethodCallIgnored
+            bufferFile.delete();
+        }
     }
 
     @Nullable
@@ -9,6 +9,7 @@ import com.github.adamantcheese.chan.core.cache.MediaSourceCallback
 import com.github.adamantcheese.chan.core.model.PostImage
 import com.github.adamantcheese.chan.utils.BackgroundUtils
 import com.github.adamantcheese.chan.utils.Logger
+import com.github.adamantcheese.chan.utils.PriorityExecutor.Lane
 import com.github.k1rakishou.fsaf.FileManager
 import com.github.k1rakishou.fsaf.file.AbstractFile
 import com.github.k1rakishou.fsaf.file.RawFile
@@ -27,12 +28,6 @@ class WebmStreamingSource(
         val uri = postImage.imageUrl.toString().toUri()
         val alreadyExists = cacheHandler.exists(postImage.imageUrl)
         val rawFile = cacheHandler.getOrCreateCacheFile(postImage.imageUrl)
-        val fileCacheSource = WebmStreamingDataSource(uri, rawFile, fileManager)
-
-        fileCacheSource.addListener { file ->
-            BackgroundUtils.ensureMainThread()
-            cacheHandler.fileWasAdded(file.length())
-        }
 
         if (alreadyExists && rawFile != null && cacheHandler.isAlreadyDownloaded(rawFile)) {
             Logger.d(TAG, "Loaded from file cache")
@@ -41,6 +36,19 @@ class WebmStreamingSource(
             return
         }
 
+        val bufferFile = cacheHandler.createStreamBufferFile(postImage.imageUrl)
+        if (rawFile == null || bufferFile == null) {
+            callback.onError(IOException("Couldn't create cache files"))
+            return
+        }
+
+        val fileCacheSource = WebmStreamingDataSource(uri, rawFile, bufferFile, fileManager)
+
+        fileCacheSource.addListener { file ->
+            BackgroundUtils.ensureMainThread()
+            cacheHandler.fileWasAdded(file.length())
+        }
+
         val cancelableDownload = fileCacheV2.enqueueNormalDownloadFileRequest(
                 postImage.imageUrl,
                 object : FileCacheListener() {
@@ -51,7 +59,8 @@ class WebmStreamingSource(
                         // The webm file is already completely downloaded, just use it from the disk
                         callback.onMediaSourceReady(
                                 ProgressiveMediaSource.Factory { fileCacheSource }
-                                        .createMediaSource(MediaItem.fromUri(uri))
+                                        .createMediaSource(MediaItem.fromUri(uri)),
+                                fileCacheSource
                         )
                     }
 
@@ -63,6 +72,7 @@ class WebmStreamingSource(
 
                     override fun onNotFound() {
                         BackgroundUtils.ensureMainThread()
+                        release(fileCacheSource)
                         callback.onError(IOException("Not found"))
                     }
 
@@ -70,6 +80,7 @@ class WebmStreamingSource(
                         Logger.d(TAG, "createMediaSource() onFail $exception")
 
                         BackgroundUtils.ensureMainThread()
+                        release(fileCacheSource)
                         callback.onError(exception)
                     }
                 })
@@ -113,17 +124,27 @@ class WebmStreamingSource(
 
         callback.onMediaSourceReady(
                 ProgressiveMediaSource.Factory { fileCacheSource }
-                        .createMediaSource(MediaItem.fromUri(uri))
+                        .createMediaSource(MediaItem.fromUri(uri)),
+                fileCacheSource
         )
     }
 
+    /**
+     * Closes and deletes the buffer file of a data source that never made it to a player.
+     */
+    private fun release(fileCacheSource: WebmStreamingDataSource) {
+        fileCacheSource.clearListeners()
+        BackgroundUtils.runOnBackgroundThread({ fileCacheSource.release() }, Lane.MAINTENANCE)
+    }
+
     private fun loadFromCacheFile(rawFile: RawFile, callback: MediaSourceCallback) {
         Logger.d(TAG, "createMediaSource() Loading already downloaded file from the disk")
         val fileUri = rawFile.getFullPath().toUri()
 
         callback.onMediaSourceReady(
                 ProgressiveMediaSource.Factory { FileDataSource() }
-                        .createMediaSource(MediaItem.fromUri(fileUri))
+                        .createMediaSource(MediaItem.fromUri(fileUri)),
+                null
         )
     }
 
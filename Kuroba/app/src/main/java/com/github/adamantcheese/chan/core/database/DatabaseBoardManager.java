@@ -109,7 +109,7 @@ public class DatabaseBoardManager {
     }
 
     public Callable<List<Pair<Site, Boards>>> getBoardsForAllSitesOrdered(List<Site> sites) {
-        return () -> {
+        return DatabaseUtils.readTask(() -> {
             // Query the orders of the sites.
             QueryBuilder<SiteModel, Integer> q = helper.getSiteModelDao().queryBuilder();
             q.selectColumns("id", "order");
@@ -156,11 +156,11 @@ public class DatabaseBoardManager {
                 res.add(new Pair<>(site, siteBoards));
             }
             return res;
-        };
+        });
     }
 
     public Callable<Boards> getSiteSavedBoards(final Site site) {
-        return () -> {
+        return DatabaseUtils.readTask(() -> {
             List<Board> boards =
                     helper.getBoardDao().queryBuilder().where().eq("site", site.id()).and().eq("saved", true).query();
             for (int i = 0; i < boards.size(); i++) {
@@ -168,7 +168,7 @@ public class DatabaseBoardManager {
                 board.site = site;
             }
             return new Boards(boards);
-        };
+        });
     }
 
     public Callable<Void> deleteBoards(Site site) {
@@ -21,12 +21,24 @@ import com.github.adamantcheese.chan.core.model.orm.Filter;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DatabaseFilterManager {
     DatabaseHelper helper;
 
+    // bumped on every write to the filter table, including the ones made directly by the helper
+    private final AtomicInteger modificationCount = new AtomicInteger();
+
     public DatabaseFilterManager(DatabaseHelper helper) {
         this.helper = helper;
+        helper.getFilterDao().registerObserver(modificationCount::incrementAndGet);
+    }
+
+    /**
+     * @return a number that changes whenever the stored filters change, for invalidating anything derived from them
+     */
+    public int getModificationCount() {
+        return modificationCount.get();
     }
 
     public Callable<Filter> createFilter(final Filter filter) {
@@ -60,16 +72,16 @@ public class DatabaseFilterManager {
     }
 
     public Callable<List<Filter>> getFilters() {
-        return () -> {
+        return DatabaseUtils.readTask(() -> {
             List<Filter> filters = helper.getFilterDao().queryForAll();
             Collections.sort(filters, (lhs, rhs) -> lhs.order - rhs.order);
             updateFilters(filters);
             return filters;
-        };
+        });
     }
 
     public Callable<Integer> getCount() {
-        return () -> (int) helper.getFilterDao().countOf();
+        return DatabaseUtils.readTask(() -> (int) helper.getFilterDao().countOf());
     }
 
     public Callable<Void> deleteFilters(List<Filter> filtersToDelete) {
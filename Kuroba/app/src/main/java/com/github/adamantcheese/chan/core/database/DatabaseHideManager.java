@@ -37,72 +37,76 @@ public class DatabaseHideManager {
      * to already hidden posts and if there are hides them as well.
      */
     public List<Post> filterHiddenPosts(List<Post> posts, int siteId, String board) {
-        return DatabaseUtils.runTask(() -> {
-            List<Integer> postNoList = new ArrayList<>(posts.size());
-            for (Post post : posts) {
-                postNoList.add(post.no);
-            }
+        List<Integer> postNoList = new ArrayList<>(posts.size());
+        for (Post post : posts) {
+            postNoList.add(post.no);
+        }
 
-            Map<Integer, Post> postsFastLookupMap = new LinkedHashMap<>();
-            for (Post post : posts) {
-                postsFastLookupMap.put(post.no, post);
-            }
+        Map<Integer, Post> postsFastLookupMap = new LinkedHashMap<>();
+        for (Post post : posts) {
+            postsFastLookupMap.put(post.no, post);
+        }
 
-            applyFiltersToReplies(posts, postsFastLookupMap);
+        applyFiltersToReplies(posts, postsFastLookupMap);
 
-            Map<Integer, PostHide> hiddenPostsLookupMap = getHiddenPosts(siteId, board, postNoList);
+        // only the lookup goes through the database, so it doesn't wait on unrelated writes
+        Map<Integer, PostHide> hiddenPostsLookupMap =
+                DatabaseUtils.runTask(DatabaseUtils.readTask(() -> getHiddenPosts(siteId, board, postNoList)));
 
-            // find replies to hidden posts and add them to the PostHide table in the database
-            // and to the hiddenPostsLookupMap
-            hideRepliesToAlreadyHiddenPosts(postsFastLookupMap, hiddenPostsLookupMap);
+        // find replies to hidden posts and add them to the hiddenPostsLookupMap, and to the PostHide table in the
+        // background
+        List<PostHide> newHiddenPosts = hideRepliesToAlreadyHiddenPosts(postsFastLookupMap, hiddenPostsLookupMap);
+        if (!newHiddenPosts.isEmpty()) {
+            DatabaseUtils.runTaskAsync(addPostsHide(newHiddenPosts));
+        }
 
-            List<Post> resultList = new ArrayList<>();
+        List<Post> resultList = new ArrayList<>();
 
-            // filter out hidden posts
-            for (Post post : postsFastLookupMap.values()) {
-                if (post.filterRemove) {
-                    // this post is already filtered by some custom filter
-                    continue;
-                }
+        // filter out hidden posts
+        for (Post post : postsFastLookupMap.values()) {
+            if (post.filterRemove) {
+                // this post is already filtered by some custom filter
+                continue;
+            }
 
-                PostHide hiddenPost = findHiddenPost(hiddenPostsLookupMap, post, siteId, board);
-                if (hiddenPost != null) {
-                    if (hiddenPost.hide) {
-                        // hide post
-                        Post newPost = rebuildPostWithCustomFilter(post,
-                                0,
-                                true,
-                                false,
-                                false,
-                                hiddenPost.hideRepliesToThisPost,
-                                false
-                        );
-
-                        resultList.add(newPost);
-                    } else {
-                        // remove post
-                        if (post.isOP) {
-                            // hide OP post only if the user hid the whole thread
-                            if (!hiddenPost.wholeThread) {
-                                resultList.add(post);
-                            }
+            PostHide hiddenPost = findHiddenPost(hiddenPostsLookupMap, post, siteId, board);
+            if (hiddenPost != null) {
+                if (hiddenPost.hide) {
+                    // hide post
+                    Post newPost = rebuildPostWithCustomFilter(post,
+                            0,
+                            true,
+                            false,
+                            false,
+                            hiddenPost.hideRepliesToThisPost,
+                            false
+                    );
+
+                    resultList.add(newPost);
+                } else {
+                    // remove post
+                    if (post.isOP) {
+                        // hide OP post only if the user hid the whole thread
+                        if (!hiddenPost.wholeThread) {
+                            resultList.add(post);
                         }
                     }
-                } else {
-                    // no record of hidden post in the DB
-                    resultList.add(post);
                 }
+            } else {
+                // no record of hidden post in the DB
+                resultList.add(post);
             }
-            //return posts that are NOT hidden
-            return resultList;
-        });
+        }
+        //return posts that are NOT hidden
+        return resultList;
     }
 
-    private void hideRepliesToAlreadyHiddenPosts(
+    /**
+     * @return the replies that were hidden, which should be added to the database
+     */
+    private List<PostHide> hideRepliesToAlreadyHiddenPosts(
             Map<Integer, Post> postsFastLookupMap, Map<Integer, PostHide> hiddenPostsLookupMap
-    )
-            throws SQLException {
-
+    ) {
         List<PostHide> newHiddenPosts = new ArrayList<>();
 
         for (Post post : postsFastLookupMap.values()) {
@@ -129,13 +133,7 @@ public class DatabaseHideManager {
             }
         }
 
-        if (newHiddenPosts.isEmpty()) {
-            return;
-        }
-
-        for (PostHide postHide : newHiddenPosts) {
-            helper.getPostHideDao().createIfNotExists(postHide);
-        }
+        return newHiddenPosts;
     }
 
     private void applyFiltersToReplies(List<Post> posts, Map<Integer, Post> postsFastLookupMap) {
@@ -17,10 +17,12 @@
 package com.github.adamantcheese.chan.core.database;
 
 import android.annotation.SuppressLint;
+import android.util.LruCache;
 
 import com.github.adamantcheese.chan.core.model.orm.Loadable;
 import com.github.adamantcheese.chan.core.repository.SiteRepository;
 import com.github.adamantcheese.chan.core.site.Site;
+import com.github.adamantcheese.chan.utils.BackgroundUtils;
 import com.j256.ormlite.stmt.DeleteBuilder;
 import com.j256.ormlite.stmt.QueryBuilder;
 import com.j256.ormlite.stmt.UpdateBuilder;
@@ -33,15 +35,25 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.concurrent.Callable;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
+
 public class DatabaseLoadableManager {
     private final DatabaseHelper helper;
     private final SiteRepository siteRepository;
 
     private static final long HISTORY_LIMIT = 250L;
+    // well over the history and any pins, so what's evicted is threads that haven't been looked at in a long while
+    private static final int MAX_CANONICAL_LOADABLES = 1000;
+    // how long load dates are collected before they're written out
+    private static final long LOAD_DATE_FLUSH_DELAY = SECONDS.toMillis(30);
     @SuppressLint("ConstantLocale")
     public static final SimpleDateFormat EPOCH_DATE_FORMAT =
             new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
@@ -57,6 +69,13 @@ public class DatabaseLoadableManager {
         EPOCH_DATE = temp;
     }
 
+    // the one instance of each recently used thread loadable that has been gotten from the database, so a thread that
+    // was already looked up doesn't need to go to the database again; keyed by the loadable itself, as it compares by
+    // site, mode, board and number. Synchronized on for looking up and adding as one step.
+    private final LruCache<Loadable, Loadable> canonicalLoadables = new LruCache<>(MAX_CANONICAL_LOADABLES);
+    // loadables whose lastLoadDate changed but hasn't been written out yet
+    private final Set<Loadable> pendingLoadDates = new LinkedHashSet<>();
+
     public DatabaseLoadableManager(DatabaseHelper helper, SiteRepository siteRepository) {
         this.helper = helper;
         this.siteRepository = siteRepository;
@@ -79,9 +98,17 @@ public class DatabaseLoadableManager {
         // We only cache THREAD loadables in the db
         if (loadable.isCatalogMode()) {
             return loadable;
-        } else {
-            return DatabaseUtils.runTask(getLoadable(loadable));
         }
+
+        synchronized (canonicalLoadables) {
+            Loadable canonical = canonicalLoadables.get(loadable);
+            if (canonical != null) {
+                markLoaded(canonical);
+                return canonical;
+            }
+        }
+
+        return DatabaseUtils.runTask(getLoadable(loadable));
     }
 
     /**
@@ -102,11 +129,56 @@ public class DatabaseLoadableManager {
         helper.getLoadableDao().refresh(loadable);
         loadable.site = siteRepository.forId(loadable.siteId);
         loadable.board = loadable.site.board(loadable.boardCode);
-        loadable.lastLoadDate = GregorianCalendar.getInstance().getTime();
-        helper.getLoadableDao().update(loadable);
+        synchronized (canonicalLoadables) {
+            if (canonicalLoadables.get(loadable) == null) {
+                canonicalLoadables.put(loadable, loadable);
+            }
+        }
+        markLoaded(loadable);
         return loadable;
     }
 
+    /**
+     * Sets the last load date of the loadable to now, and queues it up to be written out with the others.
+     */
+    private void markLoaded(Loadable loadable) {
+        loadable.lastLoadDate = GregorianCalendar.getInstance().getTime();
+        synchronized (pendingLoadDates) {
+            boolean scheduled = !pendingLoadDates.isEmpty();
+            pendingLoadDates.add(loadable);
+            if (!scheduled) {
+                BackgroundUtils.runOnMainThread(() -> DatabaseUtils.runTaskAsync(flushLoadDates()),
+                        LOAD_DATE_FLUSH_DELAY
+                );
+            }
+        }
+    }
+
+    /**
+     * @return A callable that writes out all of the queued up load dates in one transaction; must be run on the
+     * database thread.
+     */
+    private Callable<Void> flushLoadDates() {
+        return () -> {
+            List<Loadable> toWrite;
+            synchronized (pendingLoadDates) {
+                toWrite = new ArrayList<>(pendingLoadDates);
+                pendingLoadDates.clear();
+            }
+            if (toWrite.isEmpty()) return null;
+
+            helper.getLoadableDao().callBatchTasks(() -> {
+                for (Loadable loadable : toWrite) {
+                    UpdateBuilder<Loadable, Integer> builder = helper.getLoadableDao().updateBuilder();
+                    builder.updateColumnValue("lastLoadDate", loadable.lastLoadDate).where().eq("id", loadable.id);
+                    builder.update();
+                }
+                return null;
+            });
+            return null;
+        };
+    }
+
     private Callable<Loadable> getLoadable(final Loadable loadable) {
         return () -> {
             QueryBuilder<Loadable, Integer> builder = helper.getLoadableDao().queryBuilder();
@@ -121,29 +193,78 @@ public class DatabaseLoadableManager {
                     .query();
 
             Loadable result = results.isEmpty() ? loadable : results.get(0);
+            result.lastLoadDate = GregorianCalendar.getInstance().getTime();
             if (results.isEmpty()) {
                 helper.getLoadableDao().create(loadable);
+            } else {
+                helper.getLoadableDao().update(result);
             }
 
             result.site = siteRepository.forId(result.siteId);
             result.board = result.site.board(result.boardCode);
-            result.lastLoadDate = GregorianCalendar.getInstance().getTime();
-            helper.getLoadableDao().update(result);
+            synchronized (canonicalLoadables) {
+                // another thread may have gotten here first while this one was waiting
+                Loadable canonical = canonicalLoadables.get(result);
+                if (canonical != null) return canonical;
+                canonicalLoadables.put(result, result);
+            }
             return result;
         };
     }
 
     public Callable<List<Loadable>> getLoadables(Site site) {
-        return () -> helper.getLoadableDao().queryForEq("site", site.id());
+        return DatabaseUtils.readTask(() -> helper.getLoadableDao().queryForEq("site", site.id()));
     }
 
     public Callable<Object> deleteLoadables(List<Loadable> siteLoadables) {
         return () -> {
             helper.getLoadableDao().delete(siteLoadables);
+            forgetLoadables(getIds(siteLoadables));
             return null;
         };
     }
 
+    /**
+     * Drops the canonical loadables with the given ids and any of their queued up load dates, for when those loadables
+     * are deleted.
+     */
+    private void forgetLoadables(Set<Integer> ids) {
+        if (ids.isEmpty()) return;
+        synchronized (canonicalLoadables) {
+            for (Loadable loadable : canonicalLoadables.snapshot().values()) {
+                if (ids.contains(loadable.id)) {
+                    canonicalLoadables.remove(loadable);
+                }
+            }
+        }
+        synchronized (pendingLoadDates) {
+            Iterator<Loadable> iterator = pendingLoadDates.iterator();
+            while (iterator.hasNext()) {
+                if (ids.contains(iterator.next().id)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private static Set<Integer> getIds(List<Loadable> loadables) {
+        Set<Integer> ids = new HashSet<>();
+        for (Loadable loadable : loadables) {
+            ids.add(loadable.id);
+        }
+        return ids;
+    }
+
+    private Set<Integer> getPinnedIds()
+            throws SQLException {
+        return getIds(helper.getLoadableDao()
+                .queryBuilder()
+                .selectColumns("id")
+                .where()
+                .in("id", helper.getPinDao().queryBuilder().selectColumns("loadable_id"))
+                .query());
+    }
+
     public Callable<Void> updateLoadable(Loadable updatedLoadable, boolean commit) {
         return () -> {
             if (updatedLoadable.isThreadMode()) {
@@ -166,10 +287,23 @@ public class DatabaseLoadableManager {
      */
     public Callable<Void> purgeOld() {
         return () -> {
+            // anything loaded since the last flush shouldn't be purged
+            flushLoadDates().call();
+
             DatabaseConnection connection = helper.getLoadableDao().startThreadConnection();
             Calendar oneMonthAgo = GregorianCalendar.getInstance();
             oneMonthAgo.add(Calendar.MONTH, -1);
 
+            // the ids of the loadables that are about to be deleted, to drop them from memory too
+            Set<Integer> purged = getIds(helper.getLoadableDao()
+                    .queryBuilder()
+                    .selectColumns("id")
+                    .where()
+                    .lt("lastLoadDate", oneMonthAgo.getTime())
+                    .and()
+                    .notIn("id", helper.getPinDao().queryBuilder().selectColumns("loadable_id"))
+                    .query());
+
             DeleteBuilder<Loadable, Integer> builder = helper.getLoadableDao().deleteBuilder();
             builder.where()
                     .lt("lastLoadDate", oneMonthAgo.getTime())
@@ -179,6 +313,7 @@ public class DatabaseLoadableManager {
 
             connection.commit(null);
             helper.getLoadableDao().endThreadConnection(connection);
+            forgetLoadables(purged);
             return null;
         };
     }
@@ -188,6 +323,24 @@ public class DatabaseLoadableManager {
      */
     public Callable<Void> clearHistory() {
         return () -> {
+            // pinned threads aren't in the history, so they keep their load dates
+            Set<Integer> pinned = getPinnedIds();
+            // load dates that haven't been written out yet would otherwise bring threads back into the history
+            synchronized (pendingLoadDates) {
+                Iterator<Loadable> iterator = pendingLoadDates.iterator();
+                while (iterator.hasNext()) {
+                    if (!pinned.contains(iterator.next().id)) {
+                        iterator.remove();
+                    }
+                }
+            }
+            synchronized (canonicalLoadables) {
+                for (Loadable loadable : canonicalLoadables.snapshot().values()) {
+                    if (!pinned.contains(loadable.id)) {
+                        loadable.lastLoadDate = EPOCH_DATE;
+                    }
+                }
+            }
             UpdateBuilder<Loadable, Integer> builder =
                     helper.getLoadableDao().updateBuilder().updateColumnValue("lastLoadDate", EPOCH_DATE);
             builder.where().notIn("id", helper.getPinDao().queryBuilder().selectColumns("loadable_id"));
@@ -197,10 +350,13 @@ public class DatabaseLoadableManager {
     }
 
     /**
-     * @return A callable that returns a list of history, ignoring pins.
+     * @return A callable that returns a list of history, ignoring pins. Runs as a write, as it first writes out the
+     * queued up load dates so the recently loaded threads are in it.
      */
     public Callable<List<History>> getHistory() {
         return () -> {
+            flushLoadDates().call();
+
             List<History> history = new ArrayList<>();
             for (Loadable l : helper.getLoadableDao()
                     .queryBuilder()
@@ -213,7 +369,14 @@ public class DatabaseLoadableManager {
                     .query()) {
                 l.site = siteRepository.forId(l.siteId);
                 l.board = l.site.board(l.boardCode);
-                history.add(new History(l));
+                synchronized (canonicalLoadables) {
+                    Loadable canonical = canonicalLoadables.get(l);
+                    if (canonical == null) {
+                        canonicalLoadables.put(l, l);
+                        canonical = l;
+                    }
+                    history.add(new History(canonical));
+                }
             }
             return history;
         };
@@ -75,14 +75,14 @@ public class DatabasePinManager {
     }
 
     public Callable<List<Pin>> getPins() {
-        return () -> {
+        return DatabaseUtils.readTask(() -> {
             List<Pin> list = helper.getPinDao().queryForAll();
             for (int i = 0; i < list.size(); i++) {
                 Pin p = list.get(i);
                 p.loadable = databaseLoadableManager.refreshForeign(p.loadable);
             }
             return list;
-        };
+        });
     }
 
     public Callable<Void> deletePinsFromLoadables(List<Loadable> siteLoadables) {
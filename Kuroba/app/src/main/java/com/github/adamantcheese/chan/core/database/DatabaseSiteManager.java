@@ -33,15 +33,15 @@ public class DatabaseSiteManager {
     }
 
     public Callable<SiteModel> byId(int id) {
-        return () -> helper.getSiteModelDao().queryForId(id);
+        return DatabaseUtils.readTask(() -> helper.getSiteModelDao().queryForId(id));
     }
 
     public Callable<List<SiteModel>> getAll() {
-        return () -> helper.getSiteModelDao().queryForAll();
+        return DatabaseUtils.readTask(() -> helper.getSiteModelDao().queryForAll());
     }
 
     public Callable<Integer> getCount() {
-        return () -> (int) helper.getSiteModelDao().countOf();
+        return DatabaseUtils.readTask(() -> (int) helper.getSiteModelDao().countOf());
     }
 
     public Callable<SiteModel> add(final SiteModel site) {
@@ -59,7 +59,7 @@ public class DatabaseSiteManager {
     }
 
     public Callable<Map<Integer, Integer>> getOrdering() {
-        return () -> {
+        return DatabaseUtils.readTask(() -> {
             List<SiteModel> modelsWithOrder =
                     helper.getSiteModelDao().queryBuilder().selectColumns("id", "order").query();
             Map<Integer, Integer> ordering = new HashMap<>();
@@ -67,7 +67,7 @@ public class DatabaseSiteManager {
                 ordering.put(siteModel.id, siteModel.order);
             }
             return ordering;
-        };
+        });
     }
 
     public Callable<Void> updateOrdering(final List<Integer> siteIdsWithCorrectOrder) {
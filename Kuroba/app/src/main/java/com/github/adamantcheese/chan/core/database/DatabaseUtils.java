@@ -28,12 +28,36 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.github.adamantcheese.chan.Chan.instance;
 
+/**
+ * Runs database tasks. Writes go to a single thread, one at a time and in the order they were submitted, each in its
+ * own transaction. Tasks marked with {@link #readTask(Callable)} instead go to a few reader threads, outside of any
+ * transaction; with write-ahead logging the database serves them from their own connections, so they don't wait on
+ * writes or on each other.
+ * <p>
+ * A read does wait for the writes its own thread submitted before it, so it sees what that thread wrote; writes from
+ * other threads don't hold it up.
+ */
 public class DatabaseUtils {
-    // The database only allows for one connection at a time, so we use this to schedule all database operations.
-    private static final ExecutorService databaseExecutor = Executors.newSingleThreadExecutor();
+    private static final int READER_COUNT = 3;
+
+    private static volatile Thread writerThread;
+    // Only one connection can write at a time, so we use this to schedule all database writes.
+    private static final ExecutorService databaseExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        writerThread = new Thread(runnable, "DatabaseWriter");
+        return writerThread;
+    });
+    private static final ExecutorService readerExecutor =
+            Executors.newFixedThreadPool(READER_COUNT, runnable -> new Thread(runnable, "DatabaseReader"));
+
+    // writes are numbered in the order they're submitted, which is also the order they're done in
+    private static final Object writeLock = new Object();
+    private static long writesSubmitted;
+    private static long writesCompleted;
+    private static final ThreadLocal<Long> lastWriteOfThread = new ThreadLocal<>();
 
     /**
      * Summary of the database tables row count, for the developer screen.
@@ -87,12 +111,22 @@ public class DatabaseUtils {
     }
 
     public static <T> void runTaskAsync(final Callable<T> taskCallable, final TaskResult<T> taskResult) {
-        databaseExecutor.submit(new DatabaseCallable<>(taskCallable, taskResult));
+        submit(taskCallable, taskResult);
     }
 
     public static <T> T runTask(final Callable<T> taskCallable) {
+        if (taskCallable instanceof ReadTask && Thread.currentThread() == writerThread) {
+            // from within a write; the reader threads wouldn't see its changes until it's done
+            try {
+                return taskCallable.call();
+            } catch (Exception e) {
+                Logger.e("DatabaseUtils", "executeTask", e);
+                throw new RuntimeException(e);
+            }
+        }
+
         try {
-            return databaseExecutor.submit(new DatabaseCallable<>(taskCallable, result -> {})).get();
+            return submit(taskCallable, result -> {}).get();
         } catch (InterruptedException e) {
             // Since we don't rethrow InterruptedException we need to at least restore the
             // "interrupted" flag.
@@ -103,14 +137,52 @@ public class DatabaseUtils {
         }
     }
 
+    /**
+     * Marks a task as one that only reads, so it can run alongside writes and other reads. A read that is made of more
+     * than one query may see writes done in between them.
+     */
+    public static <T> Callable<T> readTask(Callable<T> task) {
+        return new ReadTask<>(task);
+    }
+
+    private static <T> Future<T> submit(Callable<T> task, TaskResult<T> result) {
+        if (task instanceof ReadTask) {
+            Long lastWrite = lastWriteOfThread.get();
+            return readerExecutor.submit(new ReadCallable<>(task, result, lastWrite == null ? 0 : lastWrite));
+        }
+
+        synchronized (writeLock) {
+            long write = ++writesSubmitted;
+            lastWriteOfThread.set(write);
+            return databaseExecutor.submit(new DatabaseCallable<>(task, result, write));
+        }
+    }
+
+    private static class ReadTask<T>
+            implements Callable<T> {
+        private final Callable<T> task;
+
+        private ReadTask(Callable<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public T call()
+                throws Exception {
+            return task.call();
+        }
+    }
+
     private static class DatabaseCallable<T>
             implements Callable<T> {
         private final Callable<T> task;
         private final TaskResult<T> result;
+        private final long write;
 
-        public DatabaseCallable(Callable<T> task, @NonNull TaskResult<T> result) {
+        public DatabaseCallable(Callable<T> task, @NonNull TaskResult<T> result, long write) {
             this.task = task;
             this.result = result;
+            this.write = write;
         }
 
         @Override
@@ -125,6 +197,43 @@ public class DatabaseUtils {
             } catch (Exception e) {
                 Logger.e(this, "executeTask", e);
                 throw new RuntimeException(e);
+            } finally {
+                synchronized (writeLock) {
+                    writesCompleted = write;
+                    writeLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private static class ReadCallable<T>
+            implements Callable<T> {
+        private final Callable<T> task;
+        private final TaskResult<T> result;
+        private final long afterWrite;
+
+        private ReadCallable(Callable<T> task, @NonNull TaskResult<T> result, long afterWrite) {
+            this.task = task;
+            this.result = result;
+            this.afterWrite = afterWrite;
+        }
+
+        @Override
+        public T call()
+                throws InterruptedException {
+            synchronized (writeLock) {
+                while (writesCompleted < afterWrite) {
+                    writeLock.wait();
+                }
+            }
+
+            try {
+                final T res = task.call();
+                BackgroundUtils.runOnMainThread(() -> result.onComplete(res));
+                return res;
+            } catch (Exception e) {
+                Logger.e(this, "executeTask", e);
+                throw new RuntimeException(e);
             }
         }
     }
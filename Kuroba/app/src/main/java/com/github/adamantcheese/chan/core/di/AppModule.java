@@ -32,6 +32,7 @@ import com.github.adamantcheese.chan.features.gesture_editor.Android10GesturesEx
 import com.github.adamantcheese.chan.ui.captcha.CaptchaHolder;
 import com.github.adamantcheese.chan.ui.settings.SavedFilesBaseDirectory;
 import com.github.adamantcheese.chan.utils.Logger;
+import com.github.adamantcheese.chan.utils.Tracer;
 import com.github.k1rakishou.fsaf.BadPathSymbolResolutionStrategy;
 import com.github.k1rakishou.fsaf.FileChooser;
 import com.github.k1rakishou.fsaf.FileManager;
@@ -42,6 +43,7 @@ import org.codejargon.feather.Provides;
 
 import java.io.File;
 
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import static com.github.adamantcheese.chan.utils.AndroidUtils.getAppContext;
@@ -172,6 +174,16 @@ public class AppModule {
         }
     }
 
+    /**
+     * Creates a provided object in a {@link Tracer} span, so the time spent building it shows up in the timings. The
+     * provider's own dependencies are created before this, in their own spans.
+     */
+    public static <T> T traced(String name, Provider<T> provider) {
+        try (Tracer.Span ignored = Tracer.begin("DI " + name)) {
+            return provider.get();
+        }
+    }
+
     @Provides
     @Singleton
     public Android10GesturesExclusionZonesHolder provideAndroid10GesturesHolder(Gson gson) {
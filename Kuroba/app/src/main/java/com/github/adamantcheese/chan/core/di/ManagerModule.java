@@ -22,10 +22,12 @@ import com.github.adamantcheese.chan.core.di.NetModule.OkHttpClientWithUtils;
 import com.github.adamantcheese.chan.core.manager.BoardManager;
 import com.github.adamantcheese.chan.core.manager.FilterEngine;
 import com.github.adamantcheese.chan.core.manager.FilterWatchManager;
+import com.github.adamantcheese.chan.core.manager.ReplyQueueManager;
 import com.github.adamantcheese.chan.core.manager.ReportManager;
 import com.github.adamantcheese.chan.core.manager.WakeManager;
 import com.github.adamantcheese.chan.core.manager.WatchManager;
 import com.github.adamantcheese.chan.core.repository.BoardRepository;
+import com.github.adamantcheese.chan.core.repository.SiteRepository;
 import com.github.adamantcheese.chan.utils.Logger;
 import com.github.k1rakishou.fsaf.FileManager;
 import com.google.gson.Gson;
@@ -37,6 +39,7 @@ import java.io.File;
 import javax.inject.Singleton;
 
 import static com.github.adamantcheese.chan.core.di.AppModule.getCacheDir;
+import static com.github.adamantcheese.chan.core.di.AppModule.traced;
 
 public class ManagerModule {
     private static final String CRASH_LOGS_DIR_NAME = "crashlogs";
@@ -45,14 +48,14 @@ public class ManagerModule {
     @Singleton
     public BoardManager provideBoardManager(BoardRepository boardRepository) {
         Logger.d(AppModule.DI_TAG, "Board manager");
-        return new BoardManager(boardRepository);
+        return traced("Board manager", () -> new BoardManager(boardRepository));
     }
 
     @Provides
     @Singleton
     public FilterEngine provideFilterEngine(DatabaseFilterManager databaseFilterManager) {
         Logger.d(AppModule.DI_TAG, "Filter engine");
-        return new FilterEngine(databaseFilterManager);
+        return traced("Filter engine", () -> new FilterEngine(databaseFilterManager));
     }
 
     @Provides
@@ -61,14 +64,14 @@ public class ManagerModule {
             DatabasePinManager databasePinManager, WakeManager wakeManager, FileManager fileManager
     ) {
         Logger.d(AppModule.DI_TAG, "Watch manager");
-        return new WatchManager(databasePinManager, wakeManager);
+        return traced("Watch manager", () -> new WatchManager(databasePinManager, wakeManager));
     }
 
     @Provides
     @Singleton
     public WakeManager provideWakeManager() {
         Logger.d(AppModule.DI_TAG, "Wake manager");
-        return new WakeManager();
+        return traced("Wake manager", WakeManager::new);
     }
 
     @Provides
@@ -78,10 +81,26 @@ public class ManagerModule {
             BoardRepository boardRepository,
             FilterEngine filterEngine,
             WatchManager watchManager,
-            Gson gson
+            Gson gson,
+            OkHttpClientWithUtils okHttpClient
     ) {
         Logger.d(AppModule.DI_TAG, "Filter watch manager");
-        return new FilterWatchManager(wakeManager, boardRepository, filterEngine, watchManager, gson);
+        return traced("Filter watch manager", () -> new FilterWatchManager(wakeManager,
+                boardRepository,
+                filterEngine,
+                watchManager,
+                gson,
+                okHttpClient
+        ));
+    }
+
+    @Provides
+    @Singleton
+    public ReplyQueueManager provideReplyQueueManager(
+            WakeManager wakeManager, SiteRepository siteRepository, Gson gson
+    ) {
+        Logger.d(AppModule.DI_TAG, "Reply queue manager");
+        return traced("Reply queue manager", () -> new ReplyQueueManager(wakeManager, siteRepository, gson));
     }
 
     @Provides
@@ -90,6 +109,8 @@ public class ManagerModule {
         Logger.d(AppModule.DI_TAG, "Report manager");
         File cacheDir = getCacheDir();
 
-        return new ReportManager(gson, new File(cacheDir, CRASH_LOGS_DIR_NAME), clientWithUtils);
+        return traced("Report manager",
+                () -> new ReportManager(gson, new File(cacheDir, CRASH_LOGS_DIR_NAME), clientWithUtils)
+        );
     }
 }
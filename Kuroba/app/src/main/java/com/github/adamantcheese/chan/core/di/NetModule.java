@@ -19,6 +19,7 @@ package com.github.adamantcheese.chan.core.di;
 import com.github.adamantcheese.chan.BuildConfig;
 import com.github.adamantcheese.chan.core.cache.CacheHandler;
 import com.github.adamantcheese.chan.core.cache.FileCacheV2;
+import com.github.adamantcheese.chan.core.cache.stream.ExoPlayerPool;
 import com.github.adamantcheese.chan.core.cache.stream.WebmStreamingSource;
 import com.github.adamantcheese.chan.core.net.DnsSelector;
 import com.github.adamantcheese.chan.core.net.HttpEquivRefreshInterceptor;
@@ -40,8 +41,10 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 
 import static com.github.adamantcheese.chan.core.di.AppModule.getCacheDir;
+import static com.github.adamantcheese.chan.core.di.AppModule.traced;
 import static com.github.adamantcheese.chan.core.net.DnsSelector.Mode.IPV4_ONLY;
 import static com.github.adamantcheese.chan.core.net.DnsSelector.Mode.SYSTEM;
+import static com.github.adamantcheese.chan.utils.AndroidUtils.getAppContext;
 import static com.github.adamantcheese.chan.utils.AndroidUtils.getApplicationLabel;
 import static okhttp3.Protocol.HTTP_1_1;
 import static okhttp3.Protocol.HTTP_2;
@@ -50,17 +53,22 @@ public class NetModule {
     public static final String USER_AGENT = getApplicationLabel() + "/" + BuildConfig.VERSION_NAME;
     private static final String FILE_CACHE_DIR = "filecache";
     private static final String FILE_CHUNKS_CACHE_DIR = "file_chunks_cache";
+    private static final String FILE_CACHE_JOURNAL = "filecache.journal";
 
     @Provides
     @Singleton
     public CacheHandler provideCacheHandler(FileManager fileManager) {
         Logger.d(AppModule.DI_TAG, "Cache handler");
 
-        File cacheDir = getCacheDir();
-        RawFile cacheDirFile = fileManager.fromRawFile(new File(cacheDir, FILE_CACHE_DIR));
-        RawFile chunksCacheDirFile = fileManager.fromRawFile(new File(cacheDir, FILE_CHUNKS_CACHE_DIR));
+        return traced("Cache handler", () -> {
+            File cacheDir = getCacheDir();
+            RawFile cacheDirFile = fileManager.fromRawFile(new File(cacheDir, FILE_CACHE_DIR));
+            RawFile chunksCacheDirFile = fileManager.fromRawFile(new File(cacheDir, FILE_CHUNKS_CACHE_DIR));
 
-        return new CacheHandler(fileManager, cacheDirFile, chunksCacheDirFile);
+            File journalFile = new File(cacheDir, FILE_CACHE_JOURNAL);
+
+            return new CacheHandler(fileManager, cacheDirFile, chunksCacheDirFile, journalFile);
+        });
     }
 
     @Provides
@@ -72,7 +80,9 @@ public class NetModule {
             OkHttpClientWithUtils okHttpClient
     ) {
         Logger.d(AppModule.DI_TAG, "File cache V2");
-        return new FileCacheV2(fileManager, cacheHandler, siteResolver, okHttpClient.getHttpRedirectClient());
+        return traced("File cache V2",
+                () -> new FileCacheV2(fileManager, cacheHandler, siteResolver, okHttpClient.getHttpRedirectClient())
+        );
     }
 
     @Provides
@@ -81,7 +91,14 @@ public class NetModule {
             FileManager fileManager, FileCacheV2 fileCacheV2, CacheHandler cacheHandler
     ) {
         Logger.d(AppModule.DI_TAG, "WebmStreamingSource");
-        return new WebmStreamingSource(fileManager, fileCacheV2, cacheHandler);
+        return traced("WebmStreamingSource", () -> new WebmStreamingSource(fileManager, fileCacheV2, cacheHandler));
+    }
+
+    @Provides
+    @Singleton
+    public ExoPlayerPool provideExoPlayerPool() {
+        Logger.d(AppModule.DI_TAG, "ExoPlayer pool");
+        return traced("ExoPlayer pool", () -> new ExoPlayerPool(getAppContext()));
     }
 
     @Provides
@@ -89,7 +106,7 @@ public class NetModule {
     public OkHttpClientWithUtils provideProxiedOkHttpClient() {
         //@formatter:off
         Logger.d(AppModule.DI_TAG, "Proxied OkHTTP client");
-        return new OkHttpClientWithUtils(new OkHttpClient.Builder()
+        return traced("Proxied OkHTTP client", () -> new OkHttpClientWithUtils(new OkHttpClient.Builder()
                 .protocols(ChanSettings.okHttpAllowHttp2.get()
                         ? Arrays.asList(HTTP_2, HTTP_1_1) : Collections.singletonList(HTTP_1_1))
                 .dns(new DnsSelector(ChanSettings.okHttpAllowIpv6.get() ? SYSTEM : IPV4_ONLY))
@@ -99,7 +116,7 @@ public class NetModule {
                     Request requestWithUserAgent =
                             originalRequest.newBuilder().header("User-Agent", USER_AGENT).build();
                     return chain.proceed(requestWithUserAgent);
-                }));
+                })));
         //@formatter:on
     }
 
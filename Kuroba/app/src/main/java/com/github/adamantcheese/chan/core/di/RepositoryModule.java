@@ -30,6 +30,8 @@ import org.codejargon.feather.Provides;
 
 import javax.inject.Singleton;
 
+import static com.github.adamantcheese.chan.core.di.AppModule.traced;
+
 public class RepositoryModule {
 
     @Provides
@@ -38,14 +40,14 @@ public class RepositoryModule {
             DatabaseHelper databaseHelper, Gson gson, FileManager fileManager
     ) {
         Logger.d(AppModule.DI_TAG, "Import export repository");
-        return new ImportExportRepository(databaseHelper, gson, fileManager);
+        return traced("Import export repository", () -> new ImportExportRepository(databaseHelper, gson, fileManager));
     }
 
     @Provides
     @Singleton
     public SiteRepository provideSiteRepository(DatabaseSiteManager databaseSiteManager, Gson gson) {
         Logger.d(AppModule.DI_TAG, "Site repository");
-        return new SiteRepository(databaseSiteManager, gson);
+        return traced("Site repository", () -> new SiteRepository(databaseSiteManager, gson));
     }
 
     @Provides
@@ -54,6 +56,6 @@ public class RepositoryModule {
             DatabaseBoardManager databaseBoardManager, SiteRepository siteRepository
     ) {
         Logger.d(AppModule.DI_TAG, "Board repository");
-        return new BoardRepository(databaseBoardManager, siteRepository);
+        return traced("Board repository", () -> new BoardRepository(databaseBoardManager, siteRepository));
     }
 }
@@ -20,6 +20,8 @@ import android.annotation.SuppressLint;
 import android.content.res.AssetManager;
 import android.util.JsonReader;
 
+import androidx.annotation.Nullable;
+
 import com.github.adamantcheese.chan.core.model.orm.Board;
 import com.github.adamantcheese.chan.core.site.archives.AyaseArchive;
 import com.github.adamantcheese.chan.core.site.archives.ExternalSiteArchive;
@@ -27,9 +29,11 @@ import com.github.adamantcheese.chan.core.site.archives.FoolFuukaArchive;
 import com.github.adamantcheese.chan.core.site.sites.chan4.Chan4;
 import com.github.adamantcheese.chan.utils.Logger;
 import com.github.adamantcheese.chan.core.net.NetUtils;
+import com.github.adamantcheese.chan.core.net.NetUtilsClasses.HttpCodeException;
 import com.github.adamantcheese.chan.core.net.NetUtilsClasses.JSONProcessor;
 import com.github.adamantcheese.chan.core.net.NetUtilsClasses.ResponseResult;
 
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -44,14 +48,20 @@ import static com.github.adamantcheese.chan.utils.AndroidUtils.getAppContext;
 public class ArchivesManager
         extends JSONProcessor<List<ExternalSiteArchive>>
         implements ResponseResult<List<ExternalSiteArchive>> {
-    private List<ExternalSiteArchive> archivesList;
+    // expected latency of an archive that hasn't been used yet, in milliseconds
+    private static final long DEFAULT_LATENCY = 1000;
+
+    // board code -> archives for that board, in the order they're listed; replaced as a whole when the list is updated
+    private volatile Map<String, List<ExternalSiteArchive>> archivesByBoardCode = Collections.emptyMap();
+    // archive domain -> how it has been responding, kept across list updates
+    private final Map<String, ArchiveHealth> healthByDomain = new HashMap<>();
 
     private final Map<String, Class<? extends ExternalSiteArchive>> jsonMapping = new HashMap<>();
 
     @SuppressLint("StaticFieldLeak")
     private static ArchivesManager instance;
 
-    public static ArchivesManager getInstance() {
+    public static synchronized ArchivesManager getInstance() {
         if (instance == null) {
             instance = new ArchivesManager();
         }
@@ -71,7 +81,7 @@ public class ArchivesManager
         try {
             // archives.json should only contain FoolFuuka archives, as no other proper archiving software with an API seems to exist
             try (JsonReader reader = new JsonReader(new InputStreamReader(assetManager.open("archives.json")))) {
-                archivesList = process(reader);
+                setArchives(process(reader));
             }
         } catch (Exception e) {
             Logger.d(this, "Unable to load/parse internal archives list", e);
@@ -81,20 +91,76 @@ public class ArchivesManager
         NetUtils.makeJsonRequest(HttpUrl.get("https://4chenz.github.io/archives.json/archives.json"), this, this);
     }
 
+    /**
+     * @return the archives for the board, the ones expected to respond the quickest first
+     */
     public List<ExternalSiteArchive> archivesForBoard(Board b) {
-        List<ExternalSiteArchive> result = new ArrayList<>();
-        if (archivesList == null || !(b.site instanceof Chan4)) return result; //4chan only
-        for (ExternalSiteArchive a : archivesList) {
-            for (String code : a.boardCodes) {
-                if (code.equals(b.code)) {
-                    result.add(a);
-                    break;
+        if (!(b.site instanceof Chan4)) return new ArrayList<>(); //4chan only
+        List<ExternalSiteArchive> archives = archivesByBoardCode.get(b.code);
+        if (archives == null) return new ArrayList<>();
+
+        List<ExternalSiteArchive> result = new ArrayList<>(archives);
+        if (result.size() > 1) {
+            Map<ExternalSiteArchive, Double> costs = new HashMap<>();
+            synchronized (healthByDomain) {
+                for (ExternalSiteArchive archive : result) {
+                    ArchiveHealth health = healthByDomain.get(archive.domain);
+                    costs.put(archive, health == null ? DEFAULT_LATENCY : health.getExpectedCost());
                 }
             }
+            // stable, so archives without any history stay in list order
+            Collections.sort(result, (o1, o2) -> Double.compare(costs.get(o1), costs.get(o2)));
         }
         return result;
     }
 
+    /**
+     * A cheaper check than {@link #archivesForBoard} for when the archives themselves aren't needed.
+     */
+    public boolean hasArchivesForBoard(Board b) {
+        return b.site instanceof Chan4 && archivesByBoardCode.containsKey(b.code);
+    }
+
+    /**
+     * Records how a request to an archive went, for ordering archives by how well they respond.
+     *
+     * @param latency how long the request took, in milliseconds
+     * @param error   the error the request failed with, or null if it succeeded
+     */
+    public void recordResult(ExternalSiteArchive archive, long latency, @Nullable Exception error) {
+        // the archive responding that it doesn't have something is still a response
+        boolean failed = error instanceof IOException
+                || (error instanceof HttpCodeException && ((HttpCodeException) error).code >= 500);
+        synchronized (healthByDomain) {
+            ArchiveHealth health = healthByDomain.get(archive.domain);
+            if (health == null) {
+                health = new ArchiveHealth();
+                healthByDomain.put(archive.domain, health);
+            }
+            health.record(latency, failed);
+        }
+    }
+
+    private void setArchives(List<ExternalSiteArchive> archives) {
+        Map<String, List<ExternalSiteArchive>> byBoardCode = new HashMap<>();
+        for (ExternalSiteArchive archive : archives) {
+            for (String code : archive.boardCodes) {
+                List<ExternalSiteArchive> forBoard = byBoardCode.get(code);
+                if (forBoard == null) {
+                    forBoard = new ArrayList<>(2);
+                    byBoardCode.put(code, forBoard);
+                }
+                if (!forBoard.contains(archive)) {
+                    forBoard.add(archive);
+                }
+            }
+        }
+        for (Map.Entry<String, List<ExternalSiteArchive>> entry : byBoardCode.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        archivesByBoardCode = Collections.unmodifiableMap(byBoardCode);
+    }
+
     @Override
     public List<ExternalSiteArchive> process(JsonReader reader)
             throws Exception {
@@ -152,6 +218,26 @@ public class ArchivesManager
 
     @Override
     public void onSuccess(List<ExternalSiteArchive> result) {
-        archivesList = result;
+        setArchives(result);
+    }
+
+    /**
+     * Moving averages of an archive's latency and failure rate, weighted towards recent requests.
+     */
+    private static class ArchiveHealth {
+        private static final double WEIGHT = 0.3;
+
+        private double latency = DEFAULT_LATENCY;
+        private double failureRate = 0;
+
+        private void record(long latency, boolean failed) {
+            this.latency += WEIGHT * (latency - this.latency);
+            failureRate += WEIGHT * ((failed ? 1 : 0) - failureRate);
+        }
+
+        // an archive that fails half of the time is treated as three times slower
+        private double getExpectedCost() {
+            return latency * (1 + 4 * failureRate);
+        }
     }
 }
@@ -20,6 +20,7 @@ import com.github.adamantcheese.chan.core.model.orm.Board;
 import com.github.adamantcheese.chan.core.repository.BoardRepository;
 import com.github.adamantcheese.chan.core.site.Site;
 import com.github.adamantcheese.chan.core.site.common.CommonDataStructs.Boards;
+import com.github.adamantcheese.chan.ui.helper.BoardSearchIndex;
 
 /**
  * <p>Keeps track of {@link Board}s in the system.
@@ -64,6 +65,10 @@ public class BoardManager {
         return boardRepository.getSiteBoards(site);
     }
 
+    public BoardSearchIndex getSiteSearchIndex(Site site) {
+        return boardRepository.getSiteSearchIndex(site);
+    }
+
     public Boards getSiteSavedBoards(Site site) {
         return boardRepository.getSiteSavedBoards(site);
     }
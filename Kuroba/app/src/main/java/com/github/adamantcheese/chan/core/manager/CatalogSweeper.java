@@ -0,0 +1,272 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.manager;
+
+import android.text.TextUtils;
+import android.util.JsonReader;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.github.adamantcheese.chan.core.di.NetModule.OkHttpClientWithUtils;
+import com.github.adamantcheese.chan.core.model.Post;
+import com.github.adamantcheese.chan.core.model.PostImage;
+import com.github.adamantcheese.chan.core.model.orm.Board;
+import com.github.adamantcheese.chan.core.model.orm.Filter;
+import com.github.adamantcheese.chan.core.model.orm.Loadable;
+import com.github.adamantcheese.chan.core.net.NetUtilsClasses.HttpCodeException;
+import com.github.adamantcheese.chan.core.net.NetUtilsClasses.JSONConverter;
+import com.github.adamantcheese.chan.core.site.parser.ChanReaderProcessingQueue;
+import com.github.adamantcheese.chan.utils.BackgroundUtils;
+import com.github.adamantcheese.chan.utils.Logger;
+import com.github.adamantcheese.chan.utils.PriorityExecutor.Lane;
+
+import org.jetbrains.annotations.NotNull;
+import org.jsoup.parser.Parser;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Checks the catalogs of boards for threads matching watch filters, without going through a thread loader.
+ * <p>
+ * Catalogs are fetched a few at a time, with If-Modified-Since, so a catalog that hasn't changed since the last sweep
+ * isn't downloaded and read again; the result of the last sweep of that board is used instead. Posts are read into
+ * builders by the site's reader and checked against the watch filters with their comment reduced to plain text, which
+ * skips the comment parser and everything else that goes into making posts for display. Responses are read in the
+ * maintenance lane of the background executor, so a sweep never holds up parsing what the user is looking at.
+ */
+class CatalogSweeper {
+    private static final int MAX_CONCURRENT_REQUESTS = 3;
+
+    private static final Pattern BREAK_PATTERN = Pattern.compile("<br\\s*/?>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TAG_PATTERN = Pattern.compile("<[^>]*>");
+
+    private final OkHttpClientWithUtils okHttpClient;
+    private final FilterEngine filterEngine;
+
+    // the result of the last sweep of each board, kept for as long as the app is running
+    private final Map<String, BoardResult> lastResults = new HashMap<>();
+
+    private final Queue<Board> pending = new ArrayDeque<>();
+    private int running;
+    private final List<WatchedThread> watched = new ArrayList<>();
+    private final Set<Integer> checkedNos = new HashSet<>();
+    @Nullable
+    private SweepCallback sweepCallback;
+
+    CatalogSweeper(OkHttpClientWithUtils okHttpClient, FilterEngine filterEngine) {
+        this.okHttpClient = okHttpClient;
+        this.filterEngine = filterEngine;
+    }
+
+    /**
+     * Starts a sweep of the given boards; only one sweep can run at a time.
+     *
+     * @param callback told about the result once every board has been checked, on a background thread
+     */
+    synchronized void sweep(@NonNull Set<Board> boards, @NonNull SweepCallback callback) {
+        if (sweepCallback != null) throw new IllegalStateException("Already sweeping");
+
+        sweepCallback = callback;
+        watched.clear();
+        checkedNos.clear();
+        pending.addAll(boards);
+        startRequests();
+    }
+
+    private void startRequests() {
+        if (pending.isEmpty() && running == 0) {
+            SweepCallback callback = sweepCallback;
+            sweepCallback = null;
+            callback.onSweepComplete(new ArrayList<>(watched), new HashSet<>(checkedNos));
+            return;
+        }
+
+        while (running < MAX_CONCURRENT_REQUESTS && !pending.isEmpty()) {
+            running++;
+            request(pending.remove());
+        }
+    }
+
+    private void request(Board board) {
+        String key = board.siteId + "/" + board.code;
+        List<Filter> watchFilters = getWatchFilters(board);
+        BoardResult last;
+        synchronized (this) {
+            last = lastResults.get(key);
+        }
+
+        Request.Builder request = new Request.Builder().url(board.site.endpoints().catalog(board));
+        // the filters are shared objects that are replaced when filters change, so this compares them by identity
+        if (last != null && last.lastModified != null && last.watchFilters.equals(watchFilters)) {
+            request.header("If-Modified-Since", last.lastModified);
+        }
+
+        okHttpClient.newCall(request.build()).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                Logger.d(CatalogSweeper.this, "Catalog sweep failed for /" + board.code + "/", e);
+                onBoardChecked(key, last, null);
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                BackgroundUtils.backgroundService.execute(Lane.MAINTENANCE,
+                        () -> readResponse(call, response, board, key, last, watchFilters)
+                );
+            }
+        });
+    }
+
+    private void readResponse(
+            Call call, Response response, Board board, String key, @Nullable BoardResult last, List<Filter> watchFilters
+    ) {
+        BoardResult result = null;
+        try {
+            if (response.code() == 304) {
+                result = last;
+            } else if (!response.isSuccessful()) {
+                throw new HttpCodeException(response.code());
+            } else {
+                JsonReader reader = new JSONConverter().convert(call.request().url(), response.body());
+                result = read(board, reader, watchFilters, response.header("Last-Modified"));
+            }
+        } catch (Exception e) {
+            Logger.d(this, "Catalog sweep failed for /" + board.code + "/", e);
+        } finally {
+            response.close();
+        }
+        onBoardChecked(key, last, result);
+    }
+
+    private synchronized void onBoardChecked(String key, @Nullable BoardResult last, @Nullable BoardResult result) {
+        running--;
+        if (result != null) {
+            lastResults.put(key, result);
+        }
+
+        // on failure, go with what was there last time, so ignored threads aren't forgotten over a network hiccup
+        BoardResult use = result != null ? result : last;
+        if (use != null) {
+            watched.addAll(use.watched);
+            checkedNos.addAll(use.nos);
+        }
+        startRequests();
+    }
+
+    private List<Filter> getWatchFilters(Board board) {
+        List<Filter> watchFilters = new ArrayList<>();
+        for (Filter filter : filterEngine.getEnabledFilters(board)) {
+            if (filter.action == FilterEngine.FilterAction.WATCH.id) {
+                watchFilters.add(filter);
+            }
+        }
+        return watchFilters;
+    }
+
+    private BoardResult read(Board board, JsonReader reader, List<Filter> watchFilters, @Nullable String lastModified)
+            throws Exception {
+        Loadable loadable = Loadable.forCatalog(board);
+        ChanReaderProcessingQueue queue = new ChanReaderProcessingQueue(Collections.emptyList(), loadable);
+        board.site.chanReader().loadCatalog(reader, queue);
+
+        BoardResult result = new BoardResult(lastModified, watchFilters);
+        for (Post.Builder builder : queue.getToParse()) {
+            result.nos.add(builder.no);
+            if (watchFilters.isEmpty()) continue;
+
+            if (!TextUtils.isEmpty(builder.name)) {
+                builder.name = Parser.unescapeEntities(builder.name, false);
+            }
+            if (!TextUtils.isEmpty(builder.subject)) {
+                builder.subject = Parser.unescapeEntities(builder.subject, false);
+            }
+            builder.comment(toPlainText(builder.comment.toString()));
+            for (Filter filter : watchFilters) {
+                if (filterEngine.matches(filter, builder)) {
+                    result.watched.add(new WatchedThread(board, builder));
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String toPlainText(String html) {
+        String text = BREAK_PATTERN.matcher(html).replaceAll("\n");
+        return Parser.unescapeEntities(TAG_PATTERN.matcher(text).replaceAll(""), false);
+    }
+
+    interface SweepCallback {
+        /**
+         * @param watched    the threads that matched a watch filter, including ones already pinned or ignored
+         * @param checkedNos the numbers of all of the threads in the checked catalogs
+         */
+        void onSweepComplete(List<WatchedThread> watched, Set<Integer> checkedNos);
+    }
+
+    static class WatchedThread {
+        final Board board;
+        final int no;
+        final String title;
+        @Nullable
+        final HttpUrl thumbnailUrl;
+
+        private WatchedThread(Board board, Post.Builder op) {
+            this.board = board;
+            this.no = op.no;
+            if (!TextUtils.isEmpty(op.subject)) {
+                title = op.subject;
+            } else if (!TextUtils.isEmpty(op.comment)) {
+                title = op.comment.subSequence(0, Math.min(op.comment.length(), 200)).toString();
+            } else {
+                title = "/" + board.code + "/" + op.no;
+            }
+            PostImage image = op.images.isEmpty() ? null : op.images.get(0);
+            thumbnailUrl = image == null ? null : image.getThumbnailUrl();
+        }
+    }
+
+    private static class BoardResult {
+        @Nullable
+        private final String lastModified;
+        private final List<Filter> watchFilters;
+        private final Set<Integer> nos = new HashSet<>();
+        private final List<WatchedThread> watched = new ArrayList<>();
+
+        private BoardResult(@Nullable String lastModified, List<Filter> watchFilters) {
+            this.lastModified = lastModified;
+            this.watchFilters = watchFilters;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.manager;
+
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+
+import com.github.adamantcheese.chan.core.model.orm.Board;
+import com.github.adamantcheese.chan.ui.helper.BoardHelper;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The boards a filter applies to, parsed once from the filter's comma separated list of board unique ids into the board
+ * codes for each site. Matches the same boards as checking each id with {@link BoardHelper#matchesUniqueId}.
+ */
+class FilterBoardScope {
+    private final SparseArray<Set<String>> codesBySite = new SparseArray<>();
+
+    FilterBoardScope(@NonNull String boards) {
+        for (String uniqueId : boards.split(",")) {
+            if (!uniqueId.contains(":")) {
+                // old style id, from before sites had ids
+                add(0, uniqueId);
+            } else {
+                String[] splitted = uniqueId.split(":");
+                if (splitted.length != 2) continue;
+
+                try {
+                    add(Integer.parseInt(splitted[0]), splitted[1]);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+    }
+
+    private void add(int siteId, String code) {
+        Set<String> codes = codesBySite.get(siteId);
+        if (codes == null) {
+            codes = new HashSet<>();
+            codesBySite.put(siteId, codes);
+        }
+        codes.add(code);
+    }
+
+    boolean contains(Board board) {
+        Set<String> codes = codesBySite.get(board.siteId);
+        return codes != null && codes.contains(board.code);
+    }
+}
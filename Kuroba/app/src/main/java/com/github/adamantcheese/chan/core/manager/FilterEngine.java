@@ -106,6 +106,8 @@ public class FilterEngine {
     private final DatabaseFilterManager databaseFilterManager;
 
     private final Map<String, Pattern> patternCache = new HashMap<>();
+    private final Map<String, FilterBoardScope> scopeCache = new HashMap<>();
+    private volatile EnabledFilters enabledFilters;
 
     public FilterEngine(DatabaseFilterManager databaseFilterManager) {
         this.databaseFilterManager = databaseFilterManager;
@@ -124,17 +126,37 @@ public class FilterEngine {
     }
 
     public List<Filter> getEnabledFilters() {
-        List<Filter> filters = DatabaseUtils.runTask(databaseFilterManager.getFilters());
         List<Filter> enabled = new ArrayList<>();
-        for (Filter filter : filters) {
-            if (filter.enabled) {
-                enabled.add(filter);
-            }
+        for (Filter filter : getCurrentEnabledFilters().filters) {
+            enabled.add(filter.clone());
         }
-        Collections.sort(enabled, (o1, o2) -> o1.order - o2.order);
         return enabled;
     }
 
+    /**
+     * @param board the board to get filters for
+     * @return the enabled filters that apply to the board, in order; these are shared, so they must not be modified
+     */
+    @AnyThread
+    public List<Filter> getEnabledFilters(Board board) {
+        EnabledFilters current = getCurrentEnabledFilters();
+        String key = board.siteId + "/" + board.code;
+        synchronized (current.byBoard) {
+            List<Filter> filters = current.byBoard.get(key);
+            if (filters == null) {
+                List<Filter> applicable = new ArrayList<>();
+                for (Filter filter : current.filters) {
+                    if (matchesBoard(filter, board)) {
+                        applicable.add(filter);
+                    }
+                }
+                filters = Collections.unmodifiableList(applicable);
+                current.byBoard.put(key, filters);
+            }
+            return filters;
+        }
+    }
+
     public List<Filter> getAllFilters() {
         try {
             return DatabaseUtils.runTask(databaseFilterManager.getFilters());
@@ -144,9 +166,12 @@ public class FilterEngine {
         }
     }
 
+    /**
+     * @return the enabled watch filters, in order; these are shared, so they must not be modified
+     */
     public List<Filter> getEnabledWatchFilters() {
         List<Filter> watchFilters = new ArrayList<>();
-        for (Filter f : getEnabledFilters()) {
+        for (Filter f : getCurrentEnabledFilters().filters) {
             if (f.action == FilterAction.WATCH.id) {
                 watchFilters.add(f);
             }
@@ -154,17 +179,38 @@ public class FilterEngine {
         return watchFilters;
     }
 
+    private EnabledFilters getCurrentEnabledFilters() {
+        // read the count first, so a change made while querying makes the next call query again
+        int modificationCount = databaseFilterManager.getModificationCount();
+        EnabledFilters current = enabledFilters;
+        if (current == null || current.modificationCount != modificationCount) {
+            List<Filter> enabled = new ArrayList<>();
+            for (Filter filter : DatabaseUtils.runTask(databaseFilterManager.getFilters())) {
+                if (filter.enabled) {
+                    enabled.add(filter);
+                }
+            }
+            Collections.sort(enabled, (o1, o2) -> o1.order - o2.order);
+            current = new EnabledFilters(modificationCount, enabled);
+            enabledFilters = current;
+        }
+        return current;
+    }
+
     @AnyThread
     public boolean matchesBoard(Filter filter, Board board) {
         if (filter.allBoards || TextUtils.isEmpty(filter.boards)) {
             return true;
         } else {
-            for (String uniqueId : filter.boards.split(",")) {
-                if (BoardHelper.matchesUniqueId(board, uniqueId)) {
-                    return true;
+            FilterBoardScope scope;
+            synchronized (scopeCache) {
+                scope = scopeCache.get(filter.boards);
+                if (scope == null) {
+                    scope = new FilterBoardScope(filter.boards);
+                    scopeCache.put(filter.boards, scope);
                 }
             }
-            return false;
+            return scope.contains(board);
         }
     }
 
@@ -362,4 +408,19 @@ public class FilterEngine {
     public static String escapeRegex(String filthy) {
         return filterFilthyPattern.matcher(filthy).replaceAll("\\\\$1"); // Escape regex special characters with a \
     }
+
+    /**
+     * The enabled filters as of some state of the filter table, along with the ones that apply to each board, which
+     * are worked out as boards are asked for.
+     */
+    private static class EnabledFilters {
+        private final int modificationCount;
+        private final List<Filter> filters;
+        private final Map<String, List<Filter>> byBoard = new HashMap<>();
+
+        private EnabledFilters(int modificationCount, List<Filter> filters) {
+            this.modificationCount = modificationCount;
+            this.filters = filters;
+        }
+    }
 }
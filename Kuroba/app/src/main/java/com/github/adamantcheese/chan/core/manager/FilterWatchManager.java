@@ -16,15 +16,12 @@
  */
 package com.github.adamantcheese.chan.core.manager;
 
-import com.github.adamantcheese.chan.core.model.ChanThread;
-import com.github.adamantcheese.chan.core.model.Post;
+import com.github.adamantcheese.chan.core.di.NetModule.OkHttpClientWithUtils;
 import com.github.adamantcheese.chan.core.model.orm.Board;
 import com.github.adamantcheese.chan.core.model.orm.Filter;
 import com.github.adamantcheese.chan.core.model.orm.Loadable;
 import com.github.adamantcheese.chan.core.repository.BoardRepository;
 import com.github.adamantcheese.chan.core.settings.PersistableChanState;
-import com.github.adamantcheese.chan.core.site.loader.ChanThreadLoader;
-import com.github.adamantcheese.chan.ui.helper.PostHelper;
 import com.github.adamantcheese.chan.ui.helper.RefreshUIMessage;
 import com.github.adamantcheese.chan.utils.BackgroundUtils;
 import com.github.adamantcheese.chan.utils.Logger;
@@ -36,11 +33,9 @@ import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.github.adamantcheese.chan.ui.helper.RefreshUIMessage.Reason.FILTERS_CHANGED;
 
@@ -51,16 +46,13 @@ public class FilterWatchManager
     private final FilterEngine filterEngine;
     private final WatchManager watchManager;
     private final Gson gson;
+    private final CatalogSweeper catalogSweeper;
 
-    //filterLoaders keeps track of ChanThreadLoaders so they can be cleared correctly each alarm trigger
     //ignoredPosts keeps track of threads pinned by the filter manager and ignores them for future alarm triggers
     //this lets you unpin threads that are pinned by the filter pin manager and not have them come back
-    //note that ignoredPosts is currently only saved while the application is running and not in the database
-    private final Map<ChanThreadLoader, CatalogLoader> filterLoaders = new HashMap<>();
+    //it is trimmed down to the threads still in the checked catalogs after each alarm trigger, and saved if changed
     private final Set<Integer> ignoredPosts = Collections.synchronizedSet(new HashSet<>());
-    //keep track of how many boards we've checked and their posts so we can cut out things from the ignored posts
-    private final AtomicInteger numBoardsChecked = new AtomicInteger();
-    private final Set<Post> lastCheckedPosts = Collections.synchronizedSet(new HashSet<>());
+    private boolean ignoredPostsChanged = false;
     private boolean processing = false;
 
     public FilterWatchManager(
@@ -68,13 +60,15 @@ public class FilterWatchManager
             BoardRepository boardRepository,
             FilterEngine filterEngine,
             WatchManager watchManager,
-            Gson gson
+            Gson gson,
+            OkHttpClientWithUtils okHttpClient
     ) {
         this.wakeManager = wakeManager;
         this.boardRepository = boardRepository;
         this.filterEngine = filterEngine;
         this.watchManager = watchManager;
         this.gson = gson;
+        catalogSweeper = new CatalogSweeper(okHttpClient, filterEngine);
 
         if (!filterEngine.getEnabledWatchFilters().isEmpty()) {
             wakeManager.registerWakeable(this);
@@ -101,89 +95,59 @@ public class FilterWatchManager
     @Override
     public void onWake() {
         if (!processing) {
+            Set<Board> boards = getBoardsToCheck();
+            if (boards.isEmpty()) return;
+
             wakeManager.manageLock(true, FilterWatchManager.this);
             processing = true;
-            populateFilterLoaders();
-            if (!filterLoaders.keySet().isEmpty()) {
-                Logger.d(this,
-                        "Processing " + numBoardsChecked + " filter loaders, started at "
-                                + StringUtils.getCurrentTimeDefaultLocale()
-                );
-                for (ChanThreadLoader loader : filterLoaders.keySet()) {
-                    loader.requestData();
-                }
-            } else {
-                wakeManager.manageLock(false, FilterWatchManager.this);
-            }
+            Logger.d(this,
+                    "Checking " + boards.size() + " catalogs for watch filters, started at "
+                            + StringUtils.getCurrentTimeDefaultLocale()
+            );
+            catalogSweeper.sweep(boards, this::onSweepComplete);
         }
     }
 
-    private void populateFilterLoaders() {
-        for (Map.Entry<ChanThreadLoader, CatalogLoader> entry : filterLoaders.entrySet()) {
-            ChanLoaderManager.release(entry.getKey(), entry.getValue());
-        }
-        filterLoaders.clear();
-        //get a set of boards to background load
+    private Set<Board> getBoardsToCheck() {
         Set<Board> boards = new HashSet<>();
+        List<Filter> watchFilters = filterEngine.getEnabledWatchFilters();
         for (BoardRepository.SiteBoards siteBoard : boardRepository.getSaved()) {
             for (Board b : siteBoard.boards) {
-                for (Filter f : filterEngine.getEnabledWatchFilters()) {
+                for (Filter f : watchFilters) {
                     if (filterEngine.matchesBoard(f, b)) {
                         boards.add(b);
+                        break;
                     }
                 }
             }
         }
-        numBoardsChecked.set(boards.size());
-
-        for (Board b : boards) {
-            CatalogLoader backgroundLoader = new CatalogLoader();
-            ChanThreadLoader catalogLoader = ChanLoaderManager.obtain(Loadable.forCatalog(b), backgroundLoader);
-            filterLoaders.put(catalogLoader, backgroundLoader);
-        }
+        return boards;
     }
 
-    private class CatalogLoader
-            implements ChanThreadLoader.ChanLoaderCallback {
-        @Override
-        public void onChanLoaderData(ChanThread result) {
-            Logger.d(this, "onChanLoaderData() for /" + result.getLoadable().boardCode + "/");
-            for (Post p : result.getPosts()) {
-                if (p.filterWatch && !ignoredPosts.contains(p.no)) {
-                    final Loadable pinLoadable =
-                            Loadable.forThread(p.board, p.no, PostHelper.getTitle(p, result.getLoadable()));
-                    pinLoadable.thumbnailUrl = p.image() == null ? null : p.image().getThumbnailUrl();
-                    BackgroundUtils.runOnMainThread(() -> watchManager.createPin(pinLoadable));
-                    ignoredPosts.add(p.no);
-                }
+    private void onSweepComplete(List<CatalogSweeper.WatchedThread> watched, Set<Integer> checkedNos) {
+        for (CatalogSweeper.WatchedThread thread : watched) {
+            if (ignoredPosts.add(thread.no)) {
+                final Loadable pinLoadable = Loadable.forThread(thread.board, thread.no, thread.title);
+                pinLoadable.thumbnailUrl = thread.thumbnailUrl;
+                BackgroundUtils.runOnMainThread(() -> watchManager.createPin(pinLoadable));
+                ignoredPostsChanged = true;
             }
-            //add all posts to ignore
-            lastCheckedPosts.addAll(result.getPosts());
-            Logger.d(this, "Filter loader processed, left " + numBoardsChecked);
-            checkComplete();
         }
 
-        @Override
-        public void onChanLoaderError(ChanThreadLoader.ChanLoaderException error) {
-            Logger.d(this, "Filter loader failed, left " + numBoardsChecked);
-            checkComplete();
+        //threads that have fallen off of the catalogs won't come back, so there's no need to keep ignoring them
+        if (ignoredPosts.retainAll(checkedNos)) {
+            ignoredPostsChanged = true;
         }
-
-        private void checkComplete() {
-            if (numBoardsChecked.decrementAndGet() == 0) {
-                Set<Integer> lastCheckedPostNumbers = new HashSet<>();
-                for (Post post : lastCheckedPosts) {
-                    lastCheckedPostNumbers.add(post.no);
-                }
-                ignoredPosts.retainAll(lastCheckedPostNumbers);
-                PersistableChanState.filterWatchIgnored.setSync(gson.toJson(ignoredPosts));
-                lastCheckedPosts.clear();
-                processing = false;
-                Logger.d(this,
-                        "Finished processing filter loaders, ended at " + StringUtils.getCurrentTimeDefaultLocale()
-                );
-                wakeManager.manageLock(false, FilterWatchManager.this);
-            }
+        if (ignoredPostsChanged) {
+            ignoredPostsChanged = false;
+            PersistableChanState.filterWatchIgnored.set(gson.toJson(ignoredPosts));
         }
+
+        Logger.d(this, "Finished checking catalogs for watch filters, ended at "
+                + StringUtils.getCurrentTimeDefaultLocale());
+        BackgroundUtils.runOnMainThread(() -> {
+            processing = false;
+            wakeManager.manageLock(false, FilterWatchManager.this);
+        });
     }
 }
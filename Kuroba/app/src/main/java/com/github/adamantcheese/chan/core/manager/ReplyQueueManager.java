@@ -0,0 +1,485 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.manager;
+
+import androidx.annotation.Nullable;
+
+import com.github.adamantcheese.chan.core.database.DatabaseSavedReplyManager;
+import com.github.adamantcheese.chan.core.database.DatabaseUtils;
+import com.github.adamantcheese.chan.core.model.orm.Board;
+import com.github.adamantcheese.chan.core.model.orm.Loadable;
+import com.github.adamantcheese.chan.core.model.orm.SavedReply;
+import com.github.adamantcheese.chan.core.net.NetUtilsClasses.HttpCodeException;
+import com.github.adamantcheese.chan.core.repository.LastReplyRepository;
+import com.github.adamantcheese.chan.core.repository.SiteRepository;
+import com.github.adamantcheese.chan.core.settings.ChanSettings;
+import com.github.adamantcheese.chan.core.settings.PersistableChanState;
+import com.github.adamantcheese.chan.core.site.Site;
+import com.github.adamantcheese.chan.core.site.SiteActions;
+import com.github.adamantcheese.chan.core.site.http.Reply;
+import com.github.adamantcheese.chan.core.site.http.ReplyResponse;
+import com.github.adamantcheese.chan.ui.helper.ImagePickDelegate;
+import com.github.adamantcheese.chan.utils.BackgroundUtils;
+import com.github.adamantcheese.chan.utils.IOUtils;
+import com.github.adamantcheese.chan.utils.Logger;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+
+import static com.github.adamantcheese.chan.Chan.instance;
+import static com.github.adamantcheese.chan.ui.widget.CancellableToast.showToast;
+import static com.github.adamantcheese.chan.utils.AndroidUtils.getAppContext;
+import static com.github.adamantcheese.chan.utils.BackgroundUtils.backgroundScheduledService;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static kotlin.random.Random.Default;
+
+/**
+ * Holds replies that couldn't be sent right away, either because the board's cooldown hasn't elapsed yet or because
+ * the network failed while posting. Queued replies are persisted (including a copy of any attached file) so they
+ * survive process death, and are sent one at a time as soon as {@link LastReplyRepository#getTimeUntilDraftPostable}
+ * allows it. Failures where the reply provably never reached the site are retried with an exponential backoff; a post
+ * isn't idempotent, so any other failure (the reply may have been posted anyway) and anything the site itself rejects
+ * (including an expired captcha) puts the reply on hold, to be handed back to the reply layout via
+ * {@link #takeHeld(Loadable)}.
+ * <p>
+ * All queue mutations happen on the main thread.
+ */
+public class ReplyQueueManager
+        implements WakeManager.Wakeable, SiteActions.PostListener {
+    private static final long BASE_RETRY_DELAY = SECONDS.toMillis(5);
+    private static final long MAX_RETRY_DELAY = MINUTES.toMillis(5);
+    private static final int MAX_ATTEMPTS = 8;
+    private static final String QUEUE_DIR_NAME = "reply_queue";
+
+    private final WakeManager wakeManager;
+    private final SiteRepository siteRepository;
+    private final Gson gson;
+
+    private final List<QueuedReply> queue = new ArrayList<>();
+    private final File queueDir;
+
+    private QueuedReply submitting;
+    private ScheduledFuture<?> scheduled;
+
+    public ReplyQueueManager(WakeManager wakeManager, SiteRepository siteRepository, Gson gson) {
+        this.wakeManager = wakeManager;
+        this.siteRepository = siteRepository;
+        this.gson = gson;
+
+        queueDir = new File(getAppContext().getFilesDir(), QUEUE_DIR_NAME);
+
+        List<QueuedReply> previousQueue = null;
+        try {
+            previousQueue = gson.fromJson(PersistableChanState.replyQueue.get(),
+                    new TypeToken<List<QueuedReply>>() {}.getType()
+            );
+        } catch (Exception e) {
+            Logger.e(this, "Failed to restore the reply queue", e);
+        }
+        if (previousQueue != null) queue.addAll(previousQueue);
+
+        if (hasPending()) {
+            // sites and boards aren't ready yet during injection, so wait a little before the first attempt
+            wakeManager.registerWakeable(this);
+            schedule(SECONDS.toMillis(5));
+        }
+    }
+
+    /**
+     * Moves the loadable's draft into the queue and resets the draft. The attached file is copied, as the picked file
+     * is reused by the next pick.
+     *
+     * @return false if the draft couldn't be queued
+     */
+    public boolean enqueue(Loadable loadable) {
+        BackgroundUtils.ensureMainThread();
+        Reply draft = loadable.draft;
+        QueuedReply queuedReply = new QueuedReply();
+        queuedReply.id = UUID.randomUUID().toString();
+        queuedReply.siteId = loadable.siteId;
+        queuedReply.boardCode = loadable.boardCode;
+        queuedReply.mode = loadable.mode;
+        queuedReply.no = loadable.no;
+        queuedReply.title = loadable.title;
+        queuedReply.queuedTime = System.currentTimeMillis();
+        queuedReply.nextAttemptTime = queuedReply.queuedTime;
+        queuedReply.captchaChallenge = draft.captchaChallenge;
+        queuedReply.captchaResponse = draft.captchaResponse;
+        queuedReply.name = draft.name;
+        queuedReply.options = draft.options;
+        queuedReply.flag = draft.flag;
+        queuedReply.subject = draft.subject;
+        queuedReply.comment = draft.comment;
+        queuedReply.spoilerImage = draft.spoilerImage;
+        queuedReply.password = draft.password;
+        queuedReply.fileName = draft.fileName;
+
+        if (draft.file != null) {
+            File copy = new File(queueDir, queuedReply.id);
+            try (InputStream is = new FileInputStream(draft.file)) {
+                if (!queueDir.exists() && !queueDir.mkdirs()) {
+                    throw new IOException("Could not create the reply queue directory");
+                }
+                IOUtils.writeToFile(is, copy, -1);
+            } catch (Exception e) {
+                Logger.e(this, "Failed to copy the attached file for a queued reply", e);
+                return false;
+            }
+            queuedReply.filePath = copy.getAbsolutePath();
+        }
+
+        queue.add(queuedReply);
+        persist();
+        wakeManager.registerWakeable(this);
+        scheduleNext();
+
+        draft.reset(true);
+        return true;
+    }
+
+    /**
+     * If a queued reply for this loadable was put on hold (rejected by the site, out of retries or needing a fresh
+     * captcha), remove it from the queue and restore it into the loadable's draft, so the user can fix and resend it.
+     * Nothing is restored over a draft the user has already started; the reply stays on hold until the draft is empty.
+     * <p>
+     * The queue's copy of the attached file is moved back to where picked files go, so it's cleaned up like any other
+     * picked file once the draft is sent or the attachment removed.
+     *
+     * @return why the reply was put on hold, empty if that's unknown; or null if no draft was restored from the queue
+     */
+    @Nullable
+    public String takeHeld(Loadable loadable) {
+        BackgroundUtils.ensureMainThread();
+        Reply draft = loadable.draft;
+        if (!draft.comment.trim().isEmpty() || !draft.subject.trim().isEmpty() || draft.file != null) {
+            return null;
+        }
+
+        Iterator<QueuedReply> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            QueuedReply queuedReply = iterator.next();
+            if (queuedReply.held && queuedReply.matches(loadable)) {
+                iterator.remove();
+                if (queuedReply.filePath != null) {
+                    moveToPickedFile(queuedReply);
+                }
+                queuedReply.restoreInto(draft);
+                persist();
+                return queuedReply.heldReason == null ? "" : queuedReply.heldReason;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if a reply for this loadable is on hold, waiting for the user to fix and resend it
+     */
+    public boolean hasHeld(Loadable loadable) {
+        for (QueuedReply queuedReply : queue) {
+            if (queuedReply.held && queuedReply.matches(loadable)) return true;
+        }
+        return false;
+    }
+
+    private void moveToPickedFile(QueuedReply queuedReply) {
+        File copy = new File(queuedReply.filePath);
+        File picked = new File(getAppContext().getCacheDir(), ImagePickDelegate.PICKED_FILE_NAME);
+        try (InputStream is = new FileInputStream(copy)) {
+            IOUtils.writeToFile(is, picked, -1);
+            queuedReply.filePath = picked.getAbsolutePath();
+        } catch (Exception e) {
+            Logger.e(this, "Failed to restore the attached file of a held reply", e);
+            queuedReply.filePath = null;
+            queuedReply.fileName = "";
+        }
+        //noinspection ResultOfMethodCallIgnored
+        copy.delete();
+    }
+
+    @Override
+    public void onWake() {
+        // the app may have been killed with replies still queued; the wake alarm gives us a chance to send them
+        scheduleNext();
+    }
+
+    private boolean hasPending() {
+        for (QueuedReply queuedReply : queue) {
+            if (!queuedReply.held) return true;
+        }
+        return false;
+    }
+
+    private void scheduleNext() {
+        if (submitting != null) return;
+        QueuedReply next = null;
+        for (QueuedReply queuedReply : queue) {
+            if (!queuedReply.held && (next == null || queuedReply.nextAttemptTime < next.nextAttemptTime)) {
+                next = queuedReply;
+            }
+        }
+        if (next == null) {
+            wakeManager.unregisterWakeable(this);
+            return;
+        }
+
+        long delay = Math.max(0, next.nextAttemptTime - System.currentTimeMillis());
+        Loadable loadable = next.toLoadable(siteRepository);
+        if (loadable != null) {
+            // getTimeUntilDraftPostable is in seconds, and negative when postable
+            delay = Math.max(delay, SECONDS.toMillis(LastReplyRepository.getTimeUntilDraftPostable(loadable) + 1));
+        }
+        schedule(delay);
+    }
+
+    private void schedule(long delay) {
+        if (scheduled != null) scheduled.cancel(false);
+        scheduled = backgroundScheduledService.schedule(() -> BackgroundUtils.runOnMainThread(this::submitNext),
+                delay,
+                MILLISECONDS
+        );
+    }
+
+    private void submitNext() {
+        scheduled = null;
+        if (submitting != null) return;
+
+        QueuedReply next = null;
+        for (QueuedReply queuedReply : queue) {
+            if (!queuedReply.held && (next == null || queuedReply.nextAttemptTime < next.nextAttemptTime)) {
+                next = queuedReply;
+            }
+        }
+        if (next == null) {
+            scheduleNext();
+            return;
+        }
+
+        Loadable loadable = next.toLoadable(siteRepository);
+        if (loadable == null) {
+            Logger.w(this, "Dropping queued reply for a site or board that no longer exists");
+            remove(next);
+            scheduleNext();
+            return;
+        }
+
+        if (next.nextAttemptTime > System.currentTimeMillis()
+                || LastReplyRepository.getTimeUntilDraftPostable(loadable) > 0L) {
+            scheduleNext();
+            return;
+        }
+
+        submitting = next;
+        next.attempts++;
+        Logger.d(this, "Submitting queued reply, attempt " + next.attempts);
+        loadable.site.actions().post(loadable, this);
+    }
+
+    @Override
+    public void onPostComplete(ReplyResponse replyResponse) {
+        QueuedReply queuedReply = submitting;
+        submitting = null;
+        if (queuedReply == null) return;
+
+        Loadable originatingLoadable = replyResponse.originatingLoadable;
+        if (replyResponse.posted) {
+            LastReplyRepository.putLastReply(originatingLoadable);
+            SavedReply savedReply = SavedReply.fromBoardNoPassword(originatingLoadable.board,
+                    replyResponse.postNo,
+                    originatingLoadable.draft.password
+            );
+            DatabaseUtils.runTaskAsync(instance(DatabaseSavedReplyManager.class).saveReply(savedReply));
+            if (ChanSettings.postPinThread.get() && originatingLoadable.isThreadMode()) {
+                instance(WatchManager.class).createPin(Loadable.forThread(originatingLoadable.board,
+                        originatingLoadable.no,
+                        originatingLoadable.title
+                ));
+            }
+            remove(queuedReply);
+            showToast(getAppContext(), "Queued reply posted to " + originatingLoadable.toShortestString());
+        } else {
+            // the captcha expired or the site refused the post outright, only the user can resolve this
+            hold(queuedReply,
+                    replyResponse.requireAuthentication
+                            ? "The queued reply needs a new captcha."
+                            : "The queued reply was rejected" + (replyResponse.errorMessage != null
+                                    ? ": " + replyResponse.errorMessage
+                                    : ".")
+            );
+        }
+        scheduleNext();
+    }
+
+    @Override
+    public void onUploadingProgress(int percent) {}
+
+    @Override
+    public void onPostError(Exception exception) {
+        QueuedReply queuedReply = submitting;
+        submitting = null;
+        if (queuedReply == null) return;
+
+        Logger.e(this, "Queued reply failed to post", exception);
+        if (!neverReachedServer(exception)) {
+            hold(queuedReply,
+                    "The queued reply may have been posted anyway, check the thread before sending it again."
+            );
+        } else if (queuedReply.attempts >= MAX_ATTEMPTS) {
+            hold(queuedReply, "The queued reply failed to post " + queuedReply.attempts + " times.");
+        } else {
+            long backoff = Math.min(MAX_RETRY_DELAY, BASE_RETRY_DELAY << (queuedReply.attempts - 1));
+            // jitter so several queued replies don't all hammer the site the instant the connection comes back
+            backoff += Default.nextLong(backoff / 4 + 1);
+            if (exception instanceof HttpCodeException) {
+                backoff = Math.max(backoff, ((HttpCodeException) exception).retryAfter);
+            }
+            queuedReply.nextAttemptTime = System.currentTimeMillis() + backoff;
+            persist();
+        }
+        scheduleNext();
+    }
+
+    /**
+     * A post isn't idempotent: a timeout or a server error after the request was sent often means the site took the
+     * post anyway, so sending it again would post it twice. Only the failures where the request can't have been
+     * handled are safe to send again without asking the user.
+     *
+     * @return true if the post failed before the request reached the site, or the site turned it away unhandled (a
+     * 503 with a Retry-After header)
+     */
+    public static boolean neverReachedServer(Exception exception) {
+        if (exception instanceof HttpCodeException) {
+            HttpCodeException httpCodeException = (HttpCodeException) exception;
+            return httpCodeException.code == 503 && httpCodeException.retryAfter >= 0;
+        }
+        if (exception instanceof SocketTimeoutException) {
+            // a timeout while connecting; read and write timeouts happen after the request may have been sent
+            String message = exception.getMessage();
+            return message != null && message.toLowerCase(Locale.ENGLISH).contains("connect");
+        }
+        return exception instanceof UnknownHostException
+                || exception instanceof ConnectException
+                || exception instanceof NoRouteToHostException;
+    }
+
+    private void hold(QueuedReply queuedReply, String reason) {
+        Logger.w(this, "Holding queued reply: " + reason);
+        queuedReply.held = true;
+        queuedReply.heldReason = reason;
+        persist();
+        showToast(getAppContext(), reason + " It has been restored to the reply box of its thread.");
+    }
+
+    private void remove(QueuedReply queuedReply) {
+        queue.remove(queuedReply);
+        if (queuedReply.filePath != null) {
+            //noinspection ResultOfMethodCallIgnored
+            new File(queuedReply.filePath).delete();
+        }
+        persist();
+    }
+
+    private void persist() {
+        PersistableChanState.replyQueue.setSync(gson.toJson(queue));
+    }
+
+    /**
+     * A serializable snapshot of a {@link Reply} and the loadable it was meant for.
+     */
+    private static class QueuedReply {
+        public String id;
+
+        public int siteId;
+        public String boardCode;
+        public int mode;
+        public int no;
+        public String title;
+
+        public long queuedTime;
+        public long nextAttemptTime;
+        public int attempts;
+        public boolean held;
+        public String heldReason;
+
+        public String captchaChallenge;
+        public String captchaResponse;
+        public String filePath;
+        public String fileName;
+        public String name;
+        public String options;
+        public String flag;
+        public String subject;
+        public String comment;
+        public boolean spoilerImage;
+        public String password;
+
+        public boolean matches(Loadable loadable) {
+            return siteId == loadable.siteId && mode == loadable.mode && boardCode.equals(loadable.boardCode) && (
+                    loadable.isCatalogMode() || no == loadable.no);
+        }
+
+        /**
+         * @return a private copy of the target loadable with this reply as its draft, or null if the site or board
+         * is gone
+         */
+        @Nullable
+        public Loadable toLoadable(SiteRepository siteRepository) {
+            Site site = siteRepository.forId(siteId);
+            if (site == null) return null;
+            Board board = site.board(boardCode);
+            if (board == null) return null;
+            Loadable loadable = mode == Loadable.Mode.CATALOG
+                    ? Loadable.forCatalog(board)
+                    : Loadable.forThread(board, no, title, false);
+            // the draft of a clone is independent from the one the user is currently editing
+            loadable = loadable.clone();
+            loadable.site = site;
+            loadable.board = board;
+            restoreInto(loadable.draft);
+            return loadable;
+        }
+
+        public void restoreInto(Reply draft) {
+            draft.captchaChallenge = held ? null : captchaChallenge;
+            draft.captchaResponse = held ? null : captchaResponse;
+            draft.file = filePath == null ? null : new File(filePath);
+            draft.fileName = fileName;
+            draft.name = name;
+            draft.options = options;
+            draft.flag = flag;
+            draft.subject = subject;
+            draft.comment = comment;
+            draft.spoilerImage = spoilerImage;
+            draft.password = password;
+        }
+    }
+}
@@ -11,6 +11,7 @@ import com.github.adamantcheese.chan.ui.layout.crashlogs.CrashLog
 import com.github.adamantcheese.chan.utils.BackgroundUtils
 import com.github.adamantcheese.chan.utils.Logger
 import com.github.adamantcheese.chan.utils.StringUtils.getCurrentDateAndTimeUTC
+import com.github.adamantcheese.chan.utils.Tracer
 import com.google.gson.Gson
 import com.google.gson.annotations.SerializedName
 import io.reactivex.Completable
@@ -167,6 +168,10 @@ class ReportManager(
 
                 appendLine("=== SETTINGS ===")
                 append(settings)
+                append("\n\n")
+
+                appendLine("=== TIMINGS ===")
+                append(Tracer.getReport())
             }
 
             newCrashLog.writeText(resultString)
@@ -67,6 +67,7 @@ import static com.github.adamantcheese.chan.utils.AndroidUtils.getAppContext;
 import static com.github.adamantcheese.chan.utils.AndroidUtils.getJobScheduler;
 import static com.github.adamantcheese.chan.utils.AndroidUtils.postToEventBus;
 import static com.github.adamantcheese.chan.utils.BackgroundUtils.isInForeground;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
@@ -112,12 +113,18 @@ public class WatchManager
     private static final int MESSAGE_UPDATE = 1;
 
     private static final long STATE_UPDATE_DEBOUNCE_TIME_MS = 1000L;
+    // changes to pins within this long of each other are written to the database together
+    private static final long PIN_FLUSH_DELAY_MS = SECONDS.toMillis(5);
 
     private final DatabasePinManager databasePinManager;
     private final WakeManager wakeManager;
 
     private IntervalType currentInterval = NONE;
     private final List<Pin> pins;
+    // indexes into pins, both guarded by synchronizing on pins
+    private final Map<Integer, Pin> pinsByLoadableId = new HashMap<>();
+    private final Map<Loadable, Pin> pinsByLoadable = new HashMap<>();
+    private boolean pinFlushScheduled;
     private final Debouncer stateUpdateDebouncer;
 
     private final Map<Pin, PinWatcher> pinWatchers = new HashMap<>();
@@ -134,6 +141,10 @@ public class WatchManager
 
         pins = Collections.synchronizedList(DatabaseUtils.runTask(databasePinManager.getPins()));
         Collections.sort(pins);
+        for (Pin pin : pins) {
+            pin.setPersisted(pin.clone());
+            indexPin(pin);
+        }
 
         //register this manager to watch for setting changes and post pin changes
         EventBus.getDefault().register(this);
@@ -168,10 +179,8 @@ public class WatchManager
     public boolean createPin(Pin pin, boolean sendBroadcast) {
         synchronized (pins) {
             // No duplicates
-            for (Pin e : pins) {
-                if (e.loadable.equals(pin.loadable)) {
-                    return false;
-                }
+            if (pinsByLoadable.containsKey(pin.loadable)) {
+                return false;
             }
 
             // Default order is 0.
@@ -183,6 +192,8 @@ public class WatchManager
             }
             pins.add(pin);
             DatabaseUtils.runTask(databasePinManager.createPin(pin));
+            pin.setPersisted(pin.clone());
+            indexPin(pin);
 
             // apply orders.
             Collections.sort(pins);
@@ -199,19 +210,16 @@ public class WatchManager
 
     @Nullable
     public Pin getPinByLoadable(Loadable loadable) {
-        for (Pin pin : pins) {
-            if (pin.loadable.equals(loadable)) {
-                return pin;
-            }
+        synchronized (pins) {
+            return pinsByLoadable.get(loadable);
         }
-
-        return null;
     }
 
     public void deletePin(Pin pin) {
         synchronized (pins) {
             int index = pins.indexOf(pin);
             pins.remove(pin);
+            unindexPin(pin);
 
             destroyPinWatcher(pin);
 
@@ -230,6 +238,7 @@ public class WatchManager
         synchronized (pins) {
             for (Pin pin : pinList) {
                 pins.remove(pin);
+                unindexPin(pin);
                 destroyPinWatcher(pin);
             }
 
@@ -238,7 +247,6 @@ public class WatchManager
             // Update the new orders
             Collections.sort(pins);
             reorder();
-            updatePinsInDatabase();
 
             updateState();
             postToEventBus(new PinMessages.PinsChangedMessage());
@@ -251,7 +259,7 @@ public class WatchManager
 
     public void updatePin(Pin pin, boolean updateState) {
         updatePinsInternal(Collections.singletonList(pin));
-        DatabaseUtils.runTask(databasePinManager.updatePin(pin));
+        updatePinsInDatabase();
 
         if (updateState) {
             updateState();
@@ -275,36 +283,25 @@ public class WatchManager
 
     private void updatePinsInternal(List<Pin> updatedPins) {
         synchronized (pins) {
-            Set<Pin> foundPins = new HashSet<>();
-
             for (Pin updatedPin : updatedPins) {
-                for (int i = 0; i < pins.size(); i++) {
-                    if (pins.get(i).loadable.id == updatedPin.loadable.id) {
-                        pins.set(i, updatedPin);
-                        foundPins.add(updatedPin);
-                        break;
-                    }
-                }
-            }
+                Pin existing = pinsByLoadableId.get(updatedPin.loadable.id);
+                if (existing == updatedPin) continue;
 
-            for (Pin updatedPin : updatedPins) {
-                if (!foundPins.contains(updatedPin)) {
+                if (existing == null) {
                     pins.add(updatedPin);
+                } else {
+                    pins.set(pins.indexOf(existing), updatedPin);
+                    unindexPin(existing);
                 }
+                indexPin(updatedPin);
             }
         }
     }
 
     public Pin findPinByLoadableId(int loadableId) {
         synchronized (pins) {
-            for (Pin pin : pins) {
-                if (pin.loadable.id == loadableId) {
-                    return pin;
-                }
-            }
+            return pinsByLoadableId.get(loadableId);
         }
-
-        return null;
     }
 
     public Pin findPinById(int id) {
@@ -354,6 +351,7 @@ public class WatchManager
         pin.watching = !pin.watching;
 
         updateState();
+        updatePinsInDatabase();
         postToEventBus(new PinMessages.PinChangedMessage(pin));
     }
 
@@ -381,7 +379,8 @@ public class WatchManager
     public void onEvent(Chan.ForegroundChangedMessage message) {
         updateState();
         if (!message.inForeground) {
-            updatePinsInDatabase();
+            // the process may be killed any time from here on, so don't wait for a scheduled flush
+            flushPins();
         }
     }
 
@@ -450,6 +449,10 @@ public class WatchManager
         }
     }
 
+    /**
+     * Synchronize on the list when using it. It can be reordered in place, but adding and removing pins has to go
+     * through this class, which keeps them indexed.
+     */
     public List<Pin> getAllPins() {
         return pins; // TODO see if synchronization is needed here
     }
@@ -480,14 +483,52 @@ public class WatchManager
         }
     }
 
+    private void indexPin(Pin pin) {
+        pinsByLoadableId.put(pin.loadable.id, pin);
+        pinsByLoadable.put(pin.loadable, pin);
+    }
+
+    private void unindexPin(Pin pin) {
+        pinsByLoadableId.remove(pin.loadable.id);
+        pinsByLoadable.remove(pin.loadable);
+    }
+
+    /**
+     * Schedules the pins that changed to be written to the database, if that isn't already scheduled. Changes made until
+     * then are written along with them, so a burst of updates ends up as a single write.
+     */
     private void updatePinsInDatabase() {
-        List<Pin> clonedPins = new ArrayList<>();
         synchronized (pins) {
+            if (pinFlushScheduled) return;
+            pinFlushScheduled = true;
+        }
+        BackgroundUtils.backgroundScheduledService.schedule(this::flushPins, PIN_FLUSH_DELAY_MS, MILLISECONDS);
+    }
+
+    /**
+     * Writes the pins that changed since they were last written to the database, in one transaction.
+     */
+    private void flushPins() {
+        List<Pin> dirtyPins = new ArrayList<>();
+        List<Pin> written = new ArrayList<>();
+        synchronized (pins) {
+            pinFlushScheduled = false;
             for (Pin pin : pins) {
-                clonedPins.add(pin.clone());
+                if (pin.isDirty()) {
+                    dirtyPins.add(pin);
+                    written.add(pin.clone());
+                }
             }
         }
-        DatabaseUtils.runTaskAsync(databasePinManager.updatePins(clonedPins));
+        if (written.isEmpty()) return;
+
+        DatabaseUtils.runTaskAsync(databasePinManager.updatePins(written), result -> {
+            synchronized (pins) {
+                for (int i = 0; i < dirtyPins.size(); i++) {
+                    dirtyPins.get(i).setPersisted(written.get(i));
+                }
+            }
+        });
     }
 
     private boolean isTimerEnabled() {
@@ -709,6 +750,7 @@ public class WatchManager
 
     private void pinWatcherUpdated(PinWatcher pinWatcher) {
         updateState();
+        updatePinsInDatabase();
         postToEventBus(new PinMessages.PinChangedMessage(pinWatcher.pin));
 
         synchronized (WatchManager.this) {
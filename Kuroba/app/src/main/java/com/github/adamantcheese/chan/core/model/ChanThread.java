@@ -46,10 +46,12 @@ public class ChanThread {
     private List<Post> posts;
     private boolean closed = false;
     private boolean archived = false;
+    private final PostSearchIndex searchIndex = new PostSearchIndex();
 
     public ChanThread(Loadable loadable, List<Post> posts) {
         this.loadable = loadable;
         this.posts = Collections.unmodifiableList(new ArrayList<>(posts));
+        searchIndex.update(this.posts);
     }
 
     public synchronized int getImagesCount() {
@@ -82,6 +84,11 @@ public class ChanThread {
 
     public synchronized void setNewPosts(List<Post> newPosts) {
         this.posts = Collections.unmodifiableList(new ArrayList<>(newPosts));
+        searchIndex.update(this.posts);
+    }
+
+    public PostSearchIndex getSearchIndex() {
+        return searchIndex;
     }
 
     /**
@@ -27,7 +27,9 @@ import androidx.annotation.Nullable;
 import com.github.adamantcheese.chan.R;
 import com.github.adamantcheese.chan.core.settings.ChanSettings;
 import com.github.adamantcheese.chan.ui.cell.PostCell;
+import com.github.adamantcheese.chan.ui.text.ThemedSpan;
 import com.github.adamantcheese.chan.ui.theme.Theme;
+import com.github.adamantcheese.chan.ui.theme.ThemeHelper;
 
 import java.util.Objects;
 
@@ -44,7 +46,8 @@ import static com.github.adamantcheese.chan.utils.AndroidUtils.getContrastColor;
  * and handled if it was a PostLinkable.
  */
 public class PostLinkable
-        extends ClickableSpan {
+        extends ClickableSpan
+        implements ThemedSpan {
     public enum Type {
         QUOTE, //key: the quote text, value: Integer, post num in text
         LINK, //key: the link text, value: String, the link text
@@ -55,9 +58,10 @@ public class PostLinkable
         ARCHIVE //key: the deadlink text or the `href` for the html tag, value: ThreadLink OR ResolveLink, matching the board, opNo, and postNo or board and postNo, respectively
     }
 
-    private final float blendRatio;
-    private final int quoteColor;
-    private final int spoilerColor;
+    private Theme theme;
+    private float blendRatio;
+    private int quoteColor;
+    private int spoilerColor;
     public final CharSequence key;
     public final Object value;
     public final Type type;
@@ -65,13 +69,27 @@ public class PostLinkable
     private boolean spoilerVisible = ChanSettings.revealTextSpoilers.get();
     private int markedNo = -1;
 
+    /**
+     * Creates a linkable whose colors are resolved when it's bound, see {@link ThemedSpan}.
+     */
+    public PostLinkable(CharSequence key, Object value, Type type) {
+        this.key = key;
+        this.value = value;
+        this.type = type;
+    }
+
     public PostLinkable(@NonNull Theme theme, CharSequence key, Object value, Type type) {
+        this(key, value, type);
+        applyTheme(theme);
+    }
+
+    @Override
+    public void applyTheme(@NonNull Theme theme) {
+        if (this.theme == theme) return;
         blendRatio = getAttrFloat(theme.resValue, R.attr.highlight_linkable_blend);
         quoteColor = getAttrColor(theme.resValue, R.attr.post_quote_color);
         spoilerColor = getAttrColor(theme.resValue, R.attr.post_spoiler_color);
-        this.key = key;
-        this.value = value;
-        this.type = type;
+        this.theme = theme;
     }
 
     @Override
@@ -85,6 +103,9 @@ public class PostLinkable
 
     @Override
     public void updateDrawState(@NonNull TextPaint ds) {
+        if (theme == null) {
+            applyTheme(ThemeHelper.getTheme());
+        }
         if (type != SPOILER) {
             ds.setColor(type == LINK ? ds.linkColor : quoteColor);
             ds.setUnderlineText(true);
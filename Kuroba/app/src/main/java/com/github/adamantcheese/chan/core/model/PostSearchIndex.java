@@ -0,0 +1,210 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.model;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A trigram index over the searchable text of a thread's posts (comment, subject, name and image filenames), kept up
+ * to date as posts come in, so that searching doesn't have to go through and lowercase every post on each keystroke.
+ * <p>
+ * A search is a case insensitive substring match, same as before. The index is only used to find the posts that could
+ * contain the query (the ones with the query's rarest trigram), which are then checked against their lowercased text.
+ * Posts are tracked by number, and a post is only indexed again if its text changed, not just because a reload handed
+ * over a new instance of it; its old postings are removed first. Searching never checks the posts for changes, so
+ * whatever changes a post's text (embedding, for example) passes it to {@link #update} again.
+ */
+public class PostSearchIndex {
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    /**
+     * Indexes the posts that aren't indexed yet, or whose text has changed since they were.
+     */
+    public synchronized void update(List<Post> posts) {
+        for (Post post : posts) {
+            Entry entry = entries.get(post.no);
+            if (entry == null || entry.isStale(post)) {
+                index(post);
+            }
+        }
+    }
+
+    /**
+     * @param query the text to look for, matched case insensitively
+     * @return the numbers of the indexed posts that contain the query
+     */
+    public synchronized Set<Integer> search(@NonNull String query) {
+        String needle = query.toLowerCase(Locale.ENGLISH);
+        Set<Integer> result = new HashSet<>();
+        if (needle.length() < 3) {
+            for (Entry entry : entries.values()) {
+                if (entry.text.contains(needle)) {
+                    result.add(entry.no);
+                }
+            }
+            return result;
+        }
+
+        // the post must contain every trigram of the query, so the rarest one gives the smallest set to check
+        Postings rarest = null;
+        for (int i = 0; i + 3 <= needle.length(); i++) {
+            Postings candidates = postings.get(trigram(needle, i));
+            if (candidates == null) return result;
+            if (rarest == null || candidates.size < rarest.size) {
+                rarest = candidates;
+            }
+        }
+
+        for (int i = 0; i < rarest.size; i++) {
+            Entry entry = entries.get(rarest.nos[i]);
+            if (entry != null && entry.text.contains(needle)) {
+                result.add(entry.no);
+            }
+        }
+        return result;
+    }
+
+    private void index(Post post) {
+        Entry old = entries.remove(post.no);
+        if (old != null) {
+            for (long trigram : old.trigrams) {
+                Postings list = postings.get(trigram);
+                if (list != null && list.remove(post.no) && list.size == 0) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+
+        StringBuilder text = new StringBuilder(post.comment.length() + 64);
+        text.append(post.comment);
+        appendField(text, post.subject);
+        appendField(text, post.name);
+        for (PostImage image : post.images) {
+            appendField(text, image.filename);
+        }
+        String lowercase = text.toString().toLowerCase(Locale.ENGLISH);
+
+        Set<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= lowercase.length(); i++) {
+            trigrams.add(trigram(lowercase, i));
+        }
+        long[] indexed = new long[trigrams.size()];
+        int i = 0;
+        for (Long trigram : trigrams) {
+            Postings list = postings.get(trigram);
+            if (list == null) {
+                list = new Postings();
+                postings.put(trigram, list);
+            }
+            list.add(post.no);
+            indexed[i++] = trigram;
+        }
+        entries.put(post.no, new Entry(post, lowercase, indexed));
+    }
+
+    private static void appendField(StringBuilder text, String field) {
+        if (field != null) {
+            text.append(FIELD_SEPARATOR).append(field);
+        }
+    }
+
+    private static long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    private static boolean sameText(CharSequence a, CharSequence b) {
+        if (a == b) return true;
+        if (a == null || b == null || a.length() != b.length()) return false;
+        for (int i = 0; i < a.length(); i++) {
+            if (a.charAt(i) != b.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static class Entry {
+        private final int no;
+        private final String text;
+        private final long[] trigrams;
+        // what the text was made from, to tell if a post has changed without building the text again
+        private final CharSequence comment;
+        private final String subject;
+        private final String name;
+        private final String[] filenames;
+
+        private Entry(Post post, String text, long[] trigrams) {
+            no = post.no;
+            this.text = text;
+            this.trigrams = trigrams;
+            comment = post.comment;
+            subject = post.subject;
+            name = post.name;
+            filenames = filenames(post);
+        }
+
+        private boolean isStale(Post post) {
+            return !sameText(comment, post.comment)
+                    || !sameText(subject, post.subject)
+                    || !sameText(name, post.name)
+                    || !Arrays.equals(filenames, filenames(post));
+        }
+
+        private static String[] filenames(Post post) {
+            String[] filenames = new String[post.images.size()];
+            for (int i = 0; i < filenames.length; i++) {
+                filenames[i] = post.images.get(i).filename;
+            }
+            return filenames;
+        }
+    }
+
+    private static class Postings {
+        private int[] nos = new int[4];
+        private int size;
+
+        private void add(int no) {
+            if (size == nos.length) {
+                nos = Arrays.copyOf(nos, size * 2);
+            }
+            nos[size++] = no;
+        }
+
+        /**
+         * @return true if the number was in the list
+         */
+        private boolean remove(int no) {
+            for (int i = 0; i < size; i++) {
+                if (nos[i] == no) {
+                    System.arraycopy(nos, i + 1, nos, i, size - i - 1);
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
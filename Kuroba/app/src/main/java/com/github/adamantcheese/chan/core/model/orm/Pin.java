@@ -63,6 +63,10 @@ public class Pin
     //local field for pin highlighting consistency; don't put this in the database
     public boolean drawerHighlight = false;
 
+    //local field for what was last written, to tell if this needs writing again; don't put this in the database
+    @Nullable
+    private Pin persisted;
+
     public Pin() {
     }
 
@@ -104,6 +108,23 @@ public class Pin
         }
     }
 
+    /**
+     * @param written a copy of this pin, as it was written to the database
+     */
+    public void setPersisted(@NonNull Pin written) {
+        persisted = written;
+    }
+
+    /**
+     * @return true if any of the database fields changed since this pin was last written, or it was never written
+     */
+    public boolean isDirty() {
+        return persisted == null || persisted.loadable != loadable || persisted.watching != watching
+                || persisted.watchLastCount != watchLastCount || persisted.watchNewCount != watchNewCount
+                || persisted.quoteLastCount != quoteLastCount || persisted.quoteNewCount != quoteNewCount
+                || persisted.isError != isError || persisted.order != order || persisted.archived != archived;
+    }
+
     @SuppressWarnings("MethodDoesntCallSuperMethod")
     @Override
     public Pin clone() {
@@ -135,11 +135,18 @@ public class NetUtilsClasses {
     public static class HttpCodeException
             extends Exception {
         public int code;
+        // ms to wait before trying again, from a Retry-After header; -1 if the server didn't say
+        public long retryAfter = -1;
 
         public HttpCodeException(int code) {
             this.code = code;
         }
 
+        public HttpCodeException(int code, long retryAfter) {
+            this(code);
+            this.retryAfter = retryAfter;
+        }
+
         public boolean isServerErrorNotFound() {
             return code == 404;
         }
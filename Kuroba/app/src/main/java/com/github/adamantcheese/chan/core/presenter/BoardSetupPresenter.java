@@ -164,24 +164,18 @@ public class BoardSetupPresenter
         suggestionCall = BackgroundUtils.runWithDefaultExecutor(() -> {
             List<BoardSuggestion> suggestions = new ArrayList<>();
             if (site.boardsType().canList) {
-                Boards siteBoards = boardManager.getSiteBoards(site);
-                Boards allUnsavedBoards = new Boards();
-                for (Board siteBoard : siteBoards) {
-                    if (!siteBoard.saved) {
-                        allUnsavedBoards.add(siteBoard);
-                    }
-                }
-
                 Boards toSuggest;
                 if (TextUtils.isEmpty(query)) {
-                    toSuggest = new Boards(allUnsavedBoards);
+                    toSuggest = boardManager.getSiteBoards(site);
                 } else {
-                    toSuggest = BoardHelper.search(allUnsavedBoards, query);
+                    // saved boards are left out of the search itself, so they don't use up its shortlist
+                    toSuggest = BoardHelper.search(boardManager.getSiteSearchIndex(site), query, b -> !b.saved);
                 }
 
                 for (Board board : toSuggest) {
-                    BoardSuggestion suggestion = new BoardSuggestion(board);
-                    suggestions.add(suggestion);
+                    if (!board.saved) {
+                        suggestions.add(new BoardSuggestion(board));
+                    }
                 }
             } else {
                 if (!TextUtils.isEmpty(query)) {
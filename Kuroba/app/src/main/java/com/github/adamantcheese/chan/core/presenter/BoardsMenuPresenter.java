@@ -24,6 +24,7 @@ import com.github.adamantcheese.chan.core.repository.BoardRepository;
 import com.github.adamantcheese.chan.core.site.Site;
 import com.github.adamantcheese.chan.core.site.common.CommonDataStructs.Boards;
 import com.github.adamantcheese.chan.ui.helper.BoardHelper;
+import com.github.adamantcheese.chan.utils.BackgroundUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -44,6 +45,7 @@ public class BoardsMenuPresenter
 
     @Nullable
     private String filter;
+    private BackgroundUtils.Cancelable searchCall;
 
     @Inject
     public BoardsMenuPresenter(BoardManager boardManager) {
@@ -63,6 +65,10 @@ public class BoardsMenuPresenter
 
     public void destroy() {
         allBoards.deleteObserver(this);
+        if (searchCall != null) {
+            searchCall.cancel();
+            searchCall = null;
+        }
     }
 
     public Items items() {
@@ -82,7 +88,22 @@ public class BoardsMenuPresenter
     }
 
     private void updateWithFilter() {
-        items.update(allBoards.get(), filter);
+        if (searchCall != null) {
+            searchCall.cancel();
+            searchCall = null;
+        }
+
+        final List<BoardRepository.SiteBoards> boards = allBoards.get();
+        final String query = filter;
+        if (query == null || query.isEmpty()) {
+            items.set(Items.build(boards, null));
+        } else {
+            // searching is done off the main thread; a newer query cancels the older one
+            searchCall = BackgroundUtils.runWithDefaultExecutor(() -> Items.build(boards, query), result -> {
+                searchCall = null;
+                items.set(result);
+            });
+        }
     }
 
     public static class Items
@@ -92,8 +113,16 @@ public class BoardsMenuPresenter
         public Items() {
         }
 
-        public void update(List<BoardRepository.SiteBoards> allBoards, String filter) {
-            items.clear();
+        public void set(List<Item> items) {
+            this.items.clear();
+            this.items.addAll(items);
+
+            setChanged();
+            notifyObservers();
+        }
+
+        private static List<Item> build(List<BoardRepository.SiteBoards> allBoards, @Nullable String filter) {
+            List<Item> items = new ArrayList<>();
             int itemIdCounter = 1;
 
             items.add(new Item(0, SEARCH));
@@ -112,7 +141,7 @@ public class BoardsMenuPresenter
                     }
                 } else {
                     int count = 0;
-                    for (Board b : BoardHelper.search(boards, filter)) {
+                    for (Board b : BoardHelper.search(siteAndBoards.getSearchIndex(), filter)) {
                         if (count == 5) break;
                         items.add(new Item(itemIdCounter++, b));
                         count++;
@@ -120,8 +149,7 @@ public class BoardsMenuPresenter
                 }
             }
 
-            setChanged();
-            notifyObservers();
+            return items;
         }
 
         public int getCount() {
@@ -17,14 +17,20 @@
 package com.github.adamantcheese.chan.core.presenter;
 
 import android.content.Context;
+import android.net.Uri;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.viewpager.widget.ViewPager;
 
 import com.github.adamantcheese.chan.core.cache.CacheHandler;
 import com.github.adamantcheese.chan.core.cache.FileCacheListener;
 import com.github.adamantcheese.chan.core.cache.FileCacheV2;
+import com.github.adamantcheese.chan.core.cache.MediaSourceCallback;
 import com.github.adamantcheese.chan.core.cache.downloader.CancelableDownload;
+import com.github.adamantcheese.chan.core.cache.stream.ExoPlayerPool;
+import com.github.adamantcheese.chan.core.cache.stream.WebmStreamingDataSource;
+import com.github.adamantcheese.chan.core.cache.stream.WebmStreamingSource;
 import com.github.adamantcheese.chan.core.model.PostImage;
 import com.github.adamantcheese.chan.core.model.orm.Loadable;
 import com.github.adamantcheese.chan.core.settings.ChanSettings;
@@ -37,7 +43,12 @@ import com.github.adamantcheese.chan.ui.view.FloatingMenuItem;
 import com.github.adamantcheese.chan.ui.view.MultiImageView;
 import com.github.adamantcheese.chan.utils.BackgroundUtils;
 import com.github.adamantcheese.chan.utils.Logger;
+import com.github.k1rakishou.fsaf.file.RawFile;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.ProgressiveMediaSource;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -83,6 +94,10 @@ public class ImageViewerPresenter
     FileCacheV2 fileCacheV2;
     @Inject
     CacheHandler cacheHandler;
+    @Inject
+    ExoPlayerPool exoPlayerPool;
+    @Inject
+    WebmStreamingSource webmStreamingSource;
 
     private boolean entering = true;
     private boolean exiting = false;
@@ -159,6 +174,7 @@ public class ImageViewerPresenter
 
         nonCancelableImages.clear();
         preloadingImages.clear();
+        exoPlayerPool.releasePrepared();
     }
 
     public void onVolumeClicked() {
@@ -373,13 +389,30 @@ public class ImageViewerPresenter
             loadChunked = false;
         }
 
-        if (load) {
+        if (load && postImage.type == MOVIE && ChanSettings.videoStream.get()) {
+            // streaming fetches the video as it plays, so a prepared player buffering the start of it is the preload
+            prepareStreamedVideo(postImage);
+        } else if (load) {
             // If downloading, remove from preloadingImages if it finished.
             // Array to allow access from within the callback (the callback should really
             // pass the filecachedownloader itself).
             final CancelableDownload[] preloadDownload = new CancelableDownload[1];
 
             final FileCacheListener fileCacheListener = new FileCacheListener() {
+                @Override
+                public void onSuccess(RawFile file, boolean immediate) {
+                    BackgroundUtils.ensureMainThread();
+
+                    if (postImage.type == MOVIE && !ChanSettings.videoOpenExternal.get()) {
+                        MediaItem video = MediaItem.fromUri(Uri.fromFile(new File(file.getFullPath())));
+                        prepareVideo(postImage,
+                                new ProgressiveMediaSource.Factory(exoPlayerPool.getFileDataSourceFactory())
+                                        .createMediaSource(video),
+                                null
+                        );
+                    }
+                }
+
                 @Override
                 public void onEnd() {
                     BackgroundUtils.ensureMainThread();
@@ -406,6 +439,45 @@ public class ImageViewerPresenter
         }
     }
 
+    private void prepareStreamedVideo(PostImage postImage) {
+        // don't stream it a second time when going back and forth between pages
+        if (exoPlayerPool.isPrepared(postImage.imageUrl)) return;
+
+        webmStreamingSource.createMediaSource(postImage, new MediaSourceCallback() {
+            @Override
+            public void onMediaSourceReady(
+                    @Nullable MediaSource source, @Nullable WebmStreamingDataSource streamingDataSource
+            ) {
+                BackgroundUtils.ensureMainThread();
+
+                if (source == null) {
+                    exoPlayerPool.releaseStreamingDataSource(streamingDataSource);
+                    return;
+                }
+                prepareVideo(postImage, source, streamingDataSource);
+            }
+
+            @Override
+            public void onError(@NonNull Throwable error) {
+                Logger.w(ImageViewerPresenter.this, "Couldn't pre-buffer a webm", error);
+            }
+        });
+    }
+
+    /**
+     * Prepares a player with the video for its page to take, unless the viewer has moved on in the meantime.
+     */
+    private void prepareVideo(
+            PostImage postImage, MediaSource source, @Nullable WebmStreamingDataSource streamingDataSource
+    ) {
+        // the page may already be showing the video with a player of its own
+        if (exiting || images.indexOf(postImage) == selectedPosition) {
+            exoPlayerPool.releaseStreamingDataSource(streamingDataSource);
+            return;
+        }
+        exoPlayerPool.prepare(postImage.imageUrl, source, streamingDataSource);
+    }
+
     private void cancelPreviousFromEndImageDownload(int position) {
         for (CancelableDownload downloader : preloadingImages) {
             int index = position + CANCEL_IMAGE_INDEX;
@@ -34,6 +34,7 @@ import androidx.exifinterface.media.ExifInterface;
 import com.github.adamantcheese.chan.R;
 import com.github.adamantcheese.chan.core.database.DatabaseSavedReplyManager;
 import com.github.adamantcheese.chan.core.database.DatabaseUtils;
+import com.github.adamantcheese.chan.core.manager.ReplyQueueManager;
 import com.github.adamantcheese.chan.core.manager.WatchManager;
 import com.github.adamantcheese.chan.core.model.ChanThread;
 import com.github.adamantcheese.chan.core.model.Post;
@@ -87,6 +88,7 @@ public class ReplyPresenter
     private final ReplyPresenterCallback callback;
     private Loadable loadable;
     private Reply draft;
+    private Loadable submittingLoadable;
 
     private Page page = Page.INPUT;
     private boolean moreOpen;
@@ -104,6 +106,10 @@ public class ReplyPresenter
         this.loadable = loadable;
         this.draft = loadable.draft;
 
+        ReplyQueueManager replyQueueManager = instance(ReplyQueueManager.class);
+        String heldReason = replyQueueManager.takeHeld(loadable);
+        boolean heldInQueue = heldReason == null && replyQueueManager.hasHeld(loadable);
+
         callback.loadDraftIntoViews(loadable.draft);
         int length = draft.comment.getBytes(UTF_8).length;
         callback.updateCommentCount(length, loadable.board.maxCommentChars, length > loadable.board.maxCommentChars);
@@ -115,6 +121,12 @@ public class ReplyPresenter
 
         callback.openPostOptions(ChanSettings.alwaysShowPostOptions.get());
         callback.openSubject(ChanSettings.alwaysShowPostOptions.get() && loadable.isCatalogMode());
+
+        if (heldReason != null) {
+            callback.openMessage(getString(R.string.reply_queue_restored, heldReason));
+        } else if (heldInQueue) {
+            callback.openMessage(getString(R.string.reply_queue_held));
+        }
     }
 
     public void unbindLoadable() {
@@ -213,6 +225,7 @@ public class ReplyPresenter
     public void onSubmitClicked(boolean longClicked) {
         long timeLeft = LastReplyRepository.getTimeUntilDraftPostable(loadable);
 
+        // a tap during the cooldown only solves the captcha ahead of time, a long press submits anyway
         boolean authenticateOnly = timeLeft > 0L && !longClicked;
         if (!onPrepareToSubmit(authenticateOnly)) {
             return;
@@ -224,11 +237,45 @@ public class ReplyPresenter
     private void submitOrAuthenticate(boolean authenticateOnly) {
         if (loadable.site.actions().postRequiresAuthentication()) {
             switchPage(Page.AUTHENTICATION, true, !authenticateOnly);
+        } else if (!authenticateOnly && shouldQueue()) {
+            queueDraft();
         } else {
             makeSubmitCall();
         }
     }
 
+    /**
+     * @return true if a reply being submitted now would hit the cooldown, and should be queued instead
+     */
+    private boolean shouldQueue() {
+        return ChanSettings.postQueueReplies.get() && LastReplyRepository.getTimeUntilDraftPostable(loadable) > 0L;
+    }
+
+    private void queueDraft() {
+        if (draft.comment.trim().isEmpty() && draft.file == null) {
+            switchPage(Page.INPUT);
+            callback.openMessage(getString(R.string.reply_comment_empty));
+            return;
+        }
+
+        long timeLeft = LastReplyRepository.getTimeUntilDraftPostable(loadable);
+        if (instance(ReplyQueueManager.class).enqueue(loadable)) {
+            onDraftQueued(getString(R.string.reply_queued, Math.max(0L, timeLeft)));
+        } else {
+            switchPage(Page.INPUT);
+            callback.openMessage(getString(R.string.reply_error));
+        }
+    }
+
+    private void onDraftQueued(String message) {
+        previewOpen = false;
+        callback.openPreview(false, null);
+        callback.openPreviewMessage(false, null);
+        callback.loadDraftIntoViews(draft);
+        switchPage(Page.INPUT);
+        callback.openMessage(message);
+    }
+
     private boolean onPrepareToSubmit(boolean isAuthenticateOnly) {
         if (draft == null) return false;
         callback.loadViewsIntoDraft(draft);
@@ -248,6 +295,7 @@ public class ReplyPresenter
     // Instead use the response's reply to get the loadable or generate a fresh loadable for a new thread
     @Override
     public void onPostComplete(ReplyResponse replyResponse) {
+        submittingLoadable = null;
         if (replyResponse.posted) {
             LastReplyRepository.putLastReply(replyResponse.originatingLoadable);
             Loadable originatingLoadable = replyResponse.originatingLoadable;
@@ -344,6 +392,18 @@ public class ReplyPresenter
     public void onPostError(Exception exception) {
         Logger.e(this, "onPostError", exception);
 
+        // only queue if the user is still on the reply's loadable, otherwise the draft was already unbound
+        boolean canQueue = submittingLoadable != null && submittingLoadable == loadable;
+        submittingLoadable = null;
+        // only failures that never reached the site are queued, anything else may have been posted already
+        boolean neverReachedServer = ReplyQueueManager.neverReachedServer(exception);
+        if (canQueue && neverReachedServer && ChanSettings.postQueueReplies.get()) {
+            if (instance(ReplyQueueManager.class).enqueue(loadable)) {
+                onDraftQueued(getString(R.string.reply_queued_offline));
+                return;
+            }
+        }
+
         switchPage(Page.INPUT);
 
         String errorMessage = getString(R.string.reply_error);
@@ -353,6 +413,9 @@ public class ReplyPresenter
                 errorMessage = getString(R.string.reply_error_message, message);
             }
         }
+        if (!neverReachedServer) {
+            errorMessage += "\n" + getString(R.string.reply_error_maybe_posted);
+        }
 
         callback.openMessage(errorMessage);
     }
@@ -370,6 +433,10 @@ public class ReplyPresenter
         draft.captchaResponse = response;
 
         long timeLeft = LastReplyRepository.getTimeUntilDraftPostable(loadable);
+        if (autoReply && shouldQueue()) {
+            queueDraft();
+            return;
+        }
         if (timeLeft > 0L && !autoReply) {
             String errorMessage = getString(R.string.reply_error_message_timer, timeLeft);
             switchPage(Page.INPUT);
@@ -513,6 +580,7 @@ public class ReplyPresenter
     }
 
     private void makeSubmitCall() {
+        submittingLoadable = loadable;
         loadable.site.actions().post(loadable, this);
         switchPage(Page.LOADING);
     }
@@ -23,7 +23,10 @@ import com.github.adamantcheese.chan.core.database.DatabaseUtils;
 import com.github.adamantcheese.chan.core.model.orm.Board;
 import com.github.adamantcheese.chan.core.site.Site;
 import com.github.adamantcheese.chan.core.site.common.CommonDataStructs.Boards;
+import com.github.adamantcheese.chan.ui.helper.BoardSearchIndex;
+import com.github.adamantcheese.chan.utils.BackgroundUtils;
 import com.github.adamantcheese.chan.utils.Logger;
+import com.github.adamantcheese.chan.utils.PriorityExecutor.Lane;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -104,6 +107,15 @@ public class BoardRepository
         return new Boards();
     }
 
+    public BoardSearchIndex getSiteSearchIndex(Site site) {
+        for (SiteBoards item : allBoards.siteBoards) {
+            if (item.site.id() == site.id()) {
+                return item.getSearchIndex();
+            }
+        }
+        return new BoardSearchIndex(new Boards());
+    }
+
     public Boards getSiteSavedBoards(Site site) {
         for (SiteBoards item : savedBoards.siteBoards) {
             if (item.site.id() == site.id()) {
@@ -156,6 +168,13 @@ public class BoardRepository
         allBoards.set(all);
         savedBoards.set(saved);
 
+        // get the search indexes ready before anyone searches
+        BackgroundUtils.runOnBackgroundThread(() -> {
+            for (SiteBoards siteBoards : all) {
+                siteBoards.getSearchIndex();
+            }
+        }, Lane.PREFETCH);
+
         allBoards.notifyObservers();
         savedBoards.notifyObservers();
     }
@@ -177,10 +196,21 @@ public class BoardRepository
     public static class SiteBoards {
         public final Site site;
         public final Boards boards;
+        private BoardSearchIndex searchIndex;
 
         public SiteBoards(Site site, Boards boards) {
             this.site = site;
             this.boards = boards;
         }
+
+        /**
+         * @return a search index over the boards, built on first use; may be slow the first time
+         */
+        public synchronized BoardSearchIndex getSearchIndex() {
+            if (searchIndex == null) {
+                searchIndex = new BoardSearchIndex(boards);
+            }
+            return searchIndex;
+        }
     }
 }
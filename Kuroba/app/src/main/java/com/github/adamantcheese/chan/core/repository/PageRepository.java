@@ -25,6 +25,7 @@ import com.github.adamantcheese.chan.core.site.common.CommonDataStructs.ChanPage
 import com.github.adamantcheese.chan.core.site.common.CommonDataStructs.ChanPages;
 import com.github.adamantcheese.chan.core.site.common.CommonDataStructs.ThreadNoTimeModPair;
 import com.github.adamantcheese.chan.utils.BackgroundUtils;
+import com.github.adamantcheese.chan.utils.PriorityExecutor.Lane;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -54,7 +55,7 @@ public class PageRepository {
 
     public static void forceUpdateForBoard(final Board b) {
         if (b != null) {
-            BackgroundUtils.runOnBackgroundThread(() -> requestBoard(b), 10000);
+            BackgroundUtils.runOnBackgroundThread(() -> requestBoard(b), 10000, Lane.PREFETCH);
         }
     }
 
@@ -241,6 +241,7 @@ public class ChanSettings {
     public static final BooleanSetting postPinThread;
     public static final StringSetting postDefaultName;
     public static final BooleanSetting alwaysSetNewFilename;
+    public static final BooleanSetting postQueueReplies;
 
     // Post
     public static final BooleanSetting repliesButtonsBottom;
@@ -404,6 +405,7 @@ public class ChanSettings {
             postPinThread = new BooleanSetting(p, "preference_pin_on_post", false);
             postDefaultName = new StringSetting(p, "preference_default_name", "");
             alwaysSetNewFilename = new BooleanSetting(p, "preference_always_set_new_filename", false);
+            postQueueReplies = new BooleanSetting(p, "preference_queue_replies", true);
 
             // Post
             repliesButtonsBottom = new BooleanSetting(p, "preference_buttons_bottom", false);
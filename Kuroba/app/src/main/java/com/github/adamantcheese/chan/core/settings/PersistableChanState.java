@@ -26,6 +26,7 @@ public class PersistableChanState {
 
     public static StringSetting filterWatchIgnored;
     public static StringSetting videoTitleDurCache;
+    public static StringSetting replyQueue;
 
     private static final String EMPTY_VALUE = "EMPTY_VALUE";
 
@@ -41,6 +42,7 @@ public class PersistableChanState {
 
             filterWatchIgnored = new StringSetting(p, "filter_watch_last_ignored_set", "");
             videoTitleDurCache = new StringSetting(p, "yt_cache", EMPTY_VALUE);
+            replyQueue = new StringSetting(p, "reply_queue", "[]");
 
             // for any of the following persistables, ensure that these exist and are set to the following defaults
             // a call to get() does not forcibly generate these shared preferences and set their defaults
@@ -265,6 +265,11 @@ public class FoolFuukaArchive
             return super.handleTag(callback, theme, post, tag, text, element);
         }
 
+        @Override
+        public boolean canStream() {
+            return false; // handleTag looks at the children of elements
+        }
+
         @Override
         public String createQuoteElementString(Post.Builder post) {
             return "<span class=\"greentext\"><a href=\"https://" + domain + "/" + post.board.code + "/thread/"
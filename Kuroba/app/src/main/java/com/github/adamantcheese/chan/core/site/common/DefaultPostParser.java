@@ -26,8 +26,8 @@ import android.view.View;
 
 import androidx.annotation.AnyThread;
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 
-import com.github.adamantcheese.chan.R;
 import com.github.adamantcheese.chan.core.manager.FilterEngine;
 import com.github.adamantcheese.chan.core.model.Post;
 import com.github.adamantcheese.chan.core.model.PostLinkable;
@@ -37,6 +37,7 @@ import com.github.adamantcheese.chan.core.site.parser.CommentParser;
 import com.github.adamantcheese.chan.core.site.parser.PostParser;
 import com.github.adamantcheese.chan.ui.text.AbsoluteSizeSpanHashed;
 import com.github.adamantcheese.chan.ui.text.ForegroundColorSpanHashed;
+import com.github.adamantcheese.chan.ui.text.ThemeColorSpan;
 import com.github.adamantcheese.chan.ui.theme.Theme;
 import com.github.adamantcheese.chan.utils.Logger;
 import com.github.adamantcheese.chan.utils.StringUtils;
@@ -59,7 +60,6 @@ import javax.inject.Inject;
 import static com.github.adamantcheese.chan.Chan.inject;
 import static com.github.adamantcheese.chan.ui.widget.CancellableToast.showToast;
 import static com.github.adamantcheese.chan.utils.AndroidUtils.getActivityContext;
-import static com.github.adamantcheese.chan.utils.AndroidUtils.getAttrColor;
 import static com.github.adamantcheese.chan.utils.AndroidUtils.getContrastColor;
 import static com.github.adamantcheese.chan.utils.AndroidUtils.sp;
 
@@ -67,6 +67,7 @@ import static com.github.adamantcheese.chan.utils.AndroidUtils.sp;
 public class DefaultPostParser
         implements PostParser {
     private final CommentParser commentParser;
+    private final StreamingCommentParser streamingCommentParser;
     @Inject
     private FilterEngine filterEngine;
 
@@ -74,10 +75,17 @@ public class DefaultPostParser
     private final Pattern extraQuotePattern = Pattern.compile("(?<![/\"l&])[@#$](\\d+)(?!;)");
 
     public DefaultPostParser(CommentParser commentParser) {
-        this.commentParser = commentParser;
+        this(commentParser, null);
         inject(this);
     }
 
+    @VisibleForTesting
+    DefaultPostParser(CommentParser commentParser, FilterEngine filterEngine) {
+        this.commentParser = commentParser;
+        streamingCommentParser = new StreamingCommentParser(commentParser);
+        this.filterEngine = filterEngine;
+    }
+
     @Override
     public Post parse(@NonNull Theme theme, Post.Builder builder, List<Filter> filters, Callback callback) {
         if (!TextUtils.isEmpty(builder.name)) {
@@ -88,7 +96,7 @@ public class DefaultPostParser
             builder.subject = Parser.unescapeEntities(builder.subject, false);
         }
 
-        parseInfoSpans(theme, builder);
+        parseInfoSpans(builder);
 
         if (builder.comment != null) {
             builder.comment = parseComment(theme, builder, callback);
@@ -128,10 +136,9 @@ public class DefaultPostParser
      * This is done on a background thread for performance, even when it is UI code.<br>
      * The results will be placed on the Post.*Span members.
      *
-     * @param theme   Theme to use for parsing
      * @param builder Post builder to get data from
      */
-    private void parseInfoSpans(Theme theme, Post.Builder builder) {
+    private void parseInfoSpans(Post.Builder builder) {
         boolean anonymize = ChanSettings.anonymize.get();
         boolean anonymizeIds = ChanSettings.anonymizeIds.get();
 
@@ -157,19 +164,19 @@ public class DefaultPostParser
             subjectSpan = new SpannableString(builder.subject);
             // Do not set another color when the post is in stub mode, it sets text_color_secondary
             if (!builder.filterStub) {
-                subjectSpan.setSpan(new ForegroundColorSpanHashed(theme.subjectColor), 0, subjectSpan.length(), 0);
+                subjectSpan.setSpan(new ThemeColorSpan(ThemeColorSpan.Role.SUBJECT), 0, subjectSpan.length(), 0);
             }
         }
 
         if (!TextUtils.isEmpty(builder.name) && (!builder.name.equals(defaultName)
                 || ChanSettings.showAnonymousName.get())) {
             nameSpan = new SpannableString(builder.name);
-            nameSpan.setSpan(new ForegroundColorSpanHashed(theme.nameColor), 0, nameSpan.length(), 0);
+            nameSpan.setSpan(new ThemeColorSpan(ThemeColorSpan.Role.NAME), 0, nameSpan.length(), 0);
         }
 
         if (!TextUtils.isEmpty(builder.tripcode)) {
             tripcodeSpan = new SpannableString(builder.tripcode);
-            tripcodeSpan.setSpan(new ForegroundColorSpanHashed(theme.nameColor), 0, tripcodeSpan.length(), 0);
+            tripcodeSpan.setSpan(new ThemeColorSpan(ThemeColorSpan.Role.NAME), 0, tripcodeSpan.length(), 0);
             tripcodeSpan.setSpan(new AbsoluteSizeSpanHashed(detailsSizePx), 0, tripcodeSpan.length(), 0);
         }
 
@@ -182,8 +189,7 @@ public class DefaultPostParser
 
         if (!TextUtils.isEmpty(builder.moderatorCapcode)) {
             capcodeSpan = new SpannableString(StringUtils.caseAndSpace(builder.moderatorCapcode, null));
-            int accentColor = getAttrColor(theme.accentColor.accentStyleId, R.attr.colorAccent);
-            capcodeSpan.setSpan(new ForegroundColorSpanHashed(accentColor), 0, capcodeSpan.length(), 0);
+            capcodeSpan.setSpan(new ThemeColorSpan(ThemeColorSpan.Role.ACCENT), 0, capcodeSpan.length(), 0);
             capcodeSpan.setSpan(new AbsoluteSizeSpanHashed(detailsSizePx), 0, capcodeSpan.length(), 0);
         }
 
@@ -215,11 +221,14 @@ public class DefaultPostParser
             if (ChanSettings.parseExtraQuotes.get()) {
                 comment = extraQuotePattern.matcher(comment).replaceAll(commentParser.createQuoteElementString(post));
             }
-            Document document = Jsoup.parseBodyFragment(comment);
-
-            for (Node node : document.body().childNodes()) {
-                total.append(parseNode(theme, post, callback, node));
+            if (commentParser.canStream()) {
+                SpannableStringBuilder streamed =
+                        streamingCommentParser.parse(theme, post, callback, comment, ChanSettings.enableEmoji.get());
+                if (streamed != null) return streamed;
+                // otherwise, fall back to a full parse of the comment
             }
+
+            parseCommentWithJsoup(theme, post, callback, comment, total);
         } catch (Exception e) {
             Logger.e(this, "Error parsing comment html", e);
         }
@@ -227,6 +236,21 @@ public class DefaultPostParser
         return total;
     }
 
+    /**
+     * Parses the comment through a Jsoup document, appending the result to the given builder; this handles any HTML,
+     * unlike the streaming parser.
+     */
+    @VisibleForTesting
+    void parseCommentWithJsoup(
+            @NonNull Theme theme, Post.Builder post, Callback callback, String comment, SpannableStringBuilder total
+    ) {
+        Document document = Jsoup.parseBodyFragment(comment);
+
+        for (Node node : document.body().childNodes()) {
+            total.append(parseNode(theme, post, callback, node));
+        }
+    }
+
     private SpannableStringBuilder parseNode(@NonNull Theme theme, Post.Builder post, Callback callback, Node node) {
         if (node instanceof TextNode) {
             String text = ((TextNode) node).getWholeText();
@@ -271,9 +295,9 @@ public class DefaultPostParser
 
     // Modified from 3.20 of Regular Expressions Cookbook, 2nd Edition
     // find that bad boy on LibGen, it's good stuff
-    private final Pattern MATH_PATTERN = Pattern.compile("\\[(math|eqn)].*?\\[/\\1]");
+    private static final Pattern MATH_PATTERN = Pattern.compile("\\[(math|eqn)].*?\\[/\\1]");
 
-    private String processEmojiMath(String text) {
+    static String processEmojiMath(String text) {
         StringBuilder rebuilder = new StringBuilder();
         Matcher regexMatcher = MATH_PATTERN.matcher(text);
         int lastIndex = 0;
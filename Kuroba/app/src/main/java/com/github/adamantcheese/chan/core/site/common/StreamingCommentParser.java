@@ -0,0 +1,438 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.site.common;
+
+import android.text.SpannableStringBuilder;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.github.adamantcheese.chan.core.model.Post;
+import com.github.adamantcheese.chan.core.model.PostLinkable;
+import com.github.adamantcheese.chan.core.site.parser.CommentParser;
+import com.github.adamantcheese.chan.core.site.parser.PostParser;
+import com.github.adamantcheese.chan.core.site.parser.StyleRule;
+import com.github.adamantcheese.chan.ui.theme.Theme;
+
+import org.jsoup.nodes.Attributes;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.Tag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A single pass parser for the small subset of HTML that imageboards use in comments.
+ * <p>
+ * Instead of building a Jsoup document and a separate spannable for every node, text is appended to one builder as the
+ * HTML is read, and when an element closes its rule from the CommentParser is applied directly to the element's range.
+ * This gives the same result as the Jsoup path in DefaultPostParser for well-formed comments. Anything it doesn't handle
+ * exactly the way Jsoup would (HTML comments, tables, raw text elements, misnested or unclosed tags) makes it give up,
+ * and the caller falls back to Jsoup for that comment.
+ */
+@AnyThread
+class StreamingCommentParser {
+    private static final Set<String> VOID_TAGS = new HashSet<>(Arrays.asList("area",
+            "base",
+            "br",
+            "col",
+            "embed",
+            "hr",
+            "img",
+            "input",
+            "keygen",
+            "link",
+            "meta",
+            "param",
+            "source",
+            "track",
+            "wbr"
+    ));
+
+    // Elements that either need the whole document tree to be handled, or that Jsoup parses specially
+    private static final Set<String> FALLBACK_TAGS = new HashSet<>(Arrays.asList("table",
+            "tbody",
+            "thead",
+            "tfoot",
+            "tr",
+            "td",
+            "th",
+            "caption",
+            "colgroup",
+            "script",
+            "style",
+            "textarea",
+            "title",
+            "xmp",
+            "iframe",
+            "noscript",
+            "noembed",
+            "noframes",
+            "plaintext",
+            "template",
+            "select",
+            "option",
+            "optgroup",
+            "svg",
+            "math",
+            "html",
+            "head",
+            "body",
+            "frameset",
+            "form",
+            "nobr"
+    ));
+
+    // Elements that implicitly close an open <p>, which Jsoup would do but this parser doesn't
+    private static final Set<String> CLOSES_P = new HashSet<>(Arrays.asList("address",
+            "article",
+            "aside",
+            "blockquote",
+            "center",
+            "details",
+            "dir",
+            "div",
+            "dl",
+            "dd",
+            "dt",
+            "fieldset",
+            "figcaption",
+            "figure",
+            "footer",
+            "h1",
+            "h2",
+            "h3",
+            "h4",
+            "h5",
+            "h6",
+            "header",
+            "hgroup",
+            "hr",
+            "li",
+            "listing",
+            "main",
+            "menu",
+            "nav",
+            "ol",
+            "p",
+            "pre",
+            "section",
+            "summary",
+            "ul"
+    ));
+
+    private final CommentParser commentParser;
+
+    StreamingCommentParser(CommentParser commentParser) {
+        this.commentParser = commentParser;
+    }
+
+    /**
+     * @return The parsed comment, or null if the comment needs to be parsed with Jsoup instead; in that case the post
+     * is left as it was
+     */
+    @Nullable
+    SpannableStringBuilder parse(
+            @NonNull Theme theme, Post.Builder post, PostParser.Callback callback, String html, boolean emoji
+    ) {
+        Collection<PostLinkable> linkablesBefore =
+                post.linkables.isEmpty() ? Collections.emptyList() : new ArrayList<>(post.linkables);
+        Collection<Integer> repliesToBefore =
+                post.repliesToNos.isEmpty() ? Collections.emptySet() : new HashSet<>(post.repliesToNos);
+
+        SpannableStringBuilder result = new Run(theme, post, callback, html, emoji).parse();
+        if (result == null) {
+            // undo anything the rules added before giving up, the Jsoup path will add it all again
+            post.linkables.retainAll(linkablesBefore);
+            post.repliesToNos.retainAll(repliesToBefore);
+        }
+        return result;
+    }
+
+    private class Run {
+        private final Theme theme;
+        private final Post.Builder post;
+        private final PostParser.Callback callback;
+        private final String html;
+        private final boolean emoji;
+
+        private final SpannableStringBuilder out = new SpannableStringBuilder();
+        private final List<Frame> stack = new ArrayList<>();
+        private final List<String> attributes = new ArrayList<>(); // name, value pairs of the tag being read
+        private boolean selfClosing;
+
+        private Run(Theme theme, Post.Builder post, PostParser.Callback callback, String html, boolean emoji) {
+            this.theme = theme;
+            this.post = post;
+            this.callback = callback;
+            this.html = html;
+            this.emoji = emoji;
+        }
+
+        @Nullable
+        private SpannableStringBuilder parse() {
+            stack.add(new Frame("", Collections.emptyList(), 0)); // the body
+            int length = html.length();
+            int textStart = 0;
+            int pos = 0;
+            while (pos < length) {
+                if (html.charAt(pos) != '<' || pos + 1 >= length) {
+                    pos++;
+                    continue;
+                }
+
+                char next = html.charAt(pos + 1);
+                if (next == '!' || next == '?') return null; // comments, doctypes, etc.
+                boolean closing = next == '/';
+                int nameStart = closing ? pos + 2 : pos + 1;
+                if (nameStart >= length || !isLetter(html.charAt(nameStart))) {
+                    if (closing) return null; // Jsoup turns these into comments
+                    pos++; // a lone '<' is just text
+                    continue;
+                }
+
+                appendText(textStart, pos);
+
+                int nameEnd = nameStart;
+                while (nameEnd < length && isLetterOrDigit(html.charAt(nameEnd))) {
+                    nameEnd++;
+                }
+                if (nameEnd < length && !isAttributeNameEnd(html.charAt(nameEnd))) return null;
+                String name = html.substring(nameStart, nameEnd).toLowerCase(Locale.ENGLISH);
+                int tagEnd = readAttributes(nameEnd);
+                if (tagEnd < 0) return null;
+
+                if (closing ? !closeTag(name) : !openTag(name)) return null;
+                if (!closing && (name.equals("pre") || name.equals("listing")) && html.startsWith("\n", tagEnd)) {
+                    tagEnd++; // a newline right after these is dropped, as in Jsoup
+                }
+                pos = tagEnd;
+                textStart = tagEnd;
+            }
+            appendText(textStart, length);
+
+            // Jsoup would close these implicitly, possibly somewhere else
+            if (stack.size() > 1) return null;
+            return out;
+        }
+
+        private boolean openTag(String name) {
+            if (FALLBACK_TAGS.contains(name)) return false;
+            if (CLOSES_P.contains(name) && isOpen("p")) return false;
+            if ((name.equals("a") || name.equals("li")) && isOpen(name)) return false;
+
+            beginNode();
+            Frame frame = new Frame(name, new ArrayList<>(attributes), out.length());
+            if (VOID_TAGS.contains(name)) {
+                closeElement(frame);
+                return true;
+            }
+            if (selfClosing) return false; // Jsoup ignores the slash on known tags but not unknown ones
+
+            stack.add(frame);
+            return true;
+        }
+
+        private boolean closeTag(String name) {
+            Frame frame = stack.get(stack.size() - 1);
+            if (stack.size() == 1 || !frame.name.equals(name)) return false;
+            stack.remove(stack.size() - 1);
+            closeElement(frame);
+            return true;
+        }
+
+        private void closeElement(Frame frame) {
+            StyleRule rule = commentParser.findRule(frame.getRuleTag(), frame.getAttribute("class"));
+            if (rule == null) return; // unknown tags keep their text as-is
+
+            rule.applyInPlace(theme, callback, post, out, frame.start, rule.hasActions() ? frame.toElement(out) : null);
+            if (rule.isBlockElement()) {
+                // the line break only goes in if something follows this element
+                stack.get(stack.size() - 1).pendingBreak = true;
+            }
+        }
+
+        private void appendText(int start, int end) {
+            if (start >= end) return;
+            String text = html.substring(start, end);
+            if (text.indexOf('&') >= 0) {
+                text = Parser.unescapeEntities(text, false);
+            }
+            //emoji parse disable for [code] and [eqn]
+            if (emoji && !(stack.get(stack.size() - 1).hasClass("prettyprint") || text.startsWith("[eqn]"))) {
+                text = DefaultPostParser.processEmojiMath(text);
+            }
+            beginNode();
+            out.append(text);
+        }
+
+        // a new node starts in the current element, so the previous sibling's line break needs to go in
+        private void beginNode() {
+            Frame parent = stack.get(stack.size() - 1);
+            if (parent.pendingBreak) {
+                out.append('\n');
+                parent.pendingBreak = false;
+            }
+        }
+
+        private boolean isOpen(String name) {
+            for (int i = 1; i < stack.size(); i++) {
+                if (stack.get(i).name.equals(name)) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Reads the attributes of a tag into the attributes list.
+         *
+         * @return The index just past the end of the tag, or -1 if the tag is malformed
+         */
+        private int readAttributes(int pos) {
+            attributes.clear();
+            selfClosing = false;
+            int length = html.length();
+            while (pos < length) {
+                char c = html.charAt(pos);
+                if (Character.isWhitespace(c)) {
+                    pos++;
+                } else if (c == '>') {
+                    return pos + 1;
+                } else if (c == '/') {
+                    if (pos + 1 < length && html.charAt(pos + 1) == '>') {
+                        selfClosing = true;
+                        return pos + 2;
+                    }
+                    pos++;
+                } else {
+                    int nameStart = pos;
+                    while (pos < length && !isAttributeNameEnd(html.charAt(pos))) {
+                        pos++;
+                    }
+                    String name = html.substring(nameStart, pos).toLowerCase(Locale.ENGLISH);
+                    while (pos < length && Character.isWhitespace(html.charAt(pos))) {
+                        pos++;
+                    }
+                    String value = "";
+                    if (pos < length && html.charAt(pos) == '=') {
+                        pos++;
+                        while (pos < length && Character.isWhitespace(html.charAt(pos))) {
+                            pos++;
+                        }
+                        if (pos >= length) return -1;
+                        char quote = html.charAt(pos);
+                        int valueEnd;
+                        if (quote == '"' || quote == '\'') {
+                            valueEnd = html.indexOf(quote, pos + 1);
+                            if (valueEnd < 0) return -1;
+                            value = html.substring(pos + 1, valueEnd);
+                            pos = valueEnd + 1;
+                        } else {
+                            valueEnd = pos;
+                            while (valueEnd < length && !Character.isWhitespace(html.charAt(valueEnd))
+                                    && html.charAt(valueEnd) != '>') {
+                                valueEnd++;
+                            }
+                            value = html.substring(pos, valueEnd);
+                            pos = valueEnd;
+                        }
+                        if (value.indexOf('&') >= 0) {
+                            value = Parser.unescapeEntities(value, true);
+                        }
+                    }
+                    attributes.add(name);
+                    attributes.add(value);
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static class Frame {
+        private final String name;
+        private final List<String> attributes;
+        private final int start;
+        private boolean pendingBreak;
+
+        private Frame(String name, List<String> attributes, int start) {
+            this.name = name;
+            this.attributes = attributes;
+            this.start = start;
+        }
+
+        private String getAttribute(String key) {
+            for (int i = 0; i < attributes.size(); i += 2) {
+                if (attributes.get(i).equals(key)) return attributes.get(i + 1);
+            }
+            return "";
+        }
+
+        private boolean hasClass(String cssClass) {
+            String classes = getAttribute("class");
+            if (classes.isEmpty()) return false;
+            for (String c : classes.trim().split("\\s+")) {
+                if (c.equalsIgnoreCase(cssClass)) return true;
+            }
+            return false;
+        }
+
+        // same as the tag names that DefaultPostParser builds from the style attribute
+        private String getRuleTag() {
+            String style = getAttribute("style");
+            if (style.isEmpty() || name.equals("span")) return name;
+            StringBuilder ruleTag = new StringBuilder(name).append('-');
+            String[] split = style.split(";");
+            for (int i = 0; i < split.length; i++) {
+                ruleTag.append(split[i].trim());
+                if (i < split.length - 1) {
+                    ruleTag.append('-');
+                }
+            }
+            return ruleTag.toString();
+        }
+
+        // only built for rules with actions, which may want to look at the element's attributes or text
+        private Element toElement(SpannableStringBuilder out) {
+            Attributes elementAttributes = new Attributes();
+            for (int i = 0; i < attributes.size(); i += 2) {
+                elementAttributes.put(attributes.get(i), attributes.get(i + 1));
+            }
+            Element element = new Element(Tag.valueOf(name), "", elementAttributes);
+            element.appendText(out.subSequence(start, out.length()).toString());
+            return element;
+        }
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isLetterOrDigit(char c) {
+        return isLetter(c) || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isAttributeNameEnd(char c) {
+        return Character.isWhitespace(c) || c == '/' || c == '>' || c == '=';
+    }
+}
@@ -25,6 +25,7 @@ import com.github.adamantcheese.chan.utils.Logger;
 import com.github.adamantcheese.chan.core.net.NetUtilsClasses;
 
 import java.io.IOException;
+import java.util.Date;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -64,8 +65,12 @@ public abstract class HttpCall
 
     @Override
     public void onResponse(@NonNull Call call, @NonNull Response response) {
+        long retryAfter = response.code() == 503 ? getRetryAfter(response) : -1;
         try (ResponseBody body = response.body()) {
-            if (body != null) {
+            if (retryAfter >= 0) {
+                // the server turned the request away without handling it, and said when to try again
+                exception = new NetUtilsClasses.HttpCodeException(response.code(), retryAfter);
+            } else if (body != null) {
                 process(response, body.string());
             } else {
                 exception = new NetUtilsClasses.HttpCodeException(response.code());
@@ -82,6 +87,20 @@ public abstract class HttpCall
         }
     }
 
+    /**
+     * @return the ms to wait from the Retry-After header, in seconds or as a date, or -1 if it's missing or invalid
+     */
+    private static long getRetryAfter(Response response) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) return -1;
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            Date date = response.headers().getDate("Retry-After");
+            return date == null ? -1 : Math.max(0, date.getTime() - System.currentTimeMillis());
+        }
+    }
+
     @Override
     public void onFailure(@NonNull Call call, @NonNull IOException e) {
         Logger.e(this, "onFailure", e);
@@ -16,6 +16,7 @@
  */
 package com.github.adamantcheese.chan.core.site.loader;
 
+import android.os.SystemClock;
 import android.util.MalformedJsonException;
 
 import androidx.annotation.NonNull;
@@ -25,15 +26,19 @@ import com.github.adamantcheese.chan.R;
 import com.github.adamantcheese.chan.core.database.DatabaseLoadableManager;
 import com.github.adamantcheese.chan.core.database.DatabasePinManager;
 import com.github.adamantcheese.chan.core.database.DatabaseUtils;
+import com.github.adamantcheese.chan.core.manager.ArchivesManager;
 import com.github.adamantcheese.chan.core.manager.ChanLoaderManager;
 import com.github.adamantcheese.chan.core.manager.WatchManager;
 import com.github.adamantcheese.chan.core.model.ChanThread;
 import com.github.adamantcheese.chan.core.model.Post;
 import com.github.adamantcheese.chan.core.model.orm.Loadable;
+import com.github.adamantcheese.chan.core.site.archives.ExternalSiteArchive;
 import com.github.adamantcheese.chan.core.site.parser.ChanReaderParser;
 import com.github.adamantcheese.chan.ui.helper.PostHelper;
 import com.github.adamantcheese.chan.utils.BackgroundUtils;
 import com.github.adamantcheese.chan.utils.Logger;
+import com.github.adamantcheese.chan.utils.PriorityExecutor.Lane;
+import com.github.adamantcheese.chan.utils.Tracer;
 import com.github.adamantcheese.chan.core.net.NetUtils;
 import com.github.adamantcheese.chan.core.net.NetUtilsClasses.HttpCodeException;
 import com.github.adamantcheese.chan.core.net.NetUtilsClasses.ResponseResult;
@@ -57,11 +62,10 @@ import static com.github.adamantcheese.chan.Chan.inject;
  * <p>Obtain ChanLoaders with {@link ChanLoaderManager}.
  * <p>ChanLoaders can load boards and threads, and return {@link ChanThread} objects on success, through
  * {@link ChanLoaderCallback}.
- * <p>For threads timers can be started with {@link #setTimer()} to do a request later.
+ * <p>For threads timers can be started with {@link #setTimer()} to do a request later; the delay adapts to how fast
+ * the thread is moving, see {@link RefreshTiming}.
  */
 public class ChanThreadLoader {
-    private static final int[] WATCH_TIMEOUTS = {10, 15, 20, 30, 60, 90, 120, 180, 240, 300, 600, 1800, 3600};
-
     private final List<ChanLoaderCallback> listeners = new CopyOnWriteArrayList<>();
 
     @NonNull
@@ -73,9 +77,10 @@ public class ChanThreadLoader {
     @Nullable
     private ScheduledFuture<?> pendingFuture;
 
-    private int currentTimeout = 0;
+    private final RefreshTiming refreshTiming = new RefreshTiming();
     private int lastPostCount;
     private long lastLoadTime;
+    private long nextLoadTime;
 
     @Inject
     private WatchManager watchManager;
@@ -149,7 +154,7 @@ public class ChanThreadLoader {
             loadable.listViewTop = 0;
         }
 
-        currentTimeout = -1;
+        refreshTiming.reset();
 
         synchronized (this) {
             thread = null;
@@ -212,17 +217,18 @@ public class ChanThreadLoader {
         BackgroundUtils.ensureMainThread();
         clearPendingRunnable();
 
-        int watchTimeout = WATCH_TIMEOUTS[currentTimeout];
+        long watchTimeout = refreshTiming.reserveNextRefresh();
+        nextLoadTime = System.currentTimeMillis() + watchTimeout;
 
         pendingFuture =
                 BackgroundUtils.backgroundScheduledService.schedule(() -> BackgroundUtils.runOnMainThread(() -> {
                     pendingFuture = null;
                     requestMoreData();
-                }), watchTimeout, TimeUnit.SECONDS);
+                }), watchTimeout, TimeUnit.MILLISECONDS);
     }
 
     public void clearTimer() {
-        currentTimeout = 0;
+        refreshTiming.reset();
         clearPendingRunnable();
     }
 
@@ -232,9 +238,10 @@ public class ChanThreadLoader {
     public long getTimeUntilLoadMore() {
         if (call != null) {
             return 0L;
+        } else if (pendingFuture != null) {
+            return nextLoadTime - System.currentTimeMillis();
         } else {
-            long waitTime = WATCH_TIMEOUTS[Math.max(0, currentTimeout)] * 1000L;
-            return lastLoadTime + waitTime - System.currentTimeMillis();
+            return lastLoadTime + refreshTiming.getDelay() - System.currentTimeMillis();
         }
     }
 
@@ -247,18 +254,35 @@ public class ChanThreadLoader {
             }
         }
 
+        long requestStart = SystemClock.elapsedRealtime();
+        long requestStartNanos = SystemClock.elapsedRealtimeNanos();
+        ChanReaderParser parser = new ChanReaderParser(loadable, cachedClones, null);
         return NetUtils.makeJsonRequest(getChanUrl(loadable), new ResponseResult<ChanLoaderResponse>() {
             @Override
             public void onFailure(Exception e) {
+                recordArchiveResult(requestStart, parser.getResponseTime(), e);
                 notifyAboutError(new ChanLoaderException(e));
             }
 
             @Override
             public void onSuccess(ChanLoaderResponse result) {
-                clearTimer();
-                BackgroundUtils.runOnBackgroundThread(() -> onResponse(result));
+                recordArchiveResult(requestStart, parser.getResponseTime(), null);
+                // the request and the parse, which is done as the response is read
+                Tracer.record("ChanThreadLoader load", SystemClock.elapsedRealtimeNanos() - requestStartNanos);
+                clearPendingRunnable();
+                BackgroundUtils.runOnBackgroundThread(() -> onResponse(result, requestStartNanos), Lane.PARSE);
             }
-        }, new ChanReaderParser(loadable, cachedClones, null));
+        }, parser);
+    }
+
+    /**
+     * @param responseTime when the response arrived, or 0 if it never did; parsing isn't part of the archive's latency
+     */
+    private void recordArchiveResult(long requestStart, long responseTime, @Nullable Exception error) {
+        if (loadable.site instanceof ExternalSiteArchive) {
+            long end = responseTime > 0 ? responseTime : SystemClock.elapsedRealtime();
+            ArchivesManager.getInstance().recordResult((ExternalSiteArchive) loadable.site, end - requestStart, error);
+        }
     }
 
     private HttpUrl getChanUrl(Loadable loadable) {
@@ -282,22 +306,22 @@ public class ChanThreadLoader {
         return url;
     }
 
-    private void onResponse(ChanLoaderResponse response) {
+    private void onResponse(ChanLoaderResponse response, long requestStartNanos) {
         call = null;
 
-        try {
+        try (Tracer.Span ignored = Tracer.begin("ChanThreadLoader process")) {
             if (response == null || response.posts.isEmpty()) {
                 throw new Exception("No posts in thread!");
             }
 
-            onResponseInternal(response);
+            onResponseInternal(response, requestStartNanos);
         } catch (Throwable e) {
             Logger.e(ChanThreadLoader.this, "onResponse error", e);
             notifyAboutError(new ChanLoaderException(e instanceof Exception ? (Exception) e : new Exception(e)));
         }
     }
 
-    private void onResponseInternal(ChanLoaderResponse response)
+    private void onResponseInternal(ChanLoaderResponse response, long requestStartNanos)
             throws Exception {
         BackgroundUtils.ensureBackgroundThread();
 
@@ -344,21 +368,23 @@ public class ChanThreadLoader {
         lastLoadTime = System.currentTimeMillis();
 
         int postCount = localThread.getPosts().size();
-        if (postCount > lastPostCount) {
-            // fresh posts, reset timer to minimum 10 seconds, or if sticky 30
+        boolean newPosts = postCount > lastPostCount;
+        if (newPosts) {
             lastPostCount = postCount;
-            currentTimeout = localThread.getOp().isSticky() ? 3 : 0;
-        } else {
-            // no new posts, increase timer
-            currentTimeout = Math.min(currentTimeout + 1, WATCH_TIMEOUTS.length - 1);
+        }
+        if (loadable.isThreadMode() && loadable.board != null) {
+            refreshTiming.update(localThread, loadable.board, newPosts);
         }
 
         DatabaseUtils.runTaskAsync(databaseLoadableManager.updateLoadable(loadable, false));
 
         BackgroundUtils.runOnMainThread(() -> {
-            for (ChanLoaderCallback l : listeners) {
-                l.onChanLoaderData(localThread);
+            try (Tracer.Span ignored = Tracer.begin("ChanThreadLoader bind")) {
+                for (ChanLoaderCallback l : listeners) {
+                    l.onChanLoaderData(localThread);
+                }
             }
+            Tracer.record("ChanThreadLoader load to bind", SystemClock.elapsedRealtimeNanos() - requestStartNanos);
         });
     }
 
@@ -379,6 +405,7 @@ public class ChanThreadLoader {
         if (pendingFuture != null) {
             pendingFuture.cancel(false);
             pendingFuture = null;
+            refreshTiming.releaseReservation();
         }
     }
 
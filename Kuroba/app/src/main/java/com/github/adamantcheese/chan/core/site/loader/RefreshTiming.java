@@ -0,0 +1,163 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.site.loader;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import com.github.adamantcheese.chan.core.model.ChanThread;
+import com.github.adamantcheese.chan.core.model.Post;
+import com.github.adamantcheese.chan.core.model.orm.Board;
+
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Works out when a thread should be refreshed next, based on how fast posts have been coming in.
+ * <p>
+ * The posting rate is estimated from the timestamps of the most recent posts, counting the time since the last post
+ * as well, so a thread that has gone quiet gets polled less and less. Threads past their bump or image limit are polled
+ * less, as they're on their way out. Timed refreshes are jittered and fitted into a budget shared by all loaders, so
+ * that a lot of open threads don't all refresh at the same moment.
+ */
+class RefreshTiming {
+    private static final long MIN_DELAY = SECONDS.toMillis(10);
+    private static final long STICKY_MIN_DELAY = SECONDS.toMillis(30);
+    private static final long MAX_DELAY = HOURS.toMillis(1);
+    private static final int SAMPLE_POSTS = 20;
+    private static final double JITTER = 0.1;
+    // timed refreshes across all loaders are kept at least this far apart
+    private static final long GLOBAL_SPACING = SECONDS.toMillis(1);
+
+    private static final TreeSet<Long> reservedSlots = new TreeSet<>();
+
+    private final Random random = new Random();
+    private long delay = MIN_DELAY;
+    private int emptyLoads;
+    private long reservedSlot = -1;
+
+    /**
+     * @return the current estimated delay between refreshes, in milliseconds
+     */
+    long getDelay() {
+        return delay;
+    }
+
+    /**
+     * Go back to the minimum delay, for when the user is actively interacting with the thread or something went wrong.
+     */
+    void reset() {
+        delay = MIN_DELAY;
+        emptyLoads = 0;
+    }
+
+    /**
+     * Updates the estimate after a load.
+     *
+     * @param thread   the thread as it is after the load
+     * @param board    the board of the thread, for its limits
+     * @param newPosts whether the load brought in new posts
+     */
+    void update(@NonNull ChanThread thread, @NonNull Board board, boolean newPosts) {
+        emptyLoads = newPosts ? 0 : emptyLoads + 1;
+
+        if (thread.isArchived() || thread.isClosed()) {
+            delay = MAX_DELAY;
+            return;
+        }
+
+        Post op = thread.getOp();
+        long minDelay = op.isSticky() ? STICKY_MIN_DELAY : MIN_DELAY;
+        List<Post> posts = thread.getPosts();
+
+        // posts per second over the window from the oldest sampled post until now; the mean gap between posts is the
+        // expected time until the next one, and polling at half of that keeps new posts from sitting around too long
+        long estimate;
+        int sampled = Math.min(SAMPLE_POSTS, posts.size());
+        if (sampled < 2) {
+            estimate = minDelay;
+        } else {
+            long windowStart = posts.get(posts.size() - sampled).time;
+            long window = Math.max(1, System.currentTimeMillis() / 1000L - windowStart);
+            estimate = SECONDS.toMillis(window) / (sampled - 1) / 2;
+        }
+
+        // no more bumping or images means the thread is winding down
+        if (board.bumpLimit > 0 && op.getReplies() >= board.bumpLimit) {
+            estimate *= 2;
+        }
+        if (board.imageLimit > 0 && op.getImagesCount() >= board.imageLimit) {
+            estimate = estimate * 3 / 2;
+        }
+
+        // back off on empty loads regardless, in case the post timestamps can't be trusted (clock skew)
+        long backoff = minDelay << Math.min(emptyLoads, 10);
+
+        delay = Math.min(MAX_DELAY, Math.max(minDelay, Math.max(estimate, backoff)));
+    }
+
+    /**
+     * Reserves a slot for the next timed refresh.
+     *
+     * @return the time to wait until refreshing, in milliseconds, with jitter applied and fitted into the global budget
+     */
+    long reserveNextRefresh() {
+        long jittered = (long) (delay * (1 + JITTER * (2 * random.nextDouble() - 1)));
+        long now = SystemClock.elapsedRealtime();
+        synchronized (reservedSlots) {
+            releaseLocked();
+            reservedSlots.headSet(now).clear();
+
+            long slot = now + jittered;
+            while (true) {
+                Long lower = reservedSlots.floor(slot);
+                Long higher = reservedSlots.ceiling(slot);
+                if (lower != null && slot - lower < GLOBAL_SPACING) {
+                    slot = lower + GLOBAL_SPACING;
+                } else if (higher != null && higher - slot < GLOBAL_SPACING) {
+                    slot = higher + GLOBAL_SPACING;
+                } else {
+                    break;
+                }
+            }
+            reservedSlots.add(slot);
+            reservedSlot = slot;
+            return slot - now;
+        }
+    }
+
+    /**
+     * Gives up any reserved slot, for when the timed refresh is cancelled.
+     */
+    void releaseReservation() {
+        synchronized (reservedSlots) {
+            releaseLocked();
+        }
+    }
+
+    private void releaseLocked() {
+        if (reservedSlot >= 0) {
+            reservedSlots.remove(reservedSlot);
+            reservedSlot = -1;
+        }
+    }
+}
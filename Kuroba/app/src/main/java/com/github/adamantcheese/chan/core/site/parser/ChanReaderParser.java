@@ -16,6 +16,7 @@
  */
 package com.github.adamantcheese.chan.core.site.parser;
 
+import android.os.SystemClock;
 import android.util.JsonReader;
 
 import androidx.annotation.NonNull;
@@ -32,19 +33,24 @@ import com.github.adamantcheese.chan.core.site.loader.ChanLoaderResponse;
 import com.github.adamantcheese.chan.ui.theme.Theme;
 import com.github.adamantcheese.chan.ui.theme.ThemeHelper;
 import com.github.adamantcheese.chan.utils.BackgroundUtils;
+import com.github.adamantcheese.chan.utils.PriorityExecutor.Lane;
+import com.github.adamantcheese.chan.utils.Tracer;
 import com.github.adamantcheese.chan.core.net.NetUtilsClasses.JSONProcessor;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 import javax.inject.Inject;
 
@@ -57,6 +63,8 @@ import static com.github.adamantcheese.chan.Chan.inject;
  */
 public class ChanReaderParser
         extends JSONProcessor<ChanLoaderResponse> {
+    // Posts being parsed at the same time; when full, reading waits for parsing to catch up
+    private static final int MAX_IN_FLIGHT = 4 * Runtime.getRuntime().availableProcessors();
 
     @Inject
     FilterEngine filterEngine;
@@ -73,6 +81,8 @@ public class ChanReaderParser
 
     private final List<Filter> filters;
 
+    private volatile long responseTime;
+
     /**
      * @param loadable    The loadable associated with this parser
      * @param cachedPosts A list of cached posts; may be an empty list for no cached post processing
@@ -87,89 +97,182 @@ public class ChanReaderParser
         this.reader = reader == null ? this.loadable.site.chanReader() : reader;
 
         filters = new ArrayList<>();
-        List<Filter> enabledFilters = filterEngine.getEnabledFilters();
-        for (Filter filter : enabledFilters) {
-            if (filterEngine.matchesBoard(filter, this.loadable.board)) {
-                // copy the filter because it will get used on other threads
-                filters.add(filter.clone());
-            }
+        for (Filter filter : filterEngine.getEnabledFilters(this.loadable.board)) {
+            // copy the filter because it will get used on other threads
+            filters.add(filter.clone());
         }
     }
 
+    /**
+     * @return the {@link SystemClock#elapsedRealtime()} at which the response arrived and reading it started, or 0 if it
+     * hasn't yet
+     */
+    public long getResponseTime() {
+        return responseTime;
+    }
+
     @Override
     public ChanLoaderResponse process(JsonReader reader)
             throws Exception {
-        ChanReaderProcessingQueue processing = new ChanReaderProcessingQueue(cached, loadable);
+        responseTime = SystemClock.elapsedRealtime();
+        try (Tracer.Span ignored = Tracer.begin("ChanReaderParser.process")) {
+            ChanReaderProcessingQueue processing = new ChanReaderProcessingQueue(cached, loadable);
+            PipelinedParse pipeline = new PipelinedParse(processing);
+            processing.setListener(pipeline);
+
+            try {
+                if (loadable.isThreadMode()) {
+                    this.reader.loadThread(reader, processing);
+                } else if (loadable.isCatalogMode()) {
+                    this.reader.loadCatalog(reader, processing);
+                } else {
+                    throw new IllegalArgumentException("Unknown mode");
+                }
+            } catch (Exception e) {
+                pipeline.cancel();
+                throw e;
+            }
 
-        if (loadable.isThreadMode()) {
-            this.reader.loadThread(reader, processing);
-        } else if (loadable.isCatalogMode()) {
-            this.reader.loadCatalog(reader, processing);
-        } else {
-            throw new IllegalArgumentException("Unknown mode");
+            List<Post> list = pipeline.collect();
+            return processPosts(processing.getOp(), list, pipeline.removedPosts);
         }
+    }
 
-        List<PostHide> removedPosts;
-        try {
-            removedPosts = databaseHideManager.getRemovedPostsWithThreadNo(processing.getOp().no);
-        } catch (Exception e) {
-            removedPosts = Collections.emptyList();
+    /**
+     * Parses posts on the background executor as soon as the reader has read them, instead of waiting for the whole
+     * response to be read first, so that comment parsing overlaps with the network read. The amount of posts being
+     * parsed at once is bounded, which also stops the reader when parsing can't keep up. Results are collected in the
+     * order the posts were read.
+     * <p>
+     * Because posts are dispatched before the whole response is known, a quote is considered internal if the quoted
+     * post came before it in the response. That matches the full set in a thread, where posts are in the order they were
+     * made and can't quote later ones. A catalog is in bump order, so an op can quote one that comes after it; there,
+     * posts are only dispatched once the whole response has been read.
+     */
+    private class PipelinedParse
+            implements ChanReaderProcessingQueue.Listener {
+        private final ChanReaderProcessingQueue queue;
+        private final Theme currentTheme = ThemeHelper.getTheme();
+        private final int cacheVersion = ParsedPostCache.getVersion(filters);
+        private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+
+        private final List<Post> reused = new ArrayList<>();
+        private final List<Future<Post>> parsing = new ArrayList<>();
+        // catalog posts held back until every post number is known
+        private final List<Post.Builder> deferred = new ArrayList<>();
+        // A set of all post numbers read so far. Used for checking if a quote if for the current thread or externally.
+        private final Set<Integer> internalNums = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        // Read by the parsing tasks while more removed posts may still be added
+        private final List<PostHide> removedPosts = new CopyOnWriteArrayList<>();
+        private boolean removedPostsLoaded;
+
+        private PipelinedParse(ChanReaderProcessingQueue queue) {
+            this.queue = queue;
         }
 
-        // add in extra removed posts from filters (for cached posts)
-        for (Post post : processing.getToReuse()) {
-            if(post.filterRemove) {
+        @Override
+        public void onReuse(Post post) {
+            loadRemovedPosts();
+            internalNums.add(post.no);
+            reused.add(post);
+            // add in extra removed posts from filters (for cached posts)
+            if (post.filterRemove) {
                 removedPosts.add(new PostHide(post.board.siteId, post.boardCode, post.no));
             }
         }
 
-        List<Post> list = parsePosts(processing, removedPosts);
-        return processPosts(processing.getOp(), list, removedPosts);
-    }
-
-    // Concurrently parses the new posts with an executor
-    private List<Post> parsePosts(ChanReaderProcessingQueue queue, List<PostHide> removedPosts)
-            throws InterruptedException, ExecutionException {
-        List<Post> cached = queue.getToReuse();
-        List<Post> total = new ArrayList<>(cached);
-
-        List<Post.Builder> toParse = queue.getToParse();
+        @Override
+        public void onParse(Post.Builder postBuilder) {
+            loadRemovedPosts();
+            internalNums.add(postBuilder.no);
 
-        // A set of all post numbers in the thread. Used for checking if a quote if for the current thread or externally.
-        Set<Integer> internalNums = new HashSet<>();
-        // All nos of cached posts.
-        for (Post post : cached) {
-            internalNums.add(post.no);
-        }
-        // And nos for posts to parse, from the builder.
-        for (Post.Builder builder : toParse) {
-            internalNums.add(builder.no);
+            if (loadable.isCatalogMode()) {
+                deferred.add(postBuilder);
+            } else {
+                dispatch(postBuilder);
+            }
         }
-        // Do not modify internalNums after this point.
-        internalNums = Collections.unmodifiableSet(internalNums);
 
-        List<Callable<Post>> tasks = new ArrayList<>(toParse.size());
-        final Theme currentTheme = ThemeHelper.getTheme();
+        private void dispatch(Post.Builder postBuilder) {
+            int rawHash = ParsedPostCache.hashRaw(postBuilder);
+            PostParser.Callback callback = PostParseCallable.callback(databaseSavedReplyManager,
+                    postBuilder.board,
+                    removedPosts,
+                    internalNums
+            );
+            Post parsed = ParsedPostCache.get(loadable,
+                    postBuilder,
+                    rawHash,
+                    cacheVersion,
+                    databaseSavedReplyManager.isSaved(postBuilder.board, postBuilder.no),
+                    callback
+            );
+            if (parsed != null) {
+                FutureTask<Post> done = new FutureTask<>(() -> parsed);
+                done.run();
+                parsing.add(done);
+                return;
+            }
 
-        for (Post.Builder post : toParse) {
-            tasks.add(new PostParseCallable(filters,
+            ParsedPostCache.QuoteStates quotes = new ParsedPostCache.QuoteStates(callback);
+            PostParseCallable task = new PostParseCallable(filters,
                     databaseSavedReplyManager,
-                    post,
+                    postBuilder,
                     reader,
-                    removedPosts,
-                    internalNums,
+                    quotes,
                     currentTheme
-            ));
+            );
+            inFlight.acquireUninterruptibly();
+            try {
+                parsing.add(BackgroundUtils.backgroundService.submit(Lane.PARSE, () -> {
+                    try {
+                        Post post = task.call();
+                        if (post != null) {
+                            ParsedPostCache.put(loadable, postBuilder, rawHash, cacheVersion, post, quotes);
+                        }
+                        return post;
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+                throw e;
+            }
+        }
+
+        // The op is complete by the time the first post is handed over, as it's the first post in the response
+        private void loadRemovedPosts() {
+            if (removedPostsLoaded || queue.getOp() == null) return;
+            removedPostsLoaded = true;
+            try {
+                removedPosts.addAll(databaseHideManager.getRemovedPostsWithThreadNo(queue.getOp().no));
+            } catch (Exception ignored) {}
+        }
+
+        private List<Post> collect()
+                throws InterruptedException, ExecutionException {
+            loadRemovedPosts();
+            for (Post.Builder postBuilder : deferred) {
+                dispatch(postBuilder);
+            }
+            deferred.clear();
+
+            List<Post> total = new ArrayList<>(reused);
+            for (Future<Post> f : parsing) {
+                Post p = f.get();
+                if (p != null) {
+                    total.add(p);
+                }
+            }
+            return total;
         }
 
-        List<Future<Post>> futures = BackgroundUtils.backgroundService.invokeAll(tasks);
-        for (Future<Post> f : futures) {
-            Post p = f.get();
-            if (p != null) {
-                total.add(p);
+        private void cancel() {
+            for (Future<Post> f : parsing) {
+                f.cancel(true);
             }
         }
-        return total;
     }
 
     private ChanLoaderResponse processPosts(Post.Builder op, List<Post> allPost, List<PostHide> removedPosts) {
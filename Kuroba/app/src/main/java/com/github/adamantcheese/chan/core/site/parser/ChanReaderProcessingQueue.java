@@ -31,6 +31,7 @@ public class ChanReaderProcessingQueue {
     private final List<Post> toReuse = new ArrayList<>();
     private final List<Post.Builder> toParse = new ArrayList<>();
     private Post.Builder op;
+    private Listener listener;
 
     public ChanReaderProcessingQueue(List<Post> toReuse, Loadable loadable) {
         this.loadable = loadable;
@@ -46,10 +47,16 @@ public class ChanReaderProcessingQueue {
 
     public void addForReuse(Post post) {
         toReuse.add(post);
+        if (listener != null) {
+            listener.onReuse(post);
+        }
     }
 
     public void addForParse(Post.Builder postBuilder) {
         toParse.add(postBuilder);
+        if (listener != null) {
+            listener.onParse(postBuilder);
+        }
     }
 
     public void setOp(Post.Builder op) {
@@ -60,11 +67,25 @@ public class ChanReaderProcessingQueue {
         return toReuse;
     }
 
-    List<Post.Builder> getToParse() {
+    public List<Post.Builder> getToParse() {
         return toParse;
     }
 
     Post.Builder getOp() {
         return op;
     }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Gets told about posts as soon as they've been read, so they can be processed while the rest is still being read.
+     * Posts are passed in the order they appear in the response.
+     */
+    interface Listener {
+        void onReuse(Post post);
+
+        void onParse(Post.Builder postBuilder);
+    }
 }
@@ -18,6 +18,7 @@ package com.github.adamantcheese.chan.core.site.parser;
 
 import android.app.AlertDialog;
 import android.graphics.Typeface;
+import android.os.SystemClock;
 import android.text.SpannableString;
 import android.text.SpannableStringBuilder;
 import android.text.Spanned;
@@ -44,6 +45,7 @@ import com.github.adamantcheese.chan.core.site.archives.ExternalSiteArchive.Arch
 import com.github.adamantcheese.chan.core.site.sites.chan4.Chan4;
 import com.github.adamantcheese.chan.ui.text.AbsoluteSizeSpanHashed;
 import com.github.adamantcheese.chan.ui.text.ForegroundColorSpanHashed;
+import com.github.adamantcheese.chan.ui.text.ThemeColorSpan;
 import com.github.adamantcheese.chan.ui.theme.Theme;
 import com.github.adamantcheese.chan.utils.BackgroundUtils;
 import com.github.adamantcheese.chan.core.net.NetUtils;
@@ -66,7 +68,6 @@ import java.util.regex.Pattern;
 import static com.github.adamantcheese.chan.core.site.parser.StyleRule.tagRule;
 import static com.github.adamantcheese.chan.utils.AndroidUtils.getActivityContext;
 import static com.github.adamantcheese.chan.utils.AndroidUtils.getAppContext;
-import static com.github.adamantcheese.chan.utils.AndroidUtils.getAttrColor;
 import static com.github.adamantcheese.chan.utils.AndroidUtils.sp;
 
 @AnyThread
@@ -87,8 +88,8 @@ public class CommentParser {
     // A pattern matching any board search links
     private final Pattern boardSearchPattern = Pattern.compile("//boards\\.4chan.*?\\.org/(.*?)/catalog#s=(.*)");
 
-    // The list of rules for this parser, mapping an HTML tag to a list of StyleRules that need to be applied for that tag
-    private final Map<String, List<StyleRule>> rules = new HashMap<>();
+    // The rules for this parser, mapping an HTML tag to the StyleRules that may be applied for that tag
+    private final Map<String, TagRules> rules = new HashMap<>();
 
     private static final Typeface mona = Typeface.createFromAsset(getAppContext().getAssets(), "font/mona.ttf");
 
@@ -131,13 +132,37 @@ public class CommentParser {
     }
 
     public void rule(StyleRule rule) {
-        List<StyleRule> list = rules.get(rule.tag());
-        if (list == null) {
-            list = new ArrayList<>(3);
-            rules.put(rule.tag(), list);
+        TagRules tagRules = rules.get(rule.tag());
+        if (tagRules == null) {
+            tagRules = new TagRules();
+            rules.put(rule.tag(), tagRules);
         }
 
-        list.add(rule);
+        // rules with classes take priority over the ones without, so they're kept separately and checked first
+        (rule.highPriority() ? tagRules.classRules : tagRules.plainRules).add(rule);
+    }
+
+    /**
+     * @param tag       The tag, including any style suffix (see DefaultPostParser)
+     * @param cssClass  The raw class attribute of the element, may be empty
+     * @return The rule that would be applied by handleTag for this tag, or null if the text would be kept as-is
+     */
+    @Nullable
+    public StyleRule findRule(String tag, String cssClass) {
+        TagRules tagRules = rules.get(tag);
+        if (tagRules == null) return null;
+        for (StyleRule rule : tagRules.classRules) {
+            if (rule.applies(cssClass)) return rule;
+        }
+        return tagRules.plainRules.isEmpty() ? null : tagRules.plainRules.get(0);
+    }
+
+    /**
+     * @return true if comments for this parser can go through the streaming parser in DefaultPostParser; parsers that
+     * override handleTag and need the whole document tree should return false to always use the Jsoup path
+     */
+    public boolean canStream() {
+        return true;
     }
 
     /**
@@ -169,16 +194,16 @@ public class CommentParser {
             Element element
     ) {
 
-        List<StyleRule> rules = this.rules.get(tag);
-        if (rules != null) {
-            for (int i = 0; i < 2; i++) {
-                boolean highPriority = i == 0;
-                for (StyleRule rule : rules) {
-                    if (rule.highPriority() == highPriority && rule.applies(element)) {
-                        return rule.apply(theme, callback, post, text, element);
-                    }
+        TagRules tagRules = this.rules.get(tag);
+        if (tagRules != null) {
+            for (StyleRule rule : tagRules.classRules) {
+                if (rule.applies(element)) {
+                    return rule.apply(theme, callback, post, text, element);
                 }
             }
+            if (!tagRules.plainRules.isEmpty()) {
+                return tagRules.plainRules.get(0).apply(theme, callback, post, text, element);
+            }
         }
 
         // Unknown tag, return the text;
@@ -240,7 +265,7 @@ public class CommentParser {
         }
 
         SpannableString res = new SpannableString(handlerLink.key);
-        PostLinkable pl = new PostLinkable(theme, handlerLink.key, handlerLink.value, handlerLink.type);
+        PostLinkable pl = new PostLinkable(handlerLink.key, handlerLink.value, handlerLink.type);
         res.setSpan(pl, 0, res.length(), (250 << Spanned.SPAN_PRIORITY_SHIFT) & Spanned.SPAN_PRIORITY);
         post.addLinkable(pl);
 
@@ -302,7 +327,7 @@ public class CommentParser {
                         dialog.show();
                     }
                 },
-                new ForegroundColorSpanHashed(getAttrColor(theme.resValue, R.attr.post_inline_quote_color)),
+                new ThemeColorSpan(ThemeColorSpan.Role.INLINE_QUOTE),
                 new AbsoluteSizeSpanHashed(sp(12f))
         );
     }
@@ -314,10 +339,8 @@ public class CommentParser {
         try {
             if (!(builder.board.site instanceof Chan4)) return text; //4chan only
             int postNo = Integer.parseInt(deadlink.text().substring(2));
-            List<ExternalSiteArchive> boards = ArchivesManager.getInstance().archivesForBoard(builder.board);
-            if (!boards.isEmpty()) {
-                PostLinkable newLinkable = new PostLinkable(theme,
-                        text,
+            if (ArchivesManager.getInstance().hasArchivesForBoard(builder.board)) {
+                PostLinkable newLinkable = new PostLinkable(text,
                         // if the deadlink is in an external archive, set a resolve link
                         // if the deadlink is in any other site, we don't have enough info to properly link to stuff, so
                         // we assume that deadlinks in an OP are previous threads
@@ -429,6 +452,11 @@ public class CommentParser {
         return result;
     }
 
+    private static class TagRules {
+        private final List<StyleRule> classRules = new ArrayList<>(3);
+        private final List<StyleRule> plainRules = new ArrayList<>(1);
+    }
+
     public static class Link {
         public Type type;
         public CharSequence key;
@@ -458,16 +486,22 @@ public class CommentParser {
         }
 
         public void resolve(@NonNull ResolveCallback callback, @NonNull ResolveParser parser) {
+            ExternalSiteArchive archive = (ExternalSiteArchive) board.site;
+            long requestStart = SystemClock.elapsedRealtime();
             NetUtils.makeJsonRequest(((ExternalSiteArchive.ArchiveEndpoints) board.site.endpoints()).resolvePost(board.code,
                     postId
             ), new ResponseResult<ThreadLink>() {
                 @Override
                 public void onFailure(Exception e) {
+                    ArchivesManager.getInstance()
+                            .recordResult(archive, SystemClock.elapsedRealtime() - requestStart, e);
                     BackgroundUtils.runOnMainThread(() -> callback.onProcessed(null));
                 }
 
                 @Override
                 public void onSuccess(ThreadLink result) {
+                    ArchivesManager.getInstance()
+                            .recordResult(archive, SystemClock.elapsedRealtime() - requestStart, null);
                     BackgroundUtils.runOnMainThread(() -> callback.onProcessed(result));
                 }
             }, parser, 5000);
@@ -0,0 +1,220 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.site.parser;
+
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import com.github.adamantcheese.chan.core.model.Post;
+import com.github.adamantcheese.chan.core.model.PostHttpIcon;
+import com.github.adamantcheese.chan.core.model.PostImage;
+import com.github.adamantcheese.chan.core.model.orm.Filter;
+import com.github.adamantcheese.chan.core.model.orm.Loadable;
+import com.github.adamantcheese.chan.core.settings.ChanSettings;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps parsed posts around after their loader is gone, so that re-opening a thread doesn't parse every post again.
+ * <p>
+ * Entries are looked up by site, board, post number and loadable mode, and are only used if the raw post data read
+ * from the response is the same as when the post was parsed, and if nothing that affects parsing has changed since:
+ * the filters for the board, the parser settings, and whether the post is a saved reply. The comment also depends on
+ * the posts it quotes, as quotes of saved posts get a "(You)" and quotes of removed posts are struck out, so the
+ * answers the parser got about each quoted post are kept with the entry and have to be the same again. Changing any of
+ * those simply makes the old entries miss, so there is nothing to invalidate explicitly.
+ * <p>
+ * Loaders change their posts after parsing (replies, deleted state, embeds), so entries are copies of the parsed
+ * posts and every hit hands out a new copy, the same way ChanThreadLoader clones its cached posts.
+ */
+class ParsedPostCache {
+    private static final int MAX_ENTRIES = 2000;
+
+    private static final LruCache<String, Entry> entries = new LruCache<>(MAX_ENTRIES);
+
+    /**
+     * @param callback answers for the posts that the post quotes, as they are now
+     * @return a copy of a previously parsed post for the given raw post data, or null if there is none or it's out of
+     * date
+     */
+    @Nullable
+    static Post get(
+            Loadable loadable,
+            Post.Builder builder,
+            int rawHash,
+            int version,
+            boolean isSavedReply,
+            PostParser.Callback callback
+    ) {
+        Entry entry = entries.get(getKey(loadable, builder));
+        if (entry == null || entry.rawHash != rawHash || entry.version != version
+                || entry.post.isSavedReply != isSavedReply || !entry.quotes.matches(callback)) {
+            return null;
+        }
+        return entry.post.clone();
+    }
+
+    /**
+     * @param quotes the callback that the post was parsed with, holding the answers the parser got
+     */
+    static void put(Loadable loadable, Post.Builder builder, int rawHash, int version, Post post, QuoteStates quotes) {
+        entries.put(getKey(loadable, builder), new Entry(rawHash, version, post.clone(), quotes));
+    }
+
+    /**
+     * @param filters the filters that will be applied to the posts
+     * @return a version for everything outside of the raw post data that changes the result of parsing
+     */
+    static int getVersion(List<Filter> filters) {
+        int result = Objects.hash(ChanSettings.parseExtraQuotes.get(),
+                ChanSettings.enableEmoji.get(),
+                ChanSettings.anonymize.get(),
+                ChanSettings.anonymizeIds.get(),
+                ChanSettings.showAnonymousName.get(),
+                ChanSettings.revealTextSpoilers.get(),
+                ChanSettings.fontSize.get()
+        );
+        for (Filter filter : filters) {
+            result = 31 * result + Objects.hash(filter.id,
+                    filter.enabled,
+                    filter.type,
+                    filter.pattern,
+                    filter.allBoards,
+                    filter.boards,
+                    filter.action,
+                    filter.color,
+                    filter.applyToReplies,
+                    filter.onlyOnOP,
+                    filter.applyToSaved
+            );
+        }
+        return result;
+    }
+
+    private static String getKey(Loadable loadable, Post.Builder builder) {
+        return loadable.mode + "/" + builder.board.siteId + "/" + builder.board.code + "/" + builder.no;
+    }
+
+    /**
+     * @return a hash of the raw post data as read from the response; must be taken before parsing, which changes it
+     */
+    static int hashRaw(Post.Builder builder) {
+        int result = Objects.hash(builder.opId,
+                builder.op,
+                builder.replies,
+                builder.imagesCount,
+                builder.uniqueIps,
+                builder.sticky,
+                builder.closed,
+                builder.archived,
+                builder.lastModified,
+                builder.subject,
+                builder.name,
+                builder.comment.toString(),
+                builder.tripcode,
+                builder.unixTimestampSeconds,
+                builder.posterId,
+                builder.moderatorCapcode,
+                builder.idColor
+        );
+        for (PostImage image : builder.images) {
+            result = 31 * result + Objects.hash(image.serverFilename, image.imageUrl, image.spoiler(), image.deleted);
+        }
+        if (builder.httpIcons != null) {
+            for (PostHttpIcon icon : builder.httpIcons) {
+                result = 31 * result + Objects.hash(icon.url, icon.name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Wraps the callback given to the parser and remembers, for every post number the parser asks about, what the
+     * answers were at that time.
+     */
+    static class QuoteStates
+            implements PostParser.Callback {
+        private static final int SAVED = 1;
+        private static final int INTERNAL = 1 << 1;
+        private static final int REMOVED = 1 << 2;
+
+        private final PostParser.Callback callback;
+        private final Map<Integer, Integer> states = new HashMap<>();
+
+        QuoteStates(PostParser.Callback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public boolean isSaved(int postNo) {
+            return (record(postNo) & SAVED) != 0;
+        }
+
+        @Override
+        public boolean isInternal(int postNo) {
+            return (record(postNo) & INTERNAL) != 0;
+        }
+
+        @Override
+        public boolean isRemoved(int postNo) {
+            return (record(postNo) & REMOVED) != 0;
+        }
+
+        private synchronized int record(int postNo) {
+            Integer state = states.get(postNo);
+            if (state == null) {
+                state = getState(callback, postNo);
+                states.put(postNo, state);
+            }
+            return state;
+        }
+
+        /**
+         * @return true if the given callback gives the same answers for every post number that was asked about
+         */
+        private synchronized boolean matches(PostParser.Callback current) {
+            for (Map.Entry<Integer, Integer> state : states.entrySet()) {
+                if (getState(current, state.getKey()) != state.getValue()) return false;
+            }
+            return true;
+        }
+
+        private static int getState(PostParser.Callback callback, int postNo) {
+            return (callback.isSaved(postNo) ? SAVED : 0)
+                    | (callback.isInternal(postNo) ? INTERNAL : 0)
+                    | (callback.isRemoved(postNo) ? REMOVED : 0);
+        }
+    }
+
+    private static class Entry {
+        private final int rawHash;
+        private final int version;
+        private final Post post;
+        private final QuoteStates quotes;
+
+        private Entry(int rawHash, int version, Post post, QuoteStates quotes) {
+            this.rawHash = rawHash;
+            this.version = version;
+            this.post = post;
+            this.quotes = quotes;
+        }
+    }
+}
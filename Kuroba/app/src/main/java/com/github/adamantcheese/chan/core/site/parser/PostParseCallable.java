@@ -20,6 +20,7 @@ import androidx.annotation.NonNull;
 
 import com.github.adamantcheese.chan.core.database.DatabaseSavedReplyManager;
 import com.github.adamantcheese.chan.core.model.Post;
+import com.github.adamantcheese.chan.core.model.orm.Board;
 import com.github.adamantcheese.chan.core.model.orm.Filter;
 import com.github.adamantcheese.chan.core.model.orm.PostHide;
 import com.github.adamantcheese.chan.ui.theme.Theme;
@@ -35,8 +36,7 @@ class PostParseCallable
     private final DatabaseSavedReplyManager savedReplyManager;
     private final Post.Builder postBuilder;
     private final ChanReader reader;
-    private final List<PostHide> removedPosts;
-    private final Set<Integer> internalNos;
+    private final PostParser.Callback callback;
     private final Theme theme;
 
     public PostParseCallable(
@@ -44,16 +44,14 @@ class PostParseCallable
             DatabaseSavedReplyManager savedReplyManager,
             Post.Builder builder,
             ChanReader reader,
-            List<PostHide> removedPosts,
-            Set<Integer> internalNos,
+            PostParser.Callback callback,
             @NonNull Theme theme
     ) {
         this.filters = filters;
         this.savedReplyManager = savedReplyManager;
         this.postBuilder = builder;
         this.reader = reader;
-        this.removedPosts = removedPosts;
-        this.internalNos = internalNos;
+        this.callback = callback;
         this.theme = theme;
     }
 
@@ -62,10 +60,22 @@ class PostParseCallable
         // needed for "Apply to own posts" to work correctly
         postBuilder.isSavedReply(savedReplyManager.isSaved(postBuilder.board, postBuilder.no));
 
-        return reader.getParser().parse(theme, postBuilder, filters, new PostParser.Callback() {
+        return reader.getParser().parse(theme, postBuilder, filters, callback);
+    }
+
+    /**
+     * @return the callback for posts on the given board, answering from the given removed posts and post numbers
+     */
+    static PostParser.Callback callback(
+            DatabaseSavedReplyManager savedReplyManager,
+            Board board,
+            List<PostHide> removedPosts,
+            Set<Integer> internalNos
+    ) {
+        return new PostParser.Callback() {
             @Override
             public boolean isSaved(int postNo) {
-                return savedReplyManager.isSaved(postBuilder.board, postNo);
+                return savedReplyManager.isSaved(board, postNo);
             }
 
             @Override
@@ -73,9 +83,10 @@ class PostParseCallable
                 return internalNos.contains(postNo);
             }
 
+            @Override
             public boolean isRemoved(int postNo) {
-                return removedPosts.contains(new PostHide(postBuilder.board.siteId, postBuilder.board.code, postNo));
+                return removedPosts.contains(new PostHide(board.siteId, board.code, postNo));
             }
-        });
+        };
     }
 }
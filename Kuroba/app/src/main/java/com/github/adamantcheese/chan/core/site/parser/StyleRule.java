@@ -28,14 +28,15 @@ import android.text.style.TypefaceSpan;
 import android.text.style.UnderlineSpan;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-import com.github.adamantcheese.chan.R;
 import com.github.adamantcheese.chan.core.model.Post;
 import com.github.adamantcheese.chan.core.model.PostLinkable;
 import com.github.adamantcheese.chan.ui.text.AbsoluteSizeSpanHashed;
 import com.github.adamantcheese.chan.ui.text.CodeBackgroundSpan;
 import com.github.adamantcheese.chan.ui.text.CustomTypefaceSpan;
 import com.github.adamantcheese.chan.ui.text.ForegroundColorSpanHashed;
+import com.github.adamantcheese.chan.ui.text.ThemeColorSpan;
 import com.github.adamantcheese.chan.ui.theme.Theme;
 import com.github.adamantcheese.chan.utils.StringUtils;
 
@@ -45,7 +46,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-import static com.github.adamantcheese.chan.utils.AndroidUtils.getAttrColor;
 
 public class StyleRule {
     public enum ForegroundColor {
@@ -181,6 +181,14 @@ public class StyleRule {
         return classes != null && !classes.isEmpty();
     }
 
+    public boolean isBlockElement() {
+        return blockElement;
+    }
+
+    public boolean hasActions() {
+        return !actions.isEmpty();
+    }
+
     public boolean applies(Element element) {
         if (classes == null || classes.isEmpty()) {
             return true;
@@ -195,6 +203,28 @@ public class StyleRule {
         return false;
     }
 
+    /**
+     * @param cssClass The raw class attribute of an element, may be empty
+     */
+    public boolean applies(String cssClass) {
+        if (classes == null || classes.isEmpty()) {
+            return true;
+        }
+        if (cssClass.isEmpty()) {
+            return false;
+        }
+
+        for (String elementClass : cssClass.trim().split("\\s+")) {
+            for (String c : classes) {
+                if (c.equalsIgnoreCase(elementClass)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
     public CharSequence apply(
             @NonNull Theme theme, PostParser.Callback callback, Post.Builder post, CharSequence text, Element element
     ) {
@@ -211,10 +241,91 @@ public class StyleRule {
             result = action.execute(theme, callback, post, result, element);
         }
 
+        List<Object> spansToApply = getSpansToApply(post, result);
+        if (!spansToApply.isEmpty()) {
+            result = applySpan(result, spansToApply);
+        }
+
+        // Apply break if not the last element.
+        if (blockElement && element.nextSibling() != null) {
+            result = TextUtils.concat(result, "\n");
+        }
+
+        if (trimEndWhitespace) {
+            result = StringUtils.chomp(new SpannableStringBuilder(result));
+        }
+
+        return result;
+    }
+
+    /**
+     * Same as apply, but styles the end of the given builder in place instead of building new copies of the text; used
+     * by the streaming comment parser. The range from start to the end of the builder is the element's content.
+     * The line break after block elements is not added, as only the caller knows if the element has a next sibling.
+     *
+     * @param element The element, only needed if this rule has actions
+     * @return The new end of the element's content, which is the length of the builder
+     */
+    public int applyInPlace(
+            @NonNull Theme theme,
+            PostParser.Callback callback,
+            Post.Builder post,
+            SpannableStringBuilder text,
+            int start,
+            @Nullable Element element
+    ) {
+        if (nullify) {
+            text.delete(start, text.length());
+            return start;
+        }
+
+        if (justText != null) {
+            text.replace(start, text.length(), justText);
+            return text.length();
+        }
+
+        if (!actions.isEmpty()) {
+            CharSequence result = text.subSequence(start, text.length());
+            for (Action action : actions) {
+                result = action.execute(theme, callback, post, result, element);
+            }
+            // the result carries over any spans it wants to keep
+            for (Object span : text.getSpans(start, text.length(), Object.class)) {
+                if (text.getSpanStart(span) >= start) {
+                    text.removeSpan(span);
+                }
+            }
+            text.replace(start, text.length(), result == null ? "" : result);
+        }
+
+        int end = text.length();
+        List<Object> spansToApply = getSpansToApply(post, link != null ? text.subSequence(start, end) : null);
+        for (Object span : spansToApply) {
+            text.setSpan(span, start, end, (1000 << Spanned.SPAN_PRIORITY_SHIFT) & Spanned.SPAN_PRIORITY);
+        }
+
+        if (trimEndWhitespace && end > start) {
+            // same as StringUtils.chomp
+            char last = text.charAt(end - 1);
+            if (last == '\n') {
+                int cut = end - 1;
+                if (cut > start && text.charAt(cut - 1) == '\r') {
+                    cut--;
+                }
+                text.delete(cut, end);
+            } else if (last == '\r') {
+                text.delete(end - 1, end);
+            }
+        }
+
+        return text.length();
+    }
+
+    private List<Object> getSpansToApply(Post.Builder post, CharSequence text) {
         List<Object> spansToApply = new ArrayList<>(2);
 
         if (foregroundColor != null) {
-            spansToApply.add(new ForegroundColorSpanHashed(getForegroundColor(theme, foregroundColor)));
+            spansToApply.add(getForegroundColorSpan(foregroundColor));
         }
 
         if (strikeThrough) {
@@ -238,7 +349,7 @@ public class StyleRule {
         }
 
         if (code) {
-            spansToApply.add(new CodeBackgroundSpan(theme));
+            spansToApply.add(new CodeBackgroundSpan());
         }
 
         if (typeface != null) {
@@ -250,37 +361,24 @@ public class StyleRule {
         }
 
         if (link != null) {
-            PostLinkable pl = new PostLinkable(theme, link.name(), result, link);
+            PostLinkable pl = new PostLinkable(link.name(), text, link);
             post.addLinkable(pl);
             spansToApply.add(pl);
         }
 
-        if (!spansToApply.isEmpty()) {
-            result = applySpan(result, spansToApply);
-        }
-
-        // Apply break if not the last element.
-        if (blockElement && element.nextSibling() != null) {
-            result = TextUtils.concat(result, "\n");
-        }
-
-        if (trimEndWhitespace) {
-            result = StringUtils.chomp(new SpannableStringBuilder(result));
-        }
-
-        return result;
+        return spansToApply;
     }
 
-    private int getForegroundColor(Theme theme, ForegroundColor foregroundColor) {
+    private Object getForegroundColorSpan(ForegroundColor foregroundColor) {
         switch (foregroundColor) {
             case INLINE_QUOTE:
-                return getAttrColor(theme.resValue, R.attr.post_inline_quote_color);
+                return new ThemeColorSpan(ThemeColorSpan.Role.INLINE_QUOTE);
             case QUOTE:
-                return getAttrColor(theme.resValue, R.attr.post_quote_color);
+                return new ThemeColorSpan(ThemeColorSpan.Role.QUOTE);
             case RED:
-                return Color.RED;
+                return new ForegroundColorSpanHashed(Color.RED);
             default:
-                return 0;
+                return new ForegroundColorSpanHashed(0);
         }
     }
 
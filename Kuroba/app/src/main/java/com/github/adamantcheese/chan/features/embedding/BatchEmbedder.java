@@ -0,0 +1,47 @@
+package com.github.adamantcheese.chan.features.embedding;
+
+import android.util.JsonReader;
+
+import com.github.adamantcheese.chan.features.embedding.EmbeddingEngine.EmbedResult;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+import okhttp3.HttpUrl;
+
+/**
+ * An optional extension for embedders whose provider can look up many items in a single request. The thread embed
+ * scheduler uses this to resolve every link of this type in a thread up front; the results are put into the embed cache
+ * so that the regular per-post embedding just reads them back.
+ */
+public interface BatchEmbedder {
+    /**
+     * @return true if batched requests can currently be made (for example, if an API key is set)
+     */
+    boolean canBatch();
+
+    /**
+     * @return the maximum number of ids the provider accepts in a single request
+     */
+    int getMaxBatchSize();
+
+    /**
+     * @param matcher The matcher for the embed pattern, positioned at a match
+     * @return The provider id for the matched link
+     */
+    String getBatchId(Matcher matcher);
+
+    /**
+     * @param ids The provider ids to look up, at most getMaxBatchSize() of them
+     * @return A URL that will return information for all the given ids
+     */
+    HttpUrl generateBatchRequestURL(Collection<String> ids);
+
+    /**
+     * @param response The response from the batch URL
+     * @return A map of provider id to embed result; ids that weren't found can be left out
+     */
+    Map<String, EmbedResult> processBatch(JsonReader response)
+            throws Exception;
+}
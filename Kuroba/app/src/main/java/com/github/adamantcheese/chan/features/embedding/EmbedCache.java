@@ -0,0 +1,343 @@
+package com.github.adamantcheese.chan.features.embedding;
+
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.util.Pair;
+
+import com.github.adamantcheese.chan.core.settings.PersistableChanState;
+import com.github.adamantcheese.chan.features.embedding.EmbeddingEngine.EmbedResult;
+import com.github.adamantcheese.chan.utils.BackgroundUtils;
+import com.github.adamantcheese.chan.utils.Logger;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Timeout;
+
+import static com.github.adamantcheese.chan.Chan.instance;
+import static com.github.adamantcheese.chan.core.settings.ChanSettings.EMPTY_JSON;
+import static com.github.adamantcheese.chan.utils.AndroidUtils.getAppContext;
+import static com.github.adamantcheese.chan.utils.BackgroundUtils.backgroundScheduledService;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * A thread-safe, disk-backed cache of embed metadata (titles, durations, extra images and rendered math URLs).
+ * Entries expire after a TTL, and the cache is written to a file in the app's storage a short while after it changes,
+ * so it survives restarts without bloating the shared preferences.
+ * <p>
+ * Lookups that miss the cache should go through {@link #coalesce(String, CallFactory)}, so that the same link
+ * appearing in many posts only results in a single request.
+ */
+public class EmbedCache {
+    private static final String CACHE_FILE_NAME = "embed_cache.json";
+    private static final int MAX_ENTRIES = 2000;
+    private static final long RESULT_TTL = DAYS.toMillis(7);
+    private static final long MATH_TTL = DAYS.toMillis(30);
+    private static final long PERSIST_DELAY = SECONDS.toMillis(10);
+    private static final Type ENTRIES_TYPE = new TypeToken<Map<String, Entry>>() {}.getType();
+    private static final Type LEGACY_TYPE = new TypeToken<Map<String, EmbedResult>>() {}.getType();
+
+    private static EmbedCache instance;
+
+    private final LruCache<String, Entry> entries = new LruCache<>(MAX_ENTRIES);
+    private final Map<String, List<Waiter>> inFlight = new HashMap<>();
+    private final File cacheFile;
+    private ScheduledFuture<?> pendingPersist;
+
+    private EmbedCache() {
+        cacheFile = new File(getAppContext().getFilesDir(), CACHE_FILE_NAME);
+        load();
+    }
+
+    public static synchronized EmbedCache getInstance() {
+        if (instance == null) {
+            instance = new EmbedCache();
+        }
+        return instance;
+    }
+
+    @Nullable
+    public EmbedResult getResult(String url) {
+        Entry entry = getEntry(url);
+        return entry == null ? null : entry.result;
+    }
+
+    public void putResult(String url, @NonNull EmbedResult result) {
+        Entry entry = new Entry();
+        entry.result = result;
+        entry.expires = System.currentTimeMillis() + RESULT_TTL;
+        entries.put(url, entry);
+        schedulePersist();
+    }
+
+    @Nullable
+    public HttpUrl getMathUrl(String mathKey) {
+        Entry entry = getEntry(mathKey);
+        return entry == null || entry.mathUrl == null ? null : HttpUrl.parse(entry.mathUrl);
+    }
+
+    public void putMathUrl(String mathKey, @NonNull HttpUrl url) {
+        Entry entry = new Entry();
+        entry.mathUrl = url.toString();
+        entry.expires = System.currentTimeMillis() + MATH_TTL;
+        entries.put(mathKey, entry);
+        schedulePersist();
+    }
+
+    public void clear() {
+        entries.evictAll();
+        synchronized (this) {
+            //noinspection ResultOfMethodCallIgnored
+            cacheFile.delete();
+        }
+    }
+
+    @Nullable
+    private Entry getEntry(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (entry.expires < System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Coalesces requests for the same key. The returned call behaves like a regular call for the embedding engine, but
+     * only the first caller for a key actually hits the network; everyone else waiting on that key gets notified when
+     * that request finishes. The real request's callback is expected to have put its result into this cache by the
+     * time it returns, so waiters can simply read it back.
+     *
+     * @param key         the cache key, usually the URL being embedded
+     * @param callFactory creates the real call/callback pair; only invoked if nothing is in flight for the key
+     */
+    public Call coalesce(String key, CallFactory callFactory) {
+        return new CoalescedCall(key, callFactory);
+    }
+
+    private void onRequestComplete(String key, @Nullable IOException failure) {
+        List<Waiter> waiters;
+        synchronized (inFlight) {
+            waiters = inFlight.remove(key);
+        }
+        if (waiters == null) return;
+        for (Waiter waiter : waiters) {
+            waiter.notify(failure);
+        }
+    }
+
+    //region Persistence
+    private void load() {
+        try {
+            Map<String, Entry> loaded = null;
+            if (cacheFile.exists()) {
+                try (Reader reader = new FileReader(cacheFile)) {
+                    loaded = instance(Gson.class).fromJson(reader, ENTRIES_TYPE);
+                }
+            } else if (!EMPTY_JSON.equals(PersistableChanState.videoTitleDurCache.get())) {
+                // migrate the old shared preference based cache, then drop it
+                Map<String, EmbedResult> legacy =
+                        instance(Gson.class).fromJson(PersistableChanState.videoTitleDurCache.get(), LEGACY_TYPE);
+                loaded = new HashMap<>();
+                if (legacy != null) {
+                    for (Map.Entry<String, EmbedResult> legacyEntry : legacy.entrySet()) {
+                        Entry entry = new Entry();
+                        entry.result = legacyEntry.getValue();
+                        entry.expires = System.currentTimeMillis() + RESULT_TTL;
+                        loaded.put(legacyEntry.getKey(), entry);
+                    }
+                }
+                PersistableChanState.videoTitleDurCache.setSync(EMPTY_JSON);
+                schedulePersist();
+            }
+            if (loaded == null) return;
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, Entry> entry : loaded.entrySet()) {
+                if (entry.getValue() != null && entry.getValue().expires > now) {
+                    entries.put(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (Exception e) {
+            Logger.e(this, "Failed to load the embed cache", e);
+        }
+    }
+
+    private synchronized void schedulePersist() {
+        if (pendingPersist != null && !pendingPersist.isDone()) return;
+        pendingPersist = backgroundScheduledService.schedule(this::persist, PERSIST_DELAY, MILLISECONDS);
+    }
+
+    /**
+     * Writes the cache out to disk. Safe to call from any thread; called automatically after changes.
+     */
+    public synchronized void persist() {
+        File temp = new File(cacheFile.getPath() + ".tmp");
+        try (Writer writer = new FileWriter(temp)) {
+            instance(Gson.class).toJson(entries.snapshot(), ENTRIES_TYPE, writer);
+        } catch (Exception e) {
+            Logger.e(this, "Failed to persist the embed cache", e);
+            return;
+        }
+        if (!temp.renameTo(cacheFile)) {
+            Logger.e(this, "Failed to replace the embed cache file");
+        }
+    }
+    //endregion
+
+    private static class Entry {
+        public EmbedResult result;
+        public String mathUrl;
+        public long expires;
+    }
+
+    public interface CallFactory {
+        Pair<Call, Callback> create();
+    }
+
+    private interface Waiter {
+        void notify(@Nullable IOException failure);
+    }
+
+    /**
+     * A call that attaches itself to the in-flight request for its key, starting that request if there isn't one.
+     * Completes with an empty 200 response once the shared request is done; the result itself is in the cache.
+     */
+    private class CoalescedCall
+            implements Call {
+        private final String key;
+        private final CallFactory callFactory;
+        private final Request request;
+        private volatile boolean executed;
+        private volatile boolean canceled;
+
+        private CoalescedCall(String key, CallFactory callFactory) {
+            this.key = key;
+            this.callFactory = callFactory;
+            HttpUrl url = HttpUrl.parse(key);
+            request = new Request.Builder().url(url == null ? HttpUrl.get("https://localhost/") : url).build();
+        }
+
+        @Override
+        public void enqueue(@NotNull Callback callback) {
+            executed = true;
+            Pair<Call, Callback> real = null;
+            synchronized (inFlight) {
+                List<Waiter> waiters = inFlight.get(key);
+                if (waiters == null) {
+                    waiters = new ArrayList<>();
+                    inFlight.put(key, waiters);
+                    real = callFactory.create();
+                }
+                waiters.add(failure -> {
+                    if (canceled || failure != null) {
+                        callback.onFailure(this, failure != null ? failure : new IOException("Canceled"));
+                        return;
+                    }
+                    try {
+                        callback.onResponse(this,
+                                new Response.Builder().code(200)
+                                        .request(request)
+                                        .protocol(Protocol.HTTP_1_1)
+                                        .message("OK")
+                                        .build()
+                        );
+                    } catch (IOException e) {
+                        callback.onFailure(this, e);
+                    }
+                });
+            }
+
+            if (real == null) return; // someone else is already making this request
+            final Pair<Call, Callback> realPair = real;
+            EmbedRateLimiter.enqueue(realPair.first, new Callback() {
+                @Override
+                public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                    BackgroundUtils.runOnBackgroundThread(() -> {
+                        realPair.second.onFailure(call, e);
+                        onRequestComplete(key, e);
+                    });
+                }
+
+                @Override
+                public void onResponse(@NotNull Call call, @NotNull Response response) {
+                    BackgroundUtils.runOnBackgroundThread(() -> {
+                        IOException failure = null;
+                        try {
+                            realPair.second.onResponse(call, response);
+                        } catch (IOException e) {
+                            failure = e;
+                        }
+                        onRequestComplete(key, failure);
+                    });
+                }
+            });
+        }
+
+        @NotNull
+        @Override
+        public Response execute()
+                throws IOException {
+            throw new IOException("Coalesced calls can only be enqueued");
+        }
+
+        @Override
+        public void cancel() {
+            // the shared request keeps going for the other waiters, this one just ignores the outcome
+            canceled = true;
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return executed;
+        }
+
+        @NotNull
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @NotNull
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @SuppressWarnings("MethodDoesntCallSuperMethod")
+        @NotNull
+        @Override
+        public Call clone() {
+            return new CoalescedCall(key, callFactory);
+        }
+    }
+}
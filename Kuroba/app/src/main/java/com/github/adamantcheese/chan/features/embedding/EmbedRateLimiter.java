@@ -0,0 +1,43 @@
+package com.github.adamantcheese.chan.features.embedding;
+
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+
+import static com.github.adamantcheese.chan.utils.BackgroundUtils.backgroundScheduledService;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Spaces out embed requests going to the same host, so that a thread full of links to one provider doesn't send them
+ * all at once and get rate limited by the provider.
+ */
+class EmbedRateLimiter {
+    private static final long MIN_SPACING = 200; // at most 5 requests a second per host
+
+    private static final Map<String, Long> nextSlots = new HashMap<>();
+
+    /**
+     * Enqueues the given call, either right away or once its host has a free slot.
+     */
+    static void enqueue(Call call, Callback callback) {
+        String host = call.request().url().host();
+        long delay;
+        synchronized (nextSlots) {
+            long now = SystemClock.elapsedRealtime();
+            Long nextSlot = nextSlots.get(host);
+            long start = nextSlot == null ? now : Math.max(now, nextSlot);
+            nextSlots.put(host, start + MIN_SPACING);
+            delay = start - now;
+        }
+
+        if (delay <= 0) {
+            call.enqueue(callback);
+        } else {
+            backgroundScheduledService.schedule(() -> call.enqueue(callback), delay, MILLISECONDS);
+        }
+    }
+}
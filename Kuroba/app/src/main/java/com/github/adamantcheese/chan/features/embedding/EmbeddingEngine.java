@@ -5,7 +5,6 @@ import android.text.SpannableStringBuilder;
 import android.text.Spanned;
 import android.text.TextUtils;
 import android.text.style.ImageSpan;
-import android.util.LruCache;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -55,10 +54,6 @@ public class EmbeddingEngine {
     private static EmbeddingEngine instance;
     private final List<Embedder<?>> embedders = new NoDeleteArrayList<>();
 
-    // a cache for titles and durations to prevent extra api calls if not necessary
-    // maps a URL to a title and duration string; if durations are disabled, the second argument is an empty string
-    public static LruCache<String, EmbedResult> videoTitleDurCache = new LruCache<>(500);
-
     private static final LinkExtractor LINK_EXTRACTOR =
             LinkExtractor.builder().linkTypes(EnumSet.of(LinkType.URL)).build();
 
@@ -95,6 +90,7 @@ public class EmbeddingEngine {
      * &nbsp;&nbsp;&nbsp;&nbsp;- For more complicated stuff, you can extend the necessary items yourself quite easily.<br>
      * &nbsp;&nbsp;&nbsp;&nbsp;- Look at already implemented embedders for hints! Streamable's is probably the easiest to understand for a baseline.
      * 2) Add it to the EmbeddingEngine constructor.
+     * &nbsp;&nbsp;&nbsp;&nbsp;- If the provider can look up many links in one request, also implement BatchEmbedder; ThreadEmbedScheduler will use it.<br>
      * 3) Done! Everything else is taken care of for you.<br>
      * <br>
      *
@@ -107,8 +103,17 @@ public class EmbeddingEngine {
     public List<Call> embed(
             final Theme theme, @NonNull final Post post, @NonNull final InvalidateFunction invalidateFunction
     ) {
-        if (post.embedComplete.get()) return Collections.emptyList();
-        post.embedComplete.set(true); // prevent duplicate calls
+        if (!post.embedComplete.compareAndSet(false, true)) return Collections.emptyList(); // prevent duplicate calls
+        return embedClaimed(theme, post, invalidateFunction);
+    }
+
+    /**
+     * Same as embed, but for a post whose embedComplete flag has already been set by the caller, such as the
+     * ThreadEmbedScheduler which claims all the posts in a thread at once.
+     */
+    List<Call> embedClaimed(
+            final Theme theme, @NonNull final Post post, @NonNull final InvalidateFunction invalidateFunction
+    ) {
         SpannableStringBuilder modifiableCopy = new SpannableStringBuilder(post.comment);
 
         // These count as embedding, so we do them here
@@ -315,8 +320,9 @@ public class EmbeddingEngine {
         List<Pair<Call, Callback>> calls = new ArrayList<>();
         Set<Pair<String, HttpUrl>> toReplace = generateReplacements(embedder, commentCopy);
 
+        EmbedCache cache = EmbedCache.getInstance();
         for (Pair<String, HttpUrl> urlPair : toReplace) {
-            EmbedResult result = videoTitleDurCache.get(urlPair.first);
+            EmbedResult result = cache.getResult(urlPair.first);
             if (result != null) {
                 // we've previously cached this embed and we don't need additional information; ignore failures because there's no actual call going on
                 calls.add(getStandardCachedCallPair(theme,
@@ -328,14 +334,30 @@ public class EmbeddingEngine {
                         embedder.getIconBitmap()
                 ));
             } else {
-                // we haven't cached this embed, or we need additional information
-                calls.add(NetUtils.makeCall(urlPair.second, embedder, embedder, getStandardResponseResult(theme,
-                        commentCopy,
-                        generatedLinkables,
-                        generatedImages,
-                        urlPair.first,
-                        embedder.getIconBitmap()
-                ), 2500, false));
+                // we haven't cached this embed; the same link in other posts shares a single request
+                calls.add(new Pair<>(cache.coalesce(urlPair.first,
+                        () -> NetUtils.makeCall(urlPair.second,
+                                embedder,
+                                embedder,
+                                getStandardResponseResult(urlPair.first),
+                                2500,
+                                false
+                        )
+                ), new IgnoreFailureCallback() {
+                    @Override
+                    public void onResponse(@NonNull Call call, @NonNull Response response) {
+                        EmbedResult result = cache.getResult(urlPair.first);
+                        if (result == null) return; // failed, let the autolinker take care of it
+                        performStandardEmbedding(theme,
+                                commentCopy,
+                                generatedLinkables,
+                                generatedImages,
+                                result,
+                                urlPair.first,
+                                embedder.getIconBitmap()
+                        );
+                    }
+                }));
             }
         }
         return calls;
@@ -354,30 +376,15 @@ public class EmbeddingEngine {
         return result;
     }
 
-    private static ResponseResult<EmbedResult> getStandardResponseResult(
-            Theme theme,
-            SpannableStringBuilder commentCopy,
-            List<PostLinkable> generatedLinkables,
-            List<PostImage> generatedImages,
-            String URL,
-            Bitmap iconBitmap
-    ) {
+    private static ResponseResult<EmbedResult> getStandardResponseResult(String URL) {
         return new ResponseResult<EmbedResult>() {
             @Override
             public void onFailure(Exception e) {} // don't do anything, let the autolinker take care of it
 
             @Override
             public void onSuccess(EmbedResult result) {
-                //got a result, replace with the result and also cache the result
-                videoTitleDurCache.put(URL, result);
-                performStandardEmbedding(theme,
-                        commentCopy,
-                        generatedLinkables,
-                        generatedImages,
-                        result,
-                        URL,
-                        iconBitmap
-                );
+                // cache the result, everyone waiting on this URL will read it from there
+                EmbedCache.getInstance().putResult(URL, result);
             }
         };
     }
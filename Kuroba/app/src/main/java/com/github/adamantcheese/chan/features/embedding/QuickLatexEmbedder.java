@@ -5,7 +5,6 @@ import android.text.SpannableStringBuilder;
 import android.text.Spanned;
 import android.text.TextUtils;
 import android.text.style.ImageSpan;
-import android.util.LruCache;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -54,9 +53,6 @@ public class QuickLatexEmbedder
     private final Pattern QUICK_LATEX_RESPONSE =
             Pattern.compile(".*?\r\n(\\S+)\\s.*?\\s\\d+\\s\\d+(?:\r\n([\\s\\S]+))?");
 
-    // maps a math string to a rendered image URL
-    public static LruCache<String, HttpUrl> mathCache = new LruCache<>(100);
-
     @Override
     public boolean shouldEmbed(CharSequence comment, Board board) {
         return board.mathTags && StringUtils.containsAny(comment, Arrays.asList("[math]", "[eqn]"));
@@ -100,8 +96,12 @@ public class QuickLatexEmbedder
             toReplace.add(new Pair<>(rawMath, sanitizedMath));
         }
 
+        EmbedCache cache = EmbedCache.getInstance();
+        // the rendered image has the text color and size baked in, so those are part of the key
+        String keySuffix = "|" + getMathColor() + "|" + getMathSize();
         for (Pair<String, String> math : toReplace) {
-            HttpUrl imageUrl = mathCache.get(math.first);
+            String mathKey = math.first + keySuffix;
+            HttpUrl imageUrl = cache.getMathUrl(mathKey);
             if (imageUrl != null) {
                 // have a previous image URL
                 ret.add(new Pair<>(new NetUtilsClasses.NullCall(imageUrl), new NetUtilsClasses.IgnoreFailureCallback() {
@@ -118,8 +118,8 @@ public class QuickLatexEmbedder
                     }
                 }));
             } else {
-                // need to request an image URL
-                ret.add(new Pair<>(
+                // need to request an image URL; identical math in other posts shares a single request
+                ret.add(new Pair<>(cache.coalesce(mathKey, () -> new Pair<>(
                         instance(NetModule.OkHttpClientWithUtils.class).newCall(setupMathImageUrlRequest(math.second)),
                         new NetUtilsClasses.IgnoreFailureCallback() {
                             @Override
@@ -132,16 +132,8 @@ public class QuickLatexEmbedder
                                 try {
                                     String responseString = convert(null, response.body());
                                     Matcher matcher = QUICK_LATEX_RESPONSE.matcher(responseString);
-                                    if (matcher.matches()) {
-                                        HttpUrl url = HttpUrl.get(matcher.group(1));
-                                        String err = matcher.group(2);
-                                        if (err == null) {
-                                            mathCache.put(math.first, url);
-                                            Pair<Call, Callback> ret =
-                                                    generateMathSpanCalls(commentCopy, url, math.first);
-                                            if (ret == null || ret.first == null || ret.second == null) return;
-                                            ret.second.onResponse(ret.first, ret.first.execute());
-                                        }
+                                    if (matcher.matches() && matcher.group(2) == null) {
+                                        cache.putMathUrl(mathKey, HttpUrl.get(matcher.group(1)));
                                     }
                                 } catch (Exception ignored) {
                                 } finally {
@@ -149,7 +141,19 @@ public class QuickLatexEmbedder
                                 }
                             }
                         }
-                ));
+                )), new NetUtilsClasses.IgnoreFailureCallback() {
+                    @Override
+                    public void onResponse(@NotNull Call call, @NotNull Response response) {
+                        HttpUrl url = cache.getMathUrl(mathKey);
+                        if (url == null) return;
+                        Pair<Call, Callback> ret = generateMathSpanCalls(commentCopy, url, math.first);
+                        if (ret == null || ret.first == null || ret.second == null) return;
+                        try {
+                            ret.second.onResponse(ret.first, ret.first.execute());
+                        } catch (Exception ignored) {
+                        }
+                    }
+                }));
             }
         }
         return ret;
@@ -170,8 +174,8 @@ public class QuickLatexEmbedder
         //@formatter:off
         String postBody =
                 "formula=" + formula +
-                "&fsize=" + (int) (sp(ChanSettings.fontSize.get()) * 1.2) + "px" +
-                "&fcolor=" + getRGBColorIntString(getAttrColor(ThemeHelper.getTheme().resValue, android.R.attr.textColor)) +
+                "&fsize=" + getMathSize() + "px" +
+                "&fcolor=" + getMathColor() +
                 "&mode=0" +
                 "&out=1" +
                 "&preamble=\\usepackage{amsmath}\r\n\\usepackage{amsfonts}\r\n\\usepackage{amssymb}" +
@@ -183,6 +187,14 @@ public class QuickLatexEmbedder
                 .build();
     }
 
+    private static int getMathSize() {
+        return (int) (sp(ChanSettings.fontSize.get()) * 1.2);
+    }
+
+    private static String getMathColor() {
+        return getRGBColorIntString(getAttrColor(ThemeHelper.getTheme().resValue, android.R.attr.textColor));
+    }
+
     private Pair<Call, Callback> generateMathSpanCalls(
             SpannableStringBuilder comment, @NonNull HttpUrl imageUrl, String rawMath
     ) {
@@ -0,0 +1,258 @@
+package com.github.adamantcheese.chan.features.embedding;
+
+import androidx.annotation.NonNull;
+import androidx.core.util.Pair;
+
+import com.github.adamantcheese.chan.core.model.Post;
+import com.github.adamantcheese.chan.core.net.NetUtils;
+import com.github.adamantcheese.chan.core.net.NetUtilsClasses.JSONConverter;
+import com.github.adamantcheese.chan.core.net.NetUtilsClasses.ResponseResult;
+import com.github.adamantcheese.chan.core.settings.ChanSettings;
+import com.github.adamantcheese.chan.features.embedding.EmbeddingEngine.EmbedResult;
+import com.github.adamantcheese.chan.features.embedding.EmbeddingEngine.InvalidateFunction;
+import com.github.adamantcheese.chan.ui.theme.Theme;
+import com.github.adamantcheese.chan.utils.BackgroundUtils;
+import com.github.adamantcheese.chan.utils.Logger;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+
+/**
+ * Embeds all the posts of a thread at once, instead of each post cell starting its own requests as it's bound.
+ * <p>
+ * When a thread is set, every post that hasn't been embedded yet is claimed, links for providers that support batch
+ * lookups are resolved in as few requests as possible, and then the posts are embedded in order starting from the
+ * visible ones; any link that's still missing goes through the embed cache, which dedupes and rate limits requests.
+ * Finished posts are collected and handed back on the main thread in groups, so the adapter can rebind what's visible
+ * in a single pass rather than once per completed request.
+ */
+public class ThreadEmbedScheduler
+        implements InvalidateFunction {
+    private static final long PUSH_DELAY = 100; // ms to collect embedded posts before pushing them to the UI
+    private static final int BATCH_TIMEOUT = 5000;
+
+    private final EmbedListener listener;
+    // batch lookups in progress
+    private final List<Call> calls = Collections.synchronizedList(new ArrayList<>());
+    // embed requests in progress, by the post they're for; a post's entry is dropped once it's done embedding
+    private final Map<Post, List<Call>> postCalls = new IdentityHashMap<>();
+    private final List<Post> pending = new ArrayList<>();
+    private boolean pushScheduled;
+    private volatile int generation;
+
+    public ThreadEmbedScheduler(@NonNull EmbedListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param theme      the theme to embed with
+     * @param posts      the posts in the thread, in display order
+     * @param firstIndex the index of the first visible post; posts from there on are embedded first
+     */
+    public void schedule(Theme theme, List<Post> posts, int firstIndex) {
+        BackgroundUtils.ensureMainThread();
+        List<Post> claimed = new ArrayList<>();
+        int start = Math.max(0, Math.min(firstIndex, posts.size()));
+        for (int i = 0; i < posts.size(); i++) {
+            Post post = posts.get((start + i) % posts.size());
+            if (post.embedComplete.compareAndSet(false, true)) {
+                claimed.add(post);
+            }
+        }
+        if (claimed.isEmpty()) return;
+
+        final int scheduledGeneration = generation;
+        BackgroundUtils.runOnBackgroundThread(() -> resolveBatches(claimed,
+                scheduledGeneration,
+                () -> embedAll(theme, claimed, scheduledGeneration)
+        ));
+    }
+
+    /**
+     * Stops any outstanding work; posts that weren't embedded yet are released so they'll be embedded again later.
+     */
+    public void cancel() {
+        generation++;
+        synchronized (calls) {
+            for (Call call : calls) {
+                call.cancel();
+            }
+            calls.clear();
+        }
+        synchronized (postCalls) {
+            for (List<Call> callsForPost : postCalls.values()) {
+                for (Call call : callsForPost) {
+                    call.cancel();
+                }
+            }
+            postCalls.clear();
+        }
+    }
+
+    private void embedAll(Theme theme, List<Post> claimed, int scheduledGeneration) {
+        EmbeddingEngine engine = EmbeddingEngine.getInstance();
+        for (int i = 0; i < claimed.size(); i++) {
+            if (scheduledGeneration != generation) {
+                for (int j = i; j < claimed.size(); j++) {
+                    claimed.get(j).embedComplete.set(false);
+                }
+                return;
+            }
+            // held while enqueueing, so a post that finishes right away can't be dropped before it's added
+            synchronized (postCalls) {
+                List<Call> callsForPost = engine.embedClaimed(theme, claimed.get(i), this);
+                if (!callsForPost.isEmpty()) {
+                    postCalls.put(claimed.get(i), callsForPost);
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up every link of the batch capable embedders in as few requests as possible, putting the results in the
+     * embed cache, then runs the continuation once all those requests are done (successfully or not).
+     */
+    private void resolveBatches(List<Post> claimed, int scheduledGeneration, Runnable continuation) {
+        List<Pair<Call, Callback>> batchCalls = new ArrayList<>();
+        if (ChanSettings.enableEmbedding.get()) {
+            EmbedCache cache = EmbedCache.getInstance();
+            for (Embedder<?> embedder : EmbeddingEngine.getInstance().getEmbedders()) {
+                if (!(embedder instanceof BatchEmbedder) || !((BatchEmbedder) embedder).canBatch()) continue;
+                BatchEmbedder batchEmbedder = (BatchEmbedder) embedder;
+
+                // gather up all the uncached links, by id, as the same item may be linked in different ways
+                Map<String, List<String>> urlsById = new HashMap<>();
+                for (Post post : claimed) {
+                    if (!embedder.shouldEmbed(post.comment, post.board)) continue;
+                    Matcher matcher = embedder.getEmbedReplacePattern().matcher(post.comment);
+                    while (matcher.find()) {
+                        String url = matcher.group(0);
+                        if (url == null || cache.getResult(url) != null) continue;
+                        String id = batchEmbedder.getBatchId(matcher);
+                        List<String> urls = urlsById.get(id);
+                        if (urls == null) {
+                            urls = new ArrayList<>();
+                            urlsById.put(id, urls);
+                        }
+                        if (!urls.contains(url)) {
+                            urls.add(url);
+                        }
+                    }
+                }
+
+                List<String> ids = new ArrayList<>(urlsById.keySet());
+                for (int i = 0; i < ids.size(); i += batchEmbedder.getMaxBatchSize()) {
+                    List<String> batch = ids.subList(i, Math.min(ids.size(), i + batchEmbedder.getMaxBatchSize()));
+                    batchCalls.add(NetUtils.makeCall(batchEmbedder.generateBatchRequestURL(batch),
+                            new JSONConverter(),
+                            batchEmbedder::processBatch,
+                            getBatchResult(urlsById),
+                            BATCH_TIMEOUT,
+                            false
+                    ));
+                }
+            }
+        }
+
+        if (batchCalls.isEmpty() || scheduledGeneration != generation) {
+            continuation.run();
+            return;
+        }
+
+        AtomicInteger remaining = new AtomicInteger(batchCalls.size());
+        for (Pair<Call, Callback> batchCall : batchCalls) {
+            calls.add(batchCall.first);
+            EmbedRateLimiter.enqueue(batchCall.first, new Callback() {
+                @Override
+                public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                    batchCall.second.onFailure(call, e);
+                    onBatchComplete(call);
+                }
+
+                @Override
+                public void onResponse(@NotNull Call call, @NotNull Response response)
+                        throws IOException {
+                    try {
+                        batchCall.second.onResponse(call, response);
+                    } finally {
+                        onBatchComplete(call);
+                    }
+                }
+
+                private void onBatchComplete(Call call) {
+                    calls.remove(call);
+                    if (remaining.decrementAndGet() == 0) {
+                        BackgroundUtils.runOnBackgroundThread(continuation);
+                    }
+                }
+            });
+        }
+    }
+
+    private ResponseResult<Map<String, EmbedResult>> getBatchResult(Map<String, List<String>> urlsById) {
+        return new ResponseResult<Map<String, EmbedResult>>() {
+            @Override
+            public void onFailure(Exception e) {
+                // the links will be looked up one by one instead
+                Logger.w(ThreadEmbedScheduler.this, "Batch embed lookup failed", e);
+            }
+
+            @Override
+            public void onSuccess(Map<String, EmbedResult> result) {
+                EmbedCache cache = EmbedCache.getInstance();
+                for (Map.Entry<String, EmbedResult> entry : result.entrySet()) {
+                    List<String> urls = urlsById.get(entry.getKey());
+                    if (urls == null) continue;
+                    for (String url : urls) {
+                        cache.putResult(url, entry.getValue());
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public void invalidateView(Theme theme, Post post) {
+        synchronized (postCalls) {
+            postCalls.remove(post);
+        }
+        synchronized (pending) {
+            pending.add(post);
+            if (pushScheduled) return;
+            pushScheduled = true;
+        }
+        BackgroundUtils.runOnMainThread(this::push, PUSH_DELAY);
+    }
+
+    private void push() {
+        List<Post> embedded;
+        synchronized (pending) {
+            embedded = new ArrayList<>(pending);
+            pending.clear();
+            pushScheduled = false;
+        }
+        if (!embedded.isEmpty()) {
+            listener.onPostsEmbedded(embedded);
+        }
+    }
+
+    public interface EmbedListener {
+        /**
+         * Called on the main thread with a group of posts that have finished embedding.
+         */
+        void onPostsEmbedded(List<Post> posts);
+    }
+}
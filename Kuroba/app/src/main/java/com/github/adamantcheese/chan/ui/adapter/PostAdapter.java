@@ -30,16 +30,23 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.github.adamantcheese.chan.R;
 import com.github.adamantcheese.chan.core.model.ChanThread;
 import com.github.adamantcheese.chan.core.model.Post;
+import com.github.adamantcheese.chan.core.model.PostSearchIndex;
 import com.github.adamantcheese.chan.core.model.orm.Loadable;
 import com.github.adamantcheese.chan.core.settings.ChanSettings;
+import com.github.adamantcheese.chan.features.embedding.ThreadEmbedScheduler;
+import com.github.adamantcheese.chan.ui.cell.PostCell;
 import com.github.adamantcheese.chan.ui.cell.PostCellInterface;
 import com.github.adamantcheese.chan.ui.cell.ThreadStatusCell;
+import com.github.adamantcheese.chan.ui.helper.PostTextPrecomputer;
 import com.github.adamantcheese.chan.ui.theme.Theme;
 import com.github.adamantcheese.chan.utils.BackgroundUtils;
 import com.github.adamantcheese.chan.utils.RecyclerUtils;
+import com.github.adamantcheese.chan.utils.Tracer;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static com.github.adamantcheese.chan.ui.adapter.PostAdapter.CellType.TYPE_POST;
 import static com.github.adamantcheese.chan.ui.adapter.PostAdapter.CellType.TYPE_POST_STUB;
@@ -55,6 +62,8 @@ public class PostAdapter
         TYPE_POST_STUB
     }
 
+    private static final int MAX_POOLED_THUMBNAILS = 24;
+
     private final PostAdapterCallback postAdapterCallback;
     private final PostCellInterface.PostCellCallback postCellCallback;
     private final RecyclerView recyclerView;
@@ -63,6 +72,8 @@ public class PostAdapter
     private final List<Post> displayList = new ArrayList<>();
 
     private Loadable loadable = null;
+    // the search index of the thread being shown, embedded posts are indexed again as they come in
+    private PostSearchIndex searchIndex;
     private String error = null;
     private String highlightedId;
     private int highlightedNo = -1;
@@ -74,6 +85,10 @@ public class PostAdapter
     private boolean compact = false;
     private final Theme theme;
     private final RecyclerView.ItemDecoration divider;
+    private final ThreadEmbedScheduler embedScheduler = new ThreadEmbedScheduler(this::onPostsEmbedded);
+    private final PostTextPrecomputer textPrecomputer = new PostTextPrecomputer();
+    // shared by the thumbnail lists of all of the post cells, so thumbnail views move between cells as they're bound
+    private final RecyclerView.RecycledViewPool thumbnailViewPool = new RecyclerView.RecycledViewPool();
 
     public PostAdapter(
             RecyclerView recyclerView,
@@ -88,6 +103,7 @@ public class PostAdapter
         this.statusCellCallback = statusCellCallback;
         this.theme = theme;
         setHasStableIds(true);
+        thumbnailViewPool.setMaxRecycledViews(0, MAX_POOLED_THUMBNAILS);
 
         divider = RecyclerUtils.getBottomDividerDecoration(recyclerView.getContext());
         final ShapeDrawable lastSeen = new ShapeDrawable();
@@ -208,6 +224,14 @@ public class PostAdapter
         } catch (Exception ignored) {}
     }
 
+    @Override
+    public void onViewRecycled(@NonNull RecyclerView.ViewHolder holder) {
+        super.onViewRecycled(holder);
+        if (holder.itemView instanceof PostCell) {
+            ((PostCell) holder.itemView).recycleThumbnails();
+        }
+    }
+
     public boolean isInPopup() {
         return false;
     }
@@ -255,8 +279,13 @@ public class PostAdapter
 
     public void setThread(ChanThread thread, PostsFilter filter) {
         BackgroundUtils.ensureMainThread();
+        Tracer.Span span = Tracer.begin("PostAdapter.setThread");
 
+        if (loadable != null && !loadable.equals(thread.getLoadable())) {
+            embedScheduler.cancel();
+        }
         this.loadable = thread.getLoadable();
+        searchIndex = thread.getSearchIndex();
         boolean queryChanged =
                 this.searchQuery != null && filter != null && !this.searchQuery.equals(filter.getQuery());
         this.searchQuery = filter == null ? null : filter.getQuery();
@@ -308,6 +337,37 @@ public class PostAdapter
         displayList.addAll(newList);
 
         result.dispatchUpdatesTo(this); // better than notifyDataSetChanged for small UI updates, but can also act as a full refresh if needed
+
+        // posts that haven't been embedded yet get a new comment once they are, so those are measured after that
+        int firstIndex = RecyclerUtils.getIndexAndTop(recyclerView)[0];
+        List<Post> embeddedPosts = new ArrayList<>();
+        for (int i = 0; i < newList.size(); i++) {
+            Post post = newList.get((Math.max(0, firstIndex) + i) % newList.size());
+            if (post.embedComplete.get()) {
+                embeddedPosts.add(post);
+            }
+        }
+
+        // embed the whole thread up front, rather than each cell doing it as it's bound
+        embedScheduler.schedule(theme, newList, firstIndex);
+        textPrecomputer.setThread(embeddedPosts, 0, searchQuery);
+        span.close();
+    }
+
+    private void onPostsEmbedded(List<Post> posts) {
+        if (searchIndex != null) {
+            searchIndex.update(posts);
+        }
+        textPrecomputer.update(posts);
+        Set<Integer> embeddedNos = new HashSet<>();
+        for (Post post : posts) {
+            embeddedNos.add(post.no);
+        }
+        for (int i = 0; i < displayList.size(); i++) {
+            if (embeddedNos.contains(displayList.get(i).no)) {
+                notifyItemChanged(i);
+            }
+        }
     }
 
     public void setLastSeenIndicatorPosition(int position) {
@@ -315,11 +375,20 @@ public class PostAdapter
         notifyDataSetChanged();
     }
 
+    public PostTextPrecomputer getTextPrecomputer() {
+        return textPrecomputer;
+    }
+
+    public RecyclerView.RecycledViewPool getThumbnailViewPool() {
+        return thumbnailViewPool;
+    }
+
     public List<Post> getDisplayList() {
         return displayList;
     }
 
     public void cleanup() {
+        embedScheduler.cancel();
         highlightedId = null;
         highlightedNo = -1;
         highlightedTripcode = null;
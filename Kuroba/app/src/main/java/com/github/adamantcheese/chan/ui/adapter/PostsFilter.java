@@ -22,17 +22,16 @@ import com.github.adamantcheese.chan.core.database.DatabaseHideManager;
 import com.github.adamantcheese.chan.core.manager.WatchManager;
 import com.github.adamantcheese.chan.core.model.ChanThread;
 import com.github.adamantcheese.chan.core.model.Post;
-import com.github.adamantcheese.chan.core.model.PostImage;
 import com.github.adamantcheese.chan.core.model.orm.Loadable;
 import com.github.adamantcheese.chan.core.model.orm.Pin;
 import com.github.adamantcheese.chan.core.settings.ChanSettings;
-import com.github.adamantcheese.chan.utils.StringUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import static com.github.adamantcheese.chan.Chan.instance;
 
@@ -105,25 +104,10 @@ public class PostsFilter {
 
         // Process search
         if (!TextUtils.isEmpty(query)) {
-            boolean add;
+            Set<Integer> matches = thread.getSearchIndex().search(query);
             Iterator<Post> i = posts.iterator();
             while (i.hasNext()) {
-                Post item = i.next();
-                add = false;
-                if (StringUtils.containsIgnoreCase(item.comment, query)) {
-                    add = true;
-                } else if (StringUtils.containsIgnoreCase(item.subject, query)) {
-                    add = true;
-                } else if (StringUtils.containsIgnoreCase(item.name, query)) {
-                    add = true;
-                } else if (!item.images.isEmpty()) {
-                    for (PostImage image : item.images) {
-                        if (StringUtils.containsIgnoreCase(image.filename, query)) {
-                            add = true;
-                        }
-                    }
-                }
-                if (!add) {
+                if (!matches.contains(i.next().no)) {
                     i.remove();
                 }
             }
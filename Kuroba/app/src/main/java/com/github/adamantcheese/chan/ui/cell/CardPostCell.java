@@ -39,6 +39,7 @@ import com.github.adamantcheese.chan.features.embedding.EmbeddingEngine;
 import com.github.adamantcheese.chan.features.embedding.EmbeddingEngine.InvalidateFunction;
 import com.github.adamantcheese.chan.ui.layout.FixedRatioLinearLayout;
 import com.github.adamantcheese.chan.ui.theme.Theme;
+import com.github.adamantcheese.chan.ui.theme.ThemeHelper;
 import com.github.adamantcheese.chan.ui.view.FloatingMenu;
 import com.github.adamantcheese.chan.ui.view.FloatingMenuItem;
 import com.github.adamantcheese.chan.ui.view.PostImageThumbnailView;
@@ -197,6 +198,11 @@ public class CardPostCell
     private void bindPost(Theme theme, Post post) {
         bound = true;
 
+        // parsed text doesn't carry any colors, resolve them for the theme this cell is shown with
+        ThemeHelper.applyTheme(post.subjectSpan, theme);
+        ThemeHelper.applyTheme(post.nameTripcodeIdCapcodeSpan, theme);
+        ThemeHelper.applyTheme(post.comment, theme);
+
         if (highlighted || post.isSavedReply) {
             setBackgroundColor(getAttrColor(getContext(), R.attr.highlight_color));
         } else {
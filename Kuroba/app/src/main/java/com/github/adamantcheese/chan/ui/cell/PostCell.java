@@ -50,6 +50,8 @@ import android.widget.RelativeLayout;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.github.adamantcheese.chan.R;
@@ -66,16 +68,20 @@ import com.github.adamantcheese.chan.core.site.Site;
 import com.github.adamantcheese.chan.core.site.common.CommonDataStructs.ChanPage;
 import com.github.adamantcheese.chan.features.embedding.EmbeddingEngine;
 import com.github.adamantcheese.chan.features.embedding.EmbeddingEngine.InvalidateFunction;
+import com.github.adamantcheese.chan.ui.adapter.PostAdapter;
 import com.github.adamantcheese.chan.ui.helper.PostHelper;
+import com.github.adamantcheese.chan.ui.helper.PostTextPrecomputer;
 import com.github.adamantcheese.chan.ui.text.AbsoluteSizeSpanHashed;
 import com.github.adamantcheese.chan.ui.text.ForegroundColorSpanHashed;
 import com.github.adamantcheese.chan.ui.theme.Theme;
+import com.github.adamantcheese.chan.ui.theme.ThemeHelper;
 import com.github.adamantcheese.chan.ui.view.FloatingMenu;
 import com.github.adamantcheese.chan.ui.view.FloatingMenuItem;
 import com.github.adamantcheese.chan.ui.view.PostImageThumbnailView;
 import com.github.adamantcheese.chan.ui.view.ThumbnailView;
 import com.github.adamantcheese.chan.core.net.NetUtils;
 import com.github.adamantcheese.chan.core.net.NetUtilsClasses;
+import com.github.adamantcheese.chan.utils.Logger;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -142,6 +148,7 @@ public class PostCell
     private final PostViewMovementMethod commentMovementMethod = new PostViewMovementMethod();
 
     private final List<Call> embedCalls = new CopyOnWriteArrayList<>();
+    private final PostImagesAdapter imagesAdapter = new PostImagesAdapter();
 
     public PostCell(Context context) {
         super(context);
@@ -296,6 +303,11 @@ public class PostCell
     private void bindPost(Theme theme, Post post) {
         bound = true;
 
+        // parsed text doesn't carry any colors, resolve them for the theme this cell is shown with
+        ThemeHelper.applyTheme(post.subjectSpan, theme);
+        ThemeHelper.applyTheme(post.nameTripcodeIdCapcodeSpan, theme);
+        ThemeHelper.applyTheme(post.comment, theme);
+
         // Assume that we're in thread mode if the loadable is null
         threadMode = callback.getLoadable() == null || callback.getLoadable().isThreadMode();
 
@@ -322,11 +334,23 @@ public class PostCell
             filterMatchColor.setVisibility(GONE);
         }
 
-        thumbnailViews.setAdapter(new PostImagesAdapter());
         if (post.images.isEmpty() || ChanSettings.textOnly.get()) {
             thumbnailViews.setVisibility(GONE);
+            recycleThumbnails();
         } else {
             thumbnailViews.setVisibility(VISIBLE);
+            if (recyclerView != null && recyclerView.getAdapter() instanceof PostAdapter) {
+                RecyclerView.RecycledViewPool pool = ((PostAdapter) recyclerView.getAdapter()).getThumbnailViewPool();
+                if (thumbnailViews.getRecycledViewPool() != pool) {
+                    recycleThumbnails();
+                    thumbnailViews.setRecycledViewPool(pool);
+                }
+            }
+            imagesAdapter.setImages(post.images);
+            if (thumbnailViews.getAdapter() != imagesAdapter) {
+                // swapping, unlike setting, doesn't clear the shared pool when no other cell has thumbnails out
+                thumbnailViews.swapAdapter(imagesAdapter, true);
+            }
         }
 
         SpannableStringBuilder titleParts = new SpannableStringBuilder();
@@ -419,7 +443,7 @@ public class PostCell
             comment.setVisibility(isEmpty(post.comment) && post.images.isEmpty() ? GONE : VISIBLE);
         }
 
-        comment.setText(applySearchSpans(post.comment, searchQuery));
+        setCommentText(post);
 
         if (threadMode) {
             comment.setTextIsSelectable(true);
@@ -598,6 +622,33 @@ public class PostCell
         }
     }
 
+    /**
+     * Sets the comment text, already measured in the background by the adapter if it's been measured for what the
+     * comment view currently looks like.
+     */
+    private void setCommentText(Post post) {
+        PostTextPrecomputer precomputer = recyclerView != null && recyclerView.getAdapter() instanceof PostAdapter
+                ? ((PostAdapter) recyclerView.getAdapter()).getTextPrecomputer()
+                : null;
+        if (precomputer != null) {
+            PrecomputedTextCompat.Params params = TextViewCompat.getTextMetricsParams(comment);
+            precomputer.setParams(params);
+            PrecomputedTextCompat precomputed = precomputer.get(post, params, searchQuery);
+            if (precomputed != null) {
+                // left over if the cell was recycled in the middle of a touch
+                precomputed.removeSpan(BACKGROUND_SPAN);
+                try {
+                    TextViewCompat.setPrecomputedText(comment, precomputed);
+                    return;
+                } catch (IllegalArgumentException e) {
+                    Logger.w(this, "Measured comment doesn't match the comment view", e);
+                }
+            }
+        }
+
+        comment.setText(applySearchSpans(post.comment, searchQuery));
+    }
+
     @Override
     public void invalidateView(Theme theme, Post post) {
         if (!bound || !this.post.equals(post)) return;
@@ -623,9 +674,17 @@ public class PostCell
         return dubTexts[count - 1];
     }
 
+    /**
+     * Gives the thumbnail views back to the pool they came from, cancelling their requests.
+     */
+    public void recycleThumbnails() {
+        thumbnailViews.swapAdapter(null, true);
+        imagesAdapter.setImages(Collections.emptyList());
+    }
+
     private void unbindPost(Post post) {
         bound = false;
-        thumbnailViews.setAdapter(null);
+        recycleThumbnails();
         icons.cancelRequests();
         title.setOnLongClickListener(null);
         title.setLongClickable(false);
@@ -750,8 +809,19 @@ public class PostCell
         }
     }
 
+    /**
+     * Kept for as long as the cell, with the images swapped in on bind. The thumbnail views it binds come from the pool
+     * of the post adapter, so they can have been made by another cell's adapter.
+     */
     private class PostImagesAdapter
             extends RecyclerView.Adapter<PostImagesAdapter.PostImageViewHolder> {
+        private List<PostImage> images = Collections.emptyList();
+
+        private void setImages(List<PostImage> images) {
+            this.images = images;
+            notifyDataSetChanged();
+        }
+
         @NonNull
         @Override
         public PostImageViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -766,22 +836,32 @@ public class PostCell
         @Override
         public void onBindViewHolder(@NonNull PostImageViewHolder holder, int position) {
             PostImageThumbnailView thumbnailView = (PostImageThumbnailView) holder.itemView;
-            PostImage image = post.images.get(position);
+            PostImage image = images.get(position);
             ViewGroup.MarginLayoutParams layoutParams = (ViewGroup.MarginLayoutParams) thumbnailView.getLayoutParams();
             layoutParams.setMargins(paddingPx,
-                    image == post.image() ? paddingPx : 0,
+                    position == 0 ? paddingPx : 0,
                     0,
-                    position + 1 == post.images.size() ? paddingPx : 0
+                    position + 1 == images.size() ? paddingPx : 0
             );
             thumbnailView.setPostImage(image);
             if (!post.deleted.get() || instance(CacheHandler.class).exists(image.imageUrl)) {
                 thumbnailView.setOnClickListener(v -> callback.onThumbnailClicked(image, thumbnailView));
+            } else {
+                thumbnailView.setOnClickListener(null);
+                thumbnailView.setClickable(false);
             }
         }
 
+        @Override
+        public void onViewRecycled(@NonNull PostImageViewHolder holder) {
+            PostImageThumbnailView thumbnailView = (PostImageThumbnailView) holder.itemView;
+            thumbnailView.setPostImage(null);
+            thumbnailView.setOnClickListener(null);
+        }
+
         @Override
         public int getItemCount() {
-            return post.images.size();
+            return images.size();
         }
 
         private class PostImageViewHolder
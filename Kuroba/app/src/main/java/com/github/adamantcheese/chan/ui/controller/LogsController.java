@@ -29,8 +29,10 @@ import androidx.annotation.Nullable;
 import com.github.adamantcheese.chan.R;
 import com.github.adamantcheese.chan.controller.Controller;
 import com.github.adamantcheese.chan.ui.toolbar.ToolbarMenuItem;
+import com.github.adamantcheese.chan.utils.BackgroundUtils;
 import com.github.adamantcheese.chan.utils.IOUtils;
 import com.github.adamantcheese.chan.utils.Logger;
+import com.github.adamantcheese.chan.utils.Tracer;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -70,11 +72,19 @@ public class LogsController
         view = container;
 
         String logs = loadLogs();
-        if (logs != null) {
-            SpannableStringBuilder logText = new SpannableStringBuilder(logs);
-            logText.setSpan(new TypefaceSpan("monospace"), 0, logText.length(), 0);
-            logTextView.setText(logText);
-        }
+        SpannableStringBuilder logText = new SpannableStringBuilder(logs == null ? "" : logs);
+        logText.append(loadTimings());
+        logText.setSpan(new TypefaceSpan("monospace"), 0, logText.length(), 0);
+        logTextView.setText(logText);
+    }
+
+    /**
+     * @return the timing report of this session, followed by the ones saved from previous sessions
+     */
+    public static String loadTimings() {
+        String previous = Tracer.loadPreviousReports();
+        return "\n=== TIMINGS(this session) ===\n" + Tracer.getReport() + "\n=== BACKGROUND QUEUES ===\n"
+                + BackgroundUtils.backgroundService.getStats() + (previous == null ? "" : "\n" + previous);
     }
 
     private void copyLogsClicked(ToolbarMenuItem item) {
@@ -151,6 +151,12 @@ public class BehaviourSettingsController
                     "When attaching an image, the filename will be automatically randomized"
             ));
 
+            reply.add(new BooleanSettingView(this,
+                    ChanSettings.postQueueReplies,
+                    "Queue replies",
+                    "Replies sent during a cooldown or while offline are queued and posted automatically"
+            ));
+
             groups.add(reply);
         }
 
@@ -27,6 +27,7 @@ import android.widget.TextView;
 import com.github.adamantcheese.chan.R;
 import com.github.adamantcheese.chan.StartActivity;
 import com.github.adamantcheese.chan.controller.Controller;
+import com.github.adamantcheese.chan.core.benchmark.BenchmarkButton;
 import com.github.adamantcheese.chan.core.cache.CacheHandler;
 import com.github.adamantcheese.chan.core.cache.FileCacheV2;
 import com.github.adamantcheese.chan.core.database.DatabaseHelper;
@@ -36,7 +37,7 @@ import com.github.adamantcheese.chan.core.manager.WakeManager;
 import com.github.adamantcheese.chan.core.settings.ChanSettings;
 import com.github.adamantcheese.chan.core.settings.PersistableChanState;
 import com.github.adamantcheese.chan.core.settings.primitives.Setting;
-import com.github.adamantcheese.chan.features.embedding.EmbeddingEngine;
+import com.github.adamantcheese.chan.features.embedding.EmbedCache;
 import com.github.adamantcheese.chan.ui.controller.LogsController;
 import com.github.adamantcheese.chan.utils.Logger;
 
@@ -174,11 +175,10 @@ public class DeveloperSettingsController
 
         Button clearVideoTitleCache = new Button(context);
         clearVideoTitleCache.setOnClickListener(v -> {
-            EmbeddingEngine.videoTitleDurCache.evictAll();
-            PersistableChanState.videoTitleDurCache.setSync(PersistableChanState.videoTitleDurCache.getDefault());
-            showToast(context, "Cleared video title cache");
+            EmbedCache.getInstance().clear();
+            showToast(context, "Cleared embed cache");
         });
-        clearVideoTitleCache.setText("Clear video title cache");
+        clearVideoTitleCache.setText("Clear embed cache");
         wrapper.addView(clearVideoTitleCache);
 
         //THREAD STACK DUMPER
@@ -213,6 +213,9 @@ public class DeveloperSettingsController
         dumpAllThreadStacks.setText("Dump active thread stack traces to log");
         wrapper.addView(dumpAllThreadStacks);
 
+        //HOT PATH BENCHMARK, debug builds only
+        BenchmarkButton.addTo(context, wrapper);
+
         Switch threadCrashSwitch = new Switch(context);
         threadCrashSwitch.setText("Crash on wrong thread");
         threadCrashSwitch.setTextColor(getAttrColor(context, android.R.attr.textColor));
@@ -39,10 +39,20 @@ public class BoardHelper {
         return Parser.unescapeEntities(board.description, false);
     }
 
-    public static Boards search(Boards from, final String query) {
+    /**
+     * Searches the indexed boards; only the boards shortlisted by the index get fuzzy scored.
+     */
+    public static Boards search(BoardSearchIndex index, final String query) {
+        return search(index, query, board -> true);
+    }
+
+    /**
+     * Searches the indexed boards, leaving out the ones that aren't included before they're shortlisted.
+     */
+    public static Boards search(BoardSearchIndex index, final String query, BoardSearchIndex.BoardPredicate include) {
         List<Pair<Board, Integer>> ratios = new ArrayList<>();
         Board exact = null;
-        for (Board board : from) {
+        for (Board board : index.getCandidates(query, include)) {
             int ratio = getTokenSortRatio(board, query);
 
             if (ratio > 2) {
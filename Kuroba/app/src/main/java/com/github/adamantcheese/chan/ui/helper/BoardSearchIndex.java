@@ -0,0 +1,176 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.ui.helper;
+
+import androidx.annotation.NonNull;
+
+import com.github.adamantcheese.chan.core.model.orm.Board;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A trigram index over the code, name and description of a site's boards, used to shortlist boards for a search
+ * query before they're scored with the (much slower) fuzzy matching in {@link BoardHelper#search}.
+ * <p>
+ * Every word of the board text is padded with a space on both ends and split into trigrams; the words of the query are
+ * only padded at the front, so that a partially typed word still matches the start of a board's word. Boards are
+ * shortlisted by how many of the query's trigrams they contain. The index is immutable once built, and can be searched
+ * from any thread.
+ */
+public class BoardSearchIndex {
+    // at most this many boards are passed on to fuzzy scoring
+    private static final int MAX_CANDIDATES = 100;
+    private static final BoardPredicate ALL_BOARDS = board -> true;
+
+    private final List<Board> boards;
+    // lowercased code and name of each board, for queries too short to have a trigram
+    private final String[] shortText;
+    private final Map<String, int[]> postings = new HashMap<>();
+    private final Map<String, Board> byCode = new HashMap<>();
+
+    public BoardSearchIndex(@NonNull List<Board> boards) {
+        this.boards = new ArrayList<>(boards);
+        shortText = new String[this.boards.size()];
+
+        Map<String, List<Integer>> building = new HashMap<>();
+        for (int i = 0; i < this.boards.size(); i++) {
+            Board board = this.boards.get(i);
+            shortText[i] = (board.code + " " + board.name).toLowerCase(Locale.ENGLISH);
+            byCode.put(board.code.toLowerCase(Locale.ENGLISH), board);
+            String text = board.code + " " + board.name + " " + BoardHelper.getDescription(board);
+            for (String word : words(text)) {
+                String padded = " " + word + " ";
+                for (int j = 0; j + 3 <= padded.length(); j++) {
+                    String trigram = padded.substring(j, j + 3);
+                    List<Integer> list = building.get(trigram);
+                    if (list == null) {
+                        list = new ArrayList<>(4);
+                        building.put(trigram, list);
+                    }
+                    // boards are added in order, so a repeat within the same board is always at the end
+                    if (list.isEmpty() || list.get(list.size() - 1) != i) {
+                        list.add(i);
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<Integer>> entry : building.entrySet()) {
+            List<Integer> list = entry.getValue();
+            int[] array = new int[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+            postings.put(entry.getKey(), array);
+        }
+    }
+
+    public List<Board> getBoards() {
+        return boards;
+    }
+
+    /**
+     * @return the boards most likely to match the query, best first; not yet scored
+     */
+    public List<Board> getCandidates(String query) {
+        return getCandidates(query, ALL_BOARDS);
+    }
+
+    /**
+     * @param include which boards can be candidates at all; the others are left out before the candidates are capped,
+     *                so they don't take the place of boards that would be shown
+     * @return the included boards most likely to match the query, best first; not yet scored
+     */
+    public List<Board> getCandidates(String query, @NonNull BoardPredicate include) {
+        List<Board> candidates = findCandidates(query, include);
+        // an exact board code match is always a candidate
+        Board exact = byCode.get(query.trim().toLowerCase(Locale.ENGLISH));
+        if (exact != null && include.test(exact) && !candidates.contains(exact)) {
+            candidates.add(0, exact);
+        }
+        return candidates;
+    }
+
+    private List<Board> findCandidates(String query, BoardPredicate include) {
+        List<String> queryTrigrams = new ArrayList<>();
+        for (String word : words(query)) {
+            String padded = " " + word;
+            for (int j = 0; j + 3 <= padded.length(); j++) {
+                String trigram = padded.substring(j, j + 3);
+                if (!queryTrigrams.contains(trigram)) {
+                    queryTrigrams.add(trigram);
+                }
+            }
+        }
+
+        if (queryTrigrams.isEmpty()) {
+            return getShortQueryCandidates(query.trim().toLowerCase(Locale.ENGLISH), include);
+        }
+
+        int[] hits = new int[boards.size()];
+        for (String trigram : queryTrigrams) {
+            int[] boardIndexes = postings.get(trigram);
+            if (boardIndexes == null) continue;
+            for (int boardIndex : boardIndexes) {
+                hits[boardIndex]++;
+            }
+        }
+
+        // require at least half of the trigrams, so a typo or two still matches
+        int required = (queryTrigrams.size() + 1) / 2;
+        List<int[]> matches = new ArrayList<>();
+        for (int i = 0; i < hits.length; i++) {
+            if (hits[i] >= required && include.test(boards.get(i))) {
+                matches.add(new int[]{i, hits[i]});
+            }
+        }
+        Collections.sort(matches, (o1, o2) -> o2[1] - o1[1]);
+
+        List<Board> candidates = new ArrayList<>(Math.min(matches.size(), MAX_CANDIDATES));
+        for (int i = 0; i < matches.size() && i < MAX_CANDIDATES; i++) {
+            candidates.add(boards.get(matches.get(i)[0]));
+        }
+        return candidates;
+    }
+
+    private List<Board> getShortQueryCandidates(String query, BoardPredicate include) {
+        List<Board> candidates = new ArrayList<>();
+        if (query.isEmpty()) return candidates;
+        for (int i = 0; i < boards.size() && candidates.size() < MAX_CANDIDATES; i++) {
+            if (shortText[i].contains(query) && include.test(boards.get(i))) {
+                candidates.add(boards.get(i));
+            }
+        }
+        return candidates;
+    }
+
+    public interface BoardPredicate {
+        boolean test(Board board);
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>(Arrays.asList(text.toLowerCase(Locale.ENGLISH).split("\\s+")));
+        words.remove("");
+        return words;
+    }
+}
@@ -58,6 +58,7 @@ public class ImagePickDelegate {
     private static final int IMAGE_PICK_RESULT = 2;
     private static final long MAX_FILE_SIZE = 50 * 1024 * 1024;
     private static final String DEFAULT_FILE_NAME = "file";
+    public static final String PICKED_FILE_NAME = "picked_file";
 
     @Inject
     FileCacheV2 fileCacheV2;
@@ -247,7 +248,7 @@ public class ImagePickDelegate {
     }
 
     public File getPickFile() {
-        File cacheFile = new File(getAppContext().getCacheDir(), "picked_file");
+        File cacheFile = new File(getAppContext().getCacheDir(), PICKED_FILE_NAME);
         try {
             if (!cacheFile.exists()) cacheFile.createNewFile(); //ensure the file exists for writing to
         } catch (Exception ignored) {
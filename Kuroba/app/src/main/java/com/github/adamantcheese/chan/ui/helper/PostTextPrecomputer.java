@@ -0,0 +1,187 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.ui.helper;
+
+import android.text.SpannableStringBuilder;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.text.PrecomputedTextCompat;
+
+import com.github.adamantcheese.chan.core.model.Post;
+import com.github.adamantcheese.chan.utils.BackgroundUtils;
+import com.github.adamantcheese.chan.utils.Logger;
+import com.github.adamantcheese.chan.utils.Tracer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.adamantcheese.chan.utils.StringUtils.applySearchSpans;
+
+/**
+ * Measures post comments in the background ahead of them being shown, so post cells can set text that's already been
+ * measured instead of the comment view measuring it on the main thread while the list is flung.
+ * <p>
+ * Comments are measured as {@link PrecomputedTextCompat}s, in display order starting from the visible posts, for the
+ * text size and typeface of the comment views; those are taken from the cells as they're bound, so nothing is measured
+ * until the first one is. Measured text doesn't depend on the width it's laid out at, so it's good for any width. A
+ * result is only handed out for the exact comment, measuring parameters and search query it was made for, and only the
+ * most recent results are kept.
+ * <p>
+ * Each post adapter has its own, as the theme is fixed per adapter and measured text can only be shown in one text
+ * view at a time.
+ */
+public class PostTextPrecomputer {
+    private static final int MAX_ENTRIES = 300;
+
+    private final LruCache<Integer, Entry> entries = new LruCache<>(MAX_ENTRIES);
+
+    // main thread only
+    @Nullable
+    private PrecomputedTextCompat.Params params;
+    @Nullable
+    private String searchQuery;
+    private final List<Post> threadPosts = new ArrayList<>();
+    private final List<Post> waitingForParams = new ArrayList<>();
+
+    private volatile int generation;
+
+    /**
+     * Starts measuring the comments of a thread, stopping whatever was being measured before.
+     *
+     * @param posts       the posts in display order
+     * @param firstIndex  the index of the first visible post; posts from there on are measured first
+     * @param searchQuery the query highlighted in the comments, if any
+     */
+    public void setThread(List<Post> posts, int firstIndex, @Nullable String searchQuery) {
+        BackgroundUtils.ensureMainThread();
+        generation++;
+        waitingForParams.clear();
+        if (!TextUtils.equals(this.searchQuery, searchQuery)) {
+            this.searchQuery = searchQuery;
+            entries.evictAll();
+        }
+
+        threadPosts.clear();
+        int start = Math.max(0, Math.min(firstIndex, posts.size()));
+        for (int i = 0; i < posts.size() && threadPosts.size() < MAX_ENTRIES; i++) {
+            threadPosts.add(posts.get((start + i) % posts.size()));
+        }
+        if (params != null) {
+            measure(new ArrayList<>(threadPosts));
+        }
+    }
+
+    /**
+     * Measures the comments of the given posts again, like after they've been replaced by embedding, without stopping
+     * anything else that's being measured.
+     */
+    public void update(List<Post> posts) {
+        BackgroundUtils.ensureMainThread();
+        if (params == null) {
+            waitingForParams.addAll(posts);
+        } else {
+            measure(new ArrayList<>(posts));
+        }
+    }
+
+    /**
+     * Called by cells when they're bound, with the parameters their comment view measures with. Anything measured for
+     * other parameters is dropped, and the thread is measured again.
+     */
+    public void setParams(@NonNull PrecomputedTextCompat.Params params) {
+        BackgroundUtils.ensureMainThread();
+        if (params.equals(this.params)) return;
+
+        this.params = params;
+        generation++;
+        entries.evictAll();
+        List<Post> posts = new ArrayList<>(threadPosts);
+        posts.addAll(waitingForParams);
+        waitingForParams.clear();
+        measure(posts);
+    }
+
+    /**
+     * @return the measured comment of the post, if it's been measured for the current comment, these parameters and
+     * search query
+     */
+    @Nullable
+    public PrecomputedTextCompat get(
+            @NonNull Post post, @NonNull PrecomputedTextCompat.Params params, @Nullable String searchQuery
+    ) {
+        Entry entry = entries.get(post.no);
+        if (entry == null || entry.source != post.comment || !entry.params.equals(params)
+                || !TextUtils.equals(entry.searchQuery, searchQuery)) {
+            return null;
+        }
+        return entry.text;
+    }
+
+    private void measure(List<Post> posts) {
+        final PrecomputedTextCompat.Params measureParams = params;
+        final String measureQuery = searchQuery;
+        final int measureGeneration = generation;
+        BackgroundUtils.runOnBackgroundThread(() -> {
+            try (Tracer.Span ignored = Tracer.begin("PostTextPrecomputer.measure")) {
+                for (Post post : posts) {
+                    if (measureGeneration != generation) return;
+
+                    SpannableStringBuilder source = post.comment;
+                    if (source.length() == 0) continue;
+
+                    Entry existing = entries.get(post.no);
+                    if (existing != null && existing.source == source && existing.params.equals(measureParams)
+                            && TextUtils.equals(existing.searchQuery, measureQuery)) {
+                        continue;
+                    }
+
+                    try {
+                        PrecomputedTextCompat text =
+                                PrecomputedTextCompat.create(applySearchSpans(source, measureQuery), measureParams);
+                        entries.put(post.no, new Entry(source, measureParams, measureQuery, text));
+                    } catch (Exception e) {
+                        // the comment can change on the main thread while it's copied; it's measured when shown
+                        Logger.d(PostTextPrecomputer.this, "Couldn't measure comment of " + post.no, e);
+                    }
+                }
+            }
+        });
+    }
+
+    private static class Entry {
+        private final SpannableStringBuilder source;
+        private final PrecomputedTextCompat.Params params;
+        @Nullable
+        private final String searchQuery;
+        private final PrecomputedTextCompat text;
+
+        private Entry(
+                SpannableStringBuilder source,
+                PrecomputedTextCompat.Params params,
+                @Nullable String searchQuery,
+                PrecomputedTextCompat text
+        ) {
+            this.source = source;
+            this.params = params;
+            this.searchQuery = searchQuery;
+            this.text = text;
+        }
+    }
+}
@@ -9,15 +9,20 @@ import androidx.annotation.NonNull;
 
 import com.github.adamantcheese.chan.R;
 import com.github.adamantcheese.chan.ui.theme.Theme;
+import com.github.adamantcheese.chan.ui.theme.ThemeHelper;
 
 import static com.github.adamantcheese.chan.utils.AndroidUtils.getAttrColor;
 
 public class CodeBackgroundSpan
-        implements LineBackgroundSpan {
-    private final int color;
+        implements LineBackgroundSpan, ThemedSpan {
+    private Theme theme;
+    private int color;
 
-    public CodeBackgroundSpan(Theme theme) {
-        this.color = getAttrColor(theme.resValue, R.attr.backcolor_secondary);
+    @Override
+    public void applyTheme(@NonNull Theme theme) {
+        if (this.theme == theme) return;
+        color = getAttrColor(theme.resValue, R.attr.backcolor_secondary);
+        this.theme = theme;
     }
 
     @Override
@@ -34,6 +39,9 @@ public class CodeBackgroundSpan
             int end,
             int lineNumber
     ) {
+        if (theme == null) {
+            applyTheme(ThemeHelper.getTheme());
+        }
         final int paintColor = paint.getColor();
         paint.setColor(color);
         canvas.drawRect(new Rect(left, top, right, bottom), paint);
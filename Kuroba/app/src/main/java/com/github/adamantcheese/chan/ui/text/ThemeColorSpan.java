@@ -0,0 +1,85 @@
+package com.github.adamantcheese.chan.ui.text;
+
+import android.text.TextPaint;
+import android.text.style.CharacterStyle;
+import android.text.style.UpdateAppearance;
+
+import androidx.annotation.NonNull;
+
+import com.github.adamantcheese.chan.R;
+import com.github.adamantcheese.chan.ui.theme.Theme;
+import com.github.adamantcheese.chan.ui.theme.ThemeHelper;
+
+import static com.github.adamantcheese.chan.utils.AndroidUtils.getAttrColor;
+
+/**
+ * A foreground color span that stores which theme color it uses rather than the color itself; see {@link ThemedSpan}.
+ * Equality only depends on the role, so the same text parsed under different themes compares equal.
+ */
+public class ThemeColorSpan
+        extends CharacterStyle
+        implements UpdateAppearance, ThemedSpan {
+    public enum Role {
+        INLINE_QUOTE,
+        QUOTE,
+        SUBJECT,
+        NAME,
+        ACCENT
+    }
+
+    public final Role role;
+
+    private Theme theme;
+    private Theme.MaterialColorStyle accent; // the accent can be changed without changing the theme
+    private int color;
+
+    public ThemeColorSpan(@NonNull Role role) {
+        this.role = role;
+    }
+
+    @Override
+    public void applyTheme(@NonNull Theme theme) {
+        if (this.theme == theme && accent == theme.accentColor) return;
+        switch (role) {
+            case INLINE_QUOTE:
+                color = getAttrColor(theme.resValue, R.attr.post_inline_quote_color);
+                break;
+            case QUOTE:
+                color = getAttrColor(theme.resValue, R.attr.post_quote_color);
+                break;
+            case SUBJECT:
+                color = theme.subjectColor;
+                break;
+            case NAME:
+                color = theme.nameColor;
+                break;
+            case ACCENT:
+                color = getAttrColor(theme.accentColor.accentStyleId, R.attr.colorAccent);
+                break;
+        }
+        this.theme = theme;
+        accent = theme.accentColor;
+    }
+
+    @Override
+    public void updateDrawState(@NonNull TextPaint tp) {
+        if (theme == null) {
+            // not bound through a cell, fall back to the current theme
+            applyTheme(ThemeHelper.getTheme());
+        }
+        tp.setColor(color);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        return role == ((ThemeColorSpan) o).role;
+    }
+
+    @Override
+    public int hashCode() {
+        return role.hashCode();
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.adamantcheese.chan.ui.text;
+
+import androidx.annotation.NonNull;
+
+import com.github.adamantcheese.chan.ui.theme.Theme;
+
+/**
+ * A span whose colors come from a theme. Parsed post text only records what a span is for (a quote, a subject, a
+ * code block), and the actual colors are resolved against the theme of the view the text is bound to, so parsed posts
+ * don't have to be parsed again when the theme changes.
+ */
+public interface ThemedSpan {
+    /**
+     * Resolves this span's colors for the given theme; cheap to call again with the same theme.
+     */
+    void applyTheme(@NonNull Theme theme);
+}
@@ -23,12 +23,15 @@ import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Typeface;
+import android.text.Spanned;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.github.adamantcheese.chan.R;
 import com.github.adamantcheese.chan.core.settings.ChanSettings;
+import com.github.adamantcheese.chan.ui.text.ThemedSpan;
 import com.github.adamantcheese.chan.utils.Logger;
 
 import java.util.ArrayList;
@@ -153,6 +156,17 @@ public class ThemeHelper {
         return isNightTheme ? themeNight : themeDay;
     }
 
+    /**
+     * Resolves the {@link ThemedSpan}s in the given text against the given theme; call this before showing parsed text.
+     */
+    public static void applyTheme(@Nullable CharSequence text, @NonNull Theme theme) {
+        if (!(text instanceof Spanned)) return;
+        Spanned spanned = (Spanned) text;
+        for (ThemedSpan span : spanned.getSpans(0, spanned.length(), ThemedSpan.class)) {
+            span.applyTheme(theme);
+        }
+    }
+
     public static void resetThemes() {
         for (Theme theme : themes) {
             theme.reset();
@@ -48,9 +48,9 @@ import com.github.adamantcheese.chan.core.cache.FileCacheListener;
 import com.github.adamantcheese.chan.core.cache.FileCacheV2;
 import com.github.adamantcheese.chan.core.cache.MediaSourceCallback;
 import com.github.adamantcheese.chan.core.cache.downloader.CancelableDownload;
+import com.github.adamantcheese.chan.core.cache.stream.ExoPlayerPool;
 import com.github.adamantcheese.chan.core.cache.stream.WebmStreamingDataSource;
 import com.github.adamantcheese.chan.core.cache.stream.WebmStreamingSource;
-import com.github.adamantcheese.chan.core.di.NetModule;
 import com.github.adamantcheese.chan.core.model.PostImage;
 import com.github.adamantcheese.chan.core.model.orm.Loadable;
 import com.github.adamantcheese.chan.core.settings.ChanSettings;
@@ -66,17 +66,15 @@ import com.google.android.exoplayer2.audio.AudioListener;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.ProgressiveMediaSource;
 import com.google.android.exoplayer2.ui.PlayerView;
-import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
-import com.google.android.exoplayer2.util.Util;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Field;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import javax.inject.Inject;
 
@@ -115,6 +113,8 @@ public class MultiImageView
     FileCacheV2 fileCacheV2;
     @Inject
     WebmStreamingSource webmStreamingSource;
+    @Inject
+    ExoPlayerPool exoPlayerPool;
 
     private PostImage postImage;
     private Callback callback;
@@ -127,6 +127,8 @@ public class MultiImageView
     private CancelableDownload videoRequest;
     private CancelableDownload otherRequest;
     private SimpleExoPlayer exoPlayer;
+    // the data sources of the streaming players, released along with their player
+    private final Map<Player, WebmStreamingDataSource> streamingDataSources = new HashMap<>();
 
     private boolean hasContent = false;
     private boolean mediaSourceCancel = false;
@@ -519,54 +521,45 @@ public class MultiImageView
     }
 
     private void openVideoInternalStream() {
+        ExoPlayerPool.PreparedPlayer prepared = exoPlayerPool.takePrepared(postImage.imageUrl);
+        if (prepared != null) {
+            // the video was pre-buffered while the previous page was shown
+            if (prepared.streamingDataSource != null) {
+                streamingDataSources.put(prepared.player, prepared.streamingDataSource);
+            }
+            showVideo(prepared.player, null);
+            callback.onDownloaded(postImage);
+            return;
+        }
+
         webmStreamingSource.createMediaSource(postImage, new MediaSourceCallback() {
             @Override
-            public void onMediaSourceReady(@Nullable MediaSource source) {
+            public void onMediaSourceReady(
+                    @Nullable MediaSource source, @Nullable WebmStreamingDataSource streamingDataSource
+            ) {
                 BackgroundUtils.ensureMainThread();
 
                 if (source == null) {
+                    exoPlayerPool.releaseStreamingDataSource(streamingDataSource);
                     onError(new IllegalArgumentException("Source is null"));
                     return;
                 }
 
                 synchronized (MultiImageView.this) {
                     if (mediaSourceCancel) {
+                        exoPlayerPool.releaseStreamingDataSource(streamingDataSource);
                         return;
                     }
 
                     if (!hasContent || mode == Mode.VIDEO) {
-                        PlayerView exoVideoView = new PlayerView(getContext());
-                        exoPlayer = new SimpleExoPlayer.Builder(getContext()).build();
-                        exoVideoView.setPlayer(exoPlayer);
-
-                        exoPlayer.setRepeatMode(ChanSettings.videoAutoLoop.get()
-                                ? Player.REPEAT_MODE_ALL
-                                : Player.REPEAT_MODE_OFF);
-
-                        exoPlayer.setMediaSource(source);
-                        exoPlayer.prepare();
-                        exoPlayer.setVolume(0f);
-                        exoPlayer.addAudioListener(MultiImageView.this);
-                        exoVideoView.setOnClickListener(null);
-                        exoVideoView.setOnTouchListener((view, motionEvent) -> gestureDetector.onTouchEvent(motionEvent));
-                        exoVideoView.setUseController(false);
-                        exoVideoView.setControllerHideOnTouch(false);
-                        exoVideoView.setShowBuffering(PlayerView.SHOW_BUFFERING_WHEN_PLAYING);
-                        exoVideoView.setUseArtwork(true);
-                        exoVideoView.setDefaultArtwork(getContext().getDrawable(R.drawable.ic_fluent_speaker_24_filled));
-                        NetUtils.makeBitmapRequest(postImage.thumbnailUrl, new BitmapResult() {
-                            @Override
-                            public void onBitmapFailure(@NonNull HttpUrl source, Exception e) {} // use the default drawable
-
-                            @Override
-                            public void onBitmapSuccess(@NonNull HttpUrl source, @NonNull Bitmap bitmap) {
-                                exoVideoView.setDefaultArtwork(new BitmapDrawable(getContext().getResources(), bitmap));
-                            }
-                        });
-                        exoPlayer.setVolume(getDefaultMuteState() ? 0 : 1);
-                        exoPlayer.play();
-                        onModeLoaded(Mode.VIDEO, exoVideoView);
+                        SimpleExoPlayer player = exoPlayerPool.acquire();
+                        if (streamingDataSource != null) {
+                            streamingDataSources.put(player, streamingDataSource);
+                        }
+                        showVideo(player, source);
                         callback.onDownloaded(postImage);
+                    } else {
+                        exoPlayerPool.releaseStreamingDataSource(streamingDataSource);
                     }
                 }
             }
@@ -655,39 +648,59 @@ public class MultiImageView
 
             onModeLoaded(Mode.VIDEO, null);
         } else {
-            PlayerView exoVideoView = new PlayerView(getContext());
-            exoPlayer = new SimpleExoPlayer.Builder(getContext()).build();
-            exoVideoView.setPlayer(exoPlayer);
-            String userAgent = Util.getUserAgent(getAppContext(), NetModule.USER_AGENT);
-            DataSource.Factory dataSourceFactory = new DefaultDataSourceFactory(getContext(), userAgent);
-            ProgressiveMediaSource.Factory progressiveFactory = new ProgressiveMediaSource.Factory(dataSourceFactory);
+            ExoPlayerPool.PreparedPlayer prepared = exoPlayerPool.takePrepared(postImage.imageUrl);
+            if (prepared != null) {
+                // the video was prepared while the previous page was shown
+                if (prepared.streamingDataSource != null) {
+                    streamingDataSources.put(prepared.player, prepared.streamingDataSource);
+                }
+                showVideo(prepared.player, null);
+                return;
+            }
+
+            ProgressiveMediaSource.Factory progressiveFactory =
+                    new ProgressiveMediaSource.Factory(exoPlayerPool.getFileDataSourceFactory());
             MediaSource videoSource = progressiveFactory.createMediaSource(MediaItem.fromUri(Uri.fromFile(file)));
+            showVideo(exoPlayerPool.acquire(), videoSource);
+        }
+    }
+
+    /**
+     * Shows and plays the video in the player.
+     *
+     * @param source the video to prepare the player with, or null if the player is already prepared with it
+     */
+    private void showVideo(SimpleExoPlayer player, @Nullable MediaSource source) {
+        PlayerView exoVideoView = new PlayerView(getContext());
+        exoPlayer = player;
+        exoVideoView.setPlayer(exoPlayer);
 
-            exoPlayer.setRepeatMode(ChanSettings.videoAutoLoop.get() ? Player.REPEAT_MODE_ALL : Player.REPEAT_MODE_OFF);
+        exoPlayer.setRepeatMode(ChanSettings.videoAutoLoop.get() ? Player.REPEAT_MODE_ALL : Player.REPEAT_MODE_OFF);
 
-            exoPlayer.setMediaSource(videoSource);
+        if (source != null) {
+            exoPlayer.setMediaSource(source);
             exoPlayer.prepare();
-            exoPlayer.addAudioListener(this);
-            exoVideoView.setOnClickListener(null);
-            exoVideoView.setOnTouchListener((view, motionEvent) -> gestureDetector.onTouchEvent(motionEvent));
-            exoVideoView.setUseController(false);
-            exoVideoView.setControllerHideOnTouch(false);
-            exoVideoView.setShowBuffering(PlayerView.SHOW_BUFFERING_WHEN_PLAYING);
-            exoVideoView.setUseArtwork(true);
-            exoVideoView.setDefaultArtwork(getContext().getDrawable(R.drawable.ic_fluent_speaker_24_filled));
-            NetUtils.makeBitmapRequest(postImage.thumbnailUrl, new BitmapResult() {
-                @Override
-                public void onBitmapFailure(@NonNull HttpUrl source, Exception e) {} // use the default drawable
-
-                @Override
-                public void onBitmapSuccess(@NonNull HttpUrl source, @NonNull Bitmap bitmap) {
-                    exoVideoView.setDefaultArtwork(new BitmapDrawable(getContext().getResources(), bitmap));
-                }
-            });
-            exoPlayer.setVolume(getDefaultMuteState() ? 0 : 1);
-            exoPlayer.play();
-            onModeLoaded(Mode.VIDEO, exoVideoView);
         }
+        exoPlayer.addAudioListener(this);
+        exoVideoView.setOnClickListener(null);
+        exoVideoView.setOnTouchListener((view, motionEvent) -> gestureDetector.onTouchEvent(motionEvent));
+        exoVideoView.setUseController(false);
+        exoVideoView.setControllerHideOnTouch(false);
+        exoVideoView.setShowBuffering(PlayerView.SHOW_BUFFERING_WHEN_PLAYING);
+        exoVideoView.setUseArtwork(true);
+        exoVideoView.setDefaultArtwork(getContext().getDrawable(R.drawable.ic_fluent_speaker_24_filled));
+        NetUtils.makeBitmapRequest(postImage.thumbnailUrl, new BitmapResult() {
+            @Override
+            public void onBitmapFailure(@NonNull HttpUrl source, Exception e) {} // use the default drawable
+
+            @Override
+            public void onBitmapSuccess(@NonNull HttpUrl source, @NonNull Bitmap bitmap) {
+                exoVideoView.setDefaultArtwork(new BitmapDrawable(getContext().getResources(), bitmap));
+            }
+        });
+        exoPlayer.setVolume(getDefaultMuteState() ? 0 : 1);
+        exoPlayer.play();
+        onModeLoaded(Mode.VIDEO, exoVideoView);
     }
 
     @Override
@@ -901,9 +914,15 @@ public class MultiImageView
         }
 
         if (exoPlayer != null) {
-            // ExoPlayer will keep loading resources if we don't release it here.
-            releaseStreamCallbacks();
-            exoPlayer.release();
+            // ExoPlayer will keep loading resources if we don't stop it here.
+            PlayerView playerView = null;
+            for (int i = 0; i < getChildCount(); i++) {
+                View child = getChildAt(i);
+                if (child instanceof PlayerView && ((PlayerView) child).getPlayer() == exoPlayer) {
+                    playerView = (PlayerView) child;
+                }
+            }
+            releasePlayer(playerView, exoPlayer);
             exoPlayer = null;
         }
     }
@@ -916,8 +935,10 @@ public class MultiImageView
                 View child = getChildAt(i);
                 if (child != view) {
                     if (child instanceof PlayerView) {
-                        releaseStreamCallbacks();
-                        ((PlayerView) child).getPlayer().release();
+                        Player player = ((PlayerView) child).getPlayer();
+                        if (player instanceof SimpleExoPlayer) {
+                            releasePlayer((PlayerView) child, (SimpleExoPlayer) player);
+                        }
                     } else if (child instanceof WebView) {
                         ((WebView) child).destroy();
                     }
@@ -939,24 +960,15 @@ public class MultiImageView
         callback.onModeLoaded(this, mode);
     }
 
-    private void releaseStreamCallbacks() {
-        if (ChanSettings.videoStream.get()) {
-            try {
-                Field mediaSource = exoPlayer.getClass().getDeclaredField("mediaSource");
-                mediaSource.setAccessible(true);
-                if (mediaSource.get(exoPlayer) != null) {
-                    ProgressiveMediaSource source = (ProgressiveMediaSource) mediaSource.get(exoPlayer);
-                    Field dataSource = source.getClass().getDeclaredField("dataSourceFactory");
-                    dataSource.setAccessible(true);
-                    DataSource.Factory factory = (DataSource.Factory) dataSource.get(source);
-                    ((WebmStreamingDataSource) factory.createDataSource()).clearListeners();
-                    dataSource.setAccessible(false);
-                }
-                mediaSource.setAccessible(false);
-            } catch (Exception ignored) {
-                // data source likely is from a file rather than a stream, ignore any exceptions
-            }
+    private void releasePlayer(@Nullable PlayerView playerView, SimpleExoPlayer player) {
+        WebmStreamingDataSource streamingDataSource = streamingDataSources.remove(player);
+        player.removeAudioListener(this);
+        if (playerView != null) {
+            playerView.setPlayer(null);
         }
+        exoPlayerPool.release(player);
+        // the player is stopped, so nothing reads from the buffer file anymore
+        exoPlayerPool.releaseStreamingDataSource(streamingDataSource);
     }
 
     @Override
@@ -80,6 +80,11 @@ public class PostImageThumbnailView
         if (this.postImage == postImage) return;
 
         this.postImage = postImage;
+        if (fullsizeDownload != null) {
+            fullsizeDownload.cancel();
+            fullsizeDownload = null;
+        }
+
         int width = decodeSize == -1 ? getWidth() : (int) decodeSize;
         int height = decodeSize == -1 ? getHeight() : (int) decodeSize;
 
@@ -91,11 +96,6 @@ public class PostImageThumbnailView
         setUrl(postImage.getThumbnailUrl(), width, height);
 
         if (ChanSettings.shouldUseFullSizeImage(postImage)) {
-            if (fullsizeDownload != null) {
-                fullsizeDownload.cancel();
-                fullsizeDownload = null;
-            }
-
             HttpUrl url = postImage.spoiler() ? postImage.getThumbnailUrl() : postImage.imageUrl;
             Bitmap cached = NetUtils.getCachedBitmap(url);
             if (cached != null) {
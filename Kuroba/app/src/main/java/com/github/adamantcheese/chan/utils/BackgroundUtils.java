@@ -22,15 +22,12 @@ import android.os.Looper;
 import com.github.adamantcheese.chan.BuildConfig;
 import com.github.adamantcheese.chan.Chan;
 import com.github.adamantcheese.chan.core.settings.ChanSettings;
+import com.github.adamantcheese.chan.utils.PriorityExecutor.Lane;
 
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.github.adamantcheese.chan.utils.AndroidUtils.getAppContext;
@@ -44,13 +41,8 @@ public class BackgroundUtils {
     // Equation of -9.27447 log(0.0028267 x) = 1 was solved for and rounded down to get a thread count
     // Note that this may not be the best on a phone, but is probably the best for emulator
     // This calculation also probably sucks immensely
-    public static final ExecutorService backgroundService =
-            new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors() - 1,
-                    300,
-                    60L,
-                    TimeUnit.SECONDS,
-                    new LinkedBlockingQueue<>()
-            );
+    public static final PriorityExecutor backgroundService =
+            new PriorityExecutor(Runtime.getRuntime().availableProcessors() - 1);
 
     public static final ScheduledExecutorService backgroundScheduledService = Executors.newScheduledThreadPool(1);
 
@@ -75,17 +67,28 @@ public class BackgroundUtils {
     }
 
     public static void runOnBackgroundThread(Runnable runnable) {
+        runOnBackgroundThread(runnable, Lane.BIND);
+    }
+
+    public static void runOnBackgroundThread(Runnable runnable, Lane lane) {
         if (BuildConfig.DEBUG && backgroundService.isTerminated()) {
             throw new AssertionError("Executor pool is terminated, this should never occur.");
         }
-        runWithExecutor(backgroundService, Executors.callable(runnable), new EmptyResult());
+        runWithExecutor(command -> backgroundService.execute(lane, command),
+                Executors.callable(runnable),
+                new EmptyResult()
+        );
     }
 
     public static void runOnBackgroundThread(Runnable runnable, long delay) {
+        runOnBackgroundThread(runnable, delay, Lane.BIND);
+    }
+
+    public static void runOnBackgroundThread(Runnable runnable, long delay, Lane lane) {
         if (BuildConfig.DEBUG && backgroundService.isTerminated()) {
             throw new AssertionError("Executor pool is terminated, this should never occur.");
         }
-        runOnMainThread(() -> runOnBackgroundThread(runnable), delay);
+        runOnMainThread(() -> runOnBackgroundThread(runnable, lane), delay);
     }
 
     private static boolean isMainThread() {
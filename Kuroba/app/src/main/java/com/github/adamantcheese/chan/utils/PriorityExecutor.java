@@ -0,0 +1,354 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.utils;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The background executor, with a lane for each kind of work. Workers always take from the highest priority lane that
+ * has work, and the low priority lanes can't take up every worker, so a prefetch or maintenance backlog never holds up
+ * parsing or binding what's on screen.
+ * <p>
+ * Each lane's queue is bounded. Submitting to a full lane blocks until there's room, except on the main thread, which
+ * never waits (the task is queued over the bound), and on the executor's own workers, which run the task themselves
+ * instead of waiting on the workers to free up.
+ * <p>
+ * The time tasks spend waiting in each lane goes to the {@link Tracer} report, and {@link #getStats()} has the queue
+ * depths.
+ */
+public class PriorityExecutor
+        extends AbstractExecutorService {
+    private static final String TAG = "PriorityExecutor";
+
+    /**
+     * In order of priority, highest first.
+     */
+    public enum Lane {
+        /**
+         * Reading and parsing what the user is looking at.
+         */
+        PARSE(1024),
+        /**
+         * Work for what's being shown, like embeds and thumbnails, and anything that doesn't pick a lane.
+         */
+        BIND(512),
+        /**
+         * Loading things before they're needed.
+         */
+        PREFETCH(256),
+        /**
+         * Persisting, trimming and checking in the background, like the filter watch sweep.
+         */
+        MAINTENANCE(256);
+
+        private final int capacity;
+        private final String waitSpanName = "Background wait " + name().toLowerCase(Locale.ENGLISH);
+
+        Lane(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    private final int maxWorkers;
+    private final int[] maxRunning = new int[Lane.values().length];
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Condition spaceAvailable = lock.newCondition();
+    private final Condition terminated = lock.newCondition();
+
+    private final List<ArrayDeque<QueuedTask>> queues = new ArrayList<>();
+    private final int[] running = new int[Lane.values().length];
+    private final int[] maxDepth = new int[Lane.values().length];
+    private final long[] completed = new long[Lane.values().length];
+    private final List<Thread> workers = new ArrayList<>();
+    private int idleWorkers;
+    private int threadIndex;
+    private boolean shutdown;
+
+    public PriorityExecutor(int maxWorkers) {
+        this.maxWorkers = Math.max(2, maxWorkers);
+        for (Lane lane : Lane.values()) {
+            queues.add(new ArrayDeque<>());
+            // prefetching can use all but one worker and maintenance half of them, leaving room for the lanes above
+            switch (lane) {
+                case PREFETCH:
+                    maxRunning[lane.ordinal()] = this.maxWorkers - 1;
+                    break;
+                case MAINTENANCE:
+                    maxRunning[lane.ordinal()] = Math.max(1, this.maxWorkers / 2);
+                    break;
+                default:
+                    maxRunning[lane.ordinal()] = this.maxWorkers;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Runs the task in the {@link Lane#BIND} lane.
+     */
+    @Override
+    public void execute(@NonNull Runnable command) {
+        execute(Lane.BIND, command);
+    }
+
+    public void execute(@NonNull Lane lane, @NonNull Runnable command) {
+        lock.lock();
+        try {
+            if (shutdown) throw new RejectedExecutionException(TAG + " is shut down");
+
+            ArrayDeque<QueuedTask> queue = queues.get(lane.ordinal());
+            while (queue.size() >= lane.capacity) {
+                if (Thread.currentThread() == Looper.getMainLooper().getThread()) {
+                    Logger.w(TAG, lane + " lane is full, queueing from the main thread anyway");
+                    break;
+                } else if (workers.contains(Thread.currentThread())) {
+                    lock.unlock();
+                    try {
+                        command.run();
+                    } finally {
+                        lock.lock();
+                    }
+                    return;
+                }
+                spaceAvailable.awaitUninterruptibly();
+                if (shutdown) throw new RejectedExecutionException(TAG + " is shut down");
+            }
+
+            queue.add(new QueuedTask(lane, command));
+            maxDepth[lane.ordinal()] = Math.max(maxDepth[lane.ordinal()], queue.size());
+            if (idleWorkers == 0 && workers.size() < maxWorkers) {
+                startWorker();
+            } else {
+                workAvailable.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public <T> Future<T> submit(@NonNull Lane lane, @NonNull Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        execute(lane, future);
+        return future;
+    }
+
+    public Future<?> submit(@NonNull Lane lane, @NonNull Runnable task) {
+        FutureTask<Void> future = new FutureTask<>(task, null);
+        execute(lane, future);
+        return future;
+    }
+
+    /**
+     * @return how many tasks are waiting in the lane
+     */
+    public int getQueueDepth(@NonNull Lane lane) {
+        lock.lock();
+        try {
+            return queues.get(lane.ordinal()).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the queue depth, highest depth and amount of finished tasks of each lane, one per line
+     */
+    public String getStats() {
+        lock.lock();
+        try {
+            StringBuilder stats = new StringBuilder();
+            stats.append(String.format(Locale.ENGLISH,
+                    "%-12s %7s %7s %7s %10s\n",
+                    "lane",
+                    "queued",
+                    "running",
+                    "max",
+                    "completed"
+            ));
+            for (Lane lane : Lane.values()) {
+                stats.append(String.format(Locale.ENGLISH,
+                        "%-12s %7d %7d %7d %10d\n",
+                        lane.name().toLowerCase(Locale.ENGLISH),
+                        queues.get(lane.ordinal()).size(),
+                        running[lane.ordinal()],
+                        maxDepth[lane.ordinal()],
+                        completed[lane.ordinal()]
+                ));
+            }
+            return stats.toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void startWorker() {
+        Thread worker = new Thread(this::work, TAG + "-" + threadIndex++);
+        workers.add(worker);
+        worker.start();
+    }
+
+    private void work() {
+        while (true) {
+            QueuedTask task;
+            lock.lock();
+            try {
+                while ((task = takeTask()) == null) {
+                    if (shutdown) {
+                        workers.remove(Thread.currentThread());
+                        terminated.signalAll();
+                        return;
+                    }
+                    idleWorkers++;
+                    workAvailable.awaitUninterruptibly();
+                    idleWorkers--;
+                }
+                running[task.lane.ordinal()]++;
+                spaceAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            Tracer.record(task.lane.waitSpanName, SystemClock.elapsedRealtimeNanos() - task.queuedAt);
+            boolean finished = false;
+            try {
+                task.command.run();
+                finished = true;
+            } finally {
+                lock.lock();
+                try {
+                    running[task.lane.ordinal()]--;
+                    completed[task.lane.ordinal()]++;
+                    // a lane that was at its limit may have work another worker can take now
+                    workAvailable.signal();
+                    if (!finished) {
+                        // the exception takes this worker down, same as an uncaught one on any other thread
+                        workers.remove(Thread.currentThread());
+                        terminated.signalAll();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private QueuedTask takeTask() {
+        for (Lane lane : Lane.values()) {
+            ArrayDeque<QueuedTask> queue = queues.get(lane.ordinal());
+            if (!queue.isEmpty() && running[lane.ordinal()] < maxRunning[lane.ordinal()]) {
+                return queue.poll();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            workAvailable.signalAll();
+            spaceAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @NonNull
+    @Override
+    public List<Runnable> shutdownNow() {
+        lock.lock();
+        try {
+            List<Runnable> pending = new ArrayList<>();
+            for (ArrayDeque<QueuedTask> queue : queues) {
+                for (QueuedTask task : queue) {
+                    pending.add(task.command);
+                }
+                queue.clear();
+            }
+            shutdown();
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isShutdown() {
+        lock.lock();
+        try {
+            return shutdown;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isTerminated() {
+        lock.lock();
+        try {
+            return shutdown && workers.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit)
+            throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!(shutdown && workers.isEmpty())) {
+                if (remaining <= 0) return false;
+                remaining = terminated.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class QueuedTask {
+        private final Lane lane;
+        private final Runnable command;
+        private final long queuedAt = SystemClock.elapsedRealtimeNanos();
+
+        private QueuedTask(Lane lane, Runnable command) {
+            this.lane = lane;
+            this.command = command;
+        }
+    }
+}
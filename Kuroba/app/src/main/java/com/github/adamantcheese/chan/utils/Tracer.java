@@ -0,0 +1,222 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.utils;
+
+import android.os.SystemClock;
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.github.adamantcheese.chan.utils.StringUtils.getCurrentDateAndTimeUTC;
+
+/**
+ * Lightweight timing of the app's hot paths. Spans show up as {@link Trace} sections in systrace/perfetto captures and
+ * their durations are also kept in memory, the last {@link #MAX_SAMPLES} for each span name, to build a report with the
+ * median and 95th percentile of each.
+ * <p>
+ * The report for the current session is written to the timings directory whenever the app goes to the background; the
+ * reports of the last few sessions are kept there, to be exported along with the logs.
+ */
+public class Tracer {
+    private static final String TAG = "Tracer";
+    private static final int MAX_SAMPLES = 256;
+    private static final int MAX_SESSIONS = 5;
+    // section names longer than this are rejected by Trace
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+    private static final String REPORT_FILE_PREFIX = "timings_";
+
+    private static final Map<String, Samples> samples = new TreeMap<>();
+    private static final long sessionStart = System.currentTimeMillis();
+    @Nullable
+    private static File reportsDir;
+
+    /**
+     * Sets the directory the session reports are kept in, and removes the oldest reports in it.
+     */
+    public static synchronized void init(@NonNull File dir) {
+        reportsDir = dir;
+        if (!dir.exists() && !dir.mkdirs()) {
+            Logger.e(TAG, "Couldn't create timings directory " + dir.getAbsolutePath());
+            return;
+        }
+
+        List<File> reports = getReportFiles();
+        // the current session is about to add one
+        for (int i = MAX_SESSIONS - 1; i < reports.size(); i++) {
+            if (!reports.get(i).delete()) {
+                Logger.e(TAG, "Couldn't delete old timings " + reports.get(i).getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Starts a span on the current thread; close it on the same thread, spans on a thread have to be closed in the
+     * reverse order they were started in.
+     */
+    public static Span begin(@NonNull String name) {
+        Trace.beginSection(name.length() > MAX_SECTION_NAME_LENGTH ? name.substring(0, MAX_SECTION_NAME_LENGTH) : name);
+        return new Span(name);
+    }
+
+    /**
+     * Records a span that was timed some other way, like one that starts and ends on different threads.
+     *
+     * @param durationNanos how long the span took, in nanoseconds
+     */
+    public static synchronized void record(@NonNull String name, long durationNanos) {
+        Samples spanSamples = samples.get(name);
+        if (spanSamples == null) {
+            spanSamples = new Samples();
+            samples.put(name, spanSamples);
+        }
+        spanSamples.add(durationNanos);
+    }
+
+    /**
+     * @return the timings of the current session, one span name per line
+     */
+    public static synchronized String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ENGLISH,
+                "%-40s %7s %10s %10s %10s\n",
+                "span",
+                "count",
+                "p50 ms",
+                "p95 ms",
+                "max ms"
+        ));
+        for (Map.Entry<String, Samples> entry : samples.entrySet()) {
+            long[] sorted = entry.getValue().sorted();
+            report.append(String.format(Locale.ENGLISH,
+                    "%-40s %7d %10.2f %10.2f %10.2f\n",
+                    entry.getKey(),
+                    entry.getValue().count,
+                    percentile(sorted, 50) / 1e6,
+                    percentile(sorted, 95) / 1e6,
+                    sorted[sorted.length - 1] / 1e6
+            ));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Writes the current session's report, replacing the one written before. Does file IO, call it in the background.
+     */
+    public static void writeReport() {
+        File dir;
+        String report;
+        synchronized (Tracer.class) {
+            dir = reportsDir;
+            if (dir == null || samples.isEmpty()) return;
+            report = getReport();
+        }
+
+        File file = new File(dir, getReportFileName());
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("=== TIMINGS(" + getCurrentDateAndTimeUTC() + ") ===\n");
+            writer.write(report);
+        } catch (IOException e) {
+            Logger.e(TAG, "Error writing timings", e);
+        }
+    }
+
+    /**
+     * @return the written reports of the last few sessions before this one, newest first, or null if there are none
+     */
+    @Nullable
+    public static synchronized String loadPreviousReports() {
+        StringBuilder reports = new StringBuilder();
+        for (File file : getReportFiles()) {
+            if (file.getName().equals(getReportFileName())) continue;
+
+            try (FileInputStream inputStream = new FileInputStream(file)) {
+                reports.append(IOUtils.readString(inputStream)).append('\n');
+            } catch (Exception e) {
+                Logger.e(TAG, "Error reading timings " + file.getAbsolutePath(), e);
+            }
+        }
+        return reports.length() == 0 ? null : reports.toString();
+    }
+
+    private static String getReportFileName() {
+        return REPORT_FILE_PREFIX + sessionStart + ".txt";
+    }
+
+    private static List<File> getReportFiles() {
+        List<File> reports = new ArrayList<>();
+        File[] files = reportsDir == null ? null : reportsDir.listFiles();
+        if (files == null) return reports;
+
+        for (File file : files) {
+            if (file.getName().startsWith(REPORT_FILE_PREFIX)) {
+                reports.add(file);
+            }
+        }
+        Collections.sort(reports, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        return reports;
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    public static class Span
+            implements AutoCloseable {
+        private final String name;
+        private final long start = SystemClock.elapsedRealtimeNanos();
+
+        private Span(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void close() {
+            Trace.endSection();
+            record(name, SystemClock.elapsedRealtimeNanos() - start);
+        }
+    }
+
+    private static class Samples {
+        private final long[] durations = new long[MAX_SAMPLES];
+        private int count;
+
+        private void add(long duration) {
+            durations[count % MAX_SAMPLES] = duration;
+            count++;
+        }
+
+        private long[] sorted() {
+            long[] sorted = Arrays.copyOf(durations, Math.min(count, MAX_SAMPLES));
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.benchmark;
+
+import android.content.Context;
+import android.view.ViewGroup;
+
+/**
+ * The benchmark is only in debug builds; see the debug version of this class.
+ */
+public class BenchmarkButton {
+    private BenchmarkButton() {}
+
+    public static void addTo(Context context, ViewGroup parent) {}
+}
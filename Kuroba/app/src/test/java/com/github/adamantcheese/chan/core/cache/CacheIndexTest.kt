@@ -0,0 +1,190 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.cache
+
+import android.app.Application
+import androidx.test.core.app.ApplicationProvider
+import com.github.adamantcheese.chan.core.cache.CacheIndex.Entry
+import com.github.adamantcheese.chan.utils.AndroidUtils
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.io.File
+
+@RunWith(RobolectricTestRunner::class)
+class CacheIndexTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private lateinit var journalFile: File
+
+    @Before
+    fun setUp() {
+        AndroidUtils.init(ApplicationProvider.getApplicationContext<Application>(), null)
+        journalFile = File(folder.root, "journal")
+    }
+
+    @Test
+    fun replaysPutsAndDeletes() {
+        writeJournal(
+                HEADER,
+                "PUT a 1 2 1 100",
+                "PUT b 3 4 0 -1",
+                "PUT c 5 6 1 300",
+                "PUT a 1 7 1 100",
+                "DEL c"
+        )
+
+        assertEquals(
+                setOf(Entry("a", 1, 7, true, 100), Entry("b", 3, 4, false, CacheIndex.UNKNOWN_SIZE)),
+                CacheIndex(journalFile).readJournal()?.toSet()
+        )
+    }
+
+    @Test
+    fun ignoresTruncatedLastLine() {
+        writeJournal(HEADER, "PUT a 1 2 1 100", "PUT b 3 4")
+
+        assertEquals(listOf(Entry("a", 1, 2, true, 100)), CacheIndex(journalFile).readJournal())
+    }
+
+    @Test
+    fun ignoresLastLineCutOffInANumber() {
+        writeJournal(HEADER, "PUT a 1 2 1 100", "PUT b 3 4 1 -")
+
+        assertEquals(listOf(Entry("a", 1, 2, true, 100)), CacheIndex(journalFile).readJournal())
+    }
+
+    @Test
+    fun rejectsCorruptLineBeforeTheLast() {
+        writeJournal(HEADER, "PUT a 1 2 1 100", "PUT b 3 4", "PUT c 5 6 1 300")
+
+        assertNull(CacheIndex(journalFile).readJournal())
+    }
+
+    @Test
+    fun rejectsBadHeader() {
+        writeJournal("kuroba-file-cache-journal 0", "PUT a 1 2 1 100")
+
+        assertNull(CacheIndex(journalFile).readJournal())
+    }
+
+    @Test
+    fun rejectsMissingJournal() {
+        assertNull(CacheIndex(journalFile).readJournal())
+    }
+
+    @Test
+    fun writesChangesToTheJournal() {
+        val index = loadedIndex()
+        index.put(Entry("a", 1, 2, true, 100))
+        index.put(Entry("b", 3, 4, false, CacheIndex.UNKNOWN_SIZE))
+        index.put(Entry("b", 3, 5, true, 200))
+        index.put(Entry("c", 6, 7, true, 300))
+        index.remove("c")
+
+        assertEquals(300L, index.getTotalSize())
+        assertEquals(
+                setOf(Entry("a", 1, 2, true, 100), Entry("b", 3, 5, true, 200)),
+                CacheIndex(journalFile).readJournal()?.toSet()
+        )
+    }
+
+    @Test
+    fun compactsTheJournalWhenLoaded() {
+        writeJournal(HEADER, "PUT a 1 2 1 100", "PUT a 1 3 1 100", "PUT b 4 5 1 200", "DEL b")
+
+        val index = CacheIndex(journalFile)
+        index.finishLoading(index.readJournal()!!)
+
+        assertEquals(listOf(HEADER, "PUT a 1 3 1 100"), journalFile.readLines())
+    }
+
+    @Test
+    fun changesWhileLoadingTakePrecedence() {
+        writeJournal(HEADER, "PUT a 1 2 1 100", "PUT b 3 4 1 200")
+
+        val index = CacheIndex(journalFile)
+        val loaded = index.readJournal()!!
+        index.put(Entry("a", 1, 9, true, 150))
+        index.remove("b")
+        index.finishLoading(loaded)
+
+        assertEquals(listOf(Entry("a", 1, 9, true, 150)), index.getEntries())
+        assertEquals(150L, index.getTotalSize())
+        assertEquals(index.getEntries(), CacheIndex(journalFile).readJournal())
+    }
+
+    @Test
+    fun writesAccessesOnFlush() {
+        val index = loadedIndex()
+        index.put(Entry("a", 1, 2, true, 100))
+        index.put(Entry("b", 3, 4, true, 200))
+
+        // only the first access since a flush asks for one to be scheduled
+        assertTrue(index.touch("a", 10))
+        assertFalse(index.touch("a", 11))
+        assertFalse(index.touch("b", 12))
+        assertFalse(index.touch("missing", 13))
+        assertEquals(Entry("a", 1, 11, true, 100), index["a"])
+        assertEquals(
+                setOf(Entry("a", 1, 2, true, 100), Entry("b", 3, 4, true, 200)),
+                CacheIndex(journalFile).readJournal()?.toSet()
+        )
+
+        index.flushAccesses()
+
+        assertEquals(
+                setOf(Entry("a", 1, 11, true, 100), Entry("b", 3, 12, true, 200)),
+                CacheIndex(journalFile).readJournal()?.toSet()
+        )
+        assertTrue(index.touch("a", 14))
+    }
+
+    @Test
+    fun dropsAccessesOfRemovedEntries() {
+        val index = loadedIndex()
+        index.put(Entry("a", 1, 2, true, 100))
+        index.touch("a", 10)
+        index.remove("a")
+
+        index.flushAccesses()
+
+        assertEquals(emptyList<Entry>(), CacheIndex(journalFile).readJournal())
+    }
+
+    private fun loadedIndex(): CacheIndex {
+        val index = CacheIndex(journalFile)
+        index.finishLoading(emptyList())
+        return index
+    }
+
+    private fun writeJournal(vararg lines: String) {
+        journalFile.writeText(lines.joinToString("\n", postfix = "\n"))
+    }
+
+    companion object {
+        private const val HEADER = "kuroba-file-cache-journal 1"
+    }
+}
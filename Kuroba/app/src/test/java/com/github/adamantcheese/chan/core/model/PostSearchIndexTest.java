@@ -0,0 +1,148 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.model;
+
+import android.app.Application;
+import android.text.SpannableStringBuilder;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.github.adamantcheese.chan.core.model.orm.Board;
+import com.github.adamantcheese.chan.utils.AndroidUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import okhttp3.HttpUrl;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class PostSearchIndexTest {
+    private PostSearchIndex index;
+
+    @Before
+    public void setUp() {
+        AndroidUtils.init(ApplicationProvider.<Application>getApplicationContext(), null);
+        index = new PostSearchIndex();
+    }
+
+    @Test
+    public void findsSubstringsIgnoringCase() {
+        index.update(Arrays.asList(post(1, "The Quick brown fox"), post(2, "jumps over"), post(3, "quickly")));
+
+        assertEquals(set(1, 3), index.search("QUICK"));
+        assertEquals(set(1), index.search("k brown f"));
+        assertEquals(set(2), index.search("over"));
+        assertEquals(set(), index.search("lazy dog"));
+    }
+
+    @Test
+    public void searchesSubjectNameAndFilenames() {
+        Post post = new Post.Builder().board(Board.getDummyBoard())
+                .no(1)
+                .opId(1)
+                .setUnixTimestampSeconds(0)
+                .comment("comment")
+                .subject("a subject")
+                .name("Anonymous")
+                .images(Collections.singletonList(image("holiday_photo")))
+                .build();
+        index.update(Collections.singletonList(post));
+
+        assertEquals(set(1), index.search("subject"));
+        assertEquals(set(1), index.search("anonymous"));
+        assertEquals(set(1), index.search("holiday"));
+        // the fields are searched separately, not as one run of text
+        assertEquals(set(), index.search("commenta subject"));
+    }
+
+    @Test
+    public void shortQueriesScanEveryPost() {
+        index.update(Arrays.asList(post(1, "ab"), post(2, "xAy"), post(3, "nothing")));
+
+        assertEquals(set(1, 2), index.search("a"));
+        assertEquals(set(1), index.search("AB"));
+    }
+
+    @Test
+    public void reindexesEmbeddedPostsOnUpdate() {
+        Post post = post(1, "https://example.com/video");
+        index.update(Collections.singletonList(post));
+        assertEquals(set(1), index.search("example"));
+
+        // embedding replaces the post's comment, then hands the post back to the index
+        post.setComment(new SpannableStringBuilder("Some Video Title"));
+        index.update(Collections.singletonList(post));
+
+        assertEquals(set(), index.search("example"));
+        assertEquals(set(1), index.search("video title"));
+    }
+
+    @Test
+    public void reindexesNewInstancesWithChangedText() {
+        index.update(Collections.singletonList(post(1, "first version")));
+        index.update(Collections.singletonList(post(1, "second edition")));
+
+        assertEquals(set(), index.search("first"));
+        assertEquals(set(), index.search("version"));
+        assertEquals(set(1), index.search("second edition"));
+    }
+
+    @Test
+    public void keepsNewInstancesWithTheSameText() {
+        index.update(Collections.singletonList(post(1, "unchanged")));
+        index.update(Collections.singletonList(post(1, "unchanged")));
+
+        assertEquals(set(1), index.search("unchanged"));
+    }
+
+    @Test
+    public void keepsOtherPostsWhenReindexing() {
+        index.update(Arrays.asList(post(1, "shared words here"), post(2, "shared words there")));
+        index.update(Collections.singletonList(post(1, "something else")));
+
+        assertEquals(set(2), index.search("shared words"));
+        assertEquals(set(1), index.search("something"));
+    }
+
+    private static Post post(int no, String comment) {
+        return new Post.Builder().board(Board.getDummyBoard())
+                .no(no)
+                .opId(1)
+                .setUnixTimestampSeconds(0)
+                .comment(comment)
+                .build();
+    }
+
+    private static PostImage image(String filename) {
+        return new PostImage.Builder().imageUrl(HttpUrl.get("https://example.com/" + filename + ".png"))
+                .filename(filename)
+                .extension("png")
+                .build();
+    }
+
+    private static HashSet<Integer> set(Integer... nos) {
+        return new HashSet<>(Arrays.asList(nos));
+    }
+}
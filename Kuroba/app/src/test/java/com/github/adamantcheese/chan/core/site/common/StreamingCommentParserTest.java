@@ -0,0 +1,210 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.site.common;
+
+import android.app.Application;
+import android.text.SpannableStringBuilder;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.github.adamantcheese.chan.core.model.Post;
+import com.github.adamantcheese.chan.core.model.PostLinkable;
+import com.github.adamantcheese.chan.core.model.orm.Board;
+import com.github.adamantcheese.chan.core.settings.ChanSettings;
+import com.github.adamantcheese.chan.core.site.parser.CommentParser;
+import com.github.adamantcheese.chan.core.site.parser.PostParser;
+import com.github.adamantcheese.chan.ui.theme.Theme;
+import com.github.adamantcheese.chan.ui.theme.ThemeHelper;
+import com.github.adamantcheese.chan.utils.AndroidUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the streaming parser gives the same text, spans, quotes and linkables as the Jsoup path, and that it
+ * falls back without touching the post for HTML it doesn't handle.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class StreamingCommentParserTest {
+    private static final int OP_NO = 100;
+    private static final int SAVED_NO = 101;
+
+    private final PostParser.Callback callback = new PostParser.Callback() {
+        @Override
+        public boolean isSaved(int postNo) {
+            return postNo == SAVED_NO;
+        }
+
+        @Override
+        public boolean isInternal(int postNo) {
+            return true;
+        }
+
+        @Override
+        public boolean isRemoved(int postNo) {
+            return false;
+        }
+    };
+
+    private CommentParser commentParser;
+    private StreamingCommentParser streamingCommentParser;
+    private DefaultPostParser jsoupPostParser;
+    private Theme theme;
+
+    @Before
+    public void setUp() {
+        AndroidUtils.init(ApplicationProvider.<Application>getApplicationContext(), null);
+        commentParser = new CommentParser().addDefaultRules();
+        streamingCommentParser = new StreamingCommentParser(commentParser);
+        jsoupPostParser = new DefaultPostParser(commentParser, null);
+        theme = ThemeHelper.defaultDayTheme;
+    }
+
+    @Test
+    public void plainText() {
+        assertSameAsJsoup("just some text");
+    }
+
+    @Test
+    public void quotes() {
+        assertSameAsJsoup("<a href=\"#p100\" class=\"quotelink\">&gt;&gt;100</a><br>"
+                + "<a href=\"#p101\" class=\"quotelink\">&gt;&gt;101</a><br>"
+                + "<a href=\"#p102\" class=\"quotelink\">&gt;&gt;102</a> and some text");
+    }
+
+    @Test
+    public void greentext() {
+        assertSameAsJsoup("<span class=\"quote\">&gt;be me</span><br><span class=\"quote\">&gt;parse posts</span>");
+    }
+
+    @Test
+    public void spoilers() {
+        assertSameAsJsoup("before <s>hidden <b>bold</b></s> after");
+    }
+
+    @Test
+    public void nestedStyles() {
+        assertSameAsJsoup("<b>bold <i>both</i></b> <strong>strong <em>emphasis</em></strong>");
+    }
+
+    @Test
+    public void entities() {
+        assertSameAsJsoup("&lt;tag&gt; &amp;amp; &quot;quoted&quot; &#039;single&#039; &#x41; &nbsp;space");
+    }
+
+    @Test
+    public void blocks() {
+        assertSameAsJsoup("<p>first</p><p>second<br>line</p><div>third</div>");
+    }
+
+    @Test
+    public void code() {
+        assertSameAsJsoup("<pre class=\"prettyprint\">int a = 1;<br>  return a;<br>   </pre>after");
+    }
+
+    @Test
+    public void inlineStyle() {
+        assertSameAsJsoup("<strong style=\"color: red;\">red text</strong>");
+    }
+
+    @Test
+    public void deadlink() {
+        assertSameAsJsoup("<span class=\"deadlink\">&gt;&gt;99</span>");
+    }
+
+    @Test
+    public void fallsBackOnMisnestedTags() {
+        assertFallsBack("<b>bold <i>both</b> italic</i>");
+    }
+
+    @Test
+    public void fallsBackOnUnclosedTags() {
+        assertFallsBack("<a href=\"#p100\" class=\"quotelink\">&gt;&gt;100</a><b>never closed");
+    }
+
+    @Test
+    public void fallsBackOnComments() {
+        assertFallsBack("<a href=\"#p100\" class=\"quotelink\">&gt;&gt;100</a><!-- comment -->");
+    }
+
+    @Test
+    public void fallsBackOnTables() {
+        assertFallsBack("<a href=\"#p100\" class=\"quotelink\">&gt;&gt;100</a><table><tr><td>cell</td></tr></table>");
+    }
+
+    private void assertSameAsJsoup(String html) {
+        boolean emoji = ChanSettings.enableEmoji.get();
+
+        Post.Builder streamedPost = post();
+        SpannableStringBuilder streamed = streamingCommentParser.parse(theme, streamedPost, callback, html, emoji);
+        assertNotNull("streaming parser fell back for " + html, streamed);
+
+        Post.Builder jsoupPost = post();
+        SpannableStringBuilder jsoup = new SpannableStringBuilder();
+        jsoupPostParser.parseCommentWithJsoup(theme, jsoupPost, callback, html, jsoup);
+
+        assertEquals(jsoup.toString(), streamed.toString());
+        assertEquals(describeSpans(jsoup), describeSpans(streamed));
+        assertEquals(jsoupPost.repliesToNos, streamedPost.repliesToNos);
+        assertEquals(describeLinkables(jsoupPost), describeLinkables(streamedPost));
+    }
+
+    private void assertFallsBack(String html) {
+        Post.Builder post = post();
+        assertNull(streamingCommentParser.parse(theme, post, callback, html, false));
+        assertTrue(post.repliesToNos.isEmpty());
+        assertTrue(post.linkables.isEmpty());
+    }
+
+    private Post.Builder post() {
+        return new Post.Builder().board(Board.getDummyBoard()).no(200).opId(OP_NO);
+    }
+
+    private static List<String> describeSpans(SpannableStringBuilder text) {
+        List<String> descriptions = new ArrayList<>();
+        for (Object span : text.getSpans(0, text.length(), Object.class)) {
+            descriptions.add(span.getClass().getName() + " " + text.getSpanStart(span) + "-" + text.getSpanEnd(span)
+                    + (span instanceof PostLinkable ? " " + describe((PostLinkable) span) : ""));
+        }
+        Collections.sort(descriptions);
+        return descriptions;
+    }
+
+    private static List<String> describeLinkables(Post.Builder post) {
+        List<String> descriptions = new ArrayList<>();
+        for (PostLinkable linkable : post.linkables) {
+            descriptions.add(describe(linkable));
+        }
+        Collections.sort(descriptions);
+        return descriptions;
+    }
+
+    private static String describe(PostLinkable linkable) {
+        return linkable.type + " " + linkable.key + " " + linkable.value;
+    }
+}
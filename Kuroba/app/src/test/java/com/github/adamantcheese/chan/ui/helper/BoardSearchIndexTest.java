@@ -0,0 +1,121 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.ui.helper;
+
+import com.github.adamantcheese.chan.core.model.orm.Board;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BoardSearchIndexTest {
+    private Board anime;
+    private Board cute;
+    private Board technology;
+    private Board papercraft;
+    private Board pokemon;
+    private Board diy;
+    private BoardSearchIndex index;
+
+    @Before
+    public void setUp() {
+        anime = board("a", "Anime & Manga", "Discussion of Japanese animation and comics");
+        cute = board("c", "Anime/Cute", "Cute anime characters");
+        technology = board("g", "Technology", "Computers, phones and gadgets");
+        papercraft = board("po", "Papercraft & Origami", "Folding paper");
+        pokemon = board("vp", "Pokemon", "Pocket monsters");
+        diy = board("diy", "Do It Yourself", "Home improvement, electronics and woodworking");
+        index = new BoardSearchIndex(Arrays.asList(anime, cute, technology, papercraft, pokemon, diy));
+    }
+
+    @Test
+    public void matchesName() {
+        assertEquals(Collections.singletonList(technology), index.getCandidates("technology"));
+    }
+
+    @Test
+    public void matchesPartiallyTypedWord() {
+        assertEquals(Collections.singletonList(technology), index.getCandidates("tech"));
+    }
+
+    @Test
+    public void matchesDescription() {
+        assertEquals(Collections.singletonList(diy), index.getCandidates("woodworking"));
+    }
+
+    @Test
+    public void toleratesTypos() {
+        assertEquals(Collections.singletonList(technology), index.getCandidates("technolgy"));
+    }
+
+    @Test
+    public void ranksByMatchingTrigrams() {
+        assertEquals(Arrays.asList(anime, cute), index.getCandidates("anime manga"));
+    }
+
+    @Test
+    public void isCaseInsensitive() {
+        assertEquals(index.getCandidates("anime manga"), index.getCandidates("ANIME Manga"));
+    }
+
+    @Test
+    public void shortQueriesMatchCodeAndName() {
+        assertEquals(Arrays.asList(papercraft, pokemon), index.getCandidates("po"));
+    }
+
+    @Test
+    public void exactCodeIsAlwaysACandidate() {
+        assertTrue(index.getCandidates("g").contains(technology));
+        assertTrue(index.getCandidates(" diy ").contains(diy));
+    }
+
+    @Test
+    public void unrelatedQueryMatchesNothing() {
+        assertTrue(index.getCandidates("zzzzzz").isEmpty());
+    }
+
+    @Test
+    public void blankQueryMatchesNothing() {
+        assertTrue(index.getCandidates("").isEmpty());
+        assertTrue(index.getCandidates("   ").isEmpty());
+    }
+
+    @Test
+    public void leavesOutExcludedBoards() {
+        assertEquals(Collections.singletonList(cute), index.getCandidates("anime manga", board -> board != anime));
+        assertEquals(Collections.singletonList(pokemon), index.getCandidates("po", board -> board != papercraft));
+        assertTrue(index.getCandidates("g", board -> board != technology).isEmpty());
+    }
+
+    @Test
+    public void keepsBoardsInOrder() {
+        assertEquals(Arrays.asList(anime, cute, technology, papercraft, pokemon, diy), index.getBoards());
+    }
+
+    private static Board board(String code, String name, String description) {
+        Board board = new Board();
+        board.code = code;
+        board.name = name;
+        board.description = description;
+        return board;
+    }
+}
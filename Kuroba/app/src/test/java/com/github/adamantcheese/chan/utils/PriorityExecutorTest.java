@@ -0,0 +1,229 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.utils;
+
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.github.adamantcheese.chan.utils.PriorityExecutor.Lane;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs with two workers, so that both can be held up with {@link #blockWorkers()} while the test queues its tasks.
+ * Robolectric runs the tests on the main looper's thread.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PriorityExecutorTest {
+    private static final long TIMEOUT_SECONDS = 5;
+    // the bound of the maintenance lane's queue, see Lane
+    private static final int MAINTENANCE_CAPACITY = 256;
+
+    private final CountDownLatch workersBlocked = new CountDownLatch(2);
+    private final CountDownLatch releaseFirst = new CountDownLatch(1);
+    private final CountDownLatch releaseSecond = new CountDownLatch(1);
+    private PriorityExecutor executor;
+
+    @Before
+    public void setUp() {
+        AndroidUtils.init(ApplicationProvider.<Application>getApplicationContext(), null);
+        executor = new PriorityExecutor(2);
+    }
+
+    @After
+    public void tearDown()
+            throws Exception {
+        releaseFirst.countDown();
+        releaseSecond.countDown();
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void takesFromTheHighestPriorityLaneFirst()
+            throws Exception {
+        blockWorkers();
+        List<Lane> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(4);
+        for (Lane lane : Arrays.asList(Lane.MAINTENANCE, Lane.PREFETCH, Lane.BIND, Lane.PARSE)) {
+            executor.execute(lane, () -> {
+                order.add(lane);
+                done.countDown();
+            });
+        }
+
+        // a single free worker takes the queued tasks one at a time
+        releaseFirst.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(Lane.PARSE, Lane.BIND, Lane.PREFETCH, Lane.MAINTENANCE), order);
+    }
+
+    @Test
+    public void prefetchLeavesAWorkerFree()
+            throws Exception {
+        assertLaneLeavesAWorkerFree(Lane.PREFETCH);
+    }
+
+    @Test
+    public void maintenanceLeavesAWorkerFree()
+            throws Exception {
+        assertLaneLeavesAWorkerFree(Lane.MAINTENANCE);
+    }
+
+    @Test
+    public void workersRunTasksForAFullLaneThemselves()
+            throws Exception {
+        AtomicReference<Thread> worker = new AtomicReference<>();
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        AtomicBoolean ranBeforeReturning = new AtomicBoolean();
+        CountDownLatch submitted = new CountDownLatch(1);
+        executor.execute(Lane.PARSE, () -> {
+            worker.set(Thread.currentThread());
+            workersBlocked.countDown();
+            awaitUninterruptibly(releaseFirst);
+            executor.execute(Lane.MAINTENANCE, () -> ranOn.set(Thread.currentThread()));
+            ranBeforeReturning.set(ranOn.get() != null);
+            submitted.countDown();
+        });
+        executor.execute(Lane.PARSE, this::blockUntilSecondReleased);
+        assertTrue(workersBlocked.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        fillMaintenanceLane();
+        releaseFirst.countDown();
+
+        assertTrue(submitted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(ranBeforeReturning.get());
+        assertSame(worker.get(), ranOn.get());
+    }
+
+    @Test
+    public void mainThreadQueuesOverTheBound()
+            throws Exception {
+        blockWorkers();
+        fillMaintenanceLane();
+
+        executor.execute(Lane.MAINTENANCE, () -> {});
+
+        assertEquals(MAINTENANCE_CAPACITY + 1, executor.getQueueDepth(Lane.MAINTENANCE));
+    }
+
+    @Test
+    public void otherThreadsWaitForRoom()
+            throws Exception {
+        blockWorkers();
+        fillMaintenanceLane();
+
+        CountDownLatch submitted = new CountDownLatch(1);
+        new Thread(() -> {
+            executor.execute(Lane.MAINTENANCE, () -> {});
+            submitted.countDown();
+        }).start();
+
+        assertFalse(submitted.await(200, TimeUnit.MILLISECONDS));
+        releaseFirst.countDown();
+        assertTrue(submitted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void rejectsTasksAfterShutdown() {
+        executor.shutdown();
+        executor.execute(Lane.BIND, () -> {});
+    }
+
+    @Test
+    public void shutdownNowReturnsQueuedTasks()
+            throws Exception {
+        blockWorkers();
+        Runnable queued = () -> {};
+        executor.execute(Lane.PREFETCH, queued);
+
+        assertEquals(Collections.singletonList(queued), executor.shutdownNow());
+        assertEquals(0, executor.getQueueDepth(Lane.PREFETCH));
+    }
+
+    private void assertLaneLeavesAWorkerFree(Lane lane)
+            throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(lane, () -> {
+            started.countDown();
+            awaitUninterruptibly(releaseFirst);
+        });
+        executor.execute(lane, () -> {});
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        CountDownLatch parsed = new CountDownLatch(1);
+        executor.execute(Lane.PARSE, parsed::countDown);
+
+        assertTrue(parsed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        // the second task of the lane waits for the first one, even though the other worker is free
+        assertEquals(1, executor.getQueueDepth(lane));
+    }
+
+    /**
+     * Holds up both workers until {@link #releaseFirst} and {@link #releaseSecond}.
+     */
+    private void blockWorkers()
+            throws InterruptedException {
+        executor.execute(Lane.PARSE, () -> {
+            workersBlocked.countDown();
+            awaitUninterruptibly(releaseFirst);
+        });
+        executor.execute(Lane.PARSE, this::blockUntilSecondReleased);
+        assertTrue(workersBlocked.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private void blockUntilSecondReleased() {
+        workersBlocked.countDown();
+        awaitUninterruptibly(releaseSecond);
+    }
+
+    private void fillMaintenanceLane() {
+        while (executor.getQueueDepth(Lane.MAINTENANCE) < MAINTENANCE_CAPACITY) {
+            executor.execute(Lane.MAINTENANCE, () -> {});
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException ignored) {
+            }
+        }
+    }
+}
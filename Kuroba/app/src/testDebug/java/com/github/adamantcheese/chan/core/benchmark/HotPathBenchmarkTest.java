@@ -0,0 +1,50 @@
+/*
+ * Kuroba - *chan browser https://github.com/Adamantcheese/Kuroba/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.adamantcheese.chan.core.benchmark;
+
+import com.github.adamantcheese.chan.Chan;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the {@link HotPathBenchmark} on the JVM, with the app started as usual under Robolectric so the sites, parsers
+ * and filters are the same ones a device uses. Only run when asked for, as it takes a minute or so:
+ * <pre>./gradlew testStableDebugUnitTest -Pbenchmark --tests '*HotPathBenchmarkTest'</pre>
+ * The results are written to {@code app/build/benchmarks}, in the same JSON as the developer settings button writes.
+ * JVM timings aren't comparable with a device's, only with other JVM runs on the same machine.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Chan.class)
+public class HotPathBenchmarkTest {
+    @Test
+    public void run()
+            throws Exception {
+        String outputDir = System.getProperty("benchmark.outputDir");
+        assertNotNull("Run with -Pbenchmark", outputDir);
+
+        File results = new HotPathBenchmark().run(new File(outputDir));
+        assertTrue(results.length() > 0);
+    }
+}